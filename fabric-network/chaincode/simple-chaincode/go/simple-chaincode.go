@@ -1,7 +1,10 @@
 package main
 
 import (
+	"bytes"
 	"fmt"
+	"strconv"
+	"strings"
 
 	"github.com/hyperledger/fabric/core/chaincode/shim"
 	pb "github.com/hyperledger/fabric/protos/peer"
@@ -22,6 +25,13 @@ func (t *SimpleChaincode) Init(stub shim.ChaincodeStubInterface) pb.Response {
 func (t *SimpleChaincode) Invoke(stub shim.ChaincodeStubInterface) pb.Response {
 	fmt.Println("chaincode - Invoke")
 	function, args := stub.GetFunctionAndParameters()
+	if !strings.HasPrefix(function, "get") && function != "history" {
+		// emit an event named after the function when the client asks for it
+		transientMap, err := stub.GetTransient()
+		if err == nil && transientMap["event"] != nil {
+			stub.SetEvent(function, transientMap["event"])
+		}
+	}
 	if function == "delete" {
 		return t.delete(stub, args)
 	} else if function == "set" {
@@ -30,9 +40,69 @@ func (t *SimpleChaincode) Invoke(stub shim.ChaincodeStubInterface) pb.Response {
 		return t.add(stub, args)
 	} else if function == "get" {
 		return t.get(stub, args)
+	} else if function == "getMany" {
+		return t.getMany(stub, args)
+	} else if function == "getByPartialKey" {
+		return t.getByPartialKey(stub, args)
+	} else if function == "getByRange" {
+		return t.getByRange(stub, args)
+	} else if function == "history" {
+		return t.history(stub, args)
+	} else if function == "batch" {
+		return t.batch(stub, args)
+	}
+
+	return shim.Error("Invalid invoke function name. Expecting \"delete\" \"set\" \"add\" \"get\" \"getMany\" \"getByPartialKey\" \"getByRange\" \"history\" \"batch\"")
+}
+
+/*
+ * An entity holding a ~ is stored under the composite key made of the object
+ * type and the attributes it separates, blog~1 or entry~1~12 for instance, so
+ * that the entities of a type can be scanned by getByPartialKey; any other
+ * entity is a simple key.
+ */
+func keyOf(stub shim.ChaincodeStubInterface, entity string) (string, error) {
+	if !strings.Contains(entity, "~") {
+		return entity, nil
 	}
+	parts := strings.Split(entity, "~")
+	return stub.CreateCompositeKey(parts[0], parts[1:])
+}
 
-	return shim.Error("Invalid invoke function name. Expecting \"delete\" \"set\" \"add\" \"get\"")
+// Readable form of a key found by a scan
+func entityOf(stub shim.ChaincodeStubInterface, key string) (string, error) {
+	if !strings.HasPrefix(key, "\x00") {
+		return key, nil
+	}
+	objectType, attributes, err := stub.SplitCompositeKey(key)
+	if err != nil {
+		return "", err
+	}
+	return strings.Join(append([]string{objectType}, attributes...), "~"), nil
+}
+
+func getState(stub shim.ChaincodeStubInterface, entity string) ([]byte, error) {
+	key, err := keyOf(stub, entity)
+	if err != nil {
+		return nil, err
+	}
+	return stub.GetState(key)
+}
+
+func putState(stub shim.ChaincodeStubInterface, entity string, value []byte) error {
+	key, err := keyOf(stub, entity)
+	if err != nil {
+		return err
+	}
+	return stub.PutState(key, value)
+}
+
+func delState(stub shim.ChaincodeStubInterface, entity string) error {
+	key, err := keyOf(stub, entity)
+	if err != nil {
+		return err
+	}
+	return stub.DelState(key)
 }
 
 // Deletes an entity from state
@@ -47,7 +117,7 @@ func (t *SimpleChaincode) delete(stub shim.ChaincodeStubInterface, args []string
 	fmt.Println("chaincode - delete(entity: " + entity + ")")
 
 	// Checking that the entity exists
-	stateBytes, err := stub.GetState(entity)
+	stateBytes, err := getState(stub, entity)
 	if err != nil {
 		fmt.Println("Error while getting state from the ledger: " + err.Error())
 		return shim.Error(err.Error())
@@ -57,7 +127,7 @@ func (t *SimpleChaincode) delete(stub shim.ChaincodeStubInterface, args []string
 	}
 
 	// Delete the key from the state in ledger
-	err = stub.DelState(entity)
+	err = delState(stub, entity)
 	if err != nil {
 		return shim.Error("Failed to delete state")
 	}
@@ -77,7 +147,7 @@ func (t *SimpleChaincode) get(stub shim.ChaincodeStubInterface, args []string) p
 	fmt.Println("chaincode - get(entity: " + entity + ")")
 
 	// Get the state from the ledger
-	stateBytes, err := stub.GetState(entity)
+	stateBytes, err := getState(stub, entity)
 	if err != nil {
 		fmt.Println("Error while getting state from the ledger: " + err.Error())
 		return shim.Error(err.Error())
@@ -91,6 +161,190 @@ func (t *SimpleChaincode) get(stub shim.ChaincodeStubInterface, args []string) p
 	return shim.Success(stateBytes)
 }
 
+/*
+ * Query the states of several entities in one proposal. The response holds,
+ * for each entity in order, the length of its state in bytes, a colon and the
+ * state; a missing entity is written as -1 and a colon.
+ */
+func (t *SimpleChaincode) getMany(stub shim.ChaincodeStubInterface, args []string) pb.Response {
+	if len(args) == 0 {
+		return shim.Error("Incorrect number of arguments. Expecting entities to query")
+	}
+	fmt.Printf("chaincode - getMany(%d entities)\n", len(args))
+
+	var buffer bytes.Buffer
+	for _, entity := range args {
+		stateBytes, err := getState(stub, entity)
+		if err != nil {
+			fmt.Println("Error while getting state from the ledger: " + err.Error())
+			return shim.Error(err.Error())
+		}
+		if stateBytes == nil {
+			buffer.WriteString("-1:")
+			continue
+		}
+		writeField(&buffer, stateBytes)
+	}
+
+	return shim.Success(buffer.Bytes())
+}
+
+/*
+ * Query a page of the entities of an object type, optionally restricted by
+ * their first attributes. Expects the page size, the bookmark returned with
+ * the previous page (empty for the first one), the object type and the
+ * attributes. Paginated queries are only allowed in queries, never in
+ * submitted transactions.
+ */
+func (t *SimpleChaincode) getByPartialKey(stub shim.ChaincodeStubInterface, args []string) pb.Response {
+	if len(args) < 3 {
+		return shim.Error("Incorrect number of arguments. Expecting page size, bookmark, object type and attributes")
+	}
+	pageSize, err := strconv.ParseInt(args[0], 10, 32)
+	if err != nil || pageSize <= 0 {
+		return shim.Error("Invalid page size " + args[0])
+	}
+	fmt.Printf("chaincode - getByPartialKey(%s %v)\n", args[2], args[3:])
+
+	iterator, metadata, err := stub.GetStateByPartialCompositeKeyWithPagination(args[2], args[3:], int32(pageSize), args[1])
+	if err != nil {
+		return shim.Error(err.Error())
+	}
+	return page(stub, iterator, metadata, int32(pageSize))
+}
+
+/*
+ * Query a page of the simple keys from a start key, included, to an end key,
+ * excluded, empty for no bound; composite keys are never part of a range.
+ * Expects the page size, the bookmark returned with the previous page (empty
+ * for the first one), the start and the end keys.
+ */
+func (t *SimpleChaincode) getByRange(stub shim.ChaincodeStubInterface, args []string) pb.Response {
+	if len(args) != 4 {
+		return shim.Error("Incorrect number of arguments. Expecting page size, bookmark, start and end keys")
+	}
+	pageSize, err := strconv.ParseInt(args[0], 10, 32)
+	if err != nil || pageSize <= 0 {
+		return shim.Error("Invalid page size " + args[0])
+	}
+	fmt.Printf("chaincode - getByRange(%s, %s)\n", args[2], args[3])
+
+	iterator, metadata, err := stub.GetStateByRangeWithPagination(args[2], args[3], int32(pageSize), args[1])
+	if err != nil {
+		return shim.Error(err.Error())
+	}
+	return page(stub, iterator, metadata, int32(pageSize))
+}
+
+/*
+ * Write a page as getMany does: the bookmark of the next page, empty after
+ * the last one, then each entity and its state.
+ */
+func page(stub shim.ChaincodeStubInterface, iterator shim.StateQueryIteratorInterface, metadata *pb.QueryResponseMetadata, pageSize int32) pb.Response {
+	defer iterator.Close()
+
+	var records bytes.Buffer
+	var count int32
+	for iterator.HasNext() {
+		kv, err := iterator.Next()
+		if err != nil {
+			return shim.Error(err.Error())
+		}
+		entity, err := entityOf(stub, kv.Key)
+		if err != nil {
+			return shim.Error(err.Error())
+		}
+		writeField(&records, []byte(entity))
+		writeField(&records, kv.Value)
+		count++
+	}
+
+	// CouchDB returns a bookmark even after the last page
+	bookmark := metadata.Bookmark
+	if count < pageSize {
+		bookmark = ""
+	}
+	var buffer bytes.Buffer
+	writeField(&buffer, []byte(bookmark))
+	buffer.Write(records.Bytes())
+	return shim.Success(buffer.Bytes())
+}
+
+/*
+ * Query a page of the writes of an entity, oldest first. Expects the page
+ * size, the bookmark returned with the previous page (empty for the first
+ * one) and the entity. GetHistoryForKey has no pagination, the bookmark is the
+ * number of writes already returned; the history of a key only grows, so a
+ * bookmark stays valid. Writes the bookmark of the next page, empty after the
+ * last one, then for each write the transaction id, the timestamp in
+ * milliseconds, "true" for a deletion or "false", and the value, -1 for a
+ * deletion. Requires the history database of the peer.
+ */
+func (t *SimpleChaincode) history(stub shim.ChaincodeStubInterface, args []string) pb.Response {
+	if len(args) != 3 {
+		return shim.Error("Incorrect number of arguments. Expecting page size, bookmark and entity")
+	}
+	pageSize, err := strconv.Atoi(args[0])
+	if err != nil || pageSize <= 0 {
+		return shim.Error("Invalid page size " + args[0])
+	}
+	from := 0
+	if args[1] != "" {
+		from, err = strconv.Atoi(args[1])
+		if err != nil || from < 0 {
+			return shim.Error("Invalid bookmark " + args[1])
+		}
+	}
+	key, err := keyOf(stub, args[2])
+	if err != nil {
+		return shim.Error(err.Error())
+	}
+	fmt.Printf("chaincode - history(entity: %s, from: %d)\n", args[2], from)
+
+	iterator, err := stub.GetHistoryForKey(key)
+	if err != nil {
+		return shim.Error(err.Error())
+	}
+	defer iterator.Close()
+
+	var records bytes.Buffer
+	position := 0
+	bookmark := ""
+	for iterator.HasNext() {
+		modification, err := iterator.Next()
+		if err != nil {
+			return shim.Error(err.Error())
+		}
+		if position >= from+pageSize {
+			bookmark = strconv.Itoa(position)
+			break
+		}
+		if position >= from {
+			millis := modification.Timestamp.Seconds*1000 + int64(modification.Timestamp.Nanos)/1000000
+			writeField(&records, []byte(modification.TxId))
+			writeField(&records, []byte(strconv.FormatInt(millis, 10)))
+			writeField(&records, []byte(strconv.FormatBool(modification.IsDelete)))
+			if modification.IsDelete {
+				records.WriteString("-1:")
+			} else {
+				writeField(&records, modification.Value)
+			}
+		}
+		position++
+	}
+
+	var buffer bytes.Buffer
+	writeField(&buffer, []byte(bookmark))
+	buffer.Write(records.Bytes())
+	return shim.Success(buffer.Bytes())
+}
+
+func writeField(buffer *bytes.Buffer, field []byte) {
+	buffer.WriteString(strconv.Itoa(len(field)))
+	buffer.WriteString(":")
+	buffer.Write(field)
+}
+
 // Add the entity to the blockchain
 func (t *SimpleChaincode) add(stub shim.ChaincodeStubInterface, args []string) pb.Response {
 	var entity string 		// Entity to store in the ledger
@@ -106,7 +360,7 @@ func (t *SimpleChaincode) add(stub shim.ChaincodeStubInterface, args []string) p
 	fmt.Println("chaincode - add(entity: " + entity + " value: " + value + ")")
 
 	// Checking that the entity has not been added yet
-	stateBytes, err := stub.GetState(entity)
+	stateBytes, err := getState(stub, entity)
 	if err != nil {
 		fmt.Println("Error while getting state from the ledger: " + err.Error())
 		return shim.Error(err.Error())
@@ -116,7 +370,7 @@ func (t *SimpleChaincode) add(stub shim.ChaincodeStubInterface, args []string) p
 	}
 
 	// Write the state to the ledger
-	err = stub.PutState(entity, []byte(value))
+	err = putState(stub, entity, []byte(value))
 	if err != nil {
 		return shim.Error(err.Error())
 	}
@@ -139,7 +393,7 @@ func (t *SimpleChaincode) set(stub shim.ChaincodeStubInterface, args []string) p
 	fmt.Println("chaincode - set(entity: " + entity + " value: " + value + ")")
 
 	// Checking that the entity exists
-	stateBytes, err := stub.GetState(entity)
+	stateBytes, err := getState(stub, entity)
 	if err != nil {
 		fmt.Println("Error while getting state from the ledger: " + err.Error())
 		return shim.Error(err.Error())
@@ -154,7 +408,7 @@ func (t *SimpleChaincode) set(stub shim.ChaincodeStubInterface, args []string) p
 	}
 
 	// Write the state to the ledger
-	err = stub.PutState(entity, []byte(value))
+	err = putState(stub, entity, []byte(value))
 	if err != nil {
 		return shim.Error(err.Error())
 	}
@@ -162,6 +416,81 @@ func (t *SimpleChaincode) set(stub shim.ChaincodeStubInterface, args []string) p
 	return shim.Success(nil)
 }
 
+// Apply an ordered list of operations, each given as the triple
+// operation ("add", "set" or "delete"), entity, value (empty for delete).
+// Returns one status per operation, separated by new lines: OK or the answer
+// of the single operation (ALREADY_EXIST, NOT_FOUND, STATE_ALREADY_SET).
+// A refused operation does not prevent the following ones from being applied.
+func (t *SimpleChaincode) batch(stub shim.ChaincodeStubInterface, args []string) pb.Response {
+	if len(args) == 0 || len(args)%3 != 0 {
+		return shim.Error("Incorrect number of arguments. Expecting operation, entity and value triples.")
+	}
+	fmt.Printf("chaincode - batch(%d operations)\n", len(args)/3)
+
+	// GetState does not see the writes of the current transaction,
+	// so the states written by the previous operations are tracked here
+	pending := make(map[string][]byte)
+	deleted := make(map[string]bool)
+	stateOf := func(entity string) ([]byte, error) {
+		if deleted[entity] {
+			return nil, nil
+		}
+		if value, ok := pending[entity]; ok {
+			return value, nil
+		}
+		return getState(stub, entity)
+	}
+
+	statuses := make([]string, 0, len(args)/3)
+	for i := 0; i < len(args); i += 3 {
+		operation, entity, value := args[i], args[i+1], args[i+2]
+
+		stateBytes, err := stateOf(entity)
+		if err != nil {
+			fmt.Println("Error while getting state from the ledger: " + err.Error())
+			return shim.Error(err.Error())
+		}
+
+		status := "OK"
+		switch operation {
+		case "add":
+			if stateBytes != nil {
+				status = "ALREADY_EXIST"
+			}
+		case "set":
+			if stateBytes == nil {
+				status = "NOT_FOUND"
+			} else if string(stateBytes) == value {
+				status = "STATE_ALREADY_SET"
+			}
+		case "delete":
+			if stateBytes == nil {
+				status = "NOT_FOUND"
+			}
+		default:
+			return shim.Error("Invalid batch operation \"" + operation + "\". Expecting \"add\" \"set\" \"delete\"")
+		}
+
+		if status == "OK" {
+			if operation == "delete" {
+				err = delState(stub, entity)
+				delete(pending, entity)
+				deleted[entity] = true
+			} else {
+				err = putState(stub, entity, []byte(value))
+				pending[entity] = []byte(value)
+				delete(deleted, entity)
+			}
+			if err != nil {
+				return shim.Error(err.Error())
+			}
+		}
+		statuses = append(statuses, status)
+	}
+
+	return shim.Success([]byte(strings.Join(statuses, "\n")))
+}
+
 func main() {
 	err := shim.Start(new(SimpleChaincode))
 	if err != nil {
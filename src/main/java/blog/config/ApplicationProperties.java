@@ -2,6 +2,12 @@ package blog.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Properties specific to Blogchain.
  * <p>
@@ -11,4 +17,1139 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
 
+    private final Fabric fabric = new Fabric();
+
+    public Fabric getFabric() {
+        return fabric;
+    }
+
+    public static class Fabric {
+
+        /**
+         * Ledger backend: "fabric" for the network described in Config, "simulator" for the in-process ledger.
+         */
+        private String backend = "fabric";
+
+        private final Network network = new Network();
+
+        private final Gateway gateway = new Gateway();
+
+        private final Admission admission = new Admission();
+
+        private final Breaker breaker = new Breaker();
+
+        private final Retry retry = new Retry();
+
+        private final Simulator simulator = new Simulator();
+
+        private final Wallet wallet = new Wallet();
+
+        private final Batch batch = new Batch();
+
+        private final Consistency consistency = new Consistency();
+
+        private final Journal journal = new Journal();
+
+        private final Outbox outbox = new Outbox();
+
+        private final Mirror mirror = new Mirror();
+
+        private final Anchor anchor = new Anchor();
+
+        private final Read read = new Read();
+
+        private final Peers peers = new Peers();
+
+        private final Lookup lookup = new Lookup();
+
+        private final Tracking tracking = new Tracking();
+
+        private final Digests digests = new Digests();
+
+        public String getBackend() {
+            return backend;
+        }
+
+        public void setBackend(String backend) {
+            this.backend = backend;
+        }
+
+        public Network getNetwork() {
+            return network;
+        }
+
+        public Gateway getGateway() {
+            return gateway;
+        }
+
+        public Admission getAdmission() {
+            return admission;
+        }
+
+        public Breaker getBreaker() {
+            return breaker;
+        }
+
+        public Retry getRetry() {
+            return retry;
+        }
+
+        public Simulator getSimulator() {
+            return simulator;
+        }
+
+        public Batch getBatch() {
+            return batch;
+        }
+
+        public Consistency getConsistency() {
+            return consistency;
+        }
+
+        public Journal getJournal() {
+            return journal;
+        }
+
+        public Outbox getOutbox() {
+            return outbox;
+        }
+
+        public Mirror getMirror() {
+            return mirror;
+        }
+
+        public Anchor getAnchor() {
+            return anchor;
+        }
+
+        public Read getRead() {
+            return read;
+        }
+
+        public Peers getPeers() {
+            return peers;
+        }
+
+        public Lookup getLookup() {
+            return lookup;
+        }
+
+        public Tracking getTracking() {
+            return tracking;
+        }
+
+        public Digests getDigests() {
+            return digests;
+        }
+
+        public Wallet getWallet() {
+            return wallet;
+        }
+
+        public static class Network {
+
+            /**
+             * Location of the connection profile, YAML or JSON, describing the orderers, peers and CAs.
+             */
+            private String profile = "classpath:config/fabric/connection-profile.yaml";
+
+            /**
+             * Channel of the profile to join, optional when the profile describes a single channel.
+             */
+            private String channel;
+
+            /**
+             * Delay between two reads of the connection profile, applying its changes to the shared channel.
+             */
+            private long reloadDelayMs = 30000;
+
+            public String getProfile() {
+                return profile;
+            }
+
+            public void setProfile(String profile) {
+                this.profile = profile;
+            }
+
+            public String getChannel() {
+                return channel;
+            }
+
+            public void setChannel(String channel) {
+                this.channel = channel;
+            }
+
+            public long getReloadDelayMs() {
+                return reloadDelayMs;
+            }
+
+            public void setReloadDelayMs(long reloadDelayMs) {
+                this.reloadDelayMs = reloadDelayMs;
+            }
+        }
+
+        public static class Gateway {
+
+            /**
+             * Threads sending transaction proposals; commits are awaited without holding a thread.
+             */
+            private int endorsementThreads = 8;
+
+            /**
+             * Time a synchronous write waits for its transaction to be committed, retries included.
+             */
+            private long commitTimeoutMs = 60000;
+
+            public int getEndorsementThreads() {
+                return endorsementThreads;
+            }
+
+            public void setEndorsementThreads(int endorsementThreads) {
+                this.endorsementThreads = endorsementThreads;
+            }
+
+            public long getCommitTimeoutMs() {
+                return commitTimeoutMs;
+            }
+
+            public void setCommitTimeoutMs(long commitTimeoutMs) {
+                this.commitTimeoutMs = commitTimeoutMs;
+            }
+        }
+
+        public static class Breaker {
+
+            /**
+             * Stop calling the network while it fails or is too slow; calls always go through when disabled.
+             */
+            private boolean enabled = true;
+
+            /**
+             * Last calls whose outcome decides whether to open the breaker.
+             */
+            private int windowSize = 50;
+
+            /**
+             * Calls in the window before the rates are considered.
+             */
+            private int minimumCalls = 10;
+
+            /**
+             * Percentage of failed calls in the window opening the breaker.
+             */
+            private float failureRateThreshold = 50;
+
+            /**
+             * Duration above which a call is slow.
+             */
+            private long slowCallDurationMs = 5000;
+
+            /**
+             * Percentage of slow calls in the window opening the breaker.
+             */
+            private float slowCallRateThreshold = 80;
+
+            /**
+             * Time the breaker stays open before letting trial calls through.
+             */
+            private long openDurationMs = 30000;
+
+            /**
+             * Trial calls deciding, once the breaker is half open, whether to close or open it again.
+             */
+            private int halfOpenCalls = 5;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getWindowSize() {
+                return windowSize;
+            }
+
+            public void setWindowSize(int windowSize) {
+                this.windowSize = windowSize;
+            }
+
+            public int getMinimumCalls() {
+                return minimumCalls;
+            }
+
+            public void setMinimumCalls(int minimumCalls) {
+                this.minimumCalls = minimumCalls;
+            }
+
+            public float getFailureRateThreshold() {
+                return failureRateThreshold;
+            }
+
+            public void setFailureRateThreshold(float failureRateThreshold) {
+                this.failureRateThreshold = failureRateThreshold;
+            }
+
+            public long getSlowCallDurationMs() {
+                return slowCallDurationMs;
+            }
+
+            public void setSlowCallDurationMs(long slowCallDurationMs) {
+                this.slowCallDurationMs = slowCallDurationMs;
+            }
+
+            public float getSlowCallRateThreshold() {
+                return slowCallRateThreshold;
+            }
+
+            public void setSlowCallRateThreshold(float slowCallRateThreshold) {
+                this.slowCallRateThreshold = slowCallRateThreshold;
+            }
+
+            public long getOpenDurationMs() {
+                return openDurationMs;
+            }
+
+            public void setOpenDurationMs(long openDurationMs) {
+                this.openDurationMs = openDurationMs;
+            }
+
+            public int getHalfOpenCalls() {
+                return halfOpenCalls;
+            }
+
+            public void setHalfOpenCalls(int halfOpenCalls) {
+                this.halfOpenCalls = halfOpenCalls;
+            }
+        }
+
+        public static class Admission {
+
+            /**
+             * Transactions endorsed or being ordered at the same time, the next ones wait.
+             */
+            private int maxInFlight = 64;
+
+            /**
+             * Transactions waiting for their admission, the next ones are refused at once.
+             */
+            private int maxQueued = 256;
+
+            /**
+             * Time a transaction waits for its admission before being refused.
+             */
+            private long maxWaitMs = 2000;
+
+            /**
+             * Retry-After of the refused requests.
+             */
+            private long retryAfterSeconds = 1;
+
+            public int getMaxInFlight() {
+                return maxInFlight;
+            }
+
+            public void setMaxInFlight(int maxInFlight) {
+                this.maxInFlight = maxInFlight;
+            }
+
+            public int getMaxQueued() {
+                return maxQueued;
+            }
+
+            public void setMaxQueued(int maxQueued) {
+                this.maxQueued = maxQueued;
+            }
+
+            public long getMaxWaitMs() {
+                return maxWaitMs;
+            }
+
+            public void setMaxWaitMs(long maxWaitMs) {
+                this.maxWaitMs = maxWaitMs;
+            }
+
+            public long getRetryAfterSeconds() {
+                return retryAfterSeconds;
+            }
+
+            public void setRetryAfterSeconds(long retryAfterSeconds) {
+                this.retryAfterSeconds = retryAfterSeconds;
+            }
+        }
+
+        public static class Retry {
+
+            /**
+             * Validation codes of the transactions endorsed again, the read conflicts with a concurrent write.
+             */
+            private List<String> retryableCodes = new ArrayList<>(Arrays.asList("MVCC_READ_CONFLICT", "PHANTOM_READ_CONFLICT"));
+
+            /**
+             * Endorsements of a transaction, the first one included; 1 disables the retries.
+             */
+            private int maxAttempts = 5;
+
+            /**
+             * Upper bound of the random delay before the first retry, doubled at each retry.
+             */
+            private long baseBackoffMs = 50;
+
+            /**
+             * Upper bound of the random delay before a retry.
+             */
+            private long maxBackoffMs = 2000;
+
+            /**
+             * Retries a key can spend in a burst, beyond which its conflicts are no longer retried.
+             */
+            private int keyBudget = 10;
+
+            /**
+             * Retries given back to each key per second.
+             */
+            private double keyBudgetPerSecond = 1;
+
+            public List<String> getRetryableCodes() {
+                return retryableCodes;
+            }
+
+            public void setRetryableCodes(List<String> retryableCodes) {
+                this.retryableCodes = retryableCodes;
+            }
+
+            public int getMaxAttempts() {
+                return maxAttempts;
+            }
+
+            public void setMaxAttempts(int maxAttempts) {
+                this.maxAttempts = maxAttempts;
+            }
+
+            public long getBaseBackoffMs() {
+                return baseBackoffMs;
+            }
+
+            public void setBaseBackoffMs(long baseBackoffMs) {
+                this.baseBackoffMs = baseBackoffMs;
+            }
+
+            public long getMaxBackoffMs() {
+                return maxBackoffMs;
+            }
+
+            public void setMaxBackoffMs(long maxBackoffMs) {
+                this.maxBackoffMs = maxBackoffMs;
+            }
+
+            public int getKeyBudget() {
+                return keyBudget;
+            }
+
+            public void setKeyBudget(int keyBudget) {
+                this.keyBudget = keyBudget;
+            }
+
+            public double getKeyBudgetPerSecond() {
+                return keyBudgetPerSecond;
+            }
+
+            public void setKeyBudgetPerSecond(double keyBudgetPerSecond) {
+                this.keyBudgetPerSecond = keyBudgetPerSecond;
+            }
+        }
+
+        public static class Peers {
+
+            /**
+             * Organizations whose endorsement the policy requires, 1 for the OR policy of the chaincode.
+             */
+            private int endorsingOrgs = 1;
+
+            /**
+             * Weight of the last sample in the moving averages of the latency and error rate of a peer.
+             */
+            private double ewmaWeight = 0.2;
+
+            /**
+             * Consecutive failures after which a peer is ejected.
+             */
+            private int ejectAfterFailures = 3;
+
+            /**
+             * First ejection of a peer, doubled each time its probe fails.
+             */
+            private long ejectionMs = 10000;
+
+            /**
+             * Longest ejection of a peer.
+             */
+            private long maxEjectionMs = 300000;
+
+            public int getEndorsingOrgs() {
+                return endorsingOrgs;
+            }
+
+            public void setEndorsingOrgs(int endorsingOrgs) {
+                this.endorsingOrgs = endorsingOrgs;
+            }
+
+            public double getEwmaWeight() {
+                return ewmaWeight;
+            }
+
+            public void setEwmaWeight(double ewmaWeight) {
+                this.ewmaWeight = ewmaWeight;
+            }
+
+            public int getEjectAfterFailures() {
+                return ejectAfterFailures;
+            }
+
+            public void setEjectAfterFailures(int ejectAfterFailures) {
+                this.ejectAfterFailures = ejectAfterFailures;
+            }
+
+            public long getEjectionMs() {
+                return ejectionMs;
+            }
+
+            public void setEjectionMs(long ejectionMs) {
+                this.ejectionMs = ejectionMs;
+            }
+
+            public long getMaxEjectionMs() {
+                return maxEjectionMs;
+            }
+
+            public void setMaxEjectionMs(long maxEjectionMs) {
+                this.maxEjectionMs = maxEjectionMs;
+            }
+        }
+
+        public static class Lookup {
+
+            /**
+             * Delay before the backup request of a transaction lookup, until enough lookups give a 95th percentile.
+             */
+            private long initialHedgeDelayMs = 100;
+
+            /**
+             * Shortest delay before a backup request, whatever the 95th percentile.
+             */
+            private long minHedgeDelayMs = 5;
+
+            /**
+             * Time after which a lookup no peer answered fails.
+             */
+            private long timeoutMs = 10000;
+
+            /**
+             * Committed transactions kept in memory, they never change.
+             */
+            private int cacheSize = 10000;
+
+            public long getInitialHedgeDelayMs() {
+                return initialHedgeDelayMs;
+            }
+
+            public void setInitialHedgeDelayMs(long initialHedgeDelayMs) {
+                this.initialHedgeDelayMs = initialHedgeDelayMs;
+            }
+
+            public long getMinHedgeDelayMs() {
+                return minHedgeDelayMs;
+            }
+
+            public void setMinHedgeDelayMs(long minHedgeDelayMs) {
+                this.minHedgeDelayMs = minHedgeDelayMs;
+            }
+
+            public long getTimeoutMs() {
+                return timeoutMs;
+            }
+
+            public void setTimeoutMs(long timeoutMs) {
+                this.timeoutMs = timeoutMs;
+            }
+
+            public int getCacheSize() {
+                return cacheSize;
+            }
+
+            public void setCacheSize(int cacheSize) {
+                this.cacheSize = cacheSize;
+            }
+        }
+
+        public static class Tracking {
+
+            /**
+             * Transactions, and tracking IDs of the asynchronous writes, whose status is kept in memory.
+             */
+            private int maxSize = 10000;
+
+            /**
+             * Time after which a stream of status transitions is closed, the client reconnecting.
+             */
+            private long streamTimeoutMs = 1800000;
+
+            /**
+             * Transitions waiting to be sent to a stream subscriber, which is dropped once they are all taken.
+             */
+            private int streamBufferSize = 256;
+
+            public int getMaxSize() {
+                return maxSize;
+            }
+
+            public void setMaxSize(int maxSize) {
+                this.maxSize = maxSize;
+            }
+
+            public long getStreamTimeoutMs() {
+                return streamTimeoutMs;
+            }
+
+            public void setStreamTimeoutMs(long streamTimeoutMs) {
+                this.streamTimeoutMs = streamTimeoutMs;
+            }
+
+            public int getStreamBufferSize() {
+                return streamBufferSize;
+            }
+
+            public void setStreamBufferSize(int streamBufferSize) {
+                this.streamBufferSize = streamBufferSize;
+            }
+        }
+
+        public static class Digests {
+
+            /**
+             * Refuse locally the sets of an unchanged value and the adds of an existing key, known from the commits.
+             */
+            private boolean enabled = true;
+
+            /**
+             * Keys whose last committed value digest is kept in memory.
+             */
+            private int maxSize = 10000;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getMaxSize() {
+                return maxSize;
+            }
+
+            public void setMaxSize(int maxSize) {
+                this.maxSize = maxSize;
+            }
+        }
+
+        public static class Simulator {
+
+            /**
+             * Time to simulate a proposal, also spent by queries.
+             */
+            private long endorsementLatencyMs = 20;
+
+            /**
+             * Time for the orderer to accept an endorsed transaction.
+             */
+            private long orderingLatencyMs = 10;
+
+            /**
+             * Transactions per block, a block is cut as soon as it is full.
+             */
+            private int blockSize = 10;
+
+            /**
+             * Time after which a block that is not full is cut.
+             */
+            private long blockTimeoutMs = 2000;
+
+            /**
+             * Time to validate and commit a block.
+             */
+            private long commitLatencyMs = 50;
+
+            /**
+             * File saving the world state after each block, the state is only kept in memory when empty.
+             */
+            private String file;
+
+            /**
+             * Last committed blocks kept in memory, the older ones can no longer be read.
+             */
+            private int maxBlocks = 10000;
+
+            /**
+             * Last writes of each key kept in its history.
+             */
+            private int maxHistory = 1000;
+
+            public long getEndorsementLatencyMs() {
+                return endorsementLatencyMs;
+            }
+
+            public void setEndorsementLatencyMs(long endorsementLatencyMs) {
+                this.endorsementLatencyMs = endorsementLatencyMs;
+            }
+
+            public long getOrderingLatencyMs() {
+                return orderingLatencyMs;
+            }
+
+            public void setOrderingLatencyMs(long orderingLatencyMs) {
+                this.orderingLatencyMs = orderingLatencyMs;
+            }
+
+            public int getBlockSize() {
+                return blockSize;
+            }
+
+            public void setBlockSize(int blockSize) {
+                this.blockSize = blockSize;
+            }
+
+            public long getBlockTimeoutMs() {
+                return blockTimeoutMs;
+            }
+
+            public void setBlockTimeoutMs(long blockTimeoutMs) {
+                this.blockTimeoutMs = blockTimeoutMs;
+            }
+
+            public long getCommitLatencyMs() {
+                return commitLatencyMs;
+            }
+
+            public void setCommitLatencyMs(long commitLatencyMs) {
+                this.commitLatencyMs = commitLatencyMs;
+            }
+
+            public String getFile() {
+                return file;
+            }
+
+            public int getMaxBlocks() {
+                return maxBlocks;
+            }
+
+            public void setMaxBlocks(int maxBlocks) {
+                this.maxBlocks = maxBlocks;
+            }
+
+            public int getMaxHistory() {
+                return maxHistory;
+            }
+
+            public void setMaxHistory(int maxHistory) {
+                this.maxHistory = maxHistory;
+            }
+
+            public void setFile(String file) {
+                this.file = file;
+            }
+        }
+
+        public static class Batch {
+
+            /**
+             * Operations sent in a single transaction; 1 disables batching.
+             */
+            private int maxSize = 50;
+
+            /**
+             * Time the oldest pending operation waits for others to join its batch.
+             */
+            private long maxLingerMs = 20;
+
+            /**
+             * Time a set waits for the next sets of its key, only the last value being sent; 0 disables combining.
+             */
+            private long combineWindowMs = 200;
+
+            public int getMaxSize() {
+                return maxSize;
+            }
+
+            public void setMaxSize(int maxSize) {
+                this.maxSize = maxSize;
+            }
+
+            public long getMaxLingerMs() {
+                return maxLingerMs;
+            }
+
+            public void setMaxLingerMs(long maxLingerMs) {
+                this.maxLingerMs = maxLingerMs;
+            }
+
+            public long getCombineWindowMs() {
+                return combineWindowMs;
+            }
+
+            public void setCombineWindowMs(long combineWindowMs) {
+                this.combineWindowMs = combineWindowMs;
+            }
+        }
+
+        public static class Consistency {
+
+            /**
+             * Mode of the writes no other setting covers: sync-commit, sync-endorse, async or eventual.
+             */
+            private String defaultMode = "sync-commit";
+
+            /**
+             * Mode by operation: add, set or delete.
+             */
+            private Map<String, String> operations = new HashMap<>();
+
+            /**
+             * Mode by entity type, then by operation, taking precedence over the mode of the operation.
+             */
+            private Map<String, Map<String, String>> entities = new HashMap<>();
+
+            /**
+             * Request header overriding the configured mode of a write.
+             */
+            private String header = "X-Ledger-Consistency";
+
+            public String getDefaultMode() {
+                return defaultMode;
+            }
+
+            public void setDefaultMode(String defaultMode) {
+                this.defaultMode = defaultMode;
+            }
+
+            public Map<String, String> getOperations() {
+                return operations;
+            }
+
+            public void setOperations(Map<String, String> operations) {
+                this.operations = operations;
+            }
+
+            public Map<String, Map<String, String>> getEntities() {
+                return entities;
+            }
+
+            public void setEntities(Map<String, Map<String, String>> entities) {
+                this.entities = entities;
+            }
+
+            public String getHeader() {
+                return header;
+            }
+
+            public void setHeader(String header) {
+                this.header = header;
+            }
+        }
+
+        public static class Journal {
+
+            /**
+             * Journal the ledger writes in flight, so that the ones a stopped JVM never completed are relayed on the
+             * next start.
+             */
+            private boolean enabled = true;
+
+            /**
+             * Directory holding the segment files.
+             */
+            private String path = "journal";
+
+            /**
+             * Size of a memory-mapped segment file, in bytes.
+             */
+            private int segmentSize = 4 * 1024 * 1024;
+
+            /**
+             * Full segments kept besides the current one; beyond, the writes still in flight in the oldest one are
+             * copied to the current one.
+             */
+            private int maxSegments = 4;
+
+            /**
+             * Pause between two forces of the completions to disk; the writes of a batch are forced before it is sent.
+             */
+            private long syncDelayMs = 10;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public String getPath() {
+                return path;
+            }
+
+            public void setPath(String path) {
+                this.path = path;
+            }
+
+            public int getSegmentSize() {
+                return segmentSize;
+            }
+
+            public void setSegmentSize(int segmentSize) {
+                this.segmentSize = segmentSize;
+            }
+
+            public int getMaxSegments() {
+                return maxSegments;
+            }
+
+            public void setMaxSegments(int maxSegments) {
+                this.maxSegments = maxSegments;
+            }
+
+            public long getSyncDelayMs() {
+                return syncDelayMs;
+            }
+
+            public void setSyncDelayMs(long syncDelayMs) {
+                this.syncDelayMs = syncDelayMs;
+            }
+        }
+
+        public static class Outbox {
+
+            /**
+             * Relay the outbox to Fabric; writes keep accumulating when disabled.
+             */
+            private boolean enabled = true;
+
+            /**
+             * Pause between two relay passes.
+             */
+            private long relayDelayMs = 500;
+
+            /**
+             * Oldest outbox rows read per relay pass.
+             */
+            private int batchSize = 200;
+
+            /**
+             * Time a relay pass waits for its writes to be committed before retrying them.
+             */
+            private long commitTimeoutMs = 30000;
+
+            /**
+             * Delay before the first retry of a failed write, doubled on each attempt.
+             */
+            private long backoffMs = 1000;
+
+            /**
+             * Upper bound of the retry delay.
+             */
+            private long maxBackoffMs = 300000;
+
+            /**
+             * Attempts of a write before it is kept as a dead letter and no longer relayed.
+             */
+            private int maxAttempts = 20;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public long getRelayDelayMs() {
+                return relayDelayMs;
+            }
+
+            public void setRelayDelayMs(long relayDelayMs) {
+                this.relayDelayMs = relayDelayMs;
+            }
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+
+            public long getCommitTimeoutMs() {
+                return commitTimeoutMs;
+            }
+
+            public void setCommitTimeoutMs(long commitTimeoutMs) {
+                this.commitTimeoutMs = commitTimeoutMs;
+            }
+
+            public long getBackoffMs() {
+                return backoffMs;
+            }
+
+            public void setBackoffMs(long backoffMs) {
+                this.backoffMs = backoffMs;
+            }
+
+            public long getMaxBackoffMs() {
+                return maxBackoffMs;
+            }
+
+            public void setMaxBackoffMs(long maxBackoffMs) {
+                this.maxBackoffMs = maxBackoffMs;
+            }
+
+            public int getMaxAttempts() {
+                return maxAttempts;
+            }
+
+            public void setMaxAttempts(int maxAttempts) {
+                this.maxAttempts = maxAttempts;
+            }
+        }
+
+        public static class Mirror {
+
+            /**
+             * Mirror the world state from the committed blocks and serve chaincode reads from it.
+             */
+            private boolean enabled = true;
+
+            /**
+             * Pause between two synchronizations, which catch up on missed blocks.
+             */
+            private long syncDelayMs = 5000;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public long getSyncDelayMs() {
+                return syncDelayMs;
+            }
+
+            public void setSyncDelayMs(long syncDelayMs) {
+                this.syncDelayMs = syncDelayMs;
+            }
+        }
+
+        public static class Anchor {
+
+            /**
+             * Ledger value of an entity: "digest" for a versioned SHA-256 of its canonical form, "value" for its toString(),
+             * "merkle" to only write the Merkle root of the digests collected over each window.
+             */
+            private String mode = "digest";
+
+            /**
+             * Time over which digests are collected into one Merkle tree.
+             */
+            private long windowMs = 5000;
+
+            /**
+             * Leaves of a Merkle tree, older digests wait for the next window beyond it.
+             */
+            private int maxBatchSize = 10000;
+
+            public String getMode() {
+                return mode;
+            }
+
+            public void setMode(String mode) {
+                this.mode = mode;
+            }
+
+            public long getWindowMs() {
+                return windowMs;
+            }
+
+            public void setWindowMs(long windowMs) {
+                this.windowMs = windowMs;
+            }
+
+            public int getMaxBatchSize() {
+                return maxBatchSize;
+            }
+
+            public void setMaxBatchSize(int maxBatchSize) {
+                this.maxBatchSize = maxBatchSize;
+            }
+        }
+
+        public static class Read {
+
+            /**
+             * Keys read by a single getMany query, the chunks of a larger read are queried in parallel.
+             */
+            private int chunkSize = 100;
+
+            /**
+             * Keys read by a single query of a scan, the next page being queried once the previous one is consumed.
+             */
+            private int pageSize = 500;
+
+            /**
+             * History pages kept decoded in memory, only the pages followed by another one, which never change.
+             */
+            private int historyCacheSize = 1000;
+
+            public int getChunkSize() {
+                return chunkSize;
+            }
+
+            public void setChunkSize(int chunkSize) {
+                this.chunkSize = chunkSize;
+            }
+
+            public int getPageSize() {
+                return pageSize;
+            }
+
+            public void setPageSize(int pageSize) {
+                this.pageSize = pageSize;
+            }
+
+            public int getHistoryCacheSize() {
+                return historyCacheSize;
+            }
+
+            public void setHistoryCacheSize(int historyCacheSize) {
+                this.historyCacheSize = historyCacheSize;
+            }
+        }
+
+        public static class Wallet {
+
+            /**
+             * Directory holding one identity file per enrolled user.
+             */
+            private String path = "users";
+
+            public String getPath() {
+                return path;
+            }
+
+            public void setPath(String path) {
+                this.path = path;
+            }
+        }
+    }
 }
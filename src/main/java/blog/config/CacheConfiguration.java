@@ -18,7 +18,11 @@ public class CacheConfiguration {
 
     private final javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration;
 
-    public CacheConfiguration(JHipsterProperties jHipsterProperties) {
+    private final javax.cache.configuration.Configuration<Object, Object> historyConfiguration;
+
+    private final javax.cache.configuration.Configuration<Object, Object> transactionConfiguration;
+
+    public CacheConfiguration(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties) {
         BeanClassLoaderAwareJCacheRegionFactory.setBeanClassLoader(this.getClass().getClassLoader());
         JHipsterProperties.Cache.Ehcache ehcache =
             jHipsterProperties.getCache().getEhcache();
@@ -28,6 +32,16 @@ public class CacheConfiguration {
                 ResourcePoolsBuilder.heap(ehcache.getMaxEntries()))
                 .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(ehcache.getTimeToLiveSeconds())))
                 .build());
+        historyConfiguration = Eh107Configuration.fromEhcacheCacheConfiguration(
+            CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                ResourcePoolsBuilder.heap(applicationProperties.getFabric().getRead().getHistoryCacheSize()))
+                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(ehcache.getTimeToLiveSeconds())))
+                .build());
+        transactionConfiguration = Eh107Configuration.fromEhcacheCacheConfiguration(
+            CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                ResourcePoolsBuilder.heap(applicationProperties.getFabric().getLookup().getCacheSize()))
+                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(ehcache.getTimeToLiveSeconds())))
+                .build());
     }
 
     @Bean
@@ -43,6 +57,9 @@ public class CacheConfiguration {
             cm.createCache(blog.domain.BlogEntry.class.getName() + ".tags", jcacheConfiguration);
             cm.createCache(blog.domain.Tag.class.getName(), jcacheConfiguration);
             cm.createCache(blog.domain.Tag.class.getName() + ".entries", jcacheConfiguration);
+            cm.createCache(blog.domain.LedgerState.class.getName(), jcacheConfiguration);
+            cm.createCache(blog.network.LedgerReader.HISTORY_CACHE, historyConfiguration);
+            cm.createCache(blog.network.TransactionLookup.TRANSACTIONS_CACHE, transactionConfiguration);
             // jhipster-needle-ehcache-add-entry
         };
     }
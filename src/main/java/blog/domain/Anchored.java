@@ -0,0 +1,20 @@
+package blog.domain;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an entity anchored on the ledger.
+ * <p>
+ * The inserts, updates and deletes of such an entity, and the changes of its owned collections, are captured by the
+ * {@link blog.service.AnchoredEntityListener} and anchored when their transaction commits. The entity needs a key in
+ * {@link blog.service.util.LedgerKeys} and a {@link blog.service.util.CanonicalForm}.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Anchored {
+}
@@ -15,6 +15,7 @@ import java.util.Objects;
  * A Blog.
  */
 @Entity
+@Anchored
 @Table(name = "blog")
 @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 public class Blog implements Serializable {
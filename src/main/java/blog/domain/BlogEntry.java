@@ -18,6 +18,7 @@ import java.util.Objects;
  * A BlogEntry.
  */
 @Entity
+@Anchored
 @Table(name = "blog_entry")
 @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 public class BlogEntry implements Serializable {
@@ -0,0 +1,170 @@
+package blog.domain;
+
+
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * The digest of an entity write, anchored on the ledger through the Merkle
+ * root of its batch, with the inclusion proof of the digest in that root.
+ */
+@Entity
+@Table(name = "ledger_anchor")
+public class LedgerAnchor implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
+    @SequenceGenerator(name = "sequenceGenerator")
+    private Long id;
+
+    @NotNull
+    @Column(name = "entity_key", nullable = false)
+    private String entityKey;
+
+    /**
+     * Versioned digest of the canonical form of the entity.
+     */
+    @NotNull
+    @Size(max = 80)
+    @Column(name = "digest", length = 80, nullable = false)
+    private String digest;
+
+    @NotNull
+    @Column(name = "created_date", nullable = false)
+    private Instant createdDate = Instant.now();
+
+    /**
+     * Chaincode key of the batch root, null until the digest is batched.
+     */
+    @Size(max = 64)
+    @Column(name = "batch_key", length = 64)
+    private String batchKey;
+
+    @Column(name = "leaf_index")
+    private Integer leafIndex;
+
+    /**
+     * Versioned Merkle root of the batch, as written to the ledger.
+     */
+    @Size(max = 80)
+    @Column(name = "root", length = 80)
+    private String root;
+
+    /**
+     * Siblings from the leaf up to the root, separated by spaces.
+     */
+    @Size(max = 2048)
+    @Column(name = "proof", length = 2048)
+    private String proof;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getEntityKey() {
+        return entityKey;
+    }
+
+    public LedgerAnchor entityKey(String entityKey) {
+        this.entityKey = entityKey;
+        return this;
+    }
+
+    public void setEntityKey(String entityKey) {
+        this.entityKey = entityKey;
+    }
+
+    public String getDigest() {
+        return digest;
+    }
+
+    public LedgerAnchor digest(String digest) {
+        this.digest = digest;
+        return this;
+    }
+
+    public void setDigest(String digest) {
+        this.digest = digest;
+    }
+
+    public Instant getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(Instant createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public String getBatchKey() {
+        return batchKey;
+    }
+
+    public void setBatchKey(String batchKey) {
+        this.batchKey = batchKey;
+    }
+
+    public Integer getLeafIndex() {
+        return leafIndex;
+    }
+
+    public void setLeafIndex(Integer leafIndex) {
+        this.leafIndex = leafIndex;
+    }
+
+    public String getRoot() {
+        return root;
+    }
+
+    public void setRoot(String root) {
+        this.root = root;
+    }
+
+    public String getProof() {
+        return proof;
+    }
+
+    public void setProof(String proof) {
+        this.proof = proof;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        LedgerAnchor ledgerAnchor = (LedgerAnchor) o;
+        if (ledgerAnchor.getId() == null || getId() == null) {
+            return false;
+        }
+        return Objects.equals(getId(), ledgerAnchor.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getId());
+    }
+
+    @Override
+    public String toString() {
+        return "LedgerAnchor{" +
+            "id=" + getId() +
+            ", entityKey='" + getEntityKey() + "'" +
+            ", digest='" + getDigest() + "'" +
+            ", batchKey='" + getBatchKey() + "'" +
+            ", leafIndex=" + getLeafIndex() +
+            "}";
+    }
+}
@@ -0,0 +1,81 @@
+package blog.domain;
+
+
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Next block to be processed by a named block consumer.
+ */
+@Entity
+@Table(name = "ledger_checkpoint")
+public class LedgerCheckpoint implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Size(max = 50)
+    @Column(name = "name", length = 50)
+    private String name;
+
+    @NotNull
+    @Column(name = "block_number", nullable = false)
+    private Long blockNumber;
+
+    public String getName() {
+        return name;
+    }
+
+    public LedgerCheckpoint name(String name) {
+        this.name = name;
+        return this;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Long getBlockNumber() {
+        return blockNumber;
+    }
+
+    public LedgerCheckpoint blockNumber(Long blockNumber) {
+        this.blockNumber = blockNumber;
+        return this;
+    }
+
+    public void setBlockNumber(Long blockNumber) {
+        this.blockNumber = blockNumber;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        LedgerCheckpoint ledgerCheckpoint = (LedgerCheckpoint) o;
+        if (ledgerCheckpoint.getName() == null || getName() == null) {
+            return false;
+        }
+        return Objects.equals(getName(), ledgerCheckpoint.getName());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getName());
+    }
+
+    @Override
+    public String toString() {
+        return "LedgerCheckpoint{" +
+            "name='" + getName() + "'" +
+            ", blockNumber=" + getBlockNumber() +
+            "}";
+    }
+}
@@ -0,0 +1,181 @@
+package blog.domain;
+
+
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * A ledger write waiting to be relayed to Fabric, saved in the same
+ * transaction as the entity change.
+ */
+@Entity
+@Table(name = "ledger_outbox")
+public class LedgerOutbox implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
+    @SequenceGenerator(name = "sequenceGenerator")
+    private Long id;
+
+    @NotNull
+    @Column(name = "entity_key", nullable = false)
+    private String entityKey;
+
+    /**
+     * Chaincode function: add, set or delete.
+     */
+    @NotNull
+    @Size(max = 16)
+    @Column(name = "operation", length = 16, nullable = false)
+    private String operation;
+
+    @Lob
+    @Column(name = "entity_value")
+    private String entityValue;
+
+    @NotNull
+    @Column(name = "created_date", nullable = false)
+    private Instant createdDate = Instant.now();
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @NotNull
+    @Column(name = "next_attempt_date", nullable = false)
+    private Instant nextAttemptDate = createdDate;
+
+    @Size(max = 1024)
+    @Column(name = "last_error", length = 1024)
+    private String lastError;
+
+    /**
+     * Set once the write has spent its attempts: it is no longer relayed, and kept for inspection.
+     */
+    @Column(name = "dead_letter", nullable = false)
+    private boolean deadLetter;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getEntityKey() {
+        return entityKey;
+    }
+
+    public LedgerOutbox entityKey(String entityKey) {
+        this.entityKey = entityKey;
+        return this;
+    }
+
+    public void setEntityKey(String entityKey) {
+        this.entityKey = entityKey;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public LedgerOutbox operation(String operation) {
+        this.operation = operation;
+        return this;
+    }
+
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+
+    public String getEntityValue() {
+        return entityValue;
+    }
+
+    public LedgerOutbox entityValue(String entityValue) {
+        this.entityValue = entityValue;
+        return this;
+    }
+
+    public void setEntityValue(String entityValue) {
+        this.entityValue = entityValue;
+    }
+
+    public Instant getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(Instant createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public Instant getNextAttemptDate() {
+        return nextAttemptDate;
+    }
+
+    public void setNextAttemptDate(Instant nextAttemptDate) {
+        this.nextAttemptDate = nextAttemptDate;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public boolean isDeadLetter() {
+        return deadLetter;
+    }
+
+    public void setDeadLetter(boolean deadLetter) {
+        this.deadLetter = deadLetter;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        LedgerOutbox ledgerOutbox = (LedgerOutbox) o;
+        if (ledgerOutbox.getId() == null || getId() == null) {
+            return false;
+        }
+        return Objects.equals(getId(), ledgerOutbox.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getId());
+    }
+
+    @Override
+    public String toString() {
+        return "LedgerOutbox{" +
+            "id=" + getId() +
+            ", entityKey='" + getEntityKey() + "'" +
+            ", operation='" + getOperation() + "'" +
+            ", createdDate='" + getCreatedDate() + "'" +
+            ", attempts=" + getAttempts() +
+            ", deadLetter=" + isDeadLetter() +
+            "}";
+    }
+}
@@ -0,0 +1,120 @@
+package blog.domain;
+
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Mirrored world state of a chaincode key, with the block and transaction
+ * that last wrote it.
+ */
+@Entity
+@Table(name = "ledger_state")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+public class LedgerState implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "entity_key")
+    private String entityKey;
+
+    @Lob
+    @Column(name = "entity_value")
+    private String entityValue;
+
+    @NotNull
+    @Column(name = "block_number", nullable = false)
+    private Long blockNumber;
+
+    @Size(max = 64)
+    @Column(name = "transaction_id", length = 64)
+    private String transactionId;
+
+    public String getEntityKey() {
+        return entityKey;
+    }
+
+    public LedgerState entityKey(String entityKey) {
+        this.entityKey = entityKey;
+        return this;
+    }
+
+    public void setEntityKey(String entityKey) {
+        this.entityKey = entityKey;
+    }
+
+    public String getEntityValue() {
+        return entityValue;
+    }
+
+    public LedgerState entityValue(String entityValue) {
+        this.entityValue = entityValue;
+        return this;
+    }
+
+    public void setEntityValue(String entityValue) {
+        this.entityValue = entityValue;
+    }
+
+    public Long getBlockNumber() {
+        return blockNumber;
+    }
+
+    public LedgerState blockNumber(Long blockNumber) {
+        this.blockNumber = blockNumber;
+        return this;
+    }
+
+    public void setBlockNumber(Long blockNumber) {
+        this.blockNumber = blockNumber;
+    }
+
+    public String getTransactionId() {
+        return transactionId;
+    }
+
+    public LedgerState transactionId(String transactionId) {
+        this.transactionId = transactionId;
+        return this;
+    }
+
+    public void setTransactionId(String transactionId) {
+        this.transactionId = transactionId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        LedgerState ledgerState = (LedgerState) o;
+        if (ledgerState.getEntityKey() == null || getEntityKey() == null) {
+            return false;
+        }
+        return Objects.equals(getEntityKey(), ledgerState.getEntityKey());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getEntityKey());
+    }
+
+    @Override
+    public String toString() {
+        return "LedgerState{" +
+            "entityKey='" + getEntityKey() + "'" +
+            ", blockNumber=" + getBlockNumber() +
+            ", transactionId='" + getTransactionId() + "'" +
+            "}";
+    }
+}
@@ -17,6 +17,7 @@ import java.util.Objects;
  * A Tag.
  */
 @Entity
+@Anchored
 @Table(name = "tag")
 @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 public class Tag implements Serializable {
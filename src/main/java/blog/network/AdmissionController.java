@@ -0,0 +1,105 @@
+package blog.network;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import blog.config.ApplicationProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Bound on the transactions in flight on the channel.
+ * <p>
+ * A transaction is in flight from its admission until the orderer accepts or
+ * refuses it, which covers the endorsements the peers run. At most
+ * {@code max-in-flight} transactions are in flight; the next ones wait, first
+ * come first served, up to {@code max-wait-ms}. When {@code max-queued}
+ * transactions already wait, or the wait is over, the transaction is refused
+ * at once with a {@link LedgerSaturatedException}, instead of piling up
+ * endorsements which would all time out.
+ */
+public class AdmissionController {
+
+	private final Logger log = LoggerFactory.getLogger(AdmissionController.class);
+
+	private final ApplicationProperties.Fabric.Admission properties;
+
+	private final Semaphore permits;
+
+	private final AtomicInteger queued = new AtomicInteger();
+
+	private final Timer waits;
+
+	private final Counter rejections;
+
+	public AdmissionController(ApplicationProperties.Fabric.Admission properties, MeterRegistry meterRegistry) {
+		this.properties = properties;
+		this.permits = new Semaphore(properties.getMaxInFlight(), true);
+		this.waits = Timer.builder("fabric.admission.wait")
+				.description("Time the transactions waited for their admission").register(meterRegistry);
+		this.rejections = meterRegistry.counter("fabric.admission.rejections");
+		Gauge.builder("fabric.admission.in-flight", this, AdmissionController::getInFlight)
+				.description("Transactions admitted and not ordered yet").register(meterRegistry);
+		Gauge.builder("fabric.admission.queued", this, AdmissionController::getQueued)
+				.description("Transactions waiting for their admission").register(meterRegistry);
+	}
+
+	/**
+	 * Admit a transaction, waiting for a slot if needed. The caller must
+	 * {@link #release()} the slot once the transaction is ordered or failed.
+	 *
+	 * @throws LedgerSaturatedException
+	 *             if the wait queue is full or no slot was freed in time
+	 */
+	public void acquire() {
+		long start = System.nanoTime();
+		if (queued.incrementAndGet() > properties.getMaxQueued()) {
+			queued.decrementAndGet();
+			throw reject(properties.getMaxQueued() + " transactions already waiting");
+		}
+		boolean admitted;
+		try {
+			/* Not tryAcquire(), which would overtake the waiting transactions */
+			admitted = permits.tryAcquire(properties.getMaxWaitMs(), TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			admitted = false;
+		} finally {
+			queued.decrementAndGet();
+			waits.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
+		if (!admitted) {
+			throw reject("no slot freed within " + properties.getMaxWaitMs() + " ms");
+		}
+	}
+
+	/**
+	 * Free the slot of an ordered or failed transaction.
+	 */
+	public void release() {
+		permits.release();
+	}
+
+	public int getInFlight() {
+		return properties.getMaxInFlight() - permits.availablePermits();
+	}
+
+	public int getQueued() {
+		return queued.get();
+	}
+
+	private LedgerSaturatedException reject(String reason) {
+		rejections.increment();
+		log.debug("Transaction refused, {} in flight: {}", getInFlight(), reason);
+		return new LedgerSaturatedException(
+				"Too many transactions in flight (" + properties.getMaxInFlight() + "), " + reason,
+				properties.getRetryAfterSeconds());
+	}
+
+}
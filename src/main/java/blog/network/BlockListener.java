@@ -0,0 +1,11 @@
+package blog.network;
+
+/**
+ * Callback notified of each committed block, in block order.
+ */
+@FunctionalInterface
+public interface BlockListener {
+
+	void onBlock(LedgerBlock block);
+
+}
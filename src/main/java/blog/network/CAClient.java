@@ -42,6 +42,8 @@ public class CAClient {
 
     UserContext adminContext;
 
+    IdentityWallet wallet;
+
     public UserContext getAdminUserContext() {
 	return adminContext;
     }
@@ -60,6 +62,7 @@ public class CAClient {
      *
      * @param caUrl
      * @param caProperties
+     * @param wallet
      * @throws MalformedURLException
      * @throws InvocationTargetException
      * @throws NoSuchMethodException
@@ -69,11 +72,12 @@ public class CAClient {
      * @throws InstantiationException
      * @throws IllegalAccessException
      */
-    public CAClient(String caUrl, Properties caProperties)
+    public CAClient(String caUrl, Properties caProperties, IdentityWallet wallet)
 	    throws MalformedURLException, IllegalAccessException, InstantiationException, ClassNotFoundException,
 	    CryptoException, InvalidArgumentException, NoSuchMethodException, InvocationTargetException {
 	this.caUrl = caUrl;
 	this.caProperties = caProperties;
+	this.wallet = wallet;
 	init();
     }
 
@@ -98,7 +102,7 @@ public class CAClient {
      * @throws Exception
      */
     public UserContext enrollAdminUser(String username, String password) throws Exception {
-	UserContext userContext = Util.readUserContext(adminContext.getAffiliation(), username);
+	UserContext userContext = wallet.get(adminContext.getAffiliation(), username);
 	if (userContext != null) {
 	    Logger.getLogger(CAClient.class.getName()).log(Level.WARNING,
 		    "CA -" + caUrl + " admin is already enrolled.");
@@ -108,7 +112,7 @@ public class CAClient {
 	Enrollment adminEnrollment = instance.enroll(username, password);
 	adminContext.setEnrollment(adminEnrollment);
 	Logger.getLogger(CAClient.class.getName()).log(Level.INFO, "CA -" + caUrl + " Enrolled Admin.");
-	Util.writeUserContext(adminContext);
+	wallet.put(adminContext);
 	return adminContext;
     }
 
@@ -121,7 +125,7 @@ public class CAClient {
      * @throws Exception
      */
     public String registerUser(String username, String organization) throws Exception {
-	UserContext userContext = Util.readUserContext(adminContext.getAffiliation(), username);
+	UserContext userContext = wallet.get(adminContext.getAffiliation(), username);
 	if (userContext != null) {
 	    Logger.getLogger(CAClient.class.getName()).log(Level.WARNING,
 		    "CA -" + caUrl + " User " + username + " is already registered.");
@@ -142,7 +146,7 @@ public class CAClient {
      * @throws Exception
      */
     public UserContext enrollUser(UserContext user, String secret) throws Exception {
-	UserContext userContext = Util.readUserContext(adminContext.getAffiliation(), user.getName());
+	UserContext userContext = wallet.get(adminContext.getAffiliation(), user.getName());
 	if (userContext != null) {
 	    Logger.getLogger(CAClient.class.getName()).log(Level.WARNING,
 		    "CA -" + caUrl + " User " + user.getName() + " is already enrolled");
@@ -150,7 +154,7 @@ public class CAClient {
 	}
 	Enrollment enrollment = instance.enroll(user.getName(), secret);
 	user.setEnrollment(enrollment);
-	Util.writeUserContext(user);
+	wallet.put(user);
 	Logger.getLogger(CAClient.class.getName()).log(Level.INFO,
 		"CA -" + caUrl + " Enrolled User - " + user.getName());
 	return user;
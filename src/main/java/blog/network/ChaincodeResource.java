@@ -1,6 +1,13 @@
 
 package blog.network;
 
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import javax.json.Json;
 import javax.json.JsonObject;
 
@@ -9,16 +16,35 @@ import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
+import blog.domain.LedgerOutbox;
+import blog.domain.LedgerState;
 import blog.network.networkException.A_BlockchainException;
 import blog.network.networkException.EntityNotFound;
-import blog.network.request.Add;
-import blog.network.request.Delete;
+import blog.network.networkException.TransactionInvalidated;
+import blog.network.request.Batch.Operation;
 import blog.network.request.Get;
-import blog.network.request.Set;
+import blog.service.LedgerMirrorService;
+import blog.service.LedgerOutboxService;
 
 /**
  * Generic Chaincode Resource
+ * <p>
+ * A write is answered as its {@link ConsistencyMode} requires: with the
+ * transaction ID once committed (sync-commit), or endorsed along with a
+ * tracking ID following it until committed (sync-endorse), or with status 202
+ * (ACCEPTED) and a tracking ID once queued in the batcher (async), or an
+ * outbox ID once saved in the outbox (eventual). The mode is
+ * configured by entity type and operation, and may be overridden with the
+ * {@code X-Ledger-Consistency} request header. The status of the
+ * transactions and tracking IDs is kept by the {@link TransactionTracker}.
+ * <p>
+ * While the circuit breaker of the gateway is open, writes are parked in the
+ * outbox and answered with status 202 (ACCEPTED), and reads are served by the
+ * local mirror.
  * @author Didier Donsez
  * @TODO should be a generic for value (ou a JSON doc)
  */
@@ -26,7 +52,20 @@ public class ChaincodeResource {
 
 	private final Logger log = LoggerFactory.getLogger(ChaincodeResource.class);
 
-	public ChaincodeResource() {
+	protected final FabricGateway gateway;
+
+	protected final LedgerBatcher batcher;
+
+	protected final LedgerMirrorService mirror;
+
+	protected final LedgerOutboxService outbox;
+
+	public ChaincodeResource(FabricGateway gateway, LedgerBatcher batcher, LedgerMirrorService mirror,
+			LedgerOutboxService outbox) {
+		this.gateway = gateway;
+		this.batcher = batcher;
+		this.mirror = mirror;
+		this.outbox = outbox;
 	}
 
 	/**
@@ -35,8 +74,11 @@ public class ChaincodeResource {
 	 * @param value
 	 *            the hash of the diploma we want to add to the BC
 	 * @return the ResponseEntity with status 200 (OK) and the transaction ID, or
-	 *         with status 417 (EXPECTATION_FAILED), or with status 500
-	 *         (INTERNAL_SERVER_ERROR)
+	 *         with status 202 (ACCEPTED) and the tracking or outbox ID when
+	 *         answered before the commit or while the ledger is unavailable,
+	 *         or with status 417 (EXPECTATION_FAILED), or with status 504
+	 *         (GATEWAY_TIMEOUT) when not answered within the commit timeout,
+	 *         or with status 500 (INTERNAL_SERVER_ERROR)
 	 */
 	public ResponseEntity<String> addRequest(@RequestParam String entity, String value) {
 		if (entity.isEmpty()) {
@@ -48,29 +90,13 @@ public class ChaincodeResource {
 			return new ResponseEntity<String>("EMPTY_VALUE", HttpStatus.EXPECTATION_FAILED);
 		}
 
-		Add blockchainRequest;
-		String transactionID;
-		try {
-			blockchainRequest = new Add(entity, value);
-			blockchainRequest.send();
-			transactionID = blockchainRequest.transactionID;
-		} catch (A_BlockchainException e) {
-			String errored = "BLOCKCHAIN ERROR: " + e.toString();
-			log.debug(errored,e);
-			return new ResponseEntity<String>(errored, HttpStatus.NOT_ACCEPTABLE);
-		} catch (Exception e) {
-			String errored = "BLOCKCHAIN ERROR: " + e.toString();
-			log.debug(errored,e);
-			return new ResponseEntity<String>(errored, HttpStatus.INTERNAL_SERVER_ERROR);
-		}
-
-		// Create JSON string
-		String returned = "{" + '"' + "transactionID" + '"' + ":" + '"' + transactionID + '"' + "}";
-		return new ResponseEntity<String>(returned, HttpStatus.OK);
+		return write(Operation.add(entity, value));
 	}
 
 	/**
-	 * GET /blogs/chaincode/get : Get an entity value from the blockchain
+	 * GET /blogs/chaincode/get : Get an entity value from the blockchain, or
+	 * from its local mirror once synchronized or while the ledger is
+	 * unavailable
 	 *
 	 * @param entity
 	 *            the entity to query
@@ -88,9 +114,14 @@ public class ChaincodeResource {
 		Get get;
 
 		try {
-			get = new Get(entity);
-			get.send();
-			value = get.state;
+			if (mirror.isServing()) {
+				// Served from the local mirror of the committed blocks
+				value = mirror.find(entity).map(LedgerState::getEntityValue).orElse("NOT_FOUND");
+			} else {
+				get = new Get(gateway, entity);
+				get.send();
+				value = get.state;
+			}
 		} catch (EntityNotFound e) {
 			String errored = "BLOCKCHAIN ERROR: " + e.toString();
 			log.debug(errored);
@@ -126,8 +157,11 @@ public class ChaincodeResource {
 	 * @param entity
 	 *            to delete from the blockchain
 	 * @return the ResponseEntity with status 200 (OK) and the transaction ID, or
-	 *         with status 417 (EXPECTATION_FAILED), or with status 500
-	 *         (INTERNAL_SERVER_ERROR)
+	 *         with status 202 (ACCEPTED) and the tracking or outbox ID when
+	 *         answered before the commit or while the ledger is unavailable,
+	 *         or with status 417 (EXPECTATION_FAILED), or with status 504
+	 *         (GATEWAY_TIMEOUT) when not answered within the commit timeout,
+	 *         or with status 500 (INTERNAL_SERVER_ERROR)
 	 */
 	public ResponseEntity<String> deleteRequest(@RequestParam String entity) {
 		if (entity.isEmpty()) {
@@ -135,25 +169,7 @@ public class ChaincodeResource {
 			return new ResponseEntity<String>("EMPTY_ENTITY_NAME", HttpStatus.EXPECTATION_FAILED);
 		}
 
-		Delete blockchainRequest;
-		String transactionID;
-		try {
-			blockchainRequest = new Delete(entity);
-			blockchainRequest.send();
-			transactionID = blockchainRequest.transactionID;
-		} catch (A_BlockchainException e) {
-			String errored = "BLOCKCHAIN ERROR: " + e.toString();
-			log.debug(errored);
-			return new ResponseEntity<String>(errored, HttpStatus.NOT_ACCEPTABLE);
-		} catch (Exception e) {
-			String errored = "BLOCKCHAIN ERROR: " + e.toString();
-			log.debug(errored);
-			return new ResponseEntity<String>(errored, HttpStatus.INTERNAL_SERVER_ERROR);
-		}
-
-		// Create JSON string
-		JsonObject returned = Json.createObjectBuilder().add("transactionID", transactionID).build();
-		return new ResponseEntity<String>(returned.toString(), HttpStatus.OK);
+		return write(Operation.delete(entity));
 	}
 
 	/**
@@ -165,8 +181,11 @@ public class ChaincodeResource {
 	 * @param value
 	 *            the value to set the entity to
 	 * @return the ResponseEntity with status 200 (OK) and the transaction ID, or
-	 *         with status 417 (EXPECTATION_FAILED), or with status 500
-	 *         (INTERNAL_SERVER_ERROR)
+	 *         with status 202 (ACCEPTED) and the tracking or outbox ID when
+	 *         answered before the commit or while the ledger is unavailable,
+	 *         or with status 417 (EXPECTATION_FAILED), or with status 504
+	 *         (GATEWAY_TIMEOUT) when not answered within the commit timeout,
+	 *         or with status 500 (INTERNAL_SERVER_ERROR)
 	 */
 	public ResponseEntity<String> setRequest(@RequestParam String entity, String value) {
 		if (entity.isEmpty()) {
@@ -178,25 +197,246 @@ public class ChaincodeResource {
 			return new ResponseEntity<String>("EMPTY_VALUE", HttpStatus.EXPECTATION_FAILED);
 		}
 
-		Set blockchainRequest;
-		String transactionID;
+		return write(Operation.set(entity, value));
+	}
+
+	/**
+	 * The entity type of the writes, choosing their configured consistency
+	 * mode.
+	 *
+	 * @return the entity type, or null to only consider the operation
+	 */
+	protected String getEntityType() {
+		return null;
+	}
+
+	/*
+	 * Apply a write, answering it as its consistency mode requires
+	 */
+	private ResponseEntity<String> write(Operation operation) {
+		ConsistencyPolicy policy = gateway.getConsistency();
+		String type = getEntityType();
+		String function = operation.getFunction();
+		ConsistencyMode mode;
+		try {
+			mode = policy.resolve(type, function, requestedMode(policy.getHeader()));
+		} catch (IllegalArgumentException e) {
+			log.debug("Unknown consistency mode: {}", e.getMessage());
+			return new ResponseEntity<String>("INVALID_CONSISTENCY", HttpStatus.EXPECTATION_FAILED);
+		}
+
+		long start = System.nanoTime();
+		CompletableFuture<LedgerTransaction> result = null;
 		try {
-			blockchainRequest = new Set(entity, value);
-			blockchainRequest.send();
-			transactionID = blockchainRequest.transactionID;
+			switch (mode) {
+			case EVENTUAL:
+				return queued(queue(operation));
+			case ASYNC:
+				gateway.getBreaker().check();
+				String trackingID = UUID.randomUUID().toString();
+				CompletableFuture<LedgerTransaction> submitted = submit(operation);
+				result = submitted;
+				if (submitted.isCompletedExceptionally()) {
+					// refused at once, from the digests of the committed values
+					join(submitted);
+				}
+				gateway.getTracker().track(trackingID, submitted);
+				submitted.whenComplete((tx, error) -> {
+					log.debug("{} of {}, tracked as {}: {}", function, operation.getEntity(), trackingID,
+							error == null ? tx : error.toString());
+					if (error == null && tx.isValid()) {
+						policy.committed(mode, type, function, System.nanoTime() - start);
+					} else if (error != null && !(unwrap(error) instanceof A_BlockchainException)) {
+						// not refused, but failed by the network: relayed later by the outbox
+						retry(operation, submitted, error);
+					}
+				});
+				return tracked(trackingID);
+			case SYNC_ENDORSE:
+				// journaled like the asynchronous writes, the caller leaves before the commit
+				gateway.getBreaker().check();
+				String endorsedID = UUID.randomUUID().toString();
+				CompletableFuture<LedgerTransaction> endorsement = new CompletableFuture<>();
+				result = batcher.submit(operation, endorsement);
+				LedgerTransaction endorsedTx = join(endorsement);
+				gateway.getTracker().track(endorsedID, result);
+				result.thenAccept(tx -> {
+					if (tx.isValid()) {
+						policy.committed(mode, type, function, System.nanoTime() - start);
+					}
+				});
+				return endorsed(endorsedTx.getTransactionId(), endorsedID);
+			default:
+				// journaled too, a write failed by the network is replayed
+				gateway.getBreaker().check();
+				result = batcher.submit(operation, new CompletableFuture<>());
+				LedgerTransaction committed = join(result);
+				if (!committed.isValid()) {
+					throw new TransactionInvalidated(committed.getValidationCode());
+				}
+				return answered(committed.getTransactionId());
+			}
+		} catch (LedgerUnavailableException e) {
+			return parked(queue(operation), result, e);
+		} catch (LedgerSaturatedException e) {
+			throw e;
 		} catch (A_BlockchainException e) {
 			String errored = "BLOCKCHAIN ERROR: " + e.toString();
-			log.debug(errored,e);
+			log.debug(errored, e);
 			return new ResponseEntity<String>(errored, HttpStatus.NOT_ACCEPTABLE);
+		} catch (CommitTimeoutException e) {
+			// still journaled, the write may be committed later
+			String errored = "BLOCKCHAIN TIMEOUT: " + e.getMessage();
+			log.debug(errored);
+			return new ResponseEntity<String>(errored, HttpStatus.GATEWAY_TIMEOUT);
 		} catch (Exception e) {
 			String errored = "BLOCKCHAIN ERROR: " + e.toString();
-			log.debug(errored,e);
+			log.debug(errored, e);
 			return new ResponseEntity<String>(errored, HttpStatus.INTERNAL_SERVER_ERROR);
+		} finally {
+			policy.answered(mode, type, function, System.nanoTime() - start);
 		}
+	}
+
+	/*
+	 * The consistency mode asked by the current request, if any
+	 */
+	private static String requestedMode(String header) {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		if (!(attributes instanceof ServletRequestAttributes)) {
+			return null;
+		}
+		return ((ServletRequestAttributes) attributes).getRequest().getHeader(header);
+	}
 
+	/*
+	 * Wait for a stage of a transaction, at most the commit timeout, raising
+	 * the exception it failed with
+	 */
+	private LedgerTransaction join(CompletableFuture<LedgerTransaction> stage) throws Exception {
+		try {
+			return stage.get(gateway.getCommitTimeoutMs(), TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			throw new CommitTimeoutException("No answer of the ledger within " + gateway.getCommitTimeoutMs() + " ms");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			throw cause instanceof Exception ? (Exception) cause : e;
+		}
+	}
+
+	private static Throwable unwrap(Throwable error) {
+		return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+	}
+
+	/*
+	 * Park in the outbox an asynchronous write the network failed, its caller
+	 * being answered already
+	 */
+	private void retry(Operation operation, CompletableFuture<LedgerTransaction> submitted, Throwable error) {
+		try {
+			LedgerOutbox parked = queue(operation);
+			batcher.handedOver(submitted);
+			log.debug("{} of {} failed, parked in the outbox as {}: {}", operation.getFunction(),
+					operation.getEntity(), parked.getId(), error.toString());
+		} catch (Exception e) {
+			// still in the journal, replayed on the next start
+			log.warn("Cannot park {} of {} in the outbox: {}", operation.getFunction(), operation.getEntity(),
+					e.toString());
+		}
+	}
+
+	private LedgerOutbox queue(Operation operation) {
+		switch (operation.getFunction()) {
+		case LedgerOutboxService.ADD:
+			return outbox.add(operation.getEntity(), operation.getValue());
+		case LedgerOutboxService.SET:
+			return outbox.set(operation.getEntity(), operation.getValue());
+		default:
+			return outbox.delete(operation.getEntity());
+		}
+	}
+
+	private CompletableFuture<LedgerTransaction> submit(Operation operation) {
+		switch (operation.getFunction()) {
+		case LedgerOutboxService.ADD:
+			return submitAdd(operation.getEntity(), operation.getValue());
+		case LedgerOutboxService.SET:
+			return submitSet(operation.getEntity(), operation.getValue());
+		default:
+			return submitDelete(operation.getEntity());
+		}
+	}
+
+	private static ResponseEntity<String> answered(String transactionID) {
 		// Create JSON string
 		JsonObject returned = Json.createObjectBuilder().add("transactionID", transactionID).build();
 		return new ResponseEntity<String>(returned.toString(), HttpStatus.OK);
 	}
 
+	private static ResponseEntity<String> endorsed(String transactionID, String trackingID) {
+		JsonObject returned = Json.createObjectBuilder().add("transactionID", transactionID)
+				.add("trackingID", trackingID).build();
+		return new ResponseEntity<String>(returned.toString(), HttpStatus.OK);
+	}
+
+	private static ResponseEntity<String> tracked(String trackingID) {
+		JsonObject returned = Json.createObjectBuilder().add("trackingID", trackingID).build();
+		return new ResponseEntity<String>(returned.toString(), HttpStatus.ACCEPTED);
+	}
+
+	private static ResponseEntity<String> queued(LedgerOutbox queued) {
+		JsonObject returned = Json.createObjectBuilder().add("outboxID", queued.getId()).build();
+		return new ResponseEntity<String>(returned.toString(), HttpStatus.ACCEPTED);
+	}
+
+	/*
+	 * Answer a write parked in the outbox while the ledger is unavailable
+	 */
+	private ResponseEntity<String> parked(LedgerOutbox parked, CompletableFuture<LedgerTransaction> result,
+			LedgerUnavailableException cause) {
+		if (result != null) {
+			// replayed from the outbox, no longer from the journal
+			batcher.handedOver(result);
+		}
+		log.debug("Ledger unavailable, {} of {} parked in the outbox: {}", parked.getOperation(),
+				parked.getEntityKey(), cause.getMessage());
+		return queued(parked);
+	}
+
+	/**
+	 * Add a new value to the blockchain without blocking the caller. The
+	 * operation may be sent in the same transaction as other pending writes.
+	 *
+	 * @param entity
+	 * @param value
+	 * @return a future completed once the transaction is committed, or
+	 *         completed exceptionally if it could not be endorsed or ordered
+	 */
+	protected CompletableFuture<LedgerTransaction> submitAdd(String entity, String value) {
+		return batcher.add(entity, value);
+	}
+
+	/**
+	 * Set an entity in the blockchain without blocking the caller.
+	 *
+	 * @param entity
+	 * @param value
+	 * @return a future completed once the transaction is committed, or
+	 *         completed exceptionally if it could not be endorsed or ordered
+	 */
+	protected CompletableFuture<LedgerTransaction> submitSet(String entity, String value) {
+		return batcher.set(entity, value);
+	}
+
+	/**
+	 * Delete an entity from the blockchain without blocking the caller.
+	 *
+	 * @param entity
+	 * @return a future completed once the transaction is committed, or
+	 *         completed exceptionally if it could not be endorsed or ordered
+	 */
+	protected CompletableFuture<LedgerTransaction> submitDelete(String entity) {
+		return batcher.delete(entity);
+	}
+
 }
@@ -17,27 +17,54 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import org.hyperledger.fabric.protos.ledger.rwset.kvrwset.KvRwset.KVWrite;
+import org.hyperledger.fabric.protos.peer.FabricTransaction.TxValidationCode;
 import org.hyperledger.fabric.sdk.BlockEvent.TransactionEvent;
+import org.hyperledger.fabric.sdk.BlockInfo;
+import org.hyperledger.fabric.sdk.BlockInfo.EnvelopeInfo;
+import org.hyperledger.fabric.sdk.BlockInfo.EnvelopeType;
+import org.hyperledger.fabric.sdk.BlockInfo.TransactionEnvelopeInfo;
+import org.hyperledger.fabric.sdk.BlockInfo.TransactionEnvelopeInfo.TransactionActionInfo;
 import org.hyperledger.fabric.sdk.ChaincodeEndorsementPolicy;
+import org.hyperledger.fabric.sdk.ChaincodeEvent;
+import org.hyperledger.fabric.sdk.ChaincodeResponse;
 import org.hyperledger.fabric.sdk.ChaincodeID;
 import org.hyperledger.fabric.sdk.Channel;
 import org.hyperledger.fabric.sdk.InstantiateProposalRequest;
 import org.hyperledger.fabric.sdk.Peer;
+import org.hyperledger.fabric.sdk.Peer.PeerRole;
 import org.hyperledger.fabric.sdk.ProposalResponse;
 import org.hyperledger.fabric.sdk.QueryByChaincodeRequest;
 import org.hyperledger.fabric.sdk.TransactionInfo;
 import org.hyperledger.fabric.sdk.TransactionProposalRequest;
 import org.hyperledger.fabric.sdk.TransactionRequest.Type;
+import org.hyperledger.fabric.sdk.TxReadWriteSetInfo.NsRwsetInfo;
 import org.hyperledger.fabric.sdk.exception.ChaincodeEndorsementPolicyParseException;
 import org.hyperledger.fabric.sdk.exception.InvalidArgumentException;
 import org.hyperledger.fabric.sdk.exception.ProposalException;
+import org.hyperledger.fabric.sdk.exception.TransactionEventException;
+
+import blog.network.networkException.EndorsementRefused;
 
 /**
  * Wrapper class for a channel client.
@@ -46,11 +73,20 @@ import org.hyperledger.fabric.sdk.exception.ProposalException;
  *
  */
 
-public class ChannelClient {
+public class ChannelClient implements LedgerBackend {
+
+	/* Asks the chaincode to emit an event named after the invoked function */
+	private static final byte[] EXPECTED_EVENT_DATA = "!".getBytes(UTF_8);
+	private static final String EXPECTED_EVENT_NAME = "event";
 
 	String name;
 	Channel channel;
 	FabricClient fabClient;
+	private volatile PeerSelector selector;
+	private volatile TransactionLookup lookup;
+	private volatile ScheduledExecutorService commitTimer;
+	private volatile long commitTimeoutMs;
+	private final Map<BlockListener, String> blockListeners = new ConcurrentHashMap<>();
 
 	public String getName() {
 		return name;
@@ -64,6 +100,40 @@ public class ChannelClient {
 		return fabClient;
 	}
 
+	/**
+	 * Send each query to a single peer and each proposal to the minimum set of
+	 * endorsers chosen by the selector, instead of every peer of the channel.
+	 *
+	 * @param selector
+	 */
+	public void setPeerSelector(PeerSelector selector) {
+		this.selector = selector;
+	}
+
+	/**
+	 * Hedge the lookups of transactions by id over the peers, and cache the
+	 * committed ones.
+	 *
+	 * @param lookup
+	 */
+	public void setTransactionLookup(TransactionLookup lookup) {
+		this.lookup = lookup;
+	}
+
+	/**
+	 * Fail the transactions whose commit event does not come in time, so that
+	 * a lost event holds neither their callers nor the next writes of their
+	 * keys.
+	 *
+	 * @param commitTimeoutMs
+	 * @param commitTimer
+	 *            the scheduler of the timeouts
+	 */
+	public void setCommitTimeout(long commitTimeoutMs, ScheduledExecutorService commitTimer) {
+		this.commitTimeoutMs = commitTimeoutMs;
+		this.commitTimer = commitTimer;
+	}
+
 	/**
 	 * Constructor
 	 *
@@ -77,6 +147,152 @@ public class ChannelClient {
 		this.fabClient = fabClient;
 	}
 
+	@Override
+	public LedgerTransaction submit(String function, String[] arguments, EndorsementCheck check, Executor executor) {
+		return submitTransaction(newProposal(function, arguments), check, executor);
+	}
+
+	@Override
+	public String query(String function, String... arguments) throws Exception {
+		if (selector == null) {
+			ProposalException failure = null;
+			for (ProposalResponse pres : queryByChainCode(Config.CHAINCODE_1_NAME, function, arguments)) {
+				if (pres.getStatus() == ChaincodeResponse.Status.SUCCESS) {
+					return new String(pres.getChaincodeActionResponsePayload(), UTF_8);
+				}
+				failure = new ProposalException("Query failed on " + pres.getPeer().getName() + ": " + pres.getMessage());
+			}
+			throw failure != null ? failure : new ProposalException("No peer answered the query " + function);
+		}
+
+		/* One peer at a time, the next one only if the previous could not be reached */
+		Map<String, Peer> remaining = byName(channel.getPeers(EnumSet.of(PeerRole.CHAINCODE_QUERY)));
+		Exception failure = null;
+		while (!remaining.isEmpty()) {
+			Peer peer = remaining.remove(selector.selectForQuery(remaining.keySet()).get());
+			long start = System.nanoTime();
+			ProposalResponse pres;
+			try {
+				pres = queryByChainCode(Config.CHAINCODE_1_NAME, function, arguments, Collections.singleton(peer))
+						.iterator().next();
+			} catch (ProposalException | RuntimeException e) {
+				selector.onFailure(peer.getName());
+				failure = e;
+				continue;
+			}
+			if (pres.getProposalResponse() == null) {
+				// the peer could not be reached
+				selector.onFailure(peer.getName());
+				failure = new ProposalException("Query failed on " + peer.getName() + ": " + pres.getMessage());
+				continue;
+			}
+			selector.onSuccess(peer.getName(), System.nanoTime() - start);
+			if (pres.getStatus() == ChaincodeResponse.Status.SUCCESS) {
+				return new String(pres.getChaincodeActionResponsePayload(), UTF_8);
+			}
+			// a chaincode error is the same on every peer
+			throw new ProposalException("Query failed on " + peer.getName() + ": " + pres.getMessage());
+		}
+		throw failure != null ? failure : new ProposalException("No peer answered the query " + function);
+	}
+
+	@Override
+	public void addBlockListener(BlockListener listener) throws InvalidArgumentException {
+		String handle = channel.registerBlockListener(event -> listener.onBlock(toLedgerBlock(event)));
+		blockListeners.put(listener, handle);
+	}
+
+	@Override
+	public void removeBlockListener(BlockListener listener) {
+		String handle = blockListeners.remove(listener);
+		if (handle != null && !channel.isShutdown()) {
+			try {
+				channel.unregisterBlockListener(handle);
+			} catch (InvalidArgumentException e) {
+				Logger.getLogger(ChannelClient.class.getName()).log(Level.WARNING, e.getMessage());
+			}
+		}
+	}
+
+	@Override
+	public long getHeight() throws InvalidArgumentException, ProposalException {
+		return channel.queryBlockchainInfo().getHeight();
+	}
+
+	@Override
+	public LedgerBlock getBlock(long number) throws InvalidArgumentException, ProposalException {
+		return toLedgerBlock(channel.queryBlockByNumber(number));
+	}
+
+	/*
+	 * Keep the transactions of a block with the chaincode event they emitted
+	 * and, for a full block, the keys they wrote in the namespace of the
+	 * chaincode, composite keys in their readable form
+	 */
+	private static LedgerBlock toLedgerBlock(BlockInfo block) {
+		List<LedgerBlock.Transaction> transactions = new ArrayList<>();
+		for (EnvelopeInfo envelope : block.getEnvelopeInfos()) {
+			if (envelope.getType() != EnvelopeType.TRANSACTION_ENVELOPE) {
+				continue;
+			}
+			String event = null;
+			Map<String, String> writes = new LinkedHashMap<>();
+			for (TransactionActionInfo action : ((TransactionEnvelopeInfo) envelope).getTransactionActionInfos()) {
+				ChaincodeEvent chaincodeEvent = action.getEvent();
+				if (chaincodeEvent != null && Config.CHAINCODE_1_NAME.equals(chaincodeEvent.getChaincodeId())
+						&& !chaincodeEvent.getEventName().isEmpty()) {
+					event = chaincodeEvent.getEventName();
+				}
+				if (block.isFiltered() || action.getTxReadWriteSet() == null) {
+					continue;
+				}
+				for (NsRwsetInfo nsRwset : action.getTxReadWriteSet().getNsRwsetInfos()) {
+					if (!Config.CHAINCODE_1_NAME.equals(nsRwset.getNamespace())) {
+						continue;
+					}
+					try {
+						for (KVWrite write : nsRwset.getRwset().getWritesList()) {
+							writes.put(CompositeKey.fromLedger(write.getKey()),
+									write.getIsDelete() ? null : write.getValue().toStringUtf8());
+						}
+					} catch (InvalidProtocolBufferException e) {
+						throw new IllegalStateException("Cannot read the write set of block "
+								+ block.getBlockNumber(), e);
+					}
+				}
+			}
+			TxValidationCode code = TxValidationCode.forNumber(envelope.getValidationCode());
+			transactions.add(new LedgerBlock.Transaction(envelope.getTransactionID(),
+					code == null ? String.valueOf(envelope.getValidationCode()) : code.name(), event, writes));
+		}
+		return new LedgerBlock(block.getBlockNumber(), block.isFiltered(), transactions);
+	}
+
+	/*
+	 * Build a proposal invoking a function of the chaincode
+	 */
+	private TransactionProposalRequest newProposal(String function, String[] arguments) {
+		TransactionProposalRequest request = fabClient.getInstance().newTransactionProposalRequest();
+		ChaincodeID ccid = ChaincodeID.newBuilder().setName(Config.CHAINCODE_1_NAME).build();
+		request.setChaincodeID(ccid);
+		request.setFcn(function);
+		request.setArgs(arguments);
+		request.setProposalWaitTime(1000);
+
+		Map<String, byte[]> tm2 = new HashMap<>();
+		tm2.put("HyperLedgerFabric", "TransactionProposalRequest:JavaSDK".getBytes(UTF_8));
+		tm2.put("method", "TransactionProposalRequest".getBytes(UTF_8));
+		tm2.put("result", ":)".getBytes(UTF_8));
+		tm2.put(EXPECTED_EVENT_NAME, EXPECTED_EVENT_DATA);
+		try {
+			request.setTransientMap(tm2);
+		} catch (InvalidArgumentException e) {
+			// only thrown for a null map
+			throw new IllegalStateException(e);
+		}
+		return request;
+	}
+
 	/**
 	 * Query by chaincode.
 	 *
@@ -104,31 +320,162 @@ public class ChannelClient {
 	}
 
 	/**
-	 * Send transaction proposal.
+	 * Query by chaincode on some peers only.
 	 *
-	 * @param request
+	 * @param chaincodeName
+	 * @param functionName
+	 * @param args
+	 * @param peers
 	 * @return
-	 * @throws ProposalException
 	 * @throws InvalidArgumentException
+	 * @throws ProposalException
 	 */
-	public Collection<ProposalResponse> sendTransactionProposal(TransactionProposalRequest request)
-			throws ProposalException, InvalidArgumentException {
+	public Collection<ProposalResponse> queryByChainCode(String chaincodeName, String functionName, String[] args,
+			Collection<Peer> peers) throws InvalidArgumentException, ProposalException {
+		QueryByChaincodeRequest request = fabClient.getInstance().newQueryProposalRequest();
+		request.setChaincodeID(ChaincodeID.newBuilder().setName(chaincodeName).build());
+		request.setFcn(functionName);
+		if (args != null)
+			request.setArgs(args);
+
+		return channel.queryByChaincode(request, peers);
+	}
+
+	/**
+	 * Submit a transaction without blocking the caller.
+	 * <p>
+	 * The proposal is endorsed on the given executor; the payload of every
+	 * endorsement goes through the check before the transaction is sent to the
+	 * orderer, and the returned handle completes its stages as the transaction
+	 * is endorsed, ordered and committed.
+	 *
+	 * @param request
+	 * @param check
+	 * @param executor
+	 * @return the transaction handle
+	 */
+	public LedgerTransaction submitTransaction(TransactionProposalRequest request, EndorsementCheck check,
+			Executor executor) {
+		LedgerTransaction transaction = new LedgerTransaction();
+		executor.execute(() -> {
+			Collection<ProposalResponse> responses;
+			try {
+				responses = endorse(request, check, transaction);
+			} catch (Exception e) {
+				transaction.onFailed(e);
+				return;
+			}
+
+			CompletableFuture<TransactionEvent> cf = channel.sendTransaction(responses);
+			if (!cf.isCompletedExceptionally()) {
+				transaction.onOrdered();
+			}
+			ScheduledExecutorService timer = commitTimer;
+			if (timer != null) {
+				// a commit event coming later is ignored, the transaction being failed already
+				ScheduledFuture<?> timeout = timer.schedule(() -> transaction.onFailed(new CommitTimeoutException(
+						"No commit event for transaction " + transaction.getTransactionId() + " within "
+								+ commitTimeoutMs + " ms")),
+						commitTimeoutMs, TimeUnit.MILLISECONDS);
+				cf.whenComplete((event, error) -> timeout.cancel(false));
+			}
+			cf.whenComplete((event, error) -> {
+				if (error instanceof CompletionException) {
+					error = error.getCause();
+				}
+				if (error instanceof TransactionEventException
+						&& ((TransactionEventException) error).getTransactionEvent() != null) {
+					event = ((TransactionEventException) error).getTransactionEvent();
+				} else if (error != null) {
+					transaction.onFailed(error);
+					return;
+				}
+				TxValidationCode code = TxValidationCode.forNumber(event.getValidationCode());
+				transaction.onCommitted(code == null ? String.valueOf(event.getValidationCode()) : code.name(),
+						event.getBlockEvent().getBlockNumber());
+				Logger.getLogger(ChannelClient.class.getName()).log(Level.INFO,
+						"Transaction " + transaction.getTransactionId() + " committed on channel " + channel.getName()
+								+ " " + transaction.getValidationCode());
+			});
+		});
+		return transaction;
+	}
+
+	private Collection<ProposalResponse> endorse(TransactionProposalRequest request, EndorsementCheck check,
+			LedgerTransaction transaction) throws Exception {
 		Logger.getLogger(ChannelClient.class.getName()).log(Level.INFO,
 				"Sending transaction proposal on channel " + channel.getName());
 
-		Collection<ProposalResponse> response = channel.sendTransactionProposal(request, channel.getPeers());
+		Collection<ProposalResponse> response = selector == null
+				? channel.sendTransactionProposal(request, channel.getPeers())
+				: sendToEndorsers(request);
+		String transactionId = null;
+		String payload = null;
 		for (ProposalResponse pres : response) {
+			if (pres.getStatus() != ChaincodeResponse.Status.SUCCESS && pres.getProposalResponse() == null) {
+				throw new ProposalException("Endorsement failed on " + pres.getPeer().getName() + ": "
+						+ pres.getMessage());
+			}
+			if (pres.getStatus() != ChaincodeResponse.Status.SUCCESS) {
+				// answered, but refused by the chaincode or the peer
+				throw new EndorsementRefused(pres.getPeer().getName() + ": " + pres.getMessage());
+			}
 			String stringResponse = new String(pres.getChaincodeActionResponsePayload());
 			Logger.getLogger(ChannelClient.class.getName()).log(Level.INFO,
 					"Transaction proposal on channel " + channel.getName() + " " + pres.getMessage() + " "
 							+ pres.getStatus() + " with transaction id:" + pres.getTransactionID());
 			Logger.getLogger(ChannelClient.class.getName()).log(Level.INFO,stringResponse);
+			check.verify(stringResponse);
+			transactionId = pres.getTransactionID();
+			payload = stringResponse;
 		}
+		transaction.onEndorsed(transactionId, payload);
+		return response;
+	}
 
-		CompletableFuture<TransactionEvent> cf = channel.sendTransaction(response);
-		Logger.getLogger(ChannelClient.class.getName()).log(Level.INFO,cf.toString());
+	/*
+	 * Send the proposal to the minimum set of endorsers, then once more to
+	 * another set if one of them could not be reached
+	 */
+	private Collection<ProposalResponse> sendToEndorsers(TransactionProposalRequest request)
+			throws ProposalException, InvalidArgumentException {
+		Map<String, Peer> candidates = byName(channel.getPeers(EnumSet.of(PeerRole.ENDORSING_PEER)));
+		Collection<ProposalResponse> responses = null;
+		for (int attempt = 0; attempt < 2 && !candidates.isEmpty(); attempt++) {
+			List<Peer> endorsers = new ArrayList<>();
+			for (String name : selector.selectForEndorsement(candidates.keySet())) {
+				endorsers.add(candidates.remove(name));
+			}
+			long start = System.nanoTime();
+			try {
+				responses = channel.sendTransactionProposal(request, endorsers);
+			} catch (ProposalException | RuntimeException e) {
+				endorsers.forEach(peer -> selector.onFailure(peer.getName()));
+				throw e;
+			}
+			long latency = System.nanoTime() - start;
+			boolean unreachable = false;
+			for (ProposalResponse pres : responses) {
+				if (pres.getProposalResponse() == null) {
+					selector.onFailure(pres.getPeer().getName());
+					unreachable = true;
+				} else {
+					selector.onSuccess(pres.getPeer().getName(), latency);
+				}
+			}
+			if (!unreachable) {
+				break;
+			}
+		}
+		return responses;
+	}
 
-		return response;
+	private static Map<String, Peer> byName(Collection<Peer> peers) {
+		Map<String, Peer> byName = new LinkedHashMap<>();
+		for (Peer peer : peers) {
+			byName.put(peer.getName(), peer);
+		}
+		return byName;
 	}
 
 	/**
@@ -191,7 +538,8 @@ public class ChannelClient {
 	}
 
 	/**
-	 * Query a transaction by id.
+	 * Query a transaction by id, through the hedged lookup if any, otherwise
+	 * on the first peer of the channel.
 	 *
 	 * @param txnId
 	 * @return
@@ -201,6 +549,15 @@ public class ChannelClient {
 	public TransactionInfo queryByTransactionId(String txnId) throws ProposalException, InvalidArgumentException {
 		Logger.getLogger(ChannelClient.class.getName()).log(Level.INFO,
 				"Querying by trasaction id " + txnId + " on channel " + channel.getName());
+		TransactionLookup hedged = lookup;
+		if (hedged != null) {
+			try {
+				return hedged.query(channel, txnId);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ProposalException(e);
+			}
+		}
 		Collection<Peer> peers = channel.getPeers();
 		for (Peer peer : peers) {
 			TransactionInfo info = channel.queryTransactionByID(peer, txnId);
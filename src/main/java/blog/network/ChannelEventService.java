@@ -0,0 +1,197 @@
+package blog.network;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Single subscription to the block events of the channel, shared by the whole
+ * application.
+ * <p>
+ * The {@link FabricGateway} attaches the service to each backend it hands out;
+ * on Fabric the peer delivers filtered blocks, which carry the validation code
+ * and chaincode event name of each transaction but neither its write set nor
+ * the event payload. The service dispatches every block, once and in order, to
+ * the block listeners, to the listeners waiting for one of its transactions
+ * and to the listeners of the chaincode events it emitted. The number of the
+ * last block seen is kept across reconnections so that a new subscription
+ * resumes right after it.
+ */
+public class ChannelEventService {
+
+	private final Logger log = LoggerFactory.getLogger(ChannelEventService.class);
+
+	private final BlockListener dispatcher = this::dispatch;
+
+	private final List<BlockListener> blockListeners = new CopyOnWriteArrayList<>();
+
+	private final Map<String, List<Consumer<LedgerBlock.Transaction>>> transactionListeners = new ConcurrentHashMap<>();
+
+	private final Map<String, List<Consumer<LedgerBlock.Transaction>>> eventListeners = new ConcurrentHashMap<>();
+
+	private final Object lock = new Object();
+
+	private LedgerBackend attached;
+
+	private volatile long lastBlock = -1;
+
+	private final Counter blocks;
+
+	public ChannelEventService(MeterRegistry meterRegistry) {
+		this.blocks = meterRegistry.counter("fabric.events.blocks");
+		Gauge.builder("fabric.events.last.block", this, ChannelEventService::getLastBlock)
+				.description("Number of the last block dispatched, -1 before the first one").register(meterRegistry);
+	}
+
+	/**
+	 * Subscribe to the blocks of a backend, replacing the previous
+	 * subscription.
+	 *
+	 * @param backend
+	 *            the backend to listen to
+	 * @throws Exception
+	 *             if the subscription is refused
+	 */
+	public void attach(LedgerBackend backend) throws Exception {
+		synchronized (lock) {
+			detach();
+			backend.addBlockListener(dispatcher);
+			attached = backend;
+		}
+	}
+
+	/**
+	 * Drop the current subscription, keeping the listeners and the last block
+	 * seen.
+	 */
+	public void detach() {
+		synchronized (lock) {
+			if (attached != null) {
+				attached.removeBlockListener(dispatcher);
+				attached = null;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of the last block dispatched, -1 before the first one
+	 */
+	public long getLastBlock() {
+		return lastBlock;
+	}
+
+	/**
+	 * Listen to every block dispatched.
+	 *
+	 * @param listener
+	 */
+	public void addBlockListener(BlockListener listener) {
+		blockListeners.add(listener);
+	}
+
+	public void removeBlockListener(BlockListener listener) {
+		blockListeners.remove(listener);
+	}
+
+	/**
+	 * Listen to the commit of a transaction, the listener is removed once
+	 * called.
+	 *
+	 * @param transactionId
+	 * @param listener
+	 *            called with the committed transaction, valid or not
+	 */
+	public void addTransactionListener(String transactionId, Consumer<LedgerBlock.Transaction> listener) {
+		add(transactionListeners, transactionId, listener);
+	}
+
+	public void removeTransactionListener(String transactionId, Consumer<LedgerBlock.Transaction> listener) {
+		remove(transactionListeners, transactionId, listener);
+	}
+
+	/**
+	 * Listen to a chaincode event, emitted by the chaincode function of the
+	 * same name when the proposal asks for it.
+	 *
+	 * @param eventName
+	 * @param listener
+	 *            called with each valid transaction emitting the event
+	 */
+	public void addChaincodeEventListener(String eventName, Consumer<LedgerBlock.Transaction> listener) {
+		add(eventListeners, eventName, listener);
+	}
+
+	public void removeChaincodeEventListener(String eventName, Consumer<LedgerBlock.Transaction> listener) {
+		remove(eventListeners, eventName, listener);
+	}
+
+	/*
+	 * Called by the backend; blocks already seen are replayed by a resumed
+	 * subscription and ignored
+	 */
+	private void dispatch(LedgerBlock block) {
+		synchronized (lock) {
+			if (block.getNumber() <= lastBlock) {
+				return;
+			}
+			lastBlock = block.getNumber();
+		}
+		blocks.increment();
+		for (BlockListener listener : blockListeners) {
+			try {
+				listener.onBlock(block);
+			} catch (RuntimeException e) {
+				log.warn("Block listener failed on block {}", block.getNumber(), e);
+			}
+		}
+		for (LedgerBlock.Transaction transaction : block.getTransactions()) {
+			List<Consumer<LedgerBlock.Transaction>> waiting = transactionListeners.remove(transaction.getTransactionId());
+			if (waiting != null) {
+				notify(waiting, transaction);
+			}
+			if (transaction.isValid() && transaction.getChaincodeEvent() != null) {
+				List<Consumer<LedgerBlock.Transaction>> listening = eventListeners.get(transaction.getChaincodeEvent());
+				if (listening != null) {
+					notify(listening, transaction);
+				}
+			}
+		}
+	}
+
+	private void notify(List<Consumer<LedgerBlock.Transaction>> listeners, LedgerBlock.Transaction transaction) {
+		for (Consumer<LedgerBlock.Transaction> listener : listeners) {
+			try {
+				listener.accept(transaction);
+			} catch (RuntimeException e) {
+				log.warn("Listener failed on transaction {}", transaction.getTransactionId(), e);
+			}
+		}
+	}
+
+	private static void add(Map<String, List<Consumer<LedgerBlock.Transaction>>> listeners, String key,
+			Consumer<LedgerBlock.Transaction> listener) {
+		listeners.compute(key, (k, list) -> {
+			List<Consumer<LedgerBlock.Transaction>> added = list == null ? new CopyOnWriteArrayList<>() : list;
+			added.add(listener);
+			return added;
+		});
+	}
+
+	private static void remove(Map<String, List<Consumer<LedgerBlock.Transaction>>> listeners, String key,
+			Consumer<LedgerBlock.Transaction> listener) {
+		listeners.computeIfPresent(key, (k, list) -> {
+			list.remove(listener);
+			return list.isEmpty() ? null : list;
+		});
+	}
+
+}
@@ -0,0 +1,285 @@
+package blog.network;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import blog.config.ApplicationProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Circuit breaker around the calls to the Fabric network.
+ * <p>
+ * While closed, the outcome of the last {@code window-size} calls is kept:
+ * once {@code minimum-calls} are known, the breaker opens when
+ * {@code failure-rate-threshold} percent of them failed, or
+ * {@code slow-call-rate-threshold} percent took more than
+ * {@code slow-call-duration-ms}. A chaincode refusal is a success, the
+ * network answered. While open, calls are refused at once with a
+ * {@link LedgerUnavailableException}, instead of each one paying the enroll
+ * and initialization timeouts. After {@code open-duration-ms}, the breaker is
+ * half open: {@code half-open-calls} trial calls go through, and their rates
+ * close it or open it again. Trial calls never reported are given up after
+ * another {@code open-duration-ms}.
+ */
+public class CircuitBreaker {
+
+	public enum State {
+		CLOSED, HALF_OPEN, OPEN
+	}
+
+	private final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+	private final ApplicationProperties.Fabric.Breaker properties;
+
+	private final LongSupplier clock;
+
+	private final Object lock = new Object();
+
+	/* Outcomes of the last calls while closed, or of the trial calls while half open */
+	private final boolean[] failed;
+
+	private final boolean[] slow;
+
+	private int calls;
+
+	private int next;
+
+	private int failures;
+
+	private int slowCalls;
+
+	private volatile State state = State.CLOSED;
+
+	/* When the breaker opened, or started the current trial */
+	private long since;
+
+	private int trialPermits;
+
+	private final Counter successes;
+
+	private final Counter errors;
+
+	private final Counter slowOnes;
+
+	private final Counter rejections;
+
+	private final MeterRegistry meterRegistry;
+
+	public CircuitBreaker(ApplicationProperties.Fabric.Breaker properties, MeterRegistry meterRegistry) {
+		this(properties, meterRegistry, System::nanoTime);
+	}
+
+	CircuitBreaker(ApplicationProperties.Fabric.Breaker properties, MeterRegistry meterRegistry, LongSupplier clock) {
+		this.properties = properties;
+		this.meterRegistry = meterRegistry;
+		this.clock = clock;
+		int size = Math.max(properties.getWindowSize(), properties.getHalfOpenCalls());
+		this.failed = new boolean[size];
+		this.slow = new boolean[size];
+		this.successes = meterRegistry.counter("fabric.breaker.calls", "outcome", "success");
+		this.errors = meterRegistry.counter("fabric.breaker.calls", "outcome", "failure");
+		this.slowOnes = meterRegistry.counter("fabric.breaker.slow.calls");
+		this.rejections = meterRegistry.counter("fabric.breaker.rejections");
+		Gauge.builder("fabric.breaker.state", this, breaker -> breaker.getState().ordinal())
+				.description("0 when closed, 1 when half open, 2 when open").register(meterRegistry);
+		Gauge.builder("fabric.breaker.failure.rate", this, CircuitBreaker::getFailureRate)
+				.description("Percentage of failed calls in the window").register(meterRegistry);
+		Gauge.builder("fabric.breaker.slow.rate", this, CircuitBreaker::getSlowCallRate)
+				.description("Percentage of slow calls in the window").register(meterRegistry);
+	}
+
+	/**
+	 * Let a call through, as a trial call when half open. The caller must
+	 * report its outcome with {@link #onSuccess(long)} or
+	 * {@link #onFailure(long)}.
+	 *
+	 * @throws LedgerUnavailableException
+	 *             if the breaker is open, or half open with its trial calls
+	 *             running
+	 */
+	public void acquire() {
+		if (!properties.isEnabled()) {
+			return;
+		}
+		synchronized (lock) {
+			long elapsed = clock.getAsLong() - since;
+			if (state == State.OPEN) {
+				if (elapsed < openDurationNanos()) {
+					throw reject(elapsed);
+				}
+				transition(State.HALF_OPEN);
+			} else if (state == State.HALF_OPEN && trialPermits == 0) {
+				if (elapsed < openDurationNanos()) {
+					throw reject(elapsed);
+				}
+				log.debug("Fabric trial calls never reported, starting new ones");
+				transition(State.HALF_OPEN);
+			}
+			if (state == State.HALF_OPEN) {
+				trialPermits--;
+			}
+		}
+	}
+
+	/**
+	 * Give back the permit of a call refused before reaching the network,
+	 * whose outcome will never be reported: its trial call is freed when half
+	 * open.
+	 */
+	public void release() {
+		if (!properties.isEnabled()) {
+			return;
+		}
+		synchronized (lock) {
+			if (state == State.HALF_OPEN && trialPermits < properties.getHalfOpenCalls()) {
+				trialPermits++;
+			}
+		}
+	}
+
+	/**
+	 * Refuse a call while the breaker is open, without taking a trial call
+	 * when half open.
+	 *
+	 * @throws LedgerUnavailableException
+	 *             if the breaker is open
+	 */
+	public void check() {
+		if (isOpen()) {
+			synchronized (lock) {
+				throw reject(clock.getAsLong() - since);
+			}
+		}
+	}
+
+	/**
+	 * @return true while the breaker refuses every call
+	 */
+	public boolean isOpen() {
+		if (!properties.isEnabled() || state != State.OPEN) {
+			return false;
+		}
+		synchronized (lock) {
+			return state == State.OPEN && clock.getAsLong() - since < openDurationNanos();
+		}
+	}
+
+	/**
+	 * Report a call the network answered.
+	 *
+	 * @param nanos
+	 *            the duration of the call
+	 */
+	public void onSuccess(long nanos) {
+		successes.increment();
+		record(false, nanos);
+	}
+
+	/**
+	 * Report a call the network failed or did not answer.
+	 *
+	 * @param nanos
+	 *            the duration of the call
+	 */
+	public void onFailure(long nanos) {
+		errors.increment();
+		record(true, nanos);
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	public double getFailureRate() {
+		synchronized (lock) {
+			return rate(failures);
+		}
+	}
+
+	public double getSlowCallRate() {
+		synchronized (lock) {
+			return rate(slowCalls);
+		}
+	}
+
+	/**
+	 * @return the calls whose outcome is known, in the window or in the trial
+	 */
+	public int getBufferedCalls() {
+		synchronized (lock) {
+			return calls;
+		}
+	}
+
+	private void record(boolean failure, long nanos) {
+		boolean isSlow = nanos >= TimeUnit.MILLISECONDS.toNanos(properties.getSlowCallDurationMs());
+		if (isSlow) {
+			slowOnes.increment();
+		}
+		if (!properties.isEnabled()) {
+			return;
+		}
+		synchronized (lock) {
+			if (state == State.OPEN) {
+				// a call let through before the breaker opened
+				return;
+			}
+			int size = state == State.CLOSED ? properties.getWindowSize() : properties.getHalfOpenCalls();
+			if (calls == size) {
+				failures -= failed[next] ? 1 : 0;
+				slowCalls -= slow[next] ? 1 : 0;
+			} else {
+				calls++;
+			}
+			failed[next] = failure;
+			slow[next] = isSlow;
+			failures += failure ? 1 : 0;
+			slowCalls += isSlow ? 1 : 0;
+			next = (next + 1) % size;
+
+			boolean tripped = rate(failures) >= properties.getFailureRateThreshold()
+					|| rate(slowCalls) >= properties.getSlowCallRateThreshold();
+			if (state == State.CLOSED && calls >= properties.getMinimumCalls() && tripped) {
+				transition(State.OPEN);
+			} else if (state == State.HALF_OPEN && calls >= size) {
+				transition(tripped ? State.OPEN : State.CLOSED);
+			}
+		}
+	}
+
+	private double rate(int count) {
+		return calls == 0 ? 0 : 100.0 * count / calls;
+	}
+
+	private void transition(State to) {
+		if (to != state) {
+			log.warn("Fabric circuit breaker {} -> {}, {}% of {} calls failed, {}% slow", state, to,
+					Math.round(rate(failures)), calls, Math.round(rate(slowCalls)));
+			meterRegistry.counter("fabric.breaker.transitions", "state", to.name().toLowerCase()).increment();
+		}
+		state = to;
+		since = clock.getAsLong();
+		calls = 0;
+		next = 0;
+		failures = 0;
+		slowCalls = 0;
+		trialPermits = to == State.HALF_OPEN ? properties.getHalfOpenCalls() : 0;
+	}
+
+	private long openDurationNanos() {
+		return TimeUnit.MILLISECONDS.toNanos(properties.getOpenDurationMs());
+	}
+
+	private LedgerUnavailableException reject(long elapsed) {
+		rejections.increment();
+		long remaining = Math.max(0, openDurationNanos() - elapsed);
+		return new LedgerUnavailableException("Fabric network unavailable, circuit breaker " + state,
+				Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remaining + TimeUnit.SECONDS.toNanos(1) - 1)));
+	}
+
+}
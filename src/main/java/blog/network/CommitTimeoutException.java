@@ -0,0 +1,17 @@
+package blog.network;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Transaction not committed in time: it may still commit, so the channel is
+ * not held responsible for it.
+ */
+public class CommitTimeoutException extends TimeoutException {
+
+	private static final long serialVersionUID = 1L;
+
+	public CommitTimeoutException(String message) {
+		super(message);
+	}
+
+}
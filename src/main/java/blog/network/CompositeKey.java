@@ -0,0 +1,72 @@
+package blog.network;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Readable form of the composite keys of the chaincode.
+ * <p>
+ * The chaincode turns a key holding a {@code ~} into a composite key, the
+ * object type followed by the attributes, so that the keys of one type can be
+ * scanned by a partial key; a key without {@code ~} stays a simple key, only
+ * reachable by a range. On the ledger, a composite key is written with a nul
+ * character before the object type and after each part; the application only
+ * handles the readable form, {@code entry~3~12} for instance.
+ */
+public final class CompositeKey {
+
+	public static final String SEPARATOR = "~";
+
+	private static final char LEDGER_SEPARATOR = '\u0000';
+
+	private CompositeKey() {
+	}
+
+	/**
+	 * @param objectType
+	 * @param attributes
+	 *            the attributes, written with toString()
+	 * @return the readable composite key
+	 */
+	public static String of(String objectType, Object... attributes) {
+		StringBuilder key = new StringBuilder(objectType);
+		for (Object attribute : attributes) {
+			key.append(SEPARATOR).append(attribute);
+		}
+		return key.toString();
+	}
+
+	/**
+	 * @param key
+	 * @return true if the chaincode stores the key as a composite key
+	 */
+	public static boolean isComposite(String key) {
+		return key.contains(SEPARATOR);
+	}
+
+	/**
+	 * @param key
+	 *            a readable composite key
+	 * @return the object type followed by the attributes
+	 */
+	public static List<String> split(String key) {
+		return new ArrayList<>(Arrays.asList(key.split(SEPARATOR, -1)));
+	}
+
+	/**
+	 * Read a key found in a write set of the ledger.
+	 *
+	 * @param ledgerKey
+	 * @return the readable form of a composite key, a simple key unchanged
+	 */
+	public static String fromLedger(String ledgerKey) {
+		if (ledgerKey.isEmpty() || ledgerKey.charAt(0) != LEDGER_SEPARATOR) {
+			return ledgerKey;
+		}
+		int end = ledgerKey.charAt(ledgerKey.length() - 1) == LEDGER_SEPARATOR ? ledgerKey.length() - 1
+				: ledgerKey.length();
+		return ledgerKey.substring(1, end).replace(String.valueOf(LEDGER_SEPARATOR), SEPARATOR);
+	}
+
+}
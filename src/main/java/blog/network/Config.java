@@ -2,20 +2,13 @@ package blog.network;
 
 import java.io.File;
 
+/*
+ * Constants of the chaincode and of the crypto material of the sample network;
+ * the orderers, peers and CAs come from the connection profile read into a
+ * NetworkTopology.
+ */
 public class Config {
 
-    public static final String ORG1_MSP = "Org1MSP";
-
-    public static final String ORG1 = "org1";
-
-    public static final String ORG2_MSP = "Org2MSP";
-
-    public static final String ORG2 = "org2";
-
-    public static final String ADMIN = "admin";
-
-    public static final String ADMIN_PASSWORD = "adminpw";
-
     public static final String CHANNEL_CONFIG_PATH = "config/channel.tx";
 
     public static final String ORG1_USR_BASE_PATH = "crypto-config" + File.separator + "peerOrganizations"
@@ -32,32 +25,6 @@ public class Config {
     public static final String ORG2_USR_ADMIN_PK = ORG2_USR_BASE_PATH + File.separator + "keystore";
     public static final String ORG2_USR_ADMIN_CERT = ORG2_USR_BASE_PATH + File.separator + "admincerts";
 
-    public static final String CA_ORG1_URL = "http://localhost:7054";
-
-    public static final String CA_ORG2_URL = "http://localhost:8054";
-
-    public static final String ORDERER_URL = "grpc://localhost:7050";
-
-    public static final String ORDERER_NAME = "orderer.example.com";
-
-    public static final String CHANNEL_NAME = "mychannel";
-
-    public static final String ORG1_PEER_0 = "peer0.org1.example.com";
-
-    public static final String ORG1_PEER_0_URL = "grpc://localhost:7051";
-
-    public static final String ORG1_PEER_1 = "peer1.org1.example.com";
-
-    public static final String ORG1_PEER_1_URL = "grpc://localhost:7056";
-
-    public static final String ORG2_PEER_0 = "peer0.org2.example.com";
-
-    public static final String ORG2_PEER_0_URL = "grpc://localhost:8051";
-
-    public static final String ORG2_PEER_1 = "peer1.org2.example.com";
-
-    public static final String ORG2_PEER_1_URL = "grpc://localhost:8056";
-
     public static final String CHAINCODE_ROOT_DIR = "chaincode";
 
     public static final String CHAINCODE_1_NAME = "simple-chaincode";
@@ -0,0 +1,193 @@
+package blog.network;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import blog.config.ApplicationProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Endorse again the transactions invalidated by a read conflict.
+ * <p>
+ * Two transactions endorsed on the same version of a key cannot both commit:
+ * the second one is invalidated with a {@code MVCC_READ_CONFLICT}, and its
+ * writes are lost. The retrier watches the commit of each transaction and,
+ * when its validation code is one of the {@code retryable-codes}, endorses it
+ * again on the new state after a random delay below
+ * {@code base-backoff-ms * 2^retry}, up to {@code max-attempts}. The handle
+ * returned to the caller completes with the outcome of the last attempt.
+ * <p>
+ * Each key has a budget of {@code key-budget} retries, given back at
+ * {@code key-budget-per-second}: a transaction touching a key whose budget is
+ * spent is not retried, so that a hot key does not turn its conflicts into a
+ * storm of endorsements. The commits and conflicts are counted by entity type,
+ * the first attribute of the composite keys, to show the contention hot spots.
+ */
+public class ConflictRetrier {
+
+	private final Logger log = LoggerFactory.getLogger(ConflictRetrier.class);
+
+	/* Keys above which the buckets full again are forgotten */
+	private static final int MAX_BUCKETS = 10000;
+
+	private final ApplicationProperties.Fabric.Retry properties;
+
+	private final MeterRegistry meterRegistry;
+
+	private final LongSupplier clock;
+
+	private final Executor executor;
+
+	private final ScheduledExecutorService scheduler = Executors
+			.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("fabric-retry-"));
+
+	private final Map<String, Bucket> budgets = new ConcurrentHashMap<>();
+
+	public ConflictRetrier(ApplicationProperties.Fabric.Retry properties, Executor executor,
+			MeterRegistry meterRegistry) {
+		this(properties, executor, meterRegistry, System::nanoTime);
+	}
+
+	ConflictRetrier(ApplicationProperties.Fabric.Retry properties, Executor executor, MeterRegistry meterRegistry,
+			LongSupplier clock) {
+		this.properties = properties;
+		this.executor = executor;
+		this.meterRegistry = meterRegistry;
+		this.clock = clock;
+	}
+
+	/**
+	 * Submit a transaction, endorsing it again while invalidated by a read
+	 * conflict.
+	 *
+	 * @param keys
+	 *            the keys the transaction reads and writes
+	 * @param attempt
+	 *            submits one endorsement of the transaction; the first one
+	 *            runs on the calling thread, so that its exceptions reach the
+	 *            caller
+	 * @return the handle of the transaction, completed as its last attempt
+	 */
+	public LedgerTransaction submit(Collection<String> keys, Supplier<LedgerTransaction> attempt) {
+		Set<String> distinct = new LinkedHashSet<>(keys);
+		LedgerTransaction first = attempt.get();
+		LedgerTransaction result = new LedgerTransaction();
+		follow(result, first, types(distinct), distinct, attempt, 1);
+		return result;
+	}
+
+	public void shutdown() {
+		scheduler.shutdownNow();
+	}
+
+	private void follow(LedgerTransaction result, LedgerTransaction transaction, Set<String> types,
+			Collection<String> keys, Supplier<LedgerTransaction> attempt, int attempts) {
+		transaction.endorsed().thenAccept(tx -> result.onEndorsed(tx.getTransactionId(), tx.getPayload()));
+		transaction.ordered().thenAccept(tx -> result.onOrdered());
+		transaction.committed().whenComplete((tx, error) -> {
+			if (error != null) {
+				result.onFailed(error);
+				return;
+			}
+			types.forEach(type -> meterRegistry.counter("fabric.commit.transactions", "type", type).increment());
+			if (!tx.isValid() && properties.getRetryableCodes().contains(tx.getValidationCode())) {
+				types.forEach(type -> meterRegistry.counter("fabric.commit.conflicts", "type", type).increment());
+				if (attempts < properties.getMaxAttempts() && spend(keys)) {
+					long delay = backoffMs(attempts);
+					log.debug("Transaction {} on {} invalidated by {}, retrying in {} ms", tx.getTransactionId(),
+							keys, tx.getValidationCode(), delay);
+					types.forEach(type -> meterRegistry.counter("fabric.commit.retries", "type", type).increment());
+					scheduler.schedule(() -> executor.execute(() -> retry(result, types, keys, attempt, attempts)),
+							delay, TimeUnit.MILLISECONDS);
+					return;
+				}
+				log.warn("Transaction {} on {} invalidated by {} after {} attempts", tx.getTransactionId(), keys,
+						tx.getValidationCode(), attempts);
+				types.forEach(type -> meterRegistry.counter("fabric.commit.exhausted", "type", type).increment());
+			}
+			result.onCommitted(tx.getValidationCode(), tx.getBlockNumber());
+		});
+	}
+
+	private void retry(LedgerTransaction result, Set<String> types, Collection<String> keys,
+			Supplier<LedgerTransaction> attempt, int attempts) {
+		LedgerTransaction next;
+		try {
+			next = attempt.get();
+		} catch (RuntimeException e) {
+			result.onFailed(e);
+			return;
+		}
+		follow(result, next, types, keys, attempt, attempts + 1);
+	}
+
+	/*
+	 * Full jitter: uniform below the exponential bound, so that the
+	 * conflicting transactions do not collide again
+	 */
+	private long backoffMs(int retry) {
+		long bound = Math.min(properties.getMaxBackoffMs(), properties.getBaseBackoffMs() << Math.min(retry - 1, 20));
+		return ThreadLocalRandom.current().nextLong(Math.max(1, bound) + 1);
+	}
+
+	/*
+	 * Take one retry from the budget of every key, or none if one of them is
+	 * spent
+	 */
+	private boolean spend(Collection<String> keys) {
+		synchronized (budgets) {
+			long now = clock.getAsLong();
+			if (budgets.size() > MAX_BUCKETS) {
+				budgets.values().removeIf(bucket -> bucket.refill(now) >= properties.getKeyBudget());
+			}
+			for (String key : keys) {
+				if (budgets.computeIfAbsent(key, k -> new Bucket(properties.getKeyBudget(), now)).refill(now) < 1) {
+					return false;
+				}
+			}
+			keys.forEach(key -> budgets.get(key).tokens--);
+			return true;
+		}
+	}
+
+	private static Set<String> types(Collection<String> keys) {
+		Set<String> types = new LinkedHashSet<>();
+		for (String key : keys) {
+			types.add(CompositeKey.isComposite(key) ? CompositeKey.split(key).get(0) : "other");
+		}
+		return types;
+	}
+
+	private final class Bucket {
+
+		private double tokens;
+		private long refilled;
+
+		Bucket(double tokens, long now) {
+			this.tokens = tokens;
+			this.refilled = now;
+		}
+
+		double refill(long now) {
+			double elapsed = (now - refilled) / 1e9;
+			tokens = Math.min(properties.getKeyBudget(), tokens + elapsed * properties.getKeyBudgetPerSecond());
+			refilled = now;
+			return tokens;
+		}
+	}
+
+}
@@ -0,0 +1,40 @@
+package blog.network;
+
+import java.util.Locale;
+
+/**
+ * When a write to the ledger is answered.
+ */
+public enum ConsistencyMode {
+
+	/* Once the transaction is committed, valid */
+	SYNC_COMMIT,
+
+	/* Once the transaction is endorsed, with a tracking ID following its commit */
+	SYNC_ENDORSE,
+
+	/* Once the operation is queued in the batcher, with a tracking ID */
+	ASYNC,
+
+	/* Once the operation is saved in the outbox, anchored with its next batch */
+	EVENTUAL;
+
+	/**
+	 * @param value
+	 *            the name of a mode, such as {@code sync-commit}
+	 * @return the mode
+	 * @throws IllegalArgumentException
+	 *             if no mode has this name
+	 */
+	public static ConsistencyMode parse(String value) {
+		return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+	}
+
+	/**
+	 * @return the name of the mode, such as {@code sync-commit}
+	 */
+	public String getName() {
+		return name().toLowerCase(Locale.ROOT).replace('_', '-');
+	}
+
+}
@@ -0,0 +1,106 @@
+package blog.network;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import blog.config.ApplicationProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Consistency mode of the chaincode writes, and their latencies by mode.
+ * <p>
+ * The mode of a write is, in order: the one asked by its request header, the
+ * one configured for its entity type and operation, the one configured for
+ * its operation, and {@code default-mode}. The modes are read once, an
+ * unknown one fails the start.
+ * <p>
+ * Two histograms are kept by mode, entity type and operation:
+ * {@code fabric.consistency.response}, the time until the write is answered,
+ * and {@code fabric.consistency.commit}, the time until it is committed, for
+ * the writes answered before.
+ */
+public class ConsistencyPolicy {
+
+	private final ConsistencyMode defaultMode;
+
+	private final String header;
+
+	/* Modes by operation, and by entity type then operation as "type/operation" */
+	private final Map<String, ConsistencyMode> modes = new HashMap<>();
+
+	private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+	private final MeterRegistry meterRegistry;
+
+	public ConsistencyPolicy(ApplicationProperties.Fabric.Consistency properties, MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+		this.defaultMode = ConsistencyMode.parse(properties.getDefaultMode());
+		this.header = properties.getHeader();
+		properties.getOperations()
+				.forEach((operation, mode) -> modes.put(canonical(operation), ConsistencyMode.parse(mode)));
+		properties.getEntities().forEach((type, operations) -> operations.forEach(
+				(operation, mode) -> modes.put(canonical(type) + "/" + canonical(operation), ConsistencyMode.parse(mode))));
+	}
+
+	/**
+	 * @return the request header overriding the configured mode
+	 */
+	public String getHeader() {
+		return header;
+	}
+
+	/**
+	 * Return the mode of a write.
+	 *
+	 * @param type
+	 *            the entity type, null if none
+	 * @param operation
+	 *            add, set or delete
+	 * @param requested
+	 *            the mode asked by the request, null if none
+	 * @return the mode
+	 * @throws IllegalArgumentException
+	 *             if the requested mode is unknown
+	 */
+	public ConsistencyMode resolve(String type, String operation, String requested) {
+		if (requested != null && !requested.trim().isEmpty()) {
+			return ConsistencyMode.parse(requested);
+		}
+		ConsistencyMode mode = type == null ? null : modes.get(canonical(type) + "/" + canonical(operation));
+		if (mode == null) {
+			mode = modes.get(canonical(operation));
+		}
+		return mode == null ? defaultMode : mode;
+	}
+
+	/**
+	 * Record the time until a write is answered.
+	 */
+	public void answered(ConsistencyMode mode, String type, String operation, long nanos) {
+		timer("fabric.consistency.response", mode, type, operation).record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Record the time until a write answered before is committed.
+	 */
+	public void committed(ConsistencyMode mode, String type, String operation, long nanos) {
+		timer("fabric.consistency.commit", mode, type, operation).record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	private Timer timer(String name, ConsistencyMode mode, String type, String operation) {
+		String entity = type == null ? "none" : type;
+		return timers.computeIfAbsent(name + "/" + mode + "/" + entity + "/" + operation,
+				key -> Timer.builder(name).tag("mode", mode.getName()).tag("entity", entity)
+						.tag("operation", operation).publishPercentileHistogram().register(meterRegistry));
+	}
+
+	/* Property keys may be bound as blogEntry, blogentry or blog-entry */
+	private static String canonical(String key) {
+		return key.replaceAll("[^A-Za-z0-9]", "").toLowerCase(Locale.ROOT);
+	}
+
+}
@@ -0,0 +1,226 @@
+package blog.network;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import blog.config.ApplicationProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Digest of the last committed value of the ledger keys, to refuse locally the
+ * writes the chaincode would refuse.
+ * <p>
+ * A set of the value a key already holds is answered {@code STATE_ALREADY_SET}
+ * and an add of an existing key {@code ALREADY_EXIST}, but only after a whole
+ * endorsement round-trip. The cache keeps, for the {@code max-size} keys used
+ * last, the SHA-256 of the value committed by the transactions of this
+ * application or read from the write sets of the blocks, so that these writes
+ * are refused without contacting the peers. A key is unknown while one of our
+ * writes is in flight on it, and its entry is only replaced by a write of a
+ * later block. Filtered blocks do not carry the write sets: a valid
+ * transaction of another client in one of them empties the whole cache.
+ */
+public class DigestCache implements BlockListener {
+
+	private final Logger log = LoggerFactory.getLogger(DigestCache.class);
+
+	/* Digest of a deleted key */
+	private static final String DELETED = "";
+
+	/* Transactions of this application awaiting their block */
+	private static final int MAX_OWN = 1024;
+
+	private final ApplicationProperties.Fabric.Digests properties;
+
+	private final MeterRegistry meterRegistry;
+
+	private final Object lock = new Object();
+
+	private final Map<String, Entry> entries;
+
+	private final Map<String, Integer> inFlight = new HashMap<>();
+
+	private final Map<String, Boolean> own = new LinkedHashMap<String, Boolean>() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+			return size() > MAX_OWN;
+		}
+	};
+
+	/* Block of the last foreign transaction whose writes are unknown */
+	private long clearedAt = -1;
+
+	public DigestCache(ApplicationProperties.Fabric.Digests properties, MeterRegistry meterRegistry) {
+		this.properties = properties;
+		this.meterRegistry = meterRegistry;
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > properties.getMaxSize();
+			}
+		};
+		Gauge.builder("fabric.digests.size", this, DigestCache::size)
+				.description("Ledger keys whose last committed value is known").register(meterRegistry);
+	}
+
+	/**
+	 * @param key
+	 * @param value
+	 * @return true if the key is known to hold the value, a set of it being
+	 *         then refused
+	 */
+	public boolean isSet(String key, String value) {
+		String digest = known(key);
+		return saved("set", digest != null && digest.equals(digest(value)));
+	}
+
+	/**
+	 * @param key
+	 * @return true if the key is known to exist, an add of it being then
+	 *         refused
+	 */
+	public boolean exists(String key) {
+		String digest = known(key);
+		return saved("add", digest != null && !DELETED.equals(digest));
+	}
+
+	/**
+	 * Forget the keys a transaction is about to write until its
+	 * {@link #end(Collection, Map, long)}.
+	 *
+	 * @param keys
+	 */
+	public void begin(Collection<String> keys) {
+		synchronized (lock) {
+			for (String key : keys) {
+				inFlight.merge(key, 1, Integer::sum);
+				entries.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Record the outcome of a transaction of this application.
+	 *
+	 * @param keys
+	 *            the keys given to {@link #begin(Collection)}
+	 * @param writes
+	 *            the values written by key, a null value for a deleted key;
+	 *            empty if the transaction failed or is invalid
+	 * @param blockNumber
+	 *            the block of the transaction
+	 */
+	public void end(Collection<String> keys, Map<String, String> writes, long blockNumber) {
+		synchronized (lock) {
+			writes.forEach((key, value) -> apply(key, value, blockNumber));
+			for (String key : keys) {
+				inFlight.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+			}
+		}
+	}
+
+	/**
+	 * Mark a transaction as sent by this application, its writes being given
+	 * to {@link #end(Collection, Map, long)}.
+	 *
+	 * @param transactionId
+	 */
+	public void own(String transactionId) {
+		synchronized (lock) {
+			own.put(transactionId, Boolean.TRUE);
+		}
+	}
+
+	@Override
+	public void onBlock(LedgerBlock block) {
+		synchronized (lock) {
+			for (LedgerBlock.Transaction transaction : block.getTransactions()) {
+				boolean ours = own.remove(transaction.getTransactionId()) != null;
+				if (!transaction.isValid()) {
+					continue;
+				}
+				if (!block.isFiltered()) {
+					transaction.getWrites().forEach((key, value) -> apply(key, value, block.getNumber()));
+				} else if (!ours && !entries.isEmpty()) {
+					log.debug("Unknown writes of transaction {} in block {}, forgetting {} digests",
+							transaction.getTransactionId(), block.getNumber(), entries.size());
+					entries.clear();
+					clearedAt = block.getNumber();
+				}
+			}
+		}
+	}
+
+	public int size() {
+		synchronized (lock) {
+			return entries.size();
+		}
+	}
+
+	private String known(String key) {
+		if (!properties.isEnabled()) {
+			return null;
+		}
+		synchronized (lock) {
+			if (inFlight.containsKey(key)) {
+				return null;
+			}
+			Entry entry = entries.get(key);
+			return entry == null ? null : entry.digest;
+		}
+	}
+
+	private boolean saved(String function, boolean refused) {
+		if (refused) {
+			meterRegistry.counter("fabric.digests.saved", "function", function).increment();
+		}
+		return refused;
+	}
+
+	/* A write is only applied over the writes of earlier blocks */
+	private void apply(String key, String value, long blockNumber) {
+		if (!properties.isEnabled() || blockNumber < clearedAt) {
+			return;
+		}
+		Entry entry = entries.get(key);
+		if (entry == null || entry.blockNumber <= blockNumber) {
+			entries.put(key, new Entry(value == null ? DELETED : digest(value), blockNumber));
+		}
+	}
+
+	private static String digest(String value) {
+		try {
+			return Base64.getEncoder().encodeToString(
+					MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform supports SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static final class Entry {
+
+		private final String digest;
+		private final long blockNumber;
+
+		Entry(String digest, long blockNumber) {
+			this.digest = digest;
+			this.blockNumber = blockNumber;
+		}
+	}
+
+}
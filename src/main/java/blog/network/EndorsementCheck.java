@@ -0,0 +1,21 @@
+package blog.network;
+
+import blog.network.networkException.A_BlockchainException;
+
+/**
+ * Inspects the chaincode payload of an endorsement before the transaction is
+ * sent to the orderer.
+ */
+@FunctionalInterface
+public interface EndorsementCheck {
+
+	/**
+	 * @param payload
+	 *            the chaincode response payload
+	 * @throws A_BlockchainException
+	 *             if the payload is a chaincode refusal (ALREADY_EXIST,
+	 *             NOT_FOUND, ...) that must not be ordered
+	 */
+	void verify(String payload) throws A_BlockchainException;
+
+}
@@ -0,0 +1,532 @@
+package blog.network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.HFClient;
+import org.hyperledger.fabric.sdk.Orderer;
+import org.hyperledger.fabric.sdk.Peer;
+import org.hyperledger.fabric.sdk.Peer.PeerRole;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import blog.config.ApplicationProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Long-lived gateway to the Fabric network.
+ * <p>
+ * The admin identity (read from the {@link IdentityWallet}, or enrolled
+ * against the CA when missing or expired), the {@link FabricClient} and the
+ * initialized {@link ChannelClient} are created once, on first use, and shared
+ * by every blockchain request. The SDK channel is thread-safe, so a single
+ * instance is enough; it is only rebuilt after a request reported it as broken
+ * through {@link #invalidate(LedgerBackend, Throwable)}.
+ * <p>
+ * With {@code application.fabric.backend: simulator}, requests are served by an
+ * in-process {@link SimulatedLedger} instead and the network is never
+ * contacted.
+ * <p>
+ * Block events reach the application through a single
+ * {@link ChannelEventService}, attached to each new backend. The channel holds
+ * the orderers and peers of the {@link NetworkTopology} read from the
+ * connection profile, the SDK broadcasting each transaction to the next
+ * orderer when one fails. The profile is read again every
+ * {@code reload-delay-ms}: new nodes join the shared channel and removed ones
+ * leave it, while a change of channel or of client organization rebuilds it.
+ * The {@link PeerSelector} chooses which peers
+ * serve each query and endorse each transaction, and the
+ * {@link TransactionLookup} hedging the lookups of transactions; like the
+ * events, their statistics survive reconnections, as does the
+ * {@link DigestCache} of the committed values.
+ * <p>
+ * A {@link CircuitBreaker} watches the outcome of the requests and of the
+ * connections: once it opens, {@link #getBackend()} fails at once with a
+ * {@link LedgerUnavailableException} rather than enrolling and initializing
+ * a channel which would time out.
+ */
+@Component
+public class FabricGateway {
+
+	private final Logger log = LoggerFactory.getLogger(FabricGateway.class);
+
+	private final IdentityWallet wallet;
+
+	private final ChannelEventService events;
+
+	private final PeerSelector peerSelector;
+
+	private final AdmissionController admission;
+
+	private final CircuitBreaker breaker;
+
+	private final ConsistencyPolicy consistency;
+
+	private final ConflictRetrier retrier;
+
+	private final DigestCache digests;
+
+	private final TransactionTracker tracker;
+
+	private final ApplicationProperties.Fabric.Network network;
+
+	private final ExecutorService executor;
+
+	private final ExecutorService submitter;
+
+	private final long commitTimeoutMs;
+
+	private final ScheduledExecutorService commitTimer;
+
+	private final ExecutorService lookupExecutor;
+
+	private final TransactionLookup transactionLookup;
+
+	private final SimulatedLedger simulator;
+
+	private final Object lock = new Object();
+
+	private volatile NetworkTopology topology;
+
+	private volatile ChannelClient channelClient;
+
+	private volatile boolean invalidated;
+
+	private final AtomicLong connectedSince = new AtomicLong();
+
+	private final Counter connects;
+
+	private final Counter reconnects;
+
+	private final Counter connectFailures;
+
+	private final Counter invalidations;
+
+	private final Counter topologyReloads;
+
+	public FabricGateway(IdentityWallet wallet, ApplicationProperties applicationProperties,
+			MeterRegistry meterRegistry, CacheManager cacheManager) throws Exception {
+		this.wallet = wallet;
+		this.events = new ChannelEventService(meterRegistry);
+		this.network = applicationProperties.getFabric().getNetwork();
+		this.peerSelector = new PeerSelector(applicationProperties.getFabric().getPeers(), meterRegistry);
+		this.admission = new AdmissionController(applicationProperties.getFabric().getAdmission(), meterRegistry);
+		this.breaker = new CircuitBreaker(applicationProperties.getFabric().getBreaker(), meterRegistry);
+		this.consistency = new ConsistencyPolicy(applicationProperties.getFabric().getConsistency(), meterRegistry);
+		this.digests = new DigestCache(applicationProperties.getFabric().getDigests(), meterRegistry);
+		events.addBlockListener(digests);
+		this.tracker = new TransactionTracker(applicationProperties.getFabric().getTracking(), meterRegistry);
+		events.addBlockListener(tracker);
+		this.executor = Executors.newFixedThreadPool(
+				applicationProperties.getFabric().getGateway().getEndorsementThreads(),
+				new CustomizableThreadFactory("fabric-endorser-"));
+		this.commitTimeoutMs = applicationProperties.getFabric().getGateway().getCommitTimeoutMs();
+		this.commitTimer = Executors
+				.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("fabric-commit-timer-"));
+		this.submitter = Executors.newCachedThreadPool(new CustomizableThreadFactory("fabric-submitter-"));
+		this.retrier = new ConflictRetrier(applicationProperties.getFabric().getRetry(), submitter, meterRegistry);
+		this.lookupExecutor = Executors.newCachedThreadPool(new CustomizableThreadFactory("fabric-lookup-"));
+		this.transactionLookup = new TransactionLookup(peerSelector, lookupExecutor,
+				applicationProperties.getFabric().getLookup(),
+				cacheManager.getCache(TransactionLookup.TRANSACTIONS_CACHE), meterRegistry);
+		if ("simulator".equals(applicationProperties.getFabric().getBackend())) {
+			log.info("Using the simulated ledger");
+			this.simulator = new SimulatedLedger(applicationProperties.getFabric().getSimulator());
+			events.attach(simulator);
+		} else {
+			this.simulator = null;
+			this.topology = NetworkTopology.load(network.getProfile(), network.getChannel());
+			register(topology);
+		}
+
+		this.connects = meterRegistry.counter("fabric.gateway.connects");
+		this.reconnects = meterRegistry.counter("fabric.gateway.reconnects");
+		this.connectFailures = meterRegistry.counter("fabric.gateway.connect.failures");
+		this.invalidations = meterRegistry.counter("fabric.gateway.invalidations");
+		this.topologyReloads = meterRegistry.counter("fabric.gateway.topology.reloads");
+		Gauge.builder("fabric.gateway.connected", this, gateway -> gateway.isConnected() ? 1 : 0)
+				.description("1 when a shared channel is initialized, 0 otherwise").register(meterRegistry);
+		Gauge.builder("fabric.gateway.peers", this, FabricGateway::peerCount)
+				.description("Number of peers attached to the shared channel").register(meterRegistry);
+		Gauge.builder("fabric.gateway.channel.age", this, FabricGateway::channelAgeSeconds)
+				.description("Seconds since the shared channel was (re)built").register(meterRegistry);
+	}
+
+	/**
+	 * Return the shared channel client, connecting to the network if there is
+	 * no healthy one.
+	 *
+	 * @return the initialized channel client
+	 * @throws Exception
+	 *             if the admin cannot be enrolled or the channel cannot be
+	 *             initialized
+	 */
+	public ChannelClient getChannelClient() throws Exception {
+		ChannelClient client = channelClient;
+		if (client != null) {
+			return client;
+		}
+		synchronized (lock) {
+			if (channelClient == null) {
+				long start = System.nanoTime();
+				try {
+					channelClient = connect();
+				} catch (Exception e) {
+					breaker.onFailure(System.nanoTime() - start);
+					throw e;
+				}
+			}
+			return channelClient;
+		}
+	}
+
+	/**
+	 * Return the ledger serving the blockchain requests: the simulator if
+	 * configured, the shared channel client otherwise.
+	 *
+	 * @return the ledger backend
+	 * @throws LedgerUnavailableException
+	 *             if the circuit breaker is open
+	 * @throws Exception
+	 *             if the channel cannot be initialized
+	 */
+	public LedgerBackend getBackend() throws Exception {
+		breaker.check();
+		return simulator != null ? simulator : getChannelClient();
+	}
+
+	/**
+	 * @return the simulated ledger, or null when connected to Fabric
+	 */
+	public SimulatedLedger getSimulator() {
+		return simulator;
+	}
+
+	/**
+	 * @return the subscription to the block events of the channel, which
+	 *         survives reconnections
+	 */
+	public ChannelEventService getEvents() {
+		return events;
+	}
+
+	/**
+	 * Drop the shared channel after a failure so that the next request rebuilds
+	 * it. Failures reported against an already replaced channel are ignored.
+	 *
+	 * @param failed
+	 *            the backend the failure was observed on
+	 * @param cause
+	 *            the failure
+	 */
+	public void invalidate(LedgerBackend failed, Throwable cause) {
+		synchronized (lock) {
+			if (failed == null || failed != channelClient) {
+				return;
+			}
+			log.warn("Invalidating Fabric channel {}: {}", channelClient.getName(), cause.toString());
+			events.detach();
+			shutdown(channelClient);
+			channelClient = null;
+			invalidated = true;
+			invalidations.increment();
+		}
+	}
+
+	/**
+	 * @return the nodes of the channel, null with the simulator
+	 */
+	public NetworkTopology getTopology() {
+		return topology;
+	}
+
+	/**
+	 * Read the connection profile again and apply its changes: new peers and
+	 * orderers join the shared channel, removed ones leave it, and a change
+	 * of channel or of client organization drops the channel so that the
+	 * next request rebuilds it. An unreadable profile is ignored.
+	 */
+	@Scheduled(fixedDelayString = "${application.fabric.network.reload-delay-ms:30000}")
+	public void reloadTopology() {
+		if (simulator != null) {
+			return;
+		}
+		NetworkTopology loaded;
+		try {
+			loaded = NetworkTopology.load(network.getProfile(), network.getChannel());
+		} catch (Exception e) {
+			log.warn("Cannot reload the connection profile {}: {}", network.getProfile(), e.toString());
+			return;
+		}
+		synchronized (lock) {
+			NetworkTopology previous = topology;
+			if (loaded.equals(previous)) {
+				return;
+			}
+			log.info("Connection profile changed: {}", loaded);
+			topology = loaded;
+			register(loaded);
+			topologyReloads.increment();
+			if (channelClient == null) {
+				return;
+			}
+			if (loaded.getChannel().equals(previous.getChannel()) && loaded.getMspId().equals(previous.getMspId())
+					&& loaded.getCertificateAuthority().equals(previous.getCertificateAuthority())) {
+				try {
+					update(channelClient, previous, loaded);
+					return;
+				} catch (Exception e) {
+					log.warn("Cannot update Fabric channel {}, rebuilding it: {}", channelClient.getName(), e.toString());
+				}
+			}
+			events.detach();
+			shutdown(channelClient);
+			channelClient = null;
+		}
+	}
+
+	/**
+	 * @return the selector of the peers of the channel
+	 */
+	public PeerSelector getPeerSelector() {
+		return peerSelector;
+	}
+
+	/**
+	 * @return the bound on the transactions in flight on the channel
+	 */
+	public AdmissionController getAdmission() {
+		return admission;
+	}
+
+	/**
+	 * @return the circuit breaker around the calls to the network
+	 */
+	public CircuitBreaker getBreaker() {
+		return breaker;
+	}
+
+	/**
+	 * @return the consistency modes of the chaincode writes
+	 */
+	public ConsistencyPolicy getConsistency() {
+		return consistency;
+	}
+
+	/**
+	 * @return the retrier of the transactions invalidated by a read conflict
+	 */
+	public ConflictRetrier getRetrier() {
+		return retrier;
+	}
+
+	/**
+	 * @return the digests of the last committed values of the keys
+	 */
+	public DigestCache getDigests() {
+		return digests;
+	}
+
+	/**
+	 * @return the status of the transactions submitted by this application
+	 */
+	public TransactionTracker getTracker() {
+		return tracker;
+	}
+
+	/**
+	 * @return the executor sending transaction proposals
+	 */
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * @return the executor submitting the transactions sent in the background,
+	 *         batches and retries, whose threads may wait for their admission;
+	 *         the waits are bounded by the admission queue, and never hold the
+	 *         endorsement threads which free the slots
+	 */
+	public Executor getSubmitter() {
+		return submitter;
+	}
+
+	/**
+	 * @return the time a synchronous write waits for its commit, and after
+	 *         which a transaction whose commit event never came is failed
+	 */
+	public long getCommitTimeoutMs() {
+		return commitTimeoutMs;
+	}
+
+	public boolean isConnected() {
+		return simulator != null || channelClient != null;
+	}
+
+	@PreDestroy
+	public void destroy() {
+		retrier.shutdown();
+		executor.shutdown();
+		submitter.shutdown();
+		commitTimer.shutdownNow();
+		lookupExecutor.shutdown();
+		events.detach();
+		if (simulator != null) {
+			simulator.shutdown();
+		}
+		synchronized (lock) {
+			shutdown(channelClient);
+			channelClient = null;
+		}
+	}
+
+	/*
+	 * Enroll the admin of the client organization and initialize the channel
+	 */
+	private ChannelClient connect() throws Exception {
+		NetworkTopology topology = this.topology;
+		log.info("Connecting to Fabric channel {}", topology.getChannel());
+		ChannelClient client = null;
+		try {
+			NetworkTopology.CertificateAuthority ca = topology.getCertificateAuthority();
+			CAClient caClient = new CAClient(ca.getUrl(), null, wallet);
+
+			/* Enroll the admin, unless the wallet holds a valid enrollment */
+			UserContext adminUserContext = new UserContext();
+			adminUserContext.setName(ca.getEnrollId());
+			adminUserContext.setAffiliation(ca.getAffiliation());
+			adminUserContext.setMspId(topology.getMspId());
+			caClient.setAdminUserContext(adminUserContext);
+			adminUserContext = caClient.enrollAdminUser(ca.getEnrollId(), ca.getEnrollSecret());
+
+			FabricClient fabClient = new FabricClient(adminUserContext);
+
+			/* Create and initialize the channel */
+			client = fabClient.createChannelClient(topology.getChannel());
+			Channel channel = client.getChannel();
+			for (NetworkTopology.Node peer : topology.getPeers()) {
+				addPeer(fabClient.getInstance(), channel, peer);
+			}
+			for (NetworkTopology.Node orderer : topology.getOrderers()) {
+				channel.addOrderer(newOrderer(fabClient.getInstance(), orderer));
+			}
+			client.setPeerSelector(peerSelector);
+			client.setTransactionLookup(transactionLookup);
+			client.setCommitTimeout(commitTimeoutMs, commitTimer);
+			events.attach(client);
+			channel.initialize();
+
+			connects.increment();
+			if (invalidated) {
+				reconnects.increment();
+				invalidated = false;
+			}
+			connectedSince.set(System.currentTimeMillis());
+			return client;
+		} catch (Exception e) {
+			connectFailures.increment();
+			events.detach();
+			shutdown(client);
+			log.warn("Cannot connect to Fabric channel {}: {}", topology.getChannel(), e.toString());
+			throw e;
+		}
+	}
+
+	/*
+	 * Remove the nodes the profile no longer lists, or lists differently, then
+	 * add the new ones to the initialized channel
+	 */
+	private void update(ChannelClient client, NetworkTopology previous, NetworkTopology loaded) throws Exception {
+		Channel channel = client.getChannel();
+		HFClient hfClient = client.getFabClient().getInstance();
+		for (Peer peer : new ArrayList<>(channel.getPeers())) {
+			if (!contains(loaded.getPeers(), previous.getPeers(), peer.getName())) {
+				log.info("Removing peer {} from channel {}", peer.getName(), channel.getName());
+				channel.removePeer(peer);
+			}
+		}
+		for (Orderer orderer : new ArrayList<>(channel.getOrderers())) {
+			if (!contains(loaded.getOrderers(), previous.getOrderers(), orderer.getName())) {
+				log.info("Removing orderer {} from channel {}", orderer.getName(), channel.getName());
+				channel.removeOrderer(orderer);
+			}
+		}
+		for (NetworkTopology.Node peer : loaded.getPeers()) {
+			if (!previous.getPeers().contains(peer)) {
+				log.info("Adding peer {} to channel {}", peer, channel.getName());
+				addPeer(hfClient, channel, peer);
+			}
+		}
+		for (NetworkTopology.Node orderer : loaded.getOrderers()) {
+			if (!previous.getOrderers().contains(orderer)) {
+				log.info("Adding orderer {} to channel {}", orderer, channel.getName());
+				channel.addOrderer(newOrderer(hfClient, orderer));
+			}
+		}
+	}
+
+	/*
+	 * True if the node of the channel is listed, unchanged, by both profiles
+	 */
+	private static boolean contains(List<NetworkTopology.Node> loaded, List<NetworkTopology.Node> previous,
+			String name) {
+		return previous.stream().filter(node -> node.getName().equals(name)).anyMatch(loaded::contains);
+	}
+
+	/*
+	 * The event sources deliver filtered blocks, from the one after the last
+	 * block seen if any
+	 */
+	private void addPeer(HFClient hfClient, Channel channel, NetworkTopology.Node peer) throws Exception {
+		Channel.PeerOptions options = Channel.PeerOptions.createPeerOptions().setPeerRoles(peer.getRoles());
+		if (peer.getRoles().contains(PeerRole.EVENT_SOURCE)) {
+			options.registerEventsForFilteredBlocks();
+			if (events.getLastBlock() >= 0) {
+				options.startEvents(events.getLastBlock() + 1);
+			}
+		}
+		channel.addPeer(hfClient.newPeer(peer.getName(), peer.getUrl(), peer.getProperties()), options);
+	}
+
+	private static Orderer newOrderer(HFClient hfClient, NetworkTopology.Node orderer) throws Exception {
+		return hfClient.newOrderer(orderer.getName(), orderer.getUrl(), orderer.getProperties());
+	}
+
+	private void register(NetworkTopology topology) {
+		for (NetworkTopology.Node peer : topology.getPeers()) {
+			if (peer.getMspId() != null) {
+				peerSelector.register(peer.getName(), peer.getMspId());
+			}
+		}
+	}
+
+	private void shutdown(ChannelClient client) {
+		if (client != null && !client.getChannel().isShutdown()) {
+			client.getChannel().shutdown(true);
+		}
+	}
+
+	private double peerCount() {
+		ChannelClient client = channelClient;
+		return client == null ? 0 : client.getChannel().getPeers().size();
+	}
+
+	private double channelAgeSeconds() {
+		return channelClient == null ? 0 : (System.currentTimeMillis() - connectedSince.get()) / 1000.0;
+	}
+
+}
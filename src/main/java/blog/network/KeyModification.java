@@ -0,0 +1,54 @@
+package blog.network;
+
+import java.time.Instant;
+
+/**
+ * A write of a key by a valid transaction, as kept in the history of the
+ * ledger.
+ */
+public class KeyModification {
+
+	private final String transactionId;
+
+	private final Instant timestamp;
+
+	private final boolean delete;
+
+	private final String value;
+
+	public KeyModification(String transactionId, Instant timestamp, boolean delete, String value) {
+		this.transactionId = transactionId;
+		this.timestamp = timestamp;
+		this.delete = delete;
+		this.value = value;
+	}
+
+	public String getTransactionId() {
+		return transactionId;
+	}
+
+	/**
+	 * @return the time the client created the transaction
+	 */
+	public Instant getTimestamp() {
+		return timestamp;
+	}
+
+	public boolean isDelete() {
+		return delete;
+	}
+
+	/**
+	 * @return the value written, null for a deletion
+	 */
+	public String getValue() {
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return "KeyModification{transactionId=" + transactionId + ", timestamp=" + timestamp + ", delete=" + delete
+				+ ", value=" + value + "}";
+	}
+
+}
@@ -0,0 +1,69 @@
+package blog.network;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Ledger running the simple chaincode.
+ * <p>
+ * Implemented by the {@link ChannelClient} of a Fabric network and by the
+ * in-process {@link SimulatedLedger}; the {@link FabricGateway} hands out the
+ * one selected by {@code application.fabric.backend}.
+ */
+public interface LedgerBackend {
+
+	/**
+	 * Submit a chaincode transaction without blocking the caller.
+	 *
+	 * @param function
+	 *            the chaincode function
+	 * @param arguments
+	 * @param check
+	 *            applied to the endorsed payload before ordering
+	 * @param executor
+	 *            runs the blocking part of the endorsement
+	 * @return the transaction handle
+	 */
+	LedgerTransaction submit(String function, String[] arguments, EndorsementCheck check, Executor executor);
+
+	/**
+	 * Evaluate a chaincode function without updating the ledger.
+	 *
+	 * @param function
+	 *            the chaincode function
+	 * @param arguments
+	 * @return the payload answered by the chaincode
+	 * @throws Exception
+	 *             if the query cannot be endorsed
+	 */
+	String query(String function, String... arguments) throws Exception;
+
+	/**
+	 * Register a listener notified of each block committed from now on.
+	 *
+	 * @param listener
+	 * @throws Exception
+	 *             if the listener cannot be registered
+	 */
+	void addBlockListener(BlockListener listener) throws Exception;
+
+	void removeBlockListener(BlockListener listener);
+
+	/**
+	 * @return the number of blocks of the ledger
+	 * @throws Exception
+	 *             if the ledger cannot be queried
+	 */
+	long getHeight() throws Exception;
+
+	/**
+	 * Read a committed block.
+	 *
+	 * @param number
+	 *            the block number, lower than the height
+	 * @return the block
+	 * @throws Exception
+	 *             if the block cannot be read
+	 */
+	LedgerBlock getBlock(long number) throws Exception;
+
+}
@@ -0,0 +1,500 @@
+package blog.network;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import blog.config.ApplicationProperties;
+import blog.network.networkException.A_BlockchainException;
+import blog.network.request.Batch;
+import blog.network.request.Batch.Operation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Coalesce entity writes into batch transactions.
+ * <p>
+ * Operations are queued until {@code max-size} of them are pending or the
+ * oldest one has waited {@code max-linger-ms}, then sent as a single
+ * {@link Batch} invocation. Each caller gets its own future: completed
+ * exceptionally with the chaincode refusal of its operation, or with the
+ * shared {@link LedgerTransaction} once committed. A batch of one operation is
+ * sent with the single-operation function, so {@code max-size: 1} disables
+ * batching.
+ * <p>
+ * A set is first held for {@code combine-window-ms}: the next sets of its key
+ * in the meantime only replace its value and share its future, so that a
+ * burst of updates of an entity becomes a single write, and each caller gets
+ * the transaction which carried its change. Any other operation on the key,
+ * or a {@link #flush()}, ends the window at once so that the writes of a key
+ * keep their order.
+ * <p>
+ * The batches are endorsed concurrently, so the writes of a key also keep
+ * their order across batches: while a batch is in flight, the operations on
+ * its keys are held back, and only queued once it has completed, committed or
+ * failed. A batch whose commit event is lost is failed after the commit
+ * timeout of the gateway, so that it never holds its keys forever.
+ * <p>
+ * An add or a set the {@link DigestCache} of the gateway knows the chaincode
+ * would refuse is refused at once, unless another write of its key waits or
+ * is in flight.
+ * <p>
+ * Each operation is kept in the {@link LedgerJournal} until validly
+ * committed or refused by the chaincode, unless its caller keeps it durably
+ * already, as the outbox does. An operation failed otherwise stays in the
+ * journal, to be replayed on the next start, unless its caller keeps it
+ * durably in the meantime and says so with {@link #handedOver}.
+ * <p>
+ * A caller waiting for its write uses {@link #submit}: the batch its
+ * operation joins is sent at once, without waiting for the linger time.
+ */
+@Component
+public class LedgerBatcher {
+
+	private final Logger log = LoggerFactory.getLogger(LedgerBatcher.class);
+
+	private final FabricGateway gateway;
+
+	private final LedgerJournal journal;
+
+	private final int maxSize;
+
+	private final long maxLingerMs;
+
+	private final long combineWindowMs;
+
+	private final ScheduledExecutorService scheduler = Executors
+			.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("fabric-batcher-"));
+
+	private final Object lock = new Object();
+
+	private List<Pending> pending = new ArrayList<>();
+
+	/* Sets held for their combining window, by key */
+	private final Map<String, Pending> combining = new HashMap<>();
+
+	/* Keys of the batches sent and not completed yet */
+	private final Set<String> inFlight = new HashSet<>();
+
+	/* Operations on a key in flight, in their order of arrival */
+	private final List<Pending> heldBack = new ArrayList<>();
+
+	/*
+	 * Journal sequences not done yet, by future: those of a future its caller
+	 * dropped stay in the journal for the next start
+	 */
+	private final Map<CompletableFuture<LedgerTransaction>, List<Long>> unfinished = Collections
+			.synchronizedMap(new WeakHashMap<>());
+
+	private ScheduledFuture<?> lingering;
+
+	private volatile boolean closed;
+
+	private final DistributionSummary batchSize;
+
+	private final Counter combined;
+
+	public LedgerBatcher(FabricGateway gateway, LedgerJournal journal, ApplicationProperties applicationProperties,
+			MeterRegistry meterRegistry) {
+		this.gateway = gateway;
+		this.journal = journal;
+		this.maxSize = Math.max(1, applicationProperties.getFabric().getBatch().getMaxSize());
+		this.maxLingerMs = applicationProperties.getFabric().getBatch().getMaxLingerMs();
+		this.combineWindowMs = applicationProperties.getFabric().getBatch().getCombineWindowMs();
+		this.batchSize = DistributionSummary.builder("fabric.batch.size")
+				.description("Number of operations sent per transaction").register(meterRegistry);
+		this.combined = meterRegistry.counter("fabric.batch.combined");
+	}
+
+	public CompletableFuture<LedgerTransaction> add(String entity, String value) {
+		return add(entity, value, true);
+	}
+
+	public CompletableFuture<LedgerTransaction> set(String entity, String value) {
+		return set(entity, value, true);
+	}
+
+	public CompletableFuture<LedgerTransaction> delete(String entity) {
+		return delete(entity, true);
+	}
+
+	/**
+	 * @param entity
+	 * @param value
+	 * @param journaled
+	 *            false when the caller keeps the operation durably until
+	 *            its future completes
+	 * @return the future of the transaction carrying the operation
+	 */
+	public CompletableFuture<LedgerTransaction> add(String entity, String value, boolean journaled) {
+		return enqueue(new Pending(Operation.add(entity, value), false), journaled);
+	}
+
+	/**
+	 * @param entity
+	 * @param value
+	 * @param journaled
+	 *            false when the caller keeps the operation durably until
+	 *            its future completes
+	 * @return the future of the transaction carrying the operation
+	 */
+	public CompletableFuture<LedgerTransaction> set(String entity, String value, boolean journaled) {
+		if (combineWindowMs <= 0 || closed) {
+			return enqueue(new Pending(Operation.set(entity, value), false), journaled);
+		}
+		synchronized (lock) {
+			Operation operation = Operation.set(entity, value);
+			Pending held = combining.get(entity);
+			if (held != null) {
+				held.operation = operation;
+				track(held, operation, journaled);
+				combined.increment();
+				return held.result;
+			}
+			CompletableFuture<LedgerTransaction> refused = knownRefusal(operation);
+			if (refused != null) {
+				return refused;
+			}
+			Pending entry = new Pending(operation, false);
+			track(entry, operation, journaled);
+			combining.put(entity, entry);
+			scheduler.schedule(() -> release(entity, entry), combineWindowMs, TimeUnit.MILLISECONDS);
+			return entry.result;
+		}
+	}
+
+	/**
+	 * @param entity
+	 * @param journaled
+	 *            false when the caller keeps the operation durably until
+	 *            its future completes
+	 * @return the future of the transaction carrying the operation
+	 */
+	public CompletableFuture<LedgerTransaction> delete(String entity, boolean journaled) {
+		return enqueue(new Pending(Operation.delete(entity), false), journaled);
+	}
+
+	/**
+	 * Journal and send an operation for a caller waiting for it, until
+	 * endorsed or committed: the batch it joins is sent at once, and a set is
+	 * not held for its combining window. It still waits for the writes of its
+	 * key in flight.
+	 *
+	 * @param operation
+	 * @param endorsed
+	 *            completed with the transaction carrying the operation once
+	 *            endorsed, or exceptionally once the operation is refused or
+	 *            fails
+	 * @return the future of the transaction carrying the operation
+	 */
+	public CompletableFuture<LedgerTransaction> submit(Operation operation,
+			CompletableFuture<LedgerTransaction> endorsed) {
+		Pending entry = new Pending(operation, true);
+		CompletableFuture<LedgerTransaction> result = enqueue(entry, true);
+		result.whenComplete((tx, error) -> {
+			if (error == null) {
+				endorsed.complete(tx);
+			} else {
+				endorsed.completeExceptionally(error);
+			}
+		});
+		entry.endorsed.thenAccept(endorsed::complete);
+		return result;
+	}
+
+	/**
+	 * Mark done in the journal the operation of a future which failed, once
+	 * its caller keeps it durably elsewhere, as in the outbox, rather than
+	 * have it replayed on the next start.
+	 *
+	 * @param result
+	 *            a future returned by this batcher
+	 */
+	public void handedOver(CompletableFuture<LedgerTransaction> result) {
+		List<Long> sequences = unfinished.remove(result);
+		if (sequences != null) {
+			sequences.forEach(journal::done);
+		}
+	}
+
+	/**
+	 * Send the pending operations without waiting for the linger time, nor
+	 * for the combining window. The operations held back behind a batch in
+	 * flight follow once it completes.
+	 */
+	public void flush() {
+		List<List<Pending>> batches = new ArrayList<>();
+		synchronized (lock) {
+			for (Pending held : combining.values()) {
+				collect(batches, queue(held));
+			}
+			combining.clear();
+			collect(batches, drain());
+		}
+		batches.forEach(this::send);
+	}
+
+	@PreDestroy
+	public void destroy() {
+		closed = true;
+		scheduler.shutdownNow();
+		flush();
+	}
+
+	/*
+	 * The linger time is over: the sets held for their combining window stay
+	 * held
+	 */
+	private void linger() {
+		List<Pending> batch;
+		synchronized (lock) {
+			batch = drain();
+		}
+		if (!batch.isEmpty()) {
+			send(batch);
+		}
+	}
+
+	/*
+	 * End the combining window of a set, unless already ended
+	 */
+	private void release(String entity, Pending entry) {
+		List<Pending> batch;
+		synchronized (lock) {
+			if (!combining.remove(entity, entry)) {
+				return;
+			}
+			batch = queue(entry);
+		}
+		if (batch != null) {
+			send(batch);
+		}
+	}
+
+	private CompletableFuture<LedgerTransaction> enqueue(Pending entry, boolean journaled) {
+		Operation operation = entry.operation;
+		List<Pending> batch = null;
+		synchronized (lock) {
+			CompletableFuture<LedgerTransaction> refused = knownRefusal(operation);
+			if (refused != null) {
+				return refused;
+			}
+			track(entry, operation, journaled);
+			/* A set held for the key goes first */
+			Pending held = combining.remove(operation.getEntity());
+			if (held != null) {
+				batch = queue(held);
+			}
+			List<Pending> full = queue(entry);
+			if (batch == null) {
+				batch = full;
+			} else if (full != null) {
+				batch.addAll(full);
+			}
+		}
+		if (batch != null) {
+			send(batch);
+		}
+		return entry.result;
+	}
+
+	/*
+	 * The chaincode refusal of an operation, known from the digests of the
+	 * committed values when no other write of its key is waiting here
+	 */
+	private CompletableFuture<LedgerTransaction> knownRefusal(Operation operation) {
+		String entity = operation.getEntity();
+		if (combining.containsKey(entity) || inFlight.contains(entity)
+				|| pending.stream().anyMatch(entry -> entry.operation.getEntity().equals(entity))
+				|| heldBack.stream().anyMatch(entry -> entry.operation.getEntity().equals(entity))) {
+			return null;
+		}
+		A_BlockchainException refusal = operation.knownRefusal(gateway.getDigests());
+		if (refusal == null) {
+			return null;
+		}
+		CompletableFuture<LedgerTransaction> refused = new CompletableFuture<>();
+		refused.completeExceptionally(refusal);
+		return refused;
+	}
+
+	/*
+	 * Keep an operation in the journal until its future completes with a
+	 * valid commit or a refusal; a set combined into a held one shares its
+	 * future
+	 */
+	private void track(Pending entry, Operation operation, boolean journaled) {
+		if (!journaled) {
+			return;
+		}
+		long sequence = journal.append(operation);
+		if (sequence <= 0) {
+			return;
+		}
+		synchronized (unfinished) {
+			unfinished.computeIfAbsent(entry.result, result -> new ArrayList<>()).add(sequence);
+		}
+		entry.result.whenComplete((tx, error) -> {
+			Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause()
+					: error;
+			if (error == null ? tx.isValid() : cause instanceof A_BlockchainException) {
+				handedOver(entry.result);
+			}
+		});
+	}
+
+	/*
+	 * Add an operation to the pending batch, returning the batch to send if
+	 * full or if its caller waits for the endorsement, or hold it back while
+	 * its key is in flight
+	 */
+	private List<Pending> queue(Pending entry) {
+		if (inFlight.contains(entry.operation.getEntity())) {
+			heldBack.add(entry);
+			return null;
+		}
+		pending.add(entry);
+		if (pending.size() >= maxSize || closed || entry.urgent) {
+			return drain();
+		}
+		if (lingering == null) {
+			lingering = scheduler.schedule(this::linger, maxLingerMs, TimeUnit.MILLISECONDS);
+		}
+		return null;
+	}
+
+	private List<Pending> drain() {
+		if (lingering != null) {
+			lingering.cancel(false);
+			lingering = null;
+		}
+		List<Pending> batch = pending;
+		pending = new ArrayList<>();
+		batch.forEach(entry -> inFlight.add(entry.operation.getEntity()));
+		return batch;
+	}
+
+	/*
+	 * A batch has completed: queue the operations held back on its keys, in
+	 * order, and send the batches they fill
+	 */
+	private void land(Set<String> keys) {
+		List<List<Pending>> batches = new ArrayList<>();
+		synchronized (lock) {
+			inFlight.removeAll(keys);
+			for (Iterator<Pending> iterator = heldBack.iterator(); iterator.hasNext();) {
+				Pending entry = iterator.next();
+				if (!inFlight.contains(entry.operation.getEntity())) {
+					iterator.remove();
+					collect(batches, queue(entry));
+				}
+			}
+		}
+		batches.forEach(this::send);
+	}
+
+	private static void collect(List<List<Pending>> batches, List<Pending> batch) {
+		if (batch != null && !batch.isEmpty()) {
+			batches.add(batch);
+		}
+	}
+
+	/*
+	 * Connecting the gateway and waiting for the admission may block, so the
+	 * request is built on the submitter of the gateway, never on the
+	 * endorsement threads which free the admission slots
+	 */
+	private void send(List<Pending> batch) {
+		batchSize.record(batch.size());
+		List<Operation> operations = batch.stream().map(entry -> entry.operation).collect(Collectors.toList());
+		Set<String> keys = operations.stream().map(Operation::getEntity).collect(Collectors.toSet());
+		gateway.getSubmitter().execute(() -> {
+			/* The operations of the batch reach the disk together */
+			journal.sync();
+			LedgerTransaction transaction;
+			try {
+				transaction = operations.size() == 1 ? operations.get(0).toRequest(gateway).submit()
+						: new Batch(gateway, operations).submit();
+			} catch (Exception e) {
+				log.warn("Cannot send batch of {} operations: {}", operations.size(), e.toString());
+				batch.forEach(entry -> entry.result.completeExceptionally(e));
+				land(keys);
+				return;
+			}
+			transaction.endorsed().thenAccept(tx -> endorsed(batch, tx));
+			transaction.committed().whenComplete((tx, error) -> {
+				log.debug("Batch {} of {} operations: {}", tx, operations, error == null ? "committed" : error);
+				try {
+					if (error == null && tx.isValid() && operations.size() > 1) {
+						/* The statuses answered by the endorsement which committed, after the retries if any */
+						List<String> statuses = Batch.statuses(tx.getPayload());
+						for (int i = 0; i < batch.size(); i++) {
+							Exception refusal = Batch.refusal(statuses.get(i));
+							if (refusal != null) {
+								batch.get(i).result.completeExceptionally(refusal);
+							}
+						}
+					}
+					for (Pending entry : batch) {
+						if (error == null) {
+							entry.result.complete(tx);
+						} else {
+							entry.result.completeExceptionally(error);
+						}
+					}
+				} finally {
+					land(keys);
+				}
+			});
+		});
+	}
+
+	/*
+	 * The transaction of a batch is endorsed: hand it out to the operations
+	 * the endorsement did not refuse
+	 */
+	private static void endorsed(List<Pending> batch, LedgerTransaction transaction) {
+		List<String> statuses = batch.size() > 1 ? Batch.statuses(transaction.getPayload()) : null;
+		for (int i = 0; i < batch.size(); i++) {
+			if (statuses == null || Batch.refusal(statuses.get(i)) == null) {
+				batch.get(i).endorsed.complete(transaction);
+			}
+		}
+	}
+
+	private static final class Pending {
+
+		private Operation operation;
+		private final boolean urgent;
+		private final CompletableFuture<LedgerTransaction> result = new CompletableFuture<>();
+		/* Only completed once endorsed, the refusals and failures go through the result */
+		private final CompletableFuture<LedgerTransaction> endorsed = new CompletableFuture<>();
+
+		Pending(Operation operation, boolean urgent) {
+			this.operation = operation;
+			this.urgent = urgent;
+		}
+	}
+
+}
@@ -0,0 +1,113 @@
+package blog.network;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Committed block: its number and, in order, the transactions it contains
+ * with their validation code, the chaincode event they emitted and the keys
+ * they wrote. The write sets are left empty in a filtered block.
+ */
+public class LedgerBlock {
+
+	private final long number;
+
+	private final boolean filtered;
+
+	private final List<Transaction> transactions;
+
+	public LedgerBlock(long number, List<Transaction> transactions) {
+		this(number, false, transactions);
+	}
+
+	public LedgerBlock(long number, boolean filtered, List<Transaction> transactions) {
+		this.number = number;
+		this.filtered = filtered;
+		this.transactions = Collections.unmodifiableList(transactions);
+	}
+
+	public long getNumber() {
+		return number;
+	}
+
+	/**
+	 * @return true if the block was delivered without the write sets of its
+	 *         transactions, which must then be read from the full block
+	 */
+	public boolean isFiltered() {
+		return filtered;
+	}
+
+	public List<Transaction> getTransactions() {
+		return transactions;
+	}
+
+	@Override
+	public String toString() {
+		return "LedgerBlock{" + "number=" + number + ", filtered=" + filtered + ", transactions=" + transactions.size()
+				+ "}";
+	}
+
+	/**
+	 * Transaction of a block.
+	 */
+	public static class Transaction {
+
+		private final String transactionId;
+
+		private final String validationCode;
+
+		private final String chaincodeEvent;
+
+		private final Map<String, String> writes;
+
+		public Transaction(String transactionId, String validationCode, Map<String, String> writes) {
+			this(transactionId, validationCode, null, writes);
+		}
+
+		/**
+		 * @param transactionId
+		 * @param validationCode
+		 * @param chaincodeEvent
+		 *            the name of the event emitted by the chaincode, or null
+		 * @param writes
+		 *            the written values by key, a null value for a deleted key
+		 */
+		public Transaction(String transactionId, String validationCode, String chaincodeEvent,
+				Map<String, String> writes) {
+			this.transactionId = transactionId;
+			this.validationCode = validationCode;
+			this.chaincodeEvent = chaincodeEvent;
+			this.writes = Collections.unmodifiableMap(writes);
+		}
+
+		public String getTransactionId() {
+			return transactionId;
+		}
+
+		public String getValidationCode() {
+			return validationCode;
+		}
+
+		public boolean isValid() {
+			return LedgerTransaction.VALID.equals(validationCode);
+		}
+
+		/**
+		 * @return the name of the event emitted by the chaincode, or null
+		 */
+		public String getChaincodeEvent() {
+			return chaincodeEvent;
+		}
+
+		/**
+		 * @return the written values by key, a null value for a deleted key;
+		 *         only applied to the world state if the transaction is valid
+		 */
+		public Map<String, String> getWrites() {
+			return writes;
+		}
+	}
+
+}
@@ -0,0 +1,36 @@
+package blog.network;
+
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+/**
+ * Health of the ledger, as seen by the circuit breaker of the
+ * {@link FabricGateway}: up while closed or half open, "DEGRADED" while open.
+ * The blog keeps serving in that state, from the outbox and the mirror, so
+ * the ledger is not reported down.
+ */
+@Component
+public class LedgerHealthIndicator extends AbstractHealthIndicator {
+
+	public static final Status DEGRADED = new Status("DEGRADED", "Ledger unavailable, writes wait in the outbox");
+
+	private final FabricGateway gateway;
+
+	public LedgerHealthIndicator(FabricGateway gateway) {
+		this.gateway = gateway;
+	}
+
+	@Override
+	protected void doHealthCheck(Health.Builder builder) {
+		CircuitBreaker breaker = gateway.getBreaker();
+		builder.status(breaker.isOpen() ? DEGRADED : Status.UP)
+				.withDetail("breaker", breaker.getState())
+				.withDetail("failureRate", breaker.getFailureRate())
+				.withDetail("slowCallRate", breaker.getSlowCallRate())
+				.withDetail("bufferedCalls", breaker.getBufferedCalls())
+				.withDetail("connected", gateway.isConnected());
+	}
+
+}
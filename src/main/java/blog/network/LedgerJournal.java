@@ -0,0 +1,482 @@
+package blog.network;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import blog.config.ApplicationProperties;
+import blog.network.request.Batch.Operation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Append-only journal of the ledger writes in flight.
+ * <p>
+ * The {@link LedgerBatcher} appends each operation before sending it, and
+ * marks it done once its future completes. Appending only copies a record
+ * into a memory-mapped segment: the records of a batch are forced to disk
+ * together just before the batch is sent, and the done marks every
+ * {@code sync-delay-ms}, from a thread of the journal rather than the shared
+ * scheduler of the application. The operations never marked done, whose outcome
+ * nobody got because the JVM stopped in the meantime, are handed out once by
+ * {@link #recover()} on the next start.
+ * <p>
+ * The journal is a sequence of {@code <path>/<number>.journal} files of
+ * {@code segment-size} bytes. A full segment is forced and the next one
+ * started; the oldest segments are deleted once their operations are all
+ * done. Beyond {@code max-segments} full segments, the operations still in
+ * flight in the oldest one are copied to the new one, so that a stuck write
+ * does not keep every segment. Each record carries a CRC32: a record torn by
+ * a crash of the host ends its segment.
+ * <p>
+ * A journal which cannot be written is reported and skipped: the writes go on
+ * without it.
+ */
+@Component
+public class LedgerJournal {
+
+	private static final String SUFFIX = ".journal";
+
+	private static final byte PENDING = 1;
+
+	private static final byte DONE = 2;
+
+	/* Length and CRC of a record */
+	private static final int HEADER = 8;
+
+	private final Logger log = LoggerFactory.getLogger(LedgerJournal.class);
+
+	private final ApplicationProperties.Fabric.Journal properties;
+
+	private final Path root;
+
+	private final Object lock = new Object();
+
+	/* Operations not done yet, by sequence */
+	private final Map<Long, Entry> open = new HashMap<>();
+
+	/* Full segments, oldest first */
+	private final List<Segment> sealed = new ArrayList<>();
+
+	private Segment active;
+
+	private long nextSequence = 1;
+
+	private long nextSegment = 1;
+
+	private SortedMap<Long, Operation> recovered = new TreeMap<>();
+
+	private final ScheduledExecutorService scheduler = Executors
+			.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("fabric-journal-"));
+
+	private final Timer syncs;
+
+	private final Counter compacted;
+
+	private final Counter errors;
+
+	public LedgerJournal(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+		this.properties = applicationProperties.getFabric().getJournal();
+		this.root = Paths.get(properties.getPath());
+		this.syncs = Timer.builder("fabric.journal.sync").description("Forces of the journal to disk")
+				.register(meterRegistry);
+		this.compacted = meterRegistry.counter("fabric.journal.compacted");
+		this.errors = meterRegistry.counter("fabric.journal.errors");
+		Gauge.builder("fabric.journal.pending", this, LedgerJournal::getPending)
+				.description("Ledger writes journaled and not completed yet").register(meterRegistry);
+		Gauge.builder("fabric.journal.segments", this, LedgerJournal::getSegments)
+				.description("Segment files of the journal").register(meterRegistry);
+	}
+
+	/**
+	 * Read the segments left by the previous run, then start a new one.
+	 *
+	 * @throws IOException
+	 */
+	@PostConstruct
+	public void open() throws IOException {
+		if (!properties.isEnabled()) {
+			return;
+		}
+		Files.createDirectories(root);
+		List<Path> files;
+		try (Stream<Path> list = Files.list(root)) {
+			files = list.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).sorted()
+					.collect(Collectors.toList());
+		}
+		synchronized (lock) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				Segment segment = new Segment(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())), file,
+						null);
+				nextSegment = Math.max(nextSegment, segment.number + 1);
+				read(segment, ByteBuffer.wrap(Files.readAllBytes(file)));
+				sealed.add(segment);
+			}
+			trim();
+			open.forEach((sequence, entry) -> recovered.put(sequence, entry.operation));
+			active = create(properties.getSegmentSize());
+		}
+		if (!recovered.isEmpty()) {
+			log.warn("Journal holds {} ledger writes the previous run never completed", recovered.size());
+		}
+		scheduler.scheduleWithFixedDelay(this::syncPass, properties.getSyncDelayMs(), properties.getSyncDelayMs(),
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Journal an operation about to be sent.
+	 *
+	 * @param operation
+	 * @return the sequence to mark done, 0 when not journaled
+	 */
+	public long append(Operation operation) {
+		if (!properties.isEnabled()) {
+			return 0;
+		}
+		synchronized (lock) {
+			long sequence = nextSequence++;
+			try {
+				write(record(PENDING, sequence, operation));
+			} catch (IOException e) {
+				errors.increment();
+				log.error("Cannot journal {}: {}", operation, e.toString());
+				return 0;
+			}
+			open.put(sequence, new Entry(operation, active));
+			active.open++;
+			return sequence;
+		}
+	}
+
+	/**
+	 * Mark an operation done, whatever its outcome: its caller got it.
+	 *
+	 * @param sequence
+	 *            as returned by {@link #append(Operation)}
+	 */
+	public void done(long sequence) {
+		if (sequence <= 0) {
+			return;
+		}
+		synchronized (lock) {
+			Entry entry = open.remove(sequence);
+			if (entry == null) {
+				return;
+			}
+			entry.segment.open--;
+			try {
+				write(record(DONE, sequence, null));
+			} catch (IOException e) {
+				errors.increment();
+				log.error("Cannot journal the completion of {}: {}", entry.operation, e.toString());
+			}
+			if (entry.segment.open == 0) {
+				trim();
+			}
+		}
+	}
+
+	/**
+	 * Hand out, once, the operations the previous run journaled and never
+	 * completed. They stay in the journal until marked done.
+	 *
+	 * @return the operations by sequence
+	 */
+	public SortedMap<Long, Operation> recover() {
+		synchronized (lock) {
+			SortedMap<Long, Operation> unfinished = recovered;
+			recovered = new TreeMap<>();
+			return unfinished;
+		}
+	}
+
+	/**
+	 * Force the records appended so far to disk. The appends go on meanwhile,
+	 * the next force takes them all.
+	 */
+	public void sync() {
+		Segment segment;
+		int position;
+		synchronized (lock) {
+			if (active == null || active.forced == active.buffer.position()) {
+				return;
+			}
+			segment = active;
+			position = segment.buffer.position();
+		}
+		long start = System.nanoTime();
+		segment.buffer.force();
+		syncs.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		synchronized (lock) {
+			segment.forced = Math.max(segment.forced, position);
+		}
+	}
+
+	@PreDestroy
+	public void close() {
+		scheduler.shutdownNow();
+		synchronized (lock) {
+			if (active != null) {
+				active.buffer.force();
+				active.forced = active.buffer.position();
+			}
+		}
+	}
+
+	private void syncPass() {
+		try {
+			sync();
+		} catch (RuntimeException e) {
+			errors.increment();
+			log.error("Cannot force the journal to disk: {}", e.toString());
+		}
+	}
+
+	public int getPending() {
+		synchronized (lock) {
+			return open.size();
+		}
+	}
+
+	public int getSegments() {
+		synchronized (lock) {
+			return sealed.size() + (active == null ? 0 : 1);
+		}
+	}
+
+	/*
+	 * Replay the records of a segment left by the previous run, up to its
+	 * first blank or torn record
+	 */
+	private void read(Segment segment, ByteBuffer buffer) {
+		while (buffer.remaining() >= HEADER) {
+			int length = buffer.getInt();
+			int crc = buffer.getInt();
+			if (length <= 0 || length > buffer.remaining()) {
+				break;
+			}
+			byte[] body = new byte[length];
+			buffer.get(body);
+			if (crc(body) != crc) {
+				log.warn("Torn record in journal segment {}, ignoring the rest of it", segment.file);
+				break;
+			}
+			ByteBuffer record = ByteBuffer.wrap(body);
+			byte type = record.get();
+			long sequence = record.getLong();
+			nextSequence = Math.max(nextSequence, sequence + 1);
+			if (type == PENDING) {
+				/* A copy made by a compaction replaces the original */
+				Entry previous = open.put(sequence, new Entry(operation(record), segment));
+				if (previous != null) {
+					previous.segment.open--;
+				}
+				segment.open++;
+			} else {
+				Entry entry = open.remove(sequence);
+				if (entry != null) {
+					entry.segment.open--;
+				}
+			}
+		}
+	}
+
+	private void write(byte[] body) throws IOException {
+		if (active.buffer.remaining() < HEADER + body.length) {
+			roll(HEADER + body.length);
+		}
+		put(active, body);
+	}
+
+	/*
+	 * The length goes last: a record half written by a dying JVM ends the
+	 * segment
+	 */
+	private static void put(Segment segment, byte[] body) {
+		MappedByteBuffer buffer = segment.buffer;
+		int position = buffer.position();
+		buffer.position(position + 4);
+		buffer.putInt(crc(body)).put(body);
+		buffer.putInt(position, body.length);
+	}
+
+	/*
+	 * Seal the full segment and start a new one of at least the given size,
+	 * copying the operations still open in the oldest segment when too many
+	 * are kept
+	 */
+	private void roll(int size) throws IOException {
+		Segment full = active;
+		full.buffer.force();
+		full.forced = full.buffer.position();
+		sealed.add(full);
+
+		Segment oldest = sealed.size() > properties.getMaxSegments() ? sealed.remove(0) : null;
+		List<Entry> moved = new ArrayList<>();
+		List<byte[]> copies = new ArrayList<>();
+		int needed = size;
+		if (oldest != null) {
+			for (Map.Entry<Long, Entry> entry : open.entrySet()) {
+				if (entry.getValue().segment == oldest) {
+					byte[] copy = record(PENDING, entry.getKey(), entry.getValue().operation);
+					moved.add(entry.getValue());
+					copies.add(copy);
+					needed += HEADER + copy.length;
+				}
+			}
+		}
+		active = create(Math.max(properties.getSegmentSize(), needed));
+		if (oldest != null) {
+			copies.forEach(copy -> put(active, copy));
+			moved.forEach(entry -> entry.segment = active);
+			active.open += moved.size();
+			active.buffer.force();
+			active.forced = active.buffer.position();
+			delete(oldest);
+			compacted.increment(moved.size());
+			log.debug("Copied {} ledger writes in flight out of journal segment {}", moved.size(), oldest.file);
+		}
+		trim();
+	}
+
+	/*
+	 * Delete the oldest segments once their operations are all done; a
+	 * segment may hold the done marks of the older ones, so they go in order
+	 */
+	private void trim() {
+		while (!sealed.isEmpty() && sealed.get(0).open == 0) {
+			delete(sealed.remove(0));
+		}
+	}
+
+	private Segment create(int size) throws IOException {
+		long number = nextSegment++;
+		Path file = root.resolve(String.format("%020d%s", number, SUFFIX));
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			return new Segment(number, file, channel.map(MapMode.READ_WRITE, 0, size));
+		}
+	}
+
+	private void delete(Segment segment) {
+		try {
+			Files.deleteIfExists(segment.file);
+		} catch (IOException e) {
+			log.warn("Cannot delete journal segment {}: {}", segment.file, e.toString());
+		}
+	}
+
+	/*
+	 * type, sequence, and for a pending operation: function, entity and value
+	 */
+	private static byte[] record(byte type, long sequence, Operation operation) {
+		if (operation == null) {
+			return ByteBuffer.allocate(9).put(type).putLong(sequence).array();
+		}
+		byte[] function = operation.getFunction().getBytes(UTF_8);
+		byte[] entity = operation.getEntity().getBytes(UTF_8);
+		byte[] value = operation.getValue() == null ? null : operation.getValue().getBytes(UTF_8);
+		ByteBuffer body = ByteBuffer.allocate(9 + 12 + function.length + entity.length
+				+ (value == null ? 0 : value.length));
+		body.put(type).putLong(sequence);
+		body.putInt(function.length).put(function);
+		body.putInt(entity.length).put(entity);
+		if (value == null) {
+			body.putInt(-1);
+		} else {
+			body.putInt(value.length).put(value);
+		}
+		return body.array();
+	}
+
+	private static Operation operation(ByteBuffer record) {
+		String function = string(record);
+		String entity = string(record);
+		String value = string(record);
+		switch (function) {
+		case "add":
+			return Operation.add(entity, value);
+		case "set":
+			return Operation.set(entity, value);
+		default:
+			return Operation.delete(entity);
+		}
+	}
+
+	private static String string(ByteBuffer record) {
+		int length = record.getInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		record.get(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	private static int crc(byte[] body) {
+		CRC32 crc = new CRC32();
+		crc.update(body, 0, body.length);
+		return (int) crc.getValue();
+	}
+
+	private static final class Segment {
+
+		private final long number;
+		private final Path file;
+		/* Null for the segments of the previous run */
+		private final MappedByteBuffer buffer;
+		/* Operations appended here and not done yet */
+		private int open;
+		/* Position up to which the records are on disk */
+		private int forced;
+
+		Segment(long number, Path file, MappedByteBuffer buffer) {
+			this.number = number;
+			this.file = file;
+			this.buffer = buffer;
+		}
+	}
+
+	private static final class Entry {
+
+		private final Operation operation;
+		private Segment segment;
+
+		Entry(Operation operation, Segment segment) {
+			this.operation = operation;
+			this.segment = segment;
+		}
+	}
+
+}
@@ -0,0 +1,269 @@
+package blog.network;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import blog.config.ApplicationProperties;
+import blog.network.request.GetHistory;
+import blog.network.request.GetMany;
+import blog.network.request.GetPage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Batched reads of the world state.
+ * <p>
+ * The keys are split into chunks of {@code chunk-size}, each read by a single
+ * {@link GetMany} query; the chunks are queried in parallel on the executor of
+ * the gateway, so reading a page of entities costs one round-trip per chunk
+ * instead of one per entity.
+ * <p>
+ * Scans, by {@link CompositeKey} prefix or by range of simple keys, are
+ * streams pulling one page of {@code page-size} keys at a time, when the
+ * previous one is consumed: walking the whole ledger holds a single page in
+ * memory, and a stream that is not consumed to the end stops querying.
+ */
+@Component
+public class LedgerReader {
+
+	/**
+	 * Name of the cache of the history pages.
+	 */
+	public static final String HISTORY_CACHE = "blog.network.LedgerReader.history";
+
+	private final FabricGateway gateway;
+
+	private final int chunkSize;
+
+	private final int pageSize;
+
+	private final Counter chunks;
+
+	private final Counter pages;
+
+	private final Counter cachedPages;
+
+	private final Cache historyPages;
+
+	public LedgerReader(FabricGateway gateway, ApplicationProperties applicationProperties,
+			MeterRegistry meterRegistry, CacheManager cacheManager) {
+		this.gateway = gateway;
+		this.chunkSize = Math.max(1, applicationProperties.getFabric().getRead().getChunkSize());
+		this.pageSize = Math.max(1, applicationProperties.getFabric().getRead().getPageSize());
+		this.chunks = meterRegistry.counter("fabric.read.chunks");
+		this.pages = meterRegistry.counter("fabric.read.pages");
+		this.cachedPages = meterRegistry.counter("fabric.read.pages.cached");
+		this.historyPages = cacheManager.getCache(HISTORY_CACHE);
+	}
+
+	/**
+	 * Read the states of keys without blocking the caller.
+	 *
+	 * @param keys
+	 * @return a future completed with the states by key, missing keys left
+	 *         out, or completed exceptionally if a chunk could not be read
+	 */
+	public CompletableFuture<Map<String, String>> getManyAsync(Collection<String> keys) {
+		List<String> distinct = new ArrayList<>(new LinkedHashSet<>(keys));
+		List<CompletableFuture<Map<String, String>>> reads = new ArrayList<>();
+		for (int from = 0; from < distinct.size(); from += chunkSize) {
+			List<String> chunk = distinct.subList(from, Math.min(from + chunkSize, distinct.size()));
+			reads.add(CompletableFuture.supplyAsync(() -> read(chunk), gateway.getExecutor()));
+		}
+		return CompletableFuture.allOf(reads.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+			Map<String, String> states = new HashMap<>();
+			for (CompletableFuture<Map<String, String>> read : reads) {
+				read.join().forEach((key, state) -> {
+					if (state != null) {
+						states.put(key, state);
+					}
+				});
+			}
+			return states;
+		});
+	}
+
+	/**
+	 * Read the states of keys.
+	 *
+	 * @param keys
+	 * @return the states by key, missing keys left out
+	 * @throws Exception
+	 *             if a chunk could not be read
+	 */
+	public Map<String, String> getMany(Collection<String> keys) throws Exception {
+		try {
+			return getManyAsync(keys).get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+			throw cause instanceof Exception ? (Exception) cause : e;
+		}
+	}
+
+	/**
+	 * Scan the composite keys of an object type, in the order of the keys.
+	 *
+	 * @param objectType
+	 * @param attributes
+	 *            the first attributes of the keys, none to scan the whole type
+	 * @return a lazy stream of the keys, in their readable form, and their
+	 *         states; a page that cannot be read fails the stream with an
+	 *         IllegalStateException
+	 */
+	public Stream<Map.Entry<String, String>> scan(String objectType, Object... attributes) {
+		List<String> arguments = new ArrayList<>();
+		arguments.add(objectType);
+		for (Object attribute : attributes) {
+			arguments.add(attribute.toString());
+		}
+		return pages(GetPage.BY_PARTIAL_KEY, arguments);
+	}
+
+	/**
+	 * Scan the simple keys of a range, in the order of the keys; composite keys
+	 * are never part of a range.
+	 *
+	 * @param startKey
+	 *            included, empty for no bound
+	 * @param endKey
+	 *            excluded, empty for no bound
+	 * @return a lazy stream of the keys and their states; a page that cannot
+	 *         be read fails the stream with an IllegalStateException
+	 */
+	public Stream<Map.Entry<String, String>> range(String startKey, String endKey) {
+		List<String> arguments = new ArrayList<>();
+		arguments.add(startKey);
+		arguments.add(endKey);
+		return pages(GetPage.BY_RANGE, arguments);
+	}
+
+	/**
+	 * Read the history of a key, oldest write first.
+	 * <p>
+	 * The history of a key only grows, so a page followed by another one
+	 * never changes: such pages are kept, decoded, in a bounded cache, and
+	 * reading the history of a key again only queries its last page.
+	 *
+	 * @param key
+	 * @return a lazy stream of the writes of the key; a page that cannot be
+	 *         read fails the stream with an IllegalStateException
+	 */
+	public Stream<KeyModification> history(String key) {
+		return StreamSupport.stream(new Pages<KeyModification>("history of " + key, bookmark -> {
+			String cacheKey = key + '\n' + pageSize + '\n' + bookmark;
+			@SuppressWarnings("unchecked")
+			Page<KeyModification> page = historyPages.get(cacheKey, Page.class);
+			if (page != null) {
+				cachedPages.increment();
+				return page;
+			}
+			GetHistory request = new GetHistory(gateway, key, pageSize, bookmark);
+			request.send();
+			pages.increment();
+			page = new Page<>(Collections.unmodifiableList(request.modifications), request.bookmark);
+			if (!page.bookmark.isEmpty()) {
+				historyPages.put(cacheKey, page);
+			}
+			return page;
+		}), false);
+	}
+
+	private Stream<Map.Entry<String, String>> pages(String function, List<String> arguments) {
+		String[] args = arguments.toArray(new String[0]);
+		return StreamSupport.stream(new Pages<Map.Entry<String, String>>(function, bookmark -> {
+			GetPage request = new GetPage(gateway, function, pageSize, bookmark, args);
+			request.send();
+			pages.increment();
+			return new Page<>(new ArrayList<>(request.states.entrySet()), request.bookmark);
+		}), false);
+	}
+
+	private Map<String, String> read(List<String> chunk) {
+		try {
+			GetMany request = new GetMany(gateway, chunk);
+			request.send();
+			chunks.increment();
+			return request.states;
+		} catch (Exception e) {
+			throw new CompletionException(e);
+		}
+	}
+
+	/*
+	 * A page of a scan and the bookmark of the next one
+	 */
+	private static final class Page<T> {
+
+		private final List<T> items;
+		private final String bookmark;
+
+		Page(List<T> items, String bookmark) {
+			this.items = items;
+			this.bookmark = bookmark;
+		}
+	}
+
+	@FunctionalInterface
+	private interface PageQuery<T> {
+
+		Page<T> read(String bookmark) throws Exception;
+	}
+
+	/*
+	 * Pulls the next page when the current one is consumed, until a page
+	 * comes back without bookmark or short
+	 */
+	private final class Pages<T> extends Spliterators.AbstractSpliterator<T> {
+
+		private final String name;
+		private final PageQuery<T> query;
+		private Iterator<T> page = Collections.emptyIterator();
+		private String bookmark = "";
+		private boolean last;
+
+		Pages(String name, PageQuery<T> query) {
+			super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+			this.name = name;
+			this.query = query;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			while (!page.hasNext()) {
+				if (last) {
+					return false;
+				}
+				Page<T> read;
+				try {
+					read = query.read(bookmark);
+				} catch (Exception e) {
+					throw new IllegalStateException("Cannot read the page of " + name + " after \"" + bookmark + "\"", e);
+				}
+				page = read.items.iterator();
+				bookmark = read.bookmark;
+				last = bookmark.isEmpty() || read.items.size() < pageSize;
+			}
+			action.accept(page.next());
+			return true;
+		}
+	}
+
+}
@@ -0,0 +1,25 @@
+package blog.network;
+
+/**
+ * Transaction refused by the {@link AdmissionController} because too many are
+ * already in flight: the channel is healthy, the caller should retry later.
+ */
+public class LedgerSaturatedException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long retryAfterSeconds;
+
+	public LedgerSaturatedException(String message, long retryAfterSeconds) {
+		super(message);
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	/**
+	 * @return the delay after which a retry is likely to be admitted
+	 */
+	public long getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+
+}
@@ -0,0 +1,140 @@
+package blog.network;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Handle on a submitted chaincode transaction.
+ * <p>
+ * The transaction goes through three stages, each exposed as a future that
+ * completes with this handle: {@link #endorsed()} once the peers have
+ * endorsed the proposal, {@link #ordered()} once the orderer has accepted it
+ * and {@link #committed()} once a peer has committed it. The committed future
+ * completes normally for valid and invalidated transactions alike; use
+ * {@link #isValid()} and {@link #getValidationCode()} to tell them apart. Any
+ * other failure (rejected proposal, chaincode answer, ordering error)
+ * completes the pending futures exceptionally.
+ * <p>
+ * The stage only moves forward: a handle endorsed again after a retry keeps
+ * its later stage, taking the new transaction ID and payload, and a committed,
+ * invalidated or failed transaction does not change anymore.
+ */
+public class LedgerTransaction {
+
+	public enum Stage {
+		SUBMITTED, ENDORSED, ORDERED, COMMITTED, INVALIDATED, FAILED
+	}
+
+	public static final String VALID = "VALID";
+
+	private final CompletableFuture<LedgerTransaction> endorsed = new CompletableFuture<>();
+	private final CompletableFuture<LedgerTransaction> ordered = new CompletableFuture<>();
+	private final CompletableFuture<LedgerTransaction> committed = new CompletableFuture<>();
+
+	private volatile Stage stage = Stage.SUBMITTED;
+	private volatile String transactionId;
+	private volatile String payload;
+	private volatile String validationCode;
+	private volatile long blockNumber = -1;
+
+	public CompletableFuture<LedgerTransaction> endorsed() {
+		return endorsed;
+	}
+
+	public CompletableFuture<LedgerTransaction> ordered() {
+		return ordered;
+	}
+
+	public CompletableFuture<LedgerTransaction> committed() {
+		return committed;
+	}
+
+	public Stage getStage() {
+		return stage;
+	}
+
+	public String getTransactionId() {
+		return transactionId;
+	}
+
+	/**
+	 * @return the chaincode response payload returned by the endorsers
+	 */
+	public String getPayload() {
+		return payload;
+	}
+
+	/**
+	 * @return the validation code set by the committing peer, or null before
+	 *         commit
+	 */
+	public String getValidationCode() {
+		return validationCode;
+	}
+
+	public long getBlockNumber() {
+		return blockNumber;
+	}
+
+	public boolean isValid() {
+		return VALID.equals(validationCode);
+	}
+
+	public void onEndorsed(String transactionId, String payload) {
+		synchronized (this) {
+			if (isFinal(stage)) {
+				return;
+			}
+			this.transactionId = transactionId;
+			this.payload = payload;
+			advance(Stage.ENDORSED);
+		}
+		endorsed.complete(this);
+	}
+
+	public void onOrdered() {
+		synchronized (this) {
+			advance(Stage.ORDERED);
+		}
+		ordered.complete(this);
+	}
+
+	public void onCommitted(String validationCode, long blockNumber) {
+		synchronized (this) {
+			if (isFinal(stage)) {
+				return;
+			}
+			this.validationCode = validationCode;
+			this.blockNumber = blockNumber;
+			advance(VALID.equals(validationCode) ? Stage.COMMITTED : Stage.INVALIDATED);
+		}
+		ordered.complete(this);
+		committed.complete(this);
+	}
+
+	public void onFailed(Throwable cause) {
+		synchronized (this) {
+			advance(Stage.FAILED);
+		}
+		endorsed.completeExceptionally(cause);
+		ordered.completeExceptionally(cause);
+		committed.completeExceptionally(cause);
+	}
+
+	/* Only move to a later stage, never out of a final one */
+	private void advance(Stage next) {
+		if (!isFinal(stage) && next.compareTo(stage) > 0) {
+			stage = next;
+		}
+	}
+
+	private static boolean isFinal(Stage stage) {
+		return stage == Stage.COMMITTED || stage == Stage.INVALIDATED || stage == Stage.FAILED;
+	}
+
+	@Override
+	public String toString() {
+		return "LedgerTransaction{" + "transactionId='" + transactionId + "'" + ", stage=" + stage
+				+ ", validationCode=" + validationCode + ", blockNumber=" + blockNumber + "}";
+	}
+
+}
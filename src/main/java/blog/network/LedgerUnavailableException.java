@@ -0,0 +1,26 @@
+package blog.network;
+
+/**
+ * Call refused by the {@link CircuitBreaker} because the network keeps
+ * failing or answering too slowly: the caller should not wait for it, but
+ * park its write or serve its read locally.
+ */
+public class LedgerUnavailableException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long retryAfterSeconds;
+
+	public LedgerUnavailableException(String message, long retryAfterSeconds) {
+		super(message);
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	/**
+	 * @return the delay after which the breaker lets calls through again
+	 */
+	public long getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+
+}
@@ -0,0 +1,389 @@
+package blog.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+
+import org.hyperledger.fabric.sdk.Peer.PeerRole;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.yaml.snakeyaml.Yaml;
+
+/**
+ * The nodes of the channel the application joins, as described by a
+ * connection profile.
+ * <p>
+ * The profile follows the common format of the Fabric SDKs, in YAML or JSON:
+ * the {@code client} organization, whose first CA with a registrar enrolls the
+ * admin, the {@code channels} with their orderers and the roles of their
+ * peers, the {@code organizations} owning the peers, then the
+ * {@code orderers}, {@code peers} and {@code certificateAuthorities} with
+ * their URLs. The {@code grpcOptions} of a node and the path of its
+ * {@code tlsCACerts} become the properties of the SDK node.
+ * <p>
+ * Topologies are values: two reads of an unchanged profile are equal.
+ */
+public final class NetworkTopology {
+
+	private static final Map<String, PeerRole> ROLES = new LinkedHashMap<>();
+
+	static {
+		ROLES.put("endorsingPeer", PeerRole.ENDORSING_PEER);
+		ROLES.put("chaincodeQuery", PeerRole.CHAINCODE_QUERY);
+		ROLES.put("ledgerQuery", PeerRole.LEDGER_QUERY);
+		ROLES.put("eventSource", PeerRole.EVENT_SOURCE);
+		ROLES.put("discover", PeerRole.SERVICE_DISCOVERY);
+	}
+
+	private final String channel;
+
+	private final String mspId;
+
+	private final CertificateAuthority certificateAuthority;
+
+	private final List<Node> orderers;
+
+	private final List<Node> peers;
+
+	private NetworkTopology(String channel, String mspId, CertificateAuthority certificateAuthority,
+			List<Node> orderers, List<Node> peers) {
+		this.channel = channel;
+		this.mspId = mspId;
+		this.certificateAuthority = certificateAuthority;
+		this.orderers = Collections.unmodifiableList(orderers);
+		this.peers = Collections.unmodifiableList(peers);
+	}
+
+	/**
+	 * Read a connection profile.
+	 *
+	 * @param location
+	 *            a Spring resource location, such as
+	 *            {@code classpath:config/fabric/connection-profile.yaml} or
+	 *            {@code file:/etc/blogchain/connection-profile.json}
+	 * @param channel
+	 *            the channel to join, null if the profile has a single one
+	 * @return the topology of the channel
+	 * @throws IOException
+	 *             if the profile cannot be read
+	 * @throws IllegalStateException
+	 *             if the profile is invalid
+	 */
+	public static NetworkTopology load(String location, String channel) throws IOException {
+		Resource resource = new DefaultResourceLoader().getResource(location);
+		try (InputStream in = resource.getInputStream()) {
+			/* JSON is a subset of YAML */
+			Object profile = new Yaml().load(in);
+			return parse(map(profile, location), channel);
+		} catch (IllegalStateException e) {
+			throw new IllegalStateException("Invalid connection profile " + location + ": " + e.getMessage(), e);
+		}
+	}
+
+	static NetworkTopology parse(Map<String, Object> profile, String channel) {
+		Map<String, Object> channels = map(profile.get("channels"), "channels");
+		if (channel == null || channel.isEmpty()) {
+			if (channels.size() != 1) {
+				throw new IllegalStateException("Expecting a single channel, or the channel to join, in " + channels.keySet());
+			}
+			channel = channels.keySet().iterator().next();
+		}
+		Map<String, Object> channelNodes = map(channels.get(channel), "channel " + channel);
+		Map<String, Object> organizations = map(profile.get("organizations"), "organizations");
+		Map<String, Object> ordererUrls = map(profile.get("orderers"), "orderers");
+		Map<String, Object> peerUrls = map(profile.get("peers"), "peers");
+
+		/* The client organization and its CA */
+		String clientOrg = string(map(profile.get("client"), "client").get("organization"), "client organization");
+		Map<String, Object> organization = map(organizations.get(clientOrg), "organization " + clientOrg);
+		String mspId = string(organization.get("mspid"), "mspid of " + clientOrg);
+		CertificateAuthority certificateAuthority = null;
+		Map<String, Object> authorities = profile.get("certificateAuthorities") == null ? Collections.emptyMap()
+				: map(profile.get("certificateAuthorities"), "certificateAuthorities");
+		for (Object name : list(organization.get("certificateAuthorities"))) {
+			Map<String, Object> ca = map(authorities.get(name), "certificate authority " + name);
+			List<Object> registrars = list(ca.get("registrar"));
+			if (certificateAuthority == null && !registrars.isEmpty()) {
+				Map<String, Object> registrar = map(registrars.get(0), "registrar of " + name);
+				certificateAuthority = new CertificateAuthority(string(ca.get("url"), "url of " + name),
+						string(registrar.get("enrollId"), "enrollId of " + name),
+						string(registrar.get("enrollSecret"), "enrollSecret of " + name),
+						registrar.get("affiliation") == null ? null : registrar.get("affiliation").toString());
+			}
+		}
+		if (certificateAuthority == null) {
+			throw new IllegalStateException("No certificate authority with a registrar for " + clientOrg);
+		}
+
+		/* The orderers of the channel, all of them by default */
+		List<Node> orderers = new ArrayList<>();
+		List<Object> ordererNames = channelNodes.get("orderers") == null ? new ArrayList<>(ordererUrls.keySet())
+				: list(channelNodes.get("orderers"));
+		for (Object name : ordererNames) {
+			orderers.add(node(name.toString(), null, EnumSet.noneOf(PeerRole.class), ordererUrls));
+		}
+		if (orderers.isEmpty()) {
+			throw new IllegalStateException("No orderer for channel " + channel);
+		}
+
+		/* The peers of the channel with their roles, every role by default */
+		Map<String, String> mspIds = new LinkedHashMap<>();
+		for (Object org : organizations.values()) {
+			Map<String, Object> info = map(org, "organization");
+			for (Object peer : list(info.get("peers"))) {
+				mspIds.put(peer.toString(), info.get("mspid") == null ? null : info.get("mspid").toString());
+			}
+		}
+		Map<String, Object> channelPeers = channelNodes.get("peers") == null ? new LinkedHashMap<>(peerUrls)
+				: map(channelNodes.get("peers"), "peers of channel " + channel);
+		List<Node> peers = new ArrayList<>();
+		for (Map.Entry<String, Object> entry : channelPeers.entrySet()) {
+			Map<String, Object> options = channelNodes.get("peers") == null || entry.getValue() == null
+					? Collections.emptyMap() : map(entry.getValue(), "peer " + entry.getKey());
+			EnumSet<PeerRole> roles = EnumSet.noneOf(PeerRole.class);
+			ROLES.forEach((option, role) -> {
+				if (!Boolean.FALSE.equals(options.get(option))) {
+					roles.add(role);
+				}
+			});
+			peers.add(node(entry.getKey(), mspIds.get(entry.getKey()), roles, peerUrls));
+		}
+		if (peers.isEmpty()) {
+			throw new IllegalStateException("No peer for channel " + channel);
+		}
+		return new NetworkTopology(channel, mspId, certificateAuthority, orderers, peers);
+	}
+
+	public String getChannel() {
+		return channel;
+	}
+
+	/**
+	 * @return the MSP of the client organization
+	 */
+	public String getMspId() {
+		return mspId;
+	}
+
+	/**
+	 * @return the CA of the client organization
+	 */
+	public CertificateAuthority getCertificateAuthority() {
+		return certificateAuthority;
+	}
+
+	/**
+	 * @return the orderers of the channel, in the order of the profile
+	 */
+	public List<Node> getOrderers() {
+		return orderers;
+	}
+
+	/**
+	 * @return the peers of the channel, in the order of the profile
+	 */
+	public List<Node> getPeers() {
+		return peers;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof NetworkTopology)) {
+			return false;
+		}
+		NetworkTopology other = (NetworkTopology) o;
+		return channel.equals(other.channel) && mspId.equals(other.mspId)
+				&& certificateAuthority.equals(other.certificateAuthority) && orderers.equals(other.orderers)
+				&& peers.equals(other.peers);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(channel, mspId, certificateAuthority, orderers, peers);
+	}
+
+	@Override
+	public String toString() {
+		return "NetworkTopology{channel=" + channel + ", orderers=" + orderers + ", peers=" + peers + "}";
+	}
+
+	private static Node node(String name, String mspId, EnumSet<PeerRole> roles, Map<String, Object> nodes) {
+		Map<String, Object> node = map(nodes.get(name), "node " + name);
+		Properties properties = new Properties();
+		if (node.get("grpcOptions") != null) {
+			map(node.get("grpcOptions"), "grpcOptions of " + name)
+					.forEach((key, value) -> properties.put(key, value.toString()));
+		}
+		if (node.get("tlsCACerts") != null) {
+			Object path = map(node.get("tlsCACerts"), "tlsCACerts of " + name).get("path");
+			if (path != null) {
+				properties.put("pemFile", path.toString());
+			}
+		}
+		return new Node(name, string(node.get("url"), "url of " + name), mspId, roles, properties);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> map(Object value, String what) {
+		if (!(value instanceof Map)) {
+			throw new IllegalStateException("Missing " + what);
+		}
+		return (Map<String, Object>) value;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Object> list(Object value) {
+		return value instanceof List ? (List<Object>) value : Collections.emptyList();
+	}
+
+	private static String string(Object value, String what) {
+		if (value == null) {
+			throw new IllegalStateException("Missing " + what);
+		}
+		return value.toString();
+	}
+
+	/**
+	 * An orderer or a peer of the channel.
+	 */
+	public static final class Node {
+
+		private final String name;
+
+		private final String url;
+
+		private final String mspId;
+
+		private final EnumSet<PeerRole> roles;
+
+		private final Properties properties;
+
+		Node(String name, String url, String mspId, EnumSet<PeerRole> roles, Properties properties) {
+			this.name = name;
+			this.url = url;
+			this.mspId = mspId;
+			this.roles = roles;
+			this.properties = properties;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getUrl() {
+			return url;
+		}
+
+		/**
+		 * @return the MSP of the organization of a peer, null for an orderer
+		 */
+		public String getMspId() {
+			return mspId;
+		}
+
+		/**
+		 * @return the roles of a peer in the channel
+		 */
+		public EnumSet<PeerRole> getRoles() {
+			return roles.clone();
+		}
+
+		/**
+		 * @return a copy of the SDK properties of the node
+		 */
+		public Properties getProperties() {
+			Properties copy = new Properties();
+			copy.putAll(properties);
+			return copy;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Node)) {
+				return false;
+			}
+			Node other = (Node) o;
+			return name.equals(other.name) && url.equals(other.url) && Objects.equals(mspId, other.mspId)
+					&& roles.equals(other.roles) && properties.equals(other.properties);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(name, url, mspId, roles, properties);
+		}
+
+		@Override
+		public String toString() {
+			return name + "=" + url;
+		}
+	}
+
+	/**
+	 * The CA enrolling the admin of the client organization.
+	 */
+	public static final class CertificateAuthority {
+
+		private final String url;
+
+		private final String enrollId;
+
+		private final String enrollSecret;
+
+		private final String affiliation;
+
+		CertificateAuthority(String url, String enrollId, String enrollSecret, String affiliation) {
+			this.url = url;
+			this.enrollId = enrollId;
+			this.enrollSecret = enrollSecret;
+			this.affiliation = affiliation;
+		}
+
+		public String getUrl() {
+			return url;
+		}
+
+		public String getEnrollId() {
+			return enrollId;
+		}
+
+		public String getEnrollSecret() {
+			return enrollSecret;
+		}
+
+		public String getAffiliation() {
+			return affiliation;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof CertificateAuthority)) {
+				return false;
+			}
+			CertificateAuthority other = (CertificateAuthority) o;
+			return url.equals(other.url) && enrollId.equals(other.enrollId) && enrollSecret.equals(other.enrollSecret)
+					&& Objects.equals(affiliation, other.affiliation);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(url, enrollId, enrollSecret, affiliation);
+		}
+	}
+
+}
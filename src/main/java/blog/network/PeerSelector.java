@@ -0,0 +1,270 @@
+package blog.network;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import blog.config.ApplicationProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Choice of the peers serving the queries and endorsing the transactions.
+ * <p>
+ * Each peer has a moving average of its latency and of its error rate, and a
+ * count of the requests it is serving. A query goes to a single peer: the
+ * better of two peers drawn at random, so that the load spreads over every
+ * healthy peer while favoring the fast ones. An endorsement goes to the best
+ * peer of each of the {@code endorsing-orgs} best organizations, the minimum
+ * set satisfying the policy. A peer failing {@code eject-after-failures}
+ * times in a row is ejected for {@code ejection-ms}; it then serves a single
+ * probe, and is ejected again for twice as long if the probe fails.
+ * <p>
+ * Only failures to reach a peer count: a chaincode error is an answer.
+ * Statistics are kept by peer name, across reconnections.
+ */
+public class PeerSelector {
+
+	private final Logger log = LoggerFactory.getLogger(PeerSelector.class);
+
+	/* Weight of the error rate in the score of a peer */
+	private static final double ERROR_PENALTY = 10;
+
+	private final ApplicationProperties.Fabric.Peers properties;
+
+	private final MeterRegistry meterRegistry;
+
+	private final LongSupplier clock;
+
+	private final Map<String, Stats> peers = new ConcurrentHashMap<>();
+
+	public PeerSelector(ApplicationProperties.Fabric.Peers properties, MeterRegistry meterRegistry) {
+		this(properties, meterRegistry, System::nanoTime);
+	}
+
+	PeerSelector(ApplicationProperties.Fabric.Peers properties, MeterRegistry meterRegistry, LongSupplier clock) {
+		this.properties = properties;
+		this.meterRegistry = meterRegistry;
+		this.clock = clock;
+	}
+
+	/**
+	 * Declare the organization of a peer, unknown peers being alone in their
+	 * own organization.
+	 *
+	 * @param peer
+	 * @param mspId
+	 */
+	public void register(String peer, String mspId) {
+		stats(peer).mspId = mspId;
+	}
+
+	/**
+	 * Choose the peer of a query, counted as busy until its outcome is
+	 * reported.
+	 *
+	 * @param candidates
+	 *            the peers able to answer
+	 * @return the chosen peer, empty if there is no candidate
+	 */
+	public Optional<String> selectForQuery(Collection<String> candidates) {
+		synchronized (this) {
+			long now = clock.getAsLong();
+			Optional<String> chosen = probe(candidates, now);
+			if (!chosen.isPresent()) {
+				List<String> healthy = healthy(candidates);
+				if (healthy.isEmpty()) {
+					chosen = leastEjected(candidates);
+				} else if (healthy.size() == 1) {
+					chosen = Optional.of(healthy.get(0));
+				} else {
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					int first = random.nextInt(healthy.size());
+					int second = random.nextInt(healthy.size() - 1);
+					if (second >= first) {
+						second++;
+					}
+					String a = healthy.get(first);
+					String b = healthy.get(second);
+					chosen = Optional.of(score(a) <= score(b) ? a : b);
+				}
+			}
+			chosen.ifPresent(peer -> stats(peer).pending++);
+			return chosen;
+		}
+	}
+
+	/**
+	 * Choose the endorsers of a transaction: the best peer of each of the best
+	 * organizations, as many as the policy requires. They are counted as busy
+	 * until their outcome is reported.
+	 *
+	 * @param candidates
+	 *            the peers able to endorse
+	 * @return the chosen peers
+	 */
+	public List<String> selectForEndorsement(Collection<String> candidates) {
+		synchronized (this) {
+			Map<String, String> bestByOrg = new LinkedHashMap<>();
+			for (String peer : healthy(candidates)) {
+				bestByOrg.merge(org(peer), peer, (current, other) -> score(other) < score(current) ? other : current);
+			}
+			List<String> endorsers = new ArrayList<>(bestByOrg.values());
+			endorsers.sort(Comparator.comparingDouble(this::score));
+			int required = Math.max(1, properties.getEndorsingOrgs());
+			if (endorsers.size() > required) {
+				endorsers = new ArrayList<>(endorsers.subList(0, required));
+			}
+			if (endorsers.size() < required) {
+				// not enough healthy organizations, try the ejected peers of the others
+				List<String> ejected = new ArrayList<>(candidates);
+				ejected.sort(Comparator.comparingLong(peer -> stats(peer).ejectedUntil));
+				for (String peer : ejected) {
+					if (endorsers.size() < required && endorsers.stream().noneMatch(e -> org(e).equals(org(peer)))) {
+						endorsers.add(peer);
+					}
+				}
+			}
+			endorsers.forEach(peer -> stats(peer).pending++);
+			return endorsers;
+		}
+	}
+
+	/**
+	 * Report a request a peer answered.
+	 *
+	 * @param peer
+	 * @param latencyNanos
+	 */
+	public void onSuccess(String peer, long latencyNanos) {
+		synchronized (this) {
+			Stats stats = stats(peer);
+			double weight = properties.getEwmaWeight();
+			stats.latencyNanos = stats.samples == 0 ? latencyNanos
+					: weight * latencyNanos + (1 - weight) * stats.latencyNanos;
+			stats.errorRate = (1 - weight) * stats.errorRate;
+			stats.samples++;
+			stats.pending = Math.max(0, stats.pending - 1);
+			stats.failures = 0;
+			if (stats.ejectedUntil != 0) {
+				log.info("Peer {} answered its probe, back in rotation", peer);
+				stats.ejectedUntil = 0;
+				stats.ejections = 0;
+			}
+			stats.probing = false;
+		}
+	}
+
+	/**
+	 * Report a request a peer could not serve.
+	 *
+	 * @param peer
+	 */
+	public void onFailure(String peer) {
+		synchronized (this) {
+			Stats stats = stats(peer);
+			double weight = properties.getEwmaWeight();
+			stats.errorRate = weight + (1 - weight) * stats.errorRate;
+			stats.pending = Math.max(0, stats.pending - 1);
+			stats.failures++;
+			if (stats.probing || stats.failures >= properties.getEjectAfterFailures()) {
+				long ejectionMs = Math.min(properties.getMaxEjectionMs(),
+						properties.getEjectionMs() << Math.min(stats.ejections, 20));
+				stats.ejectedUntil = clock.getAsLong() + TimeUnit.MILLISECONDS.toNanos(ejectionMs);
+				stats.ejections++;
+				stats.probing = false;
+				log.warn("Ejecting peer {} for {} ms after {} failures", peer, ejectionMs, stats.failures);
+			}
+		}
+	}
+
+	/**
+	 * @param peer
+	 * @return true if the peer is ejected and not due for a probe yet
+	 */
+	public synchronized boolean isEjected(String peer) {
+		Stats stats = peers.get(peer);
+		return stats != null && stats.ejectedUntil != 0 && stats.ejectedUntil - clock.getAsLong() > 0;
+	}
+
+	/*
+	 * An ejected peer whose ejection is over serves the next request alone
+	 */
+	private Optional<String> probe(Collection<String> candidates, long now) {
+		for (String peer : candidates) {
+			Stats stats = stats(peer);
+			if (stats.ejectedUntil != 0 && stats.ejectedUntil - now <= 0 && !stats.probing) {
+				stats.probing = true;
+				log.info("Probing peer {}", peer);
+				return Optional.of(peer);
+			}
+		}
+		return Optional.empty();
+	}
+
+	private List<String> healthy(Collection<String> candidates) {
+		List<String> healthy = new ArrayList<>(candidates.size());
+		for (String peer : candidates) {
+			if (stats(peer).ejectedUntil == 0) {
+				healthy.add(peer);
+			}
+		}
+		return healthy;
+	}
+
+	private Optional<String> leastEjected(Collection<String> candidates) {
+		return candidates.stream().min(Comparator.comparingLong(peer -> stats(peer).ejectedUntil));
+	}
+
+	/*
+	 * Expected cost of a request: the average latency times the requests it
+	 * would queue behind, inflated by the error rate; a peer without sample
+	 * comes first
+	 */
+	private double score(String peer) {
+		Stats stats = stats(peer);
+		return (stats.latencyNanos + 1) * (stats.pending + 1) * (1 + ERROR_PENALTY * stats.errorRate);
+	}
+
+	private String org(String peer) {
+		String mspId = stats(peer).mspId;
+		return mspId == null ? peer : mspId;
+	}
+
+	private Stats stats(String peer) {
+		return peers.computeIfAbsent(peer, name -> {
+			Stats stats = new Stats();
+			Gauge.builder("fabric.peer.latency", stats, s -> s.latencyNanos / 1e6).tag("peer", name)
+					.description("Moving average of the latency of the peer in milliseconds")
+					.register(meterRegistry);
+			Gauge.builder("fabric.peer.ejected", this, selector -> selector.isEjected(name) ? 1 : 0).tag("peer", name)
+					.description("1 while the peer is ejected, 0 otherwise").register(meterRegistry);
+			return stats;
+		});
+	}
+
+	private static final class Stats {
+
+		private volatile String mspId;
+		private double latencyNanos;
+		private double errorRate;
+		private long samples;
+		private int pending;
+		private int failures;
+		private int ejections;
+		private boolean probing;
+		private long ejectedUntil;
+	}
+
+}
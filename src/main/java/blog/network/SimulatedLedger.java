@@ -0,0 +1,493 @@
+package blog.network;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.hyperledger.fabric.sdk.exception.ProposalException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import blog.config.ApplicationProperties;
+import blog.network.request.GetHistory;
+import blog.network.request.GetMany;
+import blog.network.request.GetPage;
+
+/**
+ * In-process ledger running the simple chaincode.
+ * <p>
+ * The world state is kept in memory, and optionally saved to a file after each
+ * block. Transactions go through the same steps as on Fabric: the chaincode is
+ * simulated against the committed state at endorsement, endorsed transactions
+ * are ordered into blocks of at most {@code block-size} transactions (or
+ * whatever arrived within {@code block-timeout-ms}), and blocks are committed
+ * in order with an MVCC check of the keys read by each transaction. Each step
+ * waits for its configured latency without holding a thread, and committed
+ * blocks, with the write sets and chaincode events of their transactions, are
+ * published to the {@link BlockListener}s.
+ * <p>
+ * Blocks and the history of the keys are only kept in memory, and only the
+ * last {@code max-blocks} blocks and {@code max-history} writes of each key:
+ * after a restart from the state file, the blocks committed before the
+ * restart can no longer be read, and the history of a key starts again at its
+ * next write.
+ */
+public class SimulatedLedger implements LedgerBackend {
+
+	static final String MVCC_READ_CONFLICT = "MVCC_READ_CONFLICT";
+
+	private static final String STATE_PREFIX = "state.";
+
+	private static final String HEIGHT = "height";
+
+	private final Logger log = LoggerFactory.getLogger(SimulatedLedger.class);
+
+	private final ApplicationProperties.Fabric.Simulator properties;
+
+	private final Path file;
+
+	private final ScheduledExecutorService scheduler = Executors
+			.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("ledger-simulator-"));
+
+	private final ConcurrentNavigableMap<String, Versioned> state = new ConcurrentSkipListMap<>();
+
+	private final List<BlockListener> listeners = new CopyOnWriteArrayList<>();
+
+	private final Map<Long, LedgerBlock> blocks = new ConcurrentHashMap<>();
+
+	private final Map<String, KeyHistory> history = new ConcurrentHashMap<>();
+
+	/* Only used from the scheduler thread */
+	private List<Ordered> ordered = new ArrayList<>();
+
+	private ScheduledFuture<?> blockTimeout;
+
+	private long version;
+
+	private volatile long height;
+
+	public SimulatedLedger(ApplicationProperties.Fabric.Simulator properties) throws IOException {
+		this.properties = properties;
+		this.file = properties.getFile() == null || properties.getFile().isEmpty() ? null
+				: Paths.get(properties.getFile());
+		if (file != null && Files.exists(file)) {
+			load();
+		}
+	}
+
+	@Override
+	public LedgerTransaction submit(String function, String[] arguments, EndorsementCheck check, Executor executor) {
+		LedgerTransaction transaction = new LedgerTransaction();
+		scheduler.schedule(() -> endorse(transaction, function, arguments, check),
+				properties.getEndorsementLatencyMs(), TimeUnit.MILLISECONDS);
+		return transaction;
+	}
+
+	@Override
+	public String query(String function, String... arguments) throws Exception {
+		Thread.sleep(properties.getEndorsementLatencyMs());
+		return invoke(function, arguments, new Simulation());
+	}
+
+	@Override
+	public void addBlockListener(BlockListener listener) {
+		listeners.add(listener);
+	}
+
+	@Override
+	public void removeBlockListener(BlockListener listener) {
+		listeners.remove(listener);
+	}
+
+	@Override
+	public long getHeight() {
+		return height;
+	}
+
+	@Override
+	public LedgerBlock getBlock(long number) {
+		LedgerBlock block = blocks.get(number);
+		if (block == null) {
+			throw new IllegalArgumentException("Block " + number + " is not available, the height is " + height
+					+ " and the last " + properties.getMaxBlocks() + " blocks are kept");
+		}
+		return block;
+	}
+
+	public void shutdown() {
+		scheduler.shutdownNow();
+	}
+
+	private void endorse(LedgerTransaction transaction, String function, String[] arguments, EndorsementCheck check) {
+		Simulation simulation = new Simulation();
+		try {
+			String payload = invoke(function, arguments, simulation);
+			check.verify(payload);
+			transaction.onEndorsed(UUID.randomUUID().toString().replace("-", ""), payload);
+		} catch (Exception e) {
+			transaction.onFailed(e);
+			return;
+		}
+		scheduler.schedule(() -> order(new Ordered(transaction, simulation)), properties.getOrderingLatencyMs(),
+				TimeUnit.MILLISECONDS);
+	}
+
+	private void order(Ordered transaction) {
+		ordered.add(transaction);
+		transaction.transaction.onOrdered();
+		if (ordered.size() >= properties.getBlockSize()) {
+			cutBlock();
+		} else if (blockTimeout == null) {
+			blockTimeout = scheduler.schedule(this::cutBlock, properties.getBlockTimeoutMs(), TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void cutBlock() {
+		if (blockTimeout != null) {
+			blockTimeout.cancel(false);
+			blockTimeout = null;
+		}
+		if (ordered.isEmpty()) {
+			return;
+		}
+		List<Ordered> block = ordered;
+		ordered = new ArrayList<>();
+		scheduler.schedule(() -> commit(block), properties.getCommitLatencyMs(), TimeUnit.MILLISECONDS);
+	}
+
+	/*
+	 * Blocks are cut and committed on the scheduler thread with the same
+	 * latency, so they are committed in order
+	 */
+	private void commit(List<Ordered> block) {
+		long number = height;
+		List<LedgerBlock.Transaction> transactions = new ArrayList<>(block.size());
+		List<String> codes = new ArrayList<>(block.size());
+		for (Ordered entry : block) {
+			String code = LedgerTransaction.VALID;
+			for (Map.Entry<String, Long> read : entry.simulation.reads.entrySet()) {
+				Versioned current = state.get(read.getKey());
+				if ((current == null ? 0 : current.version) != read.getValue()) {
+					code = MVCC_READ_CONFLICT;
+					break;
+				}
+			}
+			if (LedgerTransaction.VALID.equals(code)) {
+				for (Map.Entry<String, String> write : entry.simulation.writes.entrySet()) {
+					if (write.getValue() == null) {
+						state.remove(write.getKey());
+					} else {
+						state.put(write.getKey(), new Versioned(write.getValue(), ++version));
+					}
+					history.computeIfAbsent(write.getKey(), key -> new KeyHistory())
+							.add(new KeyModification(entry.transaction.getTransactionId(),
+									entry.simulation.timestamp, write.getValue() == null, write.getValue()),
+									properties.getMaxHistory());
+				}
+			}
+			codes.add(code);
+			transactions.add(new LedgerBlock.Transaction(entry.transaction.getTransactionId(), code,
+					entry.simulation.event, entry.simulation.writes));
+		}
+		LedgerBlock committed = new LedgerBlock(number, transactions);
+		blocks.put(number, committed);
+		blocks.remove(number - Math.max(1, properties.getMaxBlocks()));
+		height = number + 1;
+		if (file != null) {
+			try {
+				save();
+			} catch (IOException e) {
+				log.warn("Cannot save the simulated ledger to {}: {}", file, e.toString());
+			}
+		}
+
+		for (BlockListener listener : listeners) {
+			try {
+				listener.onBlock(committed);
+			} catch (RuntimeException e) {
+				log.warn("Block listener failed on block {}", number, e);
+			}
+		}
+		for (int i = 0; i < block.size(); i++) {
+			block.get(i).transaction.onCommitted(codes.get(i), number);
+		}
+	}
+
+	private void load() throws IOException {
+		Properties saved = new Properties();
+		try (Reader reader = Files.newBufferedReader(file, UTF_8)) {
+			saved.load(reader);
+		}
+		for (String name : saved.stringPropertyNames()) {
+			if (name.startsWith(STATE_PREFIX)) {
+				state.put(name.substring(STATE_PREFIX.length()), new Versioned(saved.getProperty(name), ++version));
+			}
+		}
+		height = Long.parseLong(saved.getProperty(HEIGHT, "0"));
+		log.info("Loaded {} keys at height {} from {}", state.size(), height, file);
+	}
+
+	private void save() throws IOException {
+		Properties saved = new Properties();
+		saved.setProperty(HEIGHT, Long.toString(height));
+		state.forEach((key, value) -> saved.setProperty(STATE_PREFIX + key, value.value));
+		Path parent = file.toAbsolutePath().getParent();
+		Files.createDirectories(parent);
+		Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+		try (Writer writer = Files.newBufferedWriter(tmp, UTF_8)) {
+			saved.store(writer, "Simulated ledger");
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/*
+	 * simple-chaincode.go
+	 */
+	private String invoke(String function, String[] args, Simulation stub) throws ProposalException {
+		if (!function.startsWith("get") && !function.equals("history")) {
+			// the proposals of the gateway always ask for the event
+			stub.setEvent(function);
+		}
+		switch (function) {
+		case "add":
+			expect(args, 2, "Incorrect number of arguments. Expecting entity and value to add.");
+			return apply(stub, new HashMap<>(), "add", args[0], args[1]);
+		case "set":
+			expect(args, 2, "Incorrect number of arguments. Expecting entity and value to write.");
+			return apply(stub, new HashMap<>(), "set", args[0], args[1]);
+		case "delete":
+			expect(args, 1, "Incorrect number of arguments. Expecting 1");
+			return apply(stub, new HashMap<>(), "delete", args[0], null);
+		case "get":
+			expect(args, 1, "Incorrect number of arguments. Expecting entity to query");
+			String value = stub.getState(args[0]);
+			return value == null ? "NOT_FOUND" : value;
+		case "getMany":
+			if (args.length == 0) {
+				throw new ProposalException("Incorrect number of arguments. Expecting entities to query");
+			}
+			List<String> values = new ArrayList<>(args.length);
+			for (String entity : args) {
+				values.add(stub.getState(entity));
+			}
+			return GetMany.encode(values);
+		case "getByPartialKey":
+			if (args.length < 3) {
+				throw new ProposalException(
+						"Incorrect number of arguments. Expecting page size, bookmark, object type and attributes");
+			}
+			String prefix = CompositeKey.of(args[2], (Object[]) Arrays.copyOfRange(args, 3, args.length))
+					+ CompositeKey.SEPARATOR;
+			return page(args, prefix, prefix + Character.MAX_VALUE, true);
+		case "getByRange":
+			expect(args, 4, "Incorrect number of arguments. Expecting page size, bookmark, start and end keys");
+			return page(args, args[2], args[3].isEmpty() ? String.valueOf(Character.MAX_VALUE) : args[3], false);
+		case "history":
+			expect(args, 3, "Incorrect number of arguments. Expecting page size, bookmark and entity");
+			int pageSize = pageSize(args[0]);
+			long from;
+			try {
+				from = args[1].isEmpty() ? 0 : Long.parseLong(args[1]);
+			} catch (NumberFormatException e) {
+				throw new ProposalException("Invalid bookmark " + args[1]);
+			}
+			KeyHistory writes = history.get(args[2]);
+			return writes == null ? GetHistory.encode("", new ArrayList<>()) : writes.page(from, pageSize);
+		case "batch":
+			if (args.length == 0 || args.length % 3 != 0) {
+				throw new ProposalException(
+						"Incorrect number of arguments. Expecting operation, entity and value triples.");
+			}
+			// GetState does not see the writes of the current transaction
+			Map<String, String> pending = new HashMap<>();
+			List<String> statuses = new ArrayList<>();
+			for (int i = 0; i < args.length; i += 3) {
+				if (!args[i].equals("add") && !args[i].equals("set") && !args[i].equals("delete")) {
+					throw new ProposalException("Invalid batch operation \"" + args[i]
+							+ "\". Expecting \"add\" \"set\" \"delete\"");
+				}
+				String status = apply(stub, pending, args[i], args[i + 1], args[i + 2]);
+				statuses.add(status.isEmpty() ? "OK" : status);
+			}
+			return String.join("\n", statuses);
+		default:
+			throw new ProposalException(
+					"Invalid invoke function name. Expecting \"delete\" \"set\" \"add\" \"get\" \"getMany\" \"getByPartialKey\" \"getByRange\" \"history\" \"batch\"");
+		}
+	}
+
+	/*
+	 * Read a page of the committed keys from start, included, to end,
+	 * excluded, either composite or simple ones; like on Fabric, the bookmark
+	 * is the first key of the next page
+	 */
+	private String page(String[] args, String start, String end, boolean composite) throws ProposalException {
+		int pageSize = pageSize(args[0]);
+		String from = args[1].isEmpty() ? start : args[1];
+		Map<String, String> states = new LinkedHashMap<>();
+		String bookmark = "";
+		if (from.compareTo(end) >= 0) {
+			return GetPage.encode(bookmark, states);
+		}
+		for (Map.Entry<String, Versioned> entry : state.subMap(from, true, end, false).entrySet()) {
+			if (CompositeKey.isComposite(entry.getKey()) != composite) {
+				continue;
+			}
+			if (states.size() == pageSize) {
+				bookmark = entry.getKey();
+				break;
+			}
+			states.put(entry.getKey(), entry.getValue().value);
+		}
+		return GetPage.encode(bookmark, states);
+	}
+
+	/*
+	 * Apply an add, set or delete operation, the pending map holding the
+	 * values written earlier in the transaction (null for a deleted key)
+	 */
+	private static String apply(Simulation stub, Map<String, String> pending, String operation, String entity,
+			String value) {
+		String current = pending.containsKey(entity) ? pending.get(entity) : stub.getState(entity);
+		switch (operation) {
+		case "add":
+			if (current != null) {
+				return "ALREADY_EXIST";
+			}
+			break;
+		case "set":
+			if (current == null) {
+				return "NOT_FOUND";
+			}
+			if (current.equals(value)) {
+				return "STATE_ALREADY_SET";
+			}
+			break;
+		default:
+			if (current == null) {
+				return "NOT_FOUND";
+			}
+			value = null;
+		}
+		stub.putState(entity, value);
+		pending.put(entity, value);
+		return "";
+	}
+
+	private static int pageSize(String arg) throws ProposalException {
+		try {
+			int pageSize = Integer.parseInt(arg);
+			if (pageSize > 0) {
+				return pageSize;
+			}
+		} catch (NumberFormatException e) {
+			// rejected below
+		}
+		throw new ProposalException("Invalid page size " + arg);
+	}
+
+	private static void expect(String[] args, int count, String message) throws ProposalException {
+		if (args.length != count) {
+			throw new ProposalException(message);
+		}
+	}
+
+	/*
+	 * Read and write sets of a chaincode simulation
+	 */
+	private final class Simulation {
+
+		private final Map<String, Long> reads = new HashMap<>();
+		private final Map<String, String> writes = new LinkedHashMap<>();
+		private final Instant timestamp = Instant.now();
+		private String event;
+
+		String getState(String key) {
+			Versioned current = state.get(key);
+			reads.putIfAbsent(key, current == null ? 0 : current.version);
+			return current == null ? null : current.value;
+		}
+
+		void putState(String key, String value) {
+			writes.put(key, value);
+		}
+
+		void setEvent(String name) {
+			event = name;
+		}
+	}
+
+	/*
+	 * Last writes of a key; the bookmarks count the writes since the first
+	 * one, so that they survive the writes dropped meanwhile
+	 */
+	private static final class KeyHistory {
+
+		private final List<KeyModification> writes = new ArrayList<>();
+		private long dropped;
+
+		synchronized void add(KeyModification write, int maxHistory) {
+			writes.add(write);
+			int excess = writes.size() - Math.max(1, maxHistory);
+			if (excess > 0) {
+				writes.subList(0, excess).clear();
+				dropped += excess;
+			}
+		}
+
+		synchronized String page(long bookmark, int pageSize) {
+			int from = (int) Math.max(0, bookmark - dropped);
+			int to = Math.min(writes.size(), from + pageSize);
+			return GetHistory.encode(to < writes.size() ? Long.toString(dropped + to) : "",
+					from < to ? new ArrayList<>(writes.subList(from, to)) : new ArrayList<>());
+		}
+	}
+
+	private static final class Versioned {
+
+		private final String value;
+		private final long version;
+
+		Versioned(String value, long version) {
+			this.value = value;
+			this.version = version;
+		}
+	}
+
+	private static final class Ordered {
+
+		private final LedgerTransaction transaction;
+		private final Simulation simulation;
+
+		Ordered(LedgerTransaction transaction, Simulation simulation) {
+			this.transaction = transaction;
+			this.simulation = simulation;
+		}
+	}
+
+}
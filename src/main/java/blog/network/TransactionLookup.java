@@ -0,0 +1,244 @@
+package blog.network;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.Peer;
+import org.hyperledger.fabric.sdk.Peer.PeerRole;
+import org.hyperledger.fabric.sdk.TransactionInfo;
+import org.hyperledger.fabric.sdk.exception.ProposalException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+
+import blog.config.ApplicationProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+
+/**
+ * Hedged lookup of committed transactions by id.
+ * <p>
+ * The lookup goes first to the peer the {@link PeerSelector} prefers. If it
+ * has not answered after the 95th percentile of the latency of the lookups, or
+ * as soon as it fails, the next peer is asked too, and so on until a peer
+ * answers or {@code timeout-ms} elapses: the first answer wins, the late ones
+ * are only reported to the selector. Until the percentile is known, the
+ * backup request waits {@code initial-hedge-delay-ms}.
+ * <p>
+ * A committed transaction never changes, so the answers are kept in a bounded
+ * cache. A peer answering that it does not know the transaction may only lag
+ * behind the others, so the next peer is asked at once too; the transaction
+ * is reported unknown once every peer answered so, or the timeout elapsed
+ * after such an answer.
+ */
+public class TransactionLookup {
+
+	/**
+	 * Name of the cache of the committed transactions.
+	 */
+	public static final String TRANSACTIONS_CACHE = "blog.network.TransactionLookup.transactions";
+
+	/* Message of the peers which do not know the transaction */
+	private static final String UNKNOWN_TRANSACTION = "Failed to get transaction with id";
+
+	private final Logger log = LoggerFactory.getLogger(TransactionLookup.class);
+
+	private final PeerSelector selector;
+
+	private final Executor executor;
+
+	private final ApplicationProperties.Fabric.Lookup properties;
+
+	private final Cache transactions;
+
+	private final Timer latency;
+
+	private final Counter hedges;
+
+	private final Counter cached;
+
+	public TransactionLookup(PeerSelector selector, Executor executor, ApplicationProperties.Fabric.Lookup properties,
+			Cache transactions, MeterRegistry meterRegistry) {
+		this.selector = selector;
+		this.executor = executor;
+		this.properties = properties;
+		this.transactions = transactions;
+		this.latency = Timer.builder("fabric.lookup.latency").publishPercentiles(0.95)
+				.description("Latency of the transaction lookups answered by a peer").register(meterRegistry);
+		this.hedges = meterRegistry.counter("fabric.lookup.hedges");
+		this.cached = meterRegistry.counter("fabric.lookup.cached");
+	}
+
+	/**
+	 * Look up a committed transaction.
+	 *
+	 * @param channel
+	 *            the initialized channel
+	 * @param txId
+	 * @return the transaction
+	 * @throws ProposalException
+	 *             if the transaction is unknown to the peers which answered,
+	 *             or no peer answered in time
+	 * @throws InterruptedException
+	 */
+	public TransactionInfo query(Channel channel, String txId) throws ProposalException, InterruptedException {
+		TransactionInfo info = transactions.get(txId, TransactionInfo.class);
+		if (info != null) {
+			cached.increment();
+			return info;
+		}
+
+		List<String> candidates = new ArrayList<>();
+		for (Peer peer : channel.getPeers(EnumSet.of(PeerRole.LEDGER_QUERY))) {
+			candidates.add(peer.getName());
+		}
+		if (candidates.isEmpty()) {
+			throw new ProposalException("No peer to look up transaction " + txId + " on channel " + channel.getName());
+		}
+
+		BlockingQueue<Outcome> outcomes = new LinkedBlockingQueue<>();
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getTimeoutMs());
+		long hedgeDelay = hedgeDelayNanos();
+		int running = 0;
+		Throwable failure = null;
+		Throwable unknown = null;
+		if (send(channel, txId, candidates, outcomes)) {
+			running++;
+		}
+		while (running > 0 || !candidates.isEmpty()) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				break;
+			}
+			Outcome outcome = running == 0 ? null
+					: outcomes.poll(candidates.isEmpty() ? remaining : Math.min(remaining, hedgeDelay),
+							TimeUnit.NANOSECONDS);
+			if (outcome == null) {
+				/* The peers asked are too slow, or could not be asked: ask another one */
+				if (!candidates.isEmpty()) {
+					if (running > 0) {
+						hedges.increment();
+					}
+					if (send(channel, txId, candidates, outcomes)) {
+						running++;
+					}
+				}
+				continue;
+			}
+			running--;
+			if (outcome.info != null) {
+				transactions.put(txId, outcome.info);
+				return outcome.info;
+			}
+			if (outcome.unknown) {
+				unknown = outcome.failure;
+			} else {
+				failure = outcome.failure;
+			}
+			if (send(channel, txId, candidates, outcomes)) {
+				running++;
+			}
+		}
+		if (unknown != null) {
+			ProposalException e = new ProposalException(unknown);
+			if (failure != null) {
+				e.addSuppressed(failure);
+			}
+			throw e;
+		}
+		ProposalException e = new ProposalException(
+				"No peer answered the lookup of transaction " + txId + " within " + properties.getTimeoutMs() + " ms");
+		if (failure != null) {
+			e.addSuppressed(failure);
+		}
+		throw e;
+	}
+
+	/*
+	 * Ask the best remaining candidate on its own thread, reporting to the
+	 * queue; false if no candidate is left or the executor refused the task
+	 */
+	private boolean send(Channel channel, String txId, List<String> candidates, BlockingQueue<Outcome> outcomes) {
+		Optional<String> chosen = selector.selectForQuery(candidates);
+		if (!chosen.isPresent()) {
+			return false;
+		}
+		String name = chosen.get();
+		candidates.remove(name);
+		Peer peer = byName(channel.getPeers(), name);
+		try {
+			executor.execute(() -> outcomes.add(lookup(channel, peer, txId)));
+			return true;
+		} catch (RejectedExecutionException e) {
+			selector.onFailure(name);
+			log.warn("Could not look up transaction {} on peer {}: {}", txId, name, e.toString());
+			return false;
+		}
+	}
+
+	private Outcome lookup(Channel channel, Peer peer, String txId) {
+		long start = System.nanoTime();
+		try {
+			TransactionInfo info = channel.queryTransactionByID(peer, txId);
+			long elapsed = System.nanoTime() - start;
+			selector.onSuccess(peer.getName(), elapsed);
+			latency.record(elapsed, TimeUnit.NANOSECONDS);
+			return new Outcome(info, false, null);
+		} catch (Exception e) {
+			if (e.getMessage() != null && e.getMessage().contains(UNKNOWN_TRANSACTION)) {
+				selector.onSuccess(peer.getName(), System.nanoTime() - start);
+				return new Outcome(null, true, e);
+			}
+			selector.onFailure(peer.getName());
+			log.debug("Lookup of transaction {} on peer {} failed: {}", txId, peer.getName(), e.toString());
+			return new Outcome(null, false, e);
+		}
+	}
+
+	/*
+	 * The 95th percentile of the recent lookups, or the initial delay before
+	 * there are some
+	 */
+	private long hedgeDelayNanos() {
+		double p95 = 0;
+		for (ValueAtPercentile percentile : latency.takeSnapshot().percentileValues()) {
+			p95 = percentile.value(TimeUnit.NANOSECONDS);
+		}
+		long delay = p95 > 0 ? (long) p95 : TimeUnit.MILLISECONDS.toNanos(properties.getInitialHedgeDelayMs());
+		return Math.max(delay, TimeUnit.MILLISECONDS.toNanos(properties.getMinHedgeDelayMs()));
+	}
+
+	private static Peer byName(Collection<Peer> peers, String name) {
+		for (Peer peer : peers) {
+			if (peer.getName().equals(name)) {
+				return peer;
+			}
+		}
+		throw new IllegalStateException("No peer " + name);
+	}
+
+	private static final class Outcome {
+
+		private final TransactionInfo info;
+		private final boolean unknown;
+		private final Throwable failure;
+
+		private Outcome(TransactionInfo info, boolean unknown, Throwable failure) {
+			this.info = info;
+			this.unknown = unknown;
+			this.failure = failure;
+		}
+	}
+
+}
@@ -0,0 +1,90 @@
+package blog.network;
+
+import java.time.Instant;
+
+import blog.network.LedgerTransaction.Stage;
+
+/**
+ * Status of a transaction, or of an asynchronous write, at one of its
+ * transitions.
+ */
+public class TransactionStatus {
+
+	private final String transactionId;
+
+	private final String trackingId;
+
+	private final Stage stage;
+
+	private final String validationCode;
+
+	private final long blockNumber;
+
+	private final String error;
+
+	private final Instant updated;
+
+	public TransactionStatus(String transactionId, String trackingId, Stage stage, String validationCode,
+			long blockNumber, String error, Instant updated) {
+		this.transactionId = transactionId;
+		this.trackingId = trackingId;
+		this.stage = stage;
+		this.validationCode = validationCode;
+		this.blockNumber = blockNumber;
+		this.error = error;
+		this.updated = updated;
+	}
+
+	/**
+	 * @return the transaction ID, null while an asynchronous write waits for
+	 *         its transaction
+	 */
+	public String getTransactionId() {
+		return transactionId;
+	}
+
+	/**
+	 * @return the tracking ID of an asynchronous write, or null
+	 */
+	public String getTrackingId() {
+		return trackingId;
+	}
+
+	public Stage getStage() {
+		return stage;
+	}
+
+	/**
+	 * @return the validation code set by the committing peer, or null before
+	 *         commit
+	 */
+	public String getValidationCode() {
+		return validationCode;
+	}
+
+	/**
+	 * @return the number of the block holding the transaction, or -1 before
+	 *         commit
+	 */
+	public long getBlockNumber() {
+		return blockNumber;
+	}
+
+	/**
+	 * @return the reason of a failure, or null
+	 */
+	public String getError() {
+		return error;
+	}
+
+	public Instant getUpdated() {
+		return updated;
+	}
+
+	@Override
+	public String toString() {
+		return "TransactionStatus{" + "transactionId='" + transactionId + "'" + ", trackingId='" + trackingId + "'"
+				+ ", stage=" + stage + ", validationCode=" + validationCode + ", blockNumber=" + blockNumber + "}";
+	}
+
+}
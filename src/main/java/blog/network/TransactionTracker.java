@@ -0,0 +1,197 @@
+package blog.network;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import blog.config.ApplicationProperties;
+import blog.network.LedgerTransaction.Stage;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Status of the transactions submitted by this application, fed by their
+ * stages and by the commit events of the channel.
+ * <p>
+ * The status of the last {@code max-size} transactions is kept by
+ * transaction ID, and the status of the last {@code max-size} asynchronous
+ * writes by tracking ID: such a write waits in the batcher without a
+ * transaction, then takes the status of the transaction which carried it,
+ * once committed. Each transition (endorsed, committed, invalidated or
+ * failed) is pushed once to the listeners; a committed, invalidated or failed
+ * transaction does not change anymore, whichever of its handle or of the
+ * block event comes first.
+ */
+public class TransactionTracker implements BlockListener {
+
+	private final Logger log = LoggerFactory.getLogger(TransactionTracker.class);
+
+	private final Object lock = new Object();
+
+	private final Map<String, TransactionStatus> transactions;
+
+	private final Map<String, TransactionStatus> tracked;
+
+	private final List<Consumer<TransactionStatus>> listeners = new CopyOnWriteArrayList<>();
+
+	private final MeterRegistry meterRegistry;
+
+	public TransactionTracker(ApplicationProperties.Fabric.Tracking properties, MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+		this.transactions = bounded(properties.getMaxSize());
+		this.tracked = bounded(properties.getMaxSize());
+		Gauge.builder("fabric.tracking.size", this, TransactionTracker::size)
+				.description("Transactions and asynchronous writes whose status is kept").register(meterRegistry);
+	}
+
+	/**
+	 * Follow the stages of a submitted transaction.
+	 *
+	 * @param transaction
+	 */
+	public void track(LedgerTransaction transaction) {
+		transaction.endorsed().thenAccept(tx -> update(tx.getTransactionId(), Stage.ENDORSED, null, -1, null, true));
+		transaction.committed().whenComplete((tx, error) -> {
+			if (error == null) {
+				update(tx.getTransactionId(), tx.isValid() ? Stage.COMMITTED : Stage.INVALIDATED,
+						tx.getValidationCode(), tx.getBlockNumber(), null, true);
+			} else if (transaction.getTransactionId() != null) {
+				// failed once endorsed, by the orderer
+				update(transaction.getTransactionId(), Stage.FAILED, null, -1, reason(error), true);
+			}
+		});
+	}
+
+	/**
+	 * Follow an asynchronous write until the transaction which carried it
+	 * completes.
+	 *
+	 * @param trackingId
+	 *            the ID given to the client
+	 * @param result
+	 *            the future of the transaction carrying the write
+	 */
+	public void track(String trackingId, CompletableFuture<LedgerTransaction> result) {
+		synchronized (lock) {
+			tracked.put(trackingId,
+					new TransactionStatus(null, trackingId, Stage.SUBMITTED, null, -1, null, Instant.now()));
+		}
+		result.whenComplete((tx, error) -> {
+			TransactionStatus status = error == null
+					? new TransactionStatus(tx.getTransactionId(), trackingId,
+							tx.isValid() ? Stage.COMMITTED : Stage.INVALIDATED, tx.getValidationCode(),
+							tx.getBlockNumber(), null, Instant.now())
+					: new TransactionStatus(null, trackingId, Stage.FAILED, null, -1, reason(error), Instant.now());
+			synchronized (lock) {
+				if (!tracked.containsKey(trackingId)) {
+					return;
+				}
+				tracked.put(trackingId, status);
+			}
+			publish(status);
+		});
+	}
+
+	/**
+	 * The commit events of the transactions being followed
+	 */
+	@Override
+	public void onBlock(LedgerBlock block) {
+		for (LedgerBlock.Transaction transaction : block.getTransactions()) {
+			update(transaction.getTransactionId(), transaction.isValid() ? Stage.COMMITTED : Stage.INVALIDATED,
+					transaction.getValidationCode(), block.getNumber(), null, false);
+		}
+	}
+
+	/**
+	 * @param id
+	 *            a transaction ID or a tracking ID
+	 * @return the last status of the transaction or write, if still kept
+	 */
+	public Optional<TransactionStatus> find(String id) {
+		synchronized (lock) {
+			TransactionStatus status = transactions.get(id);
+			return Optional.ofNullable(status != null ? status : tracked.get(id));
+		}
+	}
+
+	public void addListener(Consumer<TransactionStatus> listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(Consumer<TransactionStatus> listener) {
+		listeners.remove(listener);
+	}
+
+	public int size() {
+		synchronized (lock) {
+			return transactions.size() + tracked.size();
+		}
+	}
+
+	/*
+	 * Move a transaction forward; a transaction not followed yet is only
+	 * added if asked
+	 */
+	private void update(String transactionId, Stage stage, String validationCode, long blockNumber, String error,
+			boolean create) {
+		if (transactionId == null) {
+			return;
+		}
+		TransactionStatus status;
+		synchronized (lock) {
+			TransactionStatus current = transactions.get(transactionId);
+			if (current == null ? !create : isFinal(current.getStage()) || current.getStage().compareTo(stage) >= 0) {
+				return;
+			}
+			status = new TransactionStatus(transactionId, null, stage, validationCode, blockNumber, error,
+					Instant.now());
+			transactions.put(transactionId, status);
+		}
+		publish(status);
+	}
+
+	private void publish(TransactionStatus status) {
+		meterRegistry.counter("fabric.tracking.transitions", "stage", status.getStage().name().toLowerCase())
+				.increment();
+		for (Consumer<TransactionStatus> listener : listeners) {
+			try {
+				listener.accept(status);
+			} catch (RuntimeException e) {
+				log.warn("Transaction status listener failed on {}: {}", status, e.toString());
+			}
+		}
+	}
+
+	private static boolean isFinal(Stage stage) {
+		return stage == Stage.COMMITTED || stage == Stage.INVALIDATED || stage == Stage.FAILED;
+	}
+
+	private static String reason(Throwable error) {
+		if (error instanceof CompletionException && error.getCause() != null) {
+			error = error.getCause();
+		}
+		return error.toString();
+	}
+
+	private static Map<String, TransactionStatus> bounded(int maxSize) {
+		return new LinkedHashMap<String, TransactionStatus>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, TransactionStatus> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+}
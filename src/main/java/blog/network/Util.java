@@ -16,12 +16,9 @@ package blog.network;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.security.KeyFactory;
@@ -29,8 +26,6 @@ import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.PKCS8EncodedKeySpec;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 import javax.xml.bind.DatatypeConverter;
 
@@ -44,56 +39,6 @@ import org.hyperledger.fabric.sdk.exception.CryptoException;
 
 public class Util {
 
-    /**
-     * Serialize user
-     *
-     * @param userContext
-     * @throws Exception
-     */
-    public static void writeUserContext(UserContext userContext) throws Exception {
-	String directoryPath = "users/" + userContext.getAffiliation();
-	String filePath = directoryPath + "/" + userContext.getName() + ".ser";
-	File directory = new File(directoryPath);
-	if (!directory.exists())
-	    directory.mkdirs();
-
-	FileOutputStream file = new FileOutputStream(filePath);
-	ObjectOutputStream out = new ObjectOutputStream(file);
-
-	// Method for serialization of object
-	out.writeObject(userContext);
-
-	out.close();
-	file.close();
-    }
-
-    /**
-     * Deserialize user
-     *
-     * @param affiliation
-     * @param username
-     * @return
-     * @throws Exception
-     */
-    public static UserContext readUserContext(String affiliation, String username) throws Exception {
-	String filePath = "users/" + affiliation + "/" + username + ".ser";
-	File file = new File(filePath);
-	if (file.exists()) {
-	    // Reading the object from a file
-	    FileInputStream fileStream = new FileInputStream(filePath);
-	    ObjectInputStream in = new ObjectInputStream(fileStream);
-
-	    // Method for deserialization of object
-	    UserContext uContext = (UserContext) in.readObject();
-
-	    in.close();
-	    fileStream.close();
-	    return uContext;
-	}
-
-	return null;
-    }
-
     /**
      * Create enrollment from key and certificate files.
      *
@@ -141,26 +86,4 @@ public class Util {
 	return enrollment;
     }
 
-    public static void cleanUp() {
-	String directoryPath = "users";
-	File directory = new File(directoryPath);
-	deleteDirectory(directory);
-    }
-
-    public static boolean deleteDirectory(File dir) {
-	if (dir.isDirectory()) {
-	    File[] children = dir.listFiles();
-	    for (int i = 0; i < children.length; i++) {
-		boolean success = deleteDirectory(children[i]);
-		if (!success) {
-		    return false;
-		}
-	    }
-	}
-
-	// either file or an empty directory
-	Logger.getLogger(Util.class.getName()).log(Level.INFO, "Deleting - " + dir.getName());
-	return dir.delete();
-    }
-
 }
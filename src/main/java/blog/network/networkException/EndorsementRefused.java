@@ -0,0 +1,24 @@
+package blog.network.networkException;
+
+/*
+ * A peer answered the proposal with an error, such as a chaincode failure or
+ * an unsatisfied policy: the channel itself is healthy
+ */
+public class EndorsementRefused extends A_BlockchainException {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/* The status is the answer of the peer */
+	public EndorsementRefused(String s) {
+		super(s);
+	}
+
+	@Override
+	public String toString() {
+		return "EndorsementRefused " + getStatus();
+	}
+
+}
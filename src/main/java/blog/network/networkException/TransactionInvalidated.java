@@ -0,0 +1,20 @@
+package blog.network.networkException;
+
+public class TransactionInvalidated extends A_BlockchainException {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/* The status is the validation code of the transaction */
+	public TransactionInvalidated(String s) {
+		super(s);
+	}
+
+	@Override
+	public String toString() {
+		return "TransactionInvalidated " + getStatus();
+	}
+
+}
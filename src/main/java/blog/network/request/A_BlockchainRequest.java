@@ -1,80 +1,85 @@
 package blog.network.request;
 
-import org.hyperledger.fabric.sdk.Channel;
-import org.hyperledger.fabric.sdk.EventHub;
-import org.hyperledger.fabric.sdk.Orderer;
-import org.hyperledger.fabric.sdk.Peer;
-import org.springframework.beans.factory.annotation.Value;
-
-import blog.network.CAClient;
-import blog.network.ChannelClient;
-import blog.network.Config;
-import blog.network.FabricClient;
-import blog.network.UserContext;
-import blog.network.Util;
+import blog.network.CommitTimeoutException;
+import blog.network.FabricGateway;
+import blog.network.LedgerBackend;
+import blog.network.LedgerSaturatedException;
+import blog.network.LedgerUnavailableException;
+import blog.network.networkException.A_BlockchainException;
 
 public abstract class A_BlockchainRequest {
 
-    /**
-     * Name of eventhub should match peer's name it's associated with.
-     */
-    @Value("${hyperledger.eventhub.name}" )
-    private String eventHubName;
-    
-    /**
-     * The URL location of the event hub
-     */
-    @Value("${hyperledger.eventhub.url}" )
-    private String grpcURL;
-    
-	protected FabricClient fabClient;
-	protected ChannelClient channelClient;
+	protected final FabricGateway gateway;
+	protected LedgerBackend backend;
 	public String transactionID;
 
 	public String result;
 
-	public A_BlockchainRequest() {
-		init();
-	}
-
 	/*
-	 * Enroll Admin to Org1 and initialize the channel
+	 * Borrow the shared ledger backend of the gateway (connecting it if
+	 * needed), unless its circuit breaker refuses the call with a
+	 * LedgerUnavailableException
 	 */
-	protected void init() {
+	public A_BlockchainRequest(FabricGateway gateway) throws Exception {
+		this.gateway = gateway;
+		admit();
 		try {
+			this.backend = gateway.getBackend();
+		} catch (Exception e) {
+			// a failed connection is reported by the gateway itself
+			onRefused();
+			throw e;
+		}
+	}
 
-			Util.cleanUp();
-			String caUrl = Config.CA_ORG1_URL;
-			CAClient caClient = new CAClient(caUrl, null);
-
-			/* Enroll Admin to Org1MSP */
-			UserContext adminUserContext = new UserContext();
-			adminUserContext.setName(Config.ADMIN);
-			adminUserContext.setAffiliation(Config.ORG1);
-			adminUserContext.setMspId(Config.ORG1_MSP);
-			caClient.setAdminUserContext(adminUserContext);
-			adminUserContext = caClient.enrollAdminUser(Config.ADMIN, Config.ADMIN_PASSWORD);
+	/*
+	 * Take the permit of the circuit breaker for the request, reported once
+	 * answered
+	 */
+	protected void admit() {
+		gateway.getBreaker().acquire();
+	}
 
-			fabClient = new FabricClient(adminUserContext);
+	/* Send the request to the blockchain */
+	public void send() throws Exception {
+		long start = System.nanoTime();
+		try {
+			doSend();
+			onAnswer(System.nanoTime() - start, null);
+		} catch (A_BlockchainException e) {
+			// Chaincode business answer, the channel is healthy
+			onAnswer(System.nanoTime() - start, null);
+			throw e;
+		} catch (LedgerSaturatedException | LedgerUnavailableException e) {
+			// Refused before reaching the channel
+			onRefused();
+			throw e;
+		} catch (CommitTimeoutException e) {
+			// The transaction may still commit, the channel is not to blame
+			throw e;
+		} catch (Exception e) {
+			onAnswer(System.nanoTime() - start, e);
+			gateway.invalidate(backend, e);
+			throw e;
+		}
+	}
 
-			/* Create and initialize the channel */
-			channelClient = fabClient.createChannelClient(Config.CHANNEL_NAME);
-			Channel channel = channelClient.getChannel();
+	protected abstract void doSend() throws Exception;
 
-			Peer peer = fabClient.getInstance().newPeer(Config.ORG1_PEER_0, Config.ORG1_PEER_0_URL);
-			EventHub eventHub = fabClient.getInstance().newEventHub(eventHubName, grpcURL);
-			Orderer orderer = fabClient.getInstance().newOrderer(Config.ORDERER_NAME, Config.ORDERER_URL);
-			channel.addPeer(peer);
-			channel.addEventHub(eventHub);
-			channel.addOrderer(orderer);
-			channel.initialize();
+	/* Give back the permit of a request which never reached the channel */
+	protected void onRefused() {
+		gateway.getBreaker().release();
+	}
 
-		} catch (Exception e) {
-			e.printStackTrace();
+	/*
+	 * Report the outcome of the request to the circuit breaker
+	 */
+	protected void onAnswer(long nanos, Exception failure) {
+		if (failure == null) {
+			gateway.getBreaker().onSuccess(nanos);
+		} else {
+			gateway.getBreaker().onFailure(nanos);
 		}
 	}
 
-	/* Send the request to the blockchain */
-	public abstract void send() throws Exception;
-
 }
@@ -0,0 +1,191 @@
+package blog.network.request;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import blog.network.AdmissionController;
+import blog.network.CircuitBreaker;
+import blog.network.CommitTimeoutException;
+import blog.network.Config;
+import blog.network.DigestCache;
+import blog.network.FabricGateway;
+import blog.network.LedgerTransaction;
+import blog.network.networkException.A_BlockchainException;
+import blog.network.networkException.TransactionInvalidated;
+
+/*
+ * Request updating the ledger through a chaincode transaction
+ */
+public abstract class A_BlockchainTransaction extends A_BlockchainRequest {
+
+	public A_BlockchainTransaction(FabricGateway gateway) throws Exception {
+		super(gateway);
+	}
+
+	/*
+	 * Submit the transaction without waiting for it: the returned handle
+	 * completes once endorsed, ordered and committed, the transaction being
+	 * endorsed again while invalidated by a read conflict. A refusal known
+	 * from the digests of the committed values fails it at once
+	 */
+	public LedgerTransaction submit() {
+		DigestCache digests = gateway.getDigests();
+		A_BlockchainException refusal = knownRefusal(digests);
+		if (refusal != null) {
+			LedgerTransaction refused = new LedgerTransaction();
+			refused.onFailed(refusal);
+			return refused;
+		}
+		List<String> keys = getKeys();
+		digests.begin(keys);
+		LedgerTransaction transaction;
+		try {
+			transaction = gateway.getRetrier().submit(keys, this::attempt);
+		} catch (RuntimeException e) {
+			digests.end(keys, Collections.emptyMap(), -1);
+			throw e;
+		}
+		transaction.committed().whenComplete((tx, error) -> {
+			boolean valid = error == null && tx.isValid();
+			digests.end(keys, valid ? getWrites(tx.getPayload()) : Collections.emptyMap(),
+					valid ? tx.getBlockNumber() : -1);
+		});
+		return transaction;
+	}
+
+	/*
+	 * Submit one endorsement of the transaction, followed by the tracker. It
+	 * holds a slot of the admission controller until ordered, and is refused
+	 * with a LedgerSaturatedException if no slot frees in time. The wait
+	 * happens on the calling thread, a request thread or the submitter of the
+	 * gateway, never on the endorsement executor freeing the slots. The
+	 * permit of the circuit breaker is taken last, right before reaching the
+	 * channel, and reported once: when ordered, or when the submission fails
+	 */
+	private LedgerTransaction attempt() {
+		AdmissionController admission = gateway.getAdmission();
+		CircuitBreaker breaker = gateway.getBreaker();
+		admission.acquire();
+		try {
+			breaker.acquire();
+		} catch (RuntimeException e) {
+			admission.release();
+			throw e;
+		}
+		long start = System.nanoTime();
+		LedgerTransaction transaction;
+		try {
+			transaction = backend.submit(getFunction(), getArguments(), this::verify, gateway.getExecutor());
+		} catch (RuntimeException e) {
+			admission.release();
+			breaker.onFailure(System.nanoTime() - start);
+			throw e;
+		}
+		transaction.endorsed().thenAccept(tx -> gateway.getDigests().own(tx.getTransactionId()));
+		gateway.getTracker().track(transaction);
+		transaction.ordered().whenComplete((tx, error) -> {
+			admission.release();
+			Throwable cause = unwrap(error);
+			// a refusal, of the chaincode or of the endorsing peers, was answered by a healthy channel
+			if (cause != null && !(cause instanceof A_BlockchainException)) {
+				breaker.onFailure(System.nanoTime() - start);
+				gateway.invalidate(backend, cause);
+			} else {
+				breaker.onSuccess(System.nanoTime() - start);
+			}
+		});
+		return transaction;
+	}
+
+	/*
+	 * Wait for the commit of the transaction, raising TransactionInvalidated
+	 * if it is still invalid once the retries are over, or a
+	 * CommitTimeoutException if it is not committed within the commit timeout
+	 * of the gateway
+	 */
+	@Override
+	protected void doSend() throws Exception {
+		LedgerTransaction transaction = submit();
+		try {
+			transaction.committed().get(gateway.getCommitTimeoutMs(), TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			Throwable cause = unwrap(e);
+			throw cause instanceof Exception ? (Exception) cause : e;
+		} catch (TimeoutException e) {
+			throw new CommitTimeoutException("Transaction " + transaction.getTransactionId() + " not committed within "
+					+ gateway.getCommitTimeoutMs() + " ms, stage " + transaction.getStage());
+		}
+		transactionID = transaction.getTransactionId();
+		if (!transaction.isValid()) {
+			throw new TransactionInvalidated(transaction.getValidationCode());
+		}
+		Logger.getLogger(getClass().getName()).log(Level.INFO,
+				"\n\n\n#----------------------------> Invoked " + getFunction() + " on " + Config.CHAINCODE_1_NAME
+						+ ". Stage - " + transaction.getStage() + "\n\n\n");
+	}
+
+	/*
+	 * Only refused while the circuit breaker is open: each attempt takes its
+	 * own permit, so that a known refusal or a saturated admission never
+	 * holds a trial call
+	 */
+	@Override
+	protected void admit() {
+		gateway.getBreaker().check();
+	}
+
+	/* No permit is held outside of the attempts */
+	@Override
+	protected void onRefused() {
+	}
+
+	/* Each attempt is reported to the circuit breaker once ordered */
+	@Override
+	protected void onAnswer(long nanos, Exception failure) {
+	}
+
+	/* Name of the chaincode function */
+	protected abstract String getFunction();
+
+	protected abstract String[] getArguments();
+
+	/* Keys read and written by the transaction, the first argument by default */
+	protected List<String> getKeys() {
+		return Collections.singletonList(getArguments()[0]);
+	}
+
+	/*
+	 * Values written by the committed transaction, a null value for a deleted
+	 * key: the second argument to the first one by default
+	 */
+	protected Map<String, String> getWrites(String payload) {
+		return Collections.singletonMap(getArguments()[0], getArguments()[1]);
+	}
+
+	/*
+	 * The refusal the chaincode would answer, if known without a round-trip,
+	 * or null
+	 */
+	protected A_BlockchainException knownRefusal(DigestCache digests) {
+		return null;
+	}
+
+	/* Raise the exception matching a chaincode refusal */
+	protected abstract void verify(String payload) throws A_BlockchainException;
+
+	private static Throwable unwrap(Throwable error) {
+		while ((error instanceof ExecutionException || error instanceof CompletionException)
+				&& error.getCause() != null) {
+			error = error.getCause();
+		}
+		return error;
+	}
+
+}
@@ -0,0 +1,178 @@
+package blog.network.request;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import blog.network.DigestCache;
+import blog.network.FabricGateway;
+import blog.network.networkException.A_BlockchainException;
+import blog.network.networkException.EntityAlreadyExist;
+import blog.network.networkException.EntityNotFound;
+import blog.network.networkException.StateAlreadySet;
+
+/*
+ * Request applying an ordered list of add, set and delete operations in a
+ * single transaction. The chaincode answers one status per operation, a
+ * refused operation does not prevent the following ones from being applied.
+ */
+public class Batch extends A_BlockchainTransaction {
+
+	public static final String OK = "OK";
+
+	private final List<Operation> operations;
+
+	public Batch(FabricGateway gateway, List<Operation> operations) throws Exception {
+
+		/* Borrow the shared channel of the gateway */
+		super(gateway);
+		this.operations = new ArrayList<>(operations);
+	}
+
+	@Override
+	protected String getFunction() {
+		return "batch";
+	}
+
+	@Override
+	protected String[] getArguments() {
+		return arguments(operations);
+	}
+
+	@Override
+	protected List<String> getKeys() {
+		List<String> keys = new ArrayList<>();
+		operations.forEach(operation -> keys.add(operation.getEntity()));
+		return keys;
+	}
+
+	/* The operations the chaincode applied, in order */
+	@Override
+	protected Map<String, String> getWrites(String payload) {
+		List<String> statuses = statuses(payload);
+		Map<String, String> writes = new LinkedHashMap<>();
+		for (int i = 0; i < operations.size(); i++) {
+			if (OK.equals(statuses.get(i))) {
+				writes.put(operations.get(i).getEntity(), operations.get(i).getValue());
+			}
+		}
+		return writes;
+	}
+
+	@Override
+	protected void verify(String payload) throws A_BlockchainException {
+		if (statuses(payload).size() != operations.size()) {
+			throw new IllegalStateException("Expecting " + operations.size() + " batch statuses: " + payload);
+		}
+	}
+
+	/* Flatten the operations into operation, entity, value triples */
+	public static String[] arguments(List<Operation> operations) {
+		String[] arguments = new String[operations.size() * 3];
+		int i = 0;
+		for (Operation operation : operations) {
+			arguments[i++] = operation.getFunction();
+			arguments[i++] = operation.getEntity();
+			arguments[i++] = operation.getValue() == null ? "" : operation.getValue();
+		}
+		return arguments;
+	}
+
+	/* Split the chaincode answer, one status per operation */
+	public static List<String> statuses(String payload) {
+		return payload == null || payload.isEmpty() ? new ArrayList<>() : Arrays.asList(payload.split("\n"));
+	}
+
+	/*
+	 * Exception matching the status of an operation, or null if it has been
+	 * applied; an unknown status is answered with an IllegalStateException
+	 */
+	public static Exception refusal(String status) {
+		switch (status) {
+		case OK:
+			return null;
+		case "ALREADY_EXIST":
+			return new EntityAlreadyExist("");
+		case "NOT_FOUND":
+			return new EntityNotFound("");
+		case "STATE_ALREADY_SET":
+			return new StateAlreadySet("");
+		default:
+			return new IllegalStateException("Unknown batch status " + status);
+		}
+	}
+
+	/*
+	 * One operation of a batch
+	 */
+	public static class Operation {
+
+		private final String function;
+		private final String entity;
+		private final String value;
+
+		private Operation(String function, String entity, String value) {
+			this.function = function;
+			this.entity = entity;
+			this.value = value;
+		}
+
+		public static Operation add(String entity, String value) {
+			return new Operation("add", entity, value);
+		}
+
+		public static Operation set(String entity, String value) {
+			return new Operation("set", entity, value);
+		}
+
+		public static Operation delete(String entity) {
+			return new Operation("delete", entity, null);
+		}
+
+		public String getFunction() {
+			return function;
+		}
+
+		public String getEntity() {
+			return entity;
+		}
+
+		public String getValue() {
+			return value;
+		}
+
+		/*
+		 * The refusal the chaincode would answer to this operation, if known
+		 * without a round-trip, or null
+		 */
+		public A_BlockchainException knownRefusal(DigestCache digests) {
+			switch (function) {
+			case "add":
+				return digests.exists(entity) ? new EntityAlreadyExist("") : null;
+			case "set":
+				return digests.isSet(entity, value) ? new StateAlreadySet("") : null;
+			default:
+				return null;
+			}
+		}
+
+		/* Single request applying this operation alone */
+		public A_BlockchainTransaction toRequest(FabricGateway gateway) throws Exception {
+			switch (function) {
+			case "add":
+				return new Add(gateway, entity, value);
+			case "set":
+				return new Set(gateway, entity, value);
+			default:
+				return new Delete(gateway, entity);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return function + "(" + entity + ")";
+		}
+	}
+}
@@ -1,14 +1,11 @@
 package blog.network.request;
 
-import java.util.Collection;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import blog.network.Config;
+import blog.network.FabricGateway;
 import blog.network.networkException.EntityNotFound;
 
-import org.hyperledger.fabric.sdk.ProposalResponse;
-
 /*
  * Request to get the state of a diploma by hash
  */
@@ -18,38 +15,30 @@ public class Get extends A_BlockchainRequest {
 	/* Diploma state */
 	public String state = null;
 
-	public Get(String hash) {
+	public Get(FabricGateway gateway, String hash) throws Exception {
 
-		/* Enroll Admin to Org1MSP and initialize channel */
-		super();
+		/* Borrow the shared channel of the gateway */
+		super(gateway);
 		this.hash = hash;
 	}
 
 	/*
 	 * Query the state of the diploma related to the hash
 	 */
-	public void send() throws EntityNotFound, Exception {
+	protected void doSend() throws EntityNotFound, Exception {
 
-		String[] args1 = { hash };
 		Logger.getLogger(Get.class.getName()).log(Level.INFO,
-				"Querying for the state of the diploma related to the hash: " + args1[0]);
-
-		Collection<ProposalResponse> responses1Query = channelClient.queryByChainCode(Config.CHAINCODE_1_NAME, "get",
-				args1);
-		for (ProposalResponse pres : responses1Query) {
-			String stringResponse = new String(pres.getChaincodeActionResponsePayload());
-			transactionID = pres.getTransactionID();
-			state = stringResponse;
-
-			// Raising exception if the diploma hash is not found
-			if (state.equals("NOT_FOUND")) {
-				throw new EntityNotFound("");
-			}
-
-			Logger.getLogger(Get.class.getName()).log(Level.INFO,
-					"\n\n\n#----------------------------> Query response for the hash: " + hash + ": " + stringResponse
-							+ "\n\n\n");
+				"Querying for the state of the diploma related to the hash: " + hash);
+
+		state = backend.query("get", hash);
+
+		// Raising exception if the diploma hash is not found
+		if (state.equals("NOT_FOUND")) {
+			throw new EntityNotFound("");
 		}
 
+		Logger.getLogger(Get.class.getName()).log(Level.INFO,
+				"\n\n\n#----------------------------> Query response for the hash: " + hash + ": " + state
+						+ "\n\n\n");
 	}
 }
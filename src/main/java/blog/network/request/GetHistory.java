@@ -0,0 +1,64 @@
+package blog.network.request;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import blog.network.FabricGateway;
+import blog.network.KeyModification;
+
+/*
+ * Request to get a page of the history of an entity, oldest write first. The
+ * chaincode answers, encoded as by GetMany, the bookmark of the next page,
+ * empty after the last one, then for each write the transaction id, the
+ * timestamp in milliseconds since the epoch, "true" for a deletion or "false",
+ * and the value written, -1 for a deletion.
+ */
+public class GetHistory extends A_BlockchainRequest {
+
+	private final String entity;
+	private final int pageSize;
+	private final String requested;
+
+	/* Writes of the page, oldest first */
+	public List<KeyModification> modifications = null;
+
+	/* Bookmark of the next page, empty after the last one */
+	public String bookmark = null;
+
+	public GetHistory(FabricGateway gateway, String entity, int pageSize, String bookmark) throws Exception {
+
+		/* Borrow the shared channel of the gateway */
+		super(gateway);
+		this.entity = entity;
+		this.pageSize = pageSize;
+		this.requested = bookmark;
+	}
+
+	protected void doSend() throws Exception {
+		String payload = backend.query("history", Integer.toString(pageSize), requested, entity);
+		List<String> fields = GetMany.fields(payload);
+		if (fields.isEmpty() || fields.size() % 4 != 1) {
+			throw new IllegalStateException("Expecting a bookmark and writes, got " + fields.size() + " fields");
+		}
+		bookmark = fields.get(0);
+		modifications = new ArrayList<>();
+		for (int i = 1; i < fields.size(); i += 4) {
+			modifications.add(new KeyModification(fields.get(i), Instant.ofEpochMilli(Long.parseLong(fields.get(i + 1))),
+					Boolean.parseBoolean(fields.get(i + 2)), fields.get(i + 3)));
+		}
+	}
+
+	/* Encode a page of history and the bookmark of the next one */
+	public static String encode(String bookmark, List<KeyModification> modifications) {
+		List<String> fields = new ArrayList<>();
+		fields.add(bookmark);
+		for (KeyModification modification : modifications) {
+			fields.add(modification.getTransactionId());
+			fields.add(Long.toString(modification.getTimestamp().toEpochMilli()));
+			fields.add(Boolean.toString(modification.isDelete()));
+			fields.add(modification.getValue());
+		}
+		return GetMany.encode(fields);
+	}
+}
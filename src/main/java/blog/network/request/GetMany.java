@@ -0,0 +1,101 @@
+package blog.network.request;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import blog.network.FabricGateway;
+
+/*
+ * Request to get the states of several entities in a single query. The
+ * chaincode answers, for each entity in order, the length of its state in
+ * UTF-8 bytes, a colon and the state; a missing entity is written as -1 and
+ * a colon.
+ */
+public class GetMany extends A_BlockchainRequest {
+
+	private final List<String> entities;
+
+	/* States by entity, in the order of the request; null for a missing entity */
+	public Map<String, String> states = null;
+
+	public GetMany(FabricGateway gateway, List<String> entities) throws Exception {
+
+		/* Borrow the shared channel of the gateway */
+		super(gateway);
+		this.entities = new ArrayList<>(entities);
+	}
+
+	protected void doSend() throws Exception {
+		if (entities.isEmpty()) {
+			states = new LinkedHashMap<>();
+			return;
+		}
+		states = decode(entities, backend.query("getMany", entities.toArray(new String[0])));
+	}
+
+	/* Encode the states of the entities, null for a missing one */
+	public static String encode(List<String> states) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (String state : states) {
+			byte[] bytes = state == null ? null : state.getBytes(UTF_8);
+			byte[] length = ((bytes == null ? -1 : bytes.length) + ":").getBytes(UTF_8);
+			out.write(length, 0, length.length);
+			if (bytes != null) {
+				out.write(bytes, 0, bytes.length);
+			}
+		}
+		return new String(out.toByteArray(), UTF_8);
+	}
+
+	/* Decode the answer to a query of the entities */
+	public static Map<String, String> decode(List<String> entities, String payload) {
+		List<String> fields = fields(payload);
+		if (fields.size() != entities.size()) {
+			throw new IllegalStateException(
+					"Expecting the states of " + entities.size() + " entities, got " + fields.size());
+		}
+		Map<String, String> states = new LinkedHashMap<>();
+		for (int i = 0; i < entities.size(); i++) {
+			states.put(entities.get(i), fields.get(i));
+		}
+		return states;
+	}
+
+	/* Split a payload written by encode, null for a field of length -1 */
+	static List<String> fields(String payload) {
+		byte[] bytes = payload.getBytes(UTF_8);
+		List<String> fields = new ArrayList<>();
+		int position = 0;
+		while (position < bytes.length) {
+			int colon = position;
+			while (colon < bytes.length && bytes[colon] != ':') {
+				colon++;
+			}
+			if (colon == bytes.length) {
+				throw new IllegalStateException("Expecting a length at byte " + position);
+			}
+			int length;
+			try {
+				length = Integer.parseInt(new String(bytes, position, colon - position, UTF_8));
+			} catch (NumberFormatException e) {
+				throw new IllegalStateException("Expecting a length at byte " + position, e);
+			}
+			position = colon + 1;
+			if (length < 0) {
+				fields.add(null);
+			} else {
+				if (position + length > bytes.length) {
+					throw new IllegalStateException("Truncated field at byte " + position);
+				}
+				fields.add(new String(bytes, position, length, UTF_8));
+				position += length;
+			}
+		}
+		return fields;
+	}
+}
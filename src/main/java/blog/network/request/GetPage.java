@@ -0,0 +1,77 @@
+package blog.network.request;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import blog.network.FabricGateway;
+
+/*
+ * Request to get a page of the states of a scan, by partial composite key or
+ * by range of simple keys. The chaincode answers, encoded as by GetMany, the
+ * bookmark of the next page, empty after the last one, then each key and its
+ * state in the order of the keys.
+ */
+public class GetPage extends A_BlockchainRequest {
+
+	public static final String BY_PARTIAL_KEY = "getByPartialKey";
+
+	public static final String BY_RANGE = "getByRange";
+
+	private final String function;
+	private final int pageSize;
+	private final String requested;
+	private final List<String> arguments;
+
+	/* States by key, in the order of the keys */
+	public Map<String, String> states = null;
+
+	/* Bookmark of the next page, empty after the last one */
+	public String bookmark = null;
+
+	/*
+	 * function is BY_PARTIAL_KEY followed by the object type and the first
+	 * attributes, or BY_RANGE followed by the start key, included, and the end
+	 * key, excluded, empty for no bound
+	 */
+	public GetPage(FabricGateway gateway, String function, int pageSize, String bookmark, String... arguments)
+			throws Exception {
+
+		/* Borrow the shared channel of the gateway */
+		super(gateway);
+		this.function = function;
+		this.pageSize = pageSize;
+		this.requested = bookmark;
+		this.arguments = Arrays.asList(arguments);
+	}
+
+	protected void doSend() throws Exception {
+		List<String> args = new ArrayList<>();
+		args.add(Integer.toString(pageSize));
+		args.add(requested);
+		args.addAll(arguments);
+		String payload = backend.query(function, args.toArray(new String[0]));
+		List<String> fields = GetMany.fields(payload);
+		if (fields.isEmpty() || fields.size() % 2 != 1) {
+			throw new IllegalStateException("Expecting a bookmark and key-state pairs, got " + fields.size() + " fields");
+		}
+		bookmark = fields.get(0);
+		states = new LinkedHashMap<>();
+		for (int i = 1; i < fields.size(); i += 2) {
+			states.put(fields.get(i), fields.get(i + 1));
+		}
+	}
+
+	/* Encode a page of states and the bookmark of the next one */
+	public static String encode(String bookmark, Map<String, String> states) {
+		List<String> fields = new ArrayList<>();
+		fields.add(bookmark);
+		states.forEach((key, state) -> {
+			fields.add(key);
+			fields.add(state);
+		});
+		return GetMany.encode(fields);
+	}
+}
@@ -1,74 +1,47 @@
 package blog.network.request;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-
-import blog.network.Config;
+import blog.network.DigestCache;
+import blog.network.FabricGateway;
+import blog.network.networkException.A_BlockchainException;
 import blog.network.networkException.EntityNotFound;
 import blog.network.networkException.StateAlreadySet;
 
-import org.hyperledger.fabric.sdk.ChaincodeID;
-import org.hyperledger.fabric.sdk.ChaincodeResponse.Status;
-import org.hyperledger.fabric.sdk.ProposalResponse;
-import org.hyperledger.fabric.sdk.TransactionProposalRequest;
-
-public class Set extends A_BlockchainRequest {
-	private static final byte[] EXPECTED_EVENT_DATA = "!".getBytes(UTF_8);
-	private static final String EXPECTED_EVENT_NAME = "event";
+public class Set extends A_BlockchainTransaction {
 	private String entity = null;
 	private String value = null;
-	public Collection<ProposalResponse> responses;
 
-	public Set(String entity, String value) {
+	public Set(FabricGateway gateway, String entity, String value) throws Exception {
 
-		/* Enroll Admin to Org1MSP and initialize channel */
-		super();
+		/* Borrow the shared channel of the gateway */
+		super(gateway);
 		this.entity = entity;
 		this.value = value;
 	}
 
 	@Override
-	public void send() throws EntityNotFound, StateAlreadySet, Exception {
-
-		TransactionProposalRequest request = fabClient.getInstance().newTransactionProposalRequest();
-		ChaincodeID ccid = ChaincodeID.newBuilder().setName(Config.CHAINCODE_1_NAME).build();
-		request.setChaincodeID(ccid);
-		request.setFcn("set");
-		String[] arguments = { entity, value };
-		request.setArgs(arguments);
-		request.setProposalWaitTime(1000);
-
-		Map<String, byte[]> tm2 = new HashMap<>();
-		tm2.put("HyperLedgerFabric", "TransactionProposalRequest:JavaSDK".getBytes(UTF_8));
-		tm2.put("method", "TransactionProposalRequest".getBytes(UTF_8));
-		tm2.put("result", ":)".getBytes(UTF_8));
-		tm2.put(EXPECTED_EVENT_NAME, EXPECTED_EVENT_DATA);
-		request.setTransientMap(tm2);
-		Collection<ProposalResponse> responses = channelClient.sendTransactionProposal(request);
-		for (ProposalResponse res : responses) {
-			Status status = res.getStatus();
+	protected String getFunction() {
+		return "set";
+	}
 
-			String payload = new String(res.getChaincodeActionResponsePayload());
-			// Raising exception if the entity isn't in the BC
-			// or if the state of the entity is already set to the value
-			if (payload.equals("NOT_FOUND")) {
-				throw new EntityNotFound("");
-			}
-			else if (payload.equals("STATE_ALREADY_SET")) {
-				throw new StateAlreadySet("");
-			}
+	@Override
+	protected String[] getArguments() {
+		return new String[] { entity, value };
+	}
 
+	@Override
+	protected A_BlockchainException knownRefusal(DigestCache digests) {
+		return digests.isSet(entity, value) ? new StateAlreadySet("") : null;
+	}
 
-			transactionID = res.getTransactionID();
-			Logger.getLogger(Add.class.getName()).log(Level.INFO,
-					"\n\n\n#----------------------------> Invoked set on " + Config.CHAINCODE_1_NAME
-							+ ". Status - " + status + "\n\n\n");
+	@Override
+	protected void verify(String payload) throws A_BlockchainException {
+		// Raising exception if the entity isn't in the BC
+		// or if the state of the entity is already set to the value
+		if (payload.equals("NOT_FOUND")) {
+			throw new EntityNotFound("");
+		}
+		else if (payload.equals("STATE_ALREADY_SET")) {
+			throw new StateAlreadySet("");
 		}
-
 	}
 }
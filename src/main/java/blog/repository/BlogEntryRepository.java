@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -27,4 +28,7 @@ public interface BlogEntryRepository extends JpaRepository<BlogEntry, Long> {
     @Query("select blog_entry from BlogEntry blog_entry left join fetch blog_entry.tags where blog_entry.id =:id")
     Optional<BlogEntry> findOneWithEagerRelationships(@Param("id") Long id);
 
+    @Query("select distinct blog_entry from BlogEntry blog_entry left join fetch blog_entry.tags where blog_entry.id in :ids")
+    List<BlogEntry> findAllByIdWithEagerRelationships(@Param("ids") Collection<Long> ids);
+
 }
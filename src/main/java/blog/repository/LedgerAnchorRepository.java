@@ -0,0 +1,22 @@
+package blog.repository;
+
+import blog.domain.LedgerAnchor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+
+/**
+ * Spring Data  repository for the LedgerAnchor entity.
+ */
+@Repository
+public interface LedgerAnchorRepository extends JpaRepository<LedgerAnchor, Long> {
+
+    List<LedgerAnchor> findAllByBatchKeyIsNullOrderByIdAsc(Pageable pageable);
+
+    Optional<LedgerAnchor> findFirstByEntityKeyOrderByIdDesc(String entityKey);
+
+}
@@ -0,0 +1,15 @@
+package blog.repository;
+
+import blog.domain.LedgerCheckpoint;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.stereotype.Repository;
+
+
+/**
+ * Spring Data  repository for the LedgerCheckpoint entity.
+ */
+@SuppressWarnings("unused")
+@Repository
+public interface LedgerCheckpointRepository extends JpaRepository<LedgerCheckpoint, String> {
+
+}
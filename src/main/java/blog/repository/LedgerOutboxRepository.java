@@ -0,0 +1,34 @@
+package blog.repository;
+
+import blog.domain.LedgerOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+
+/**
+ * Spring Data  repository for the LedgerOutbox entity.
+ */
+@Repository
+public interface LedgerOutboxRepository extends JpaRepository<LedgerOutbox, Long> {
+
+    /**
+     * The oldest writes due at this instant, skipping the keys whose older write waits for its retry or is a dead
+     * letter.
+     */
+    @Query("select outbox from LedgerOutbox outbox where outbox.deadLetter = false and outbox.nextAttemptDate <= :now"
+        + " and not exists (select waiting from LedgerOutbox waiting where waiting.entityKey = outbox.entityKey"
+        + " and waiting.id < outbox.id and (waiting.deadLetter = true or waiting.nextAttemptDate > :now))"
+        + " order by outbox.id asc")
+    List<LedgerOutbox> findDue(@Param("now") Instant now, Pageable pageable);
+
+    Optional<LedgerOutbox> findFirstByDeadLetterFalseOrderByIdAsc();
+
+    long countByDeadLetterFalse();
+
+}
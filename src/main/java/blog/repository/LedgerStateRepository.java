@@ -0,0 +1,15 @@
+package blog.repository;
+
+import blog.domain.LedgerState;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.stereotype.Repository;
+
+
+/**
+ * Spring Data  repository for the LedgerState entity.
+ */
+@SuppressWarnings("unused")
+@Repository
+public interface LedgerStateRepository extends JpaRepository<LedgerState, String> {
+
+}
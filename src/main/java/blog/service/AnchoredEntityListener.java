@@ -0,0 +1,291 @@
+package blog.service;
+
+import blog.domain.Anchored;
+import blog.domain.Blog;
+import blog.domain.BlogEntry;
+import blog.service.util.LedgerKeys;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.Hibernate;
+import org.hibernate.Transaction;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hibernate listener capturing the changes of the {@link Anchored} entities and anchoring them on commit.
+ * <p>
+ * The inserts, updates and deletes flushed in a transaction, and the changes of the collections the entities own, are
+ * collected per entity: an entity inserted then updated is added once in its last state, an entity inserted then
+ * deleted is not anchored at all. Just before the transaction commits, the changes go to the
+ * {@link LedgerAnchorService}, in this transaction, so they are anchored if and only if it commits; their outbox rows
+ * are then relayed together, in a single batch transaction on the ledger.
+ */
+@Component
+public class AnchoredEntityListener implements PostInsertEventListener, PostUpdateEventListener,
+        PostDeleteEventListener, PostCollectionRecreateEventListener, PostCollectionUpdateEventListener,
+        PostCollectionRemoveEventListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Logger log = LoggerFactory.getLogger(AnchoredEntityListener.class);
+
+    private final transient EntityManagerFactory entityManagerFactory;
+
+    private final transient LedgerAnchorService ledgerAnchorService;
+
+    private final transient DistributionSummary captured;
+
+    private final transient Map<Transaction, Changes> changes = new ConcurrentHashMap<>();
+
+    public AnchoredEntityListener(EntityManagerFactory entityManagerFactory, LedgerAnchorService ledgerAnchorService,
+            MeterRegistry meterRegistry) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.ledgerAnchorService = ledgerAnchorService;
+        this.captured = DistributionSummary.builder("fabric.anchor.captured")
+            .description("Entity changes anchored per database transaction").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+            .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_RECREATE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_UPDATE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_REMOVE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (isAnchored(event.getEntity())) {
+            changesOf(event.getSession()).inserted(event.getEntity(), event.getId());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (isAnchored(event.getEntity())) {
+            changesOf(event.getSession()).updated(event.getEntity(), event.getId(), previousKey(event));
+        }
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (isAnchored(event.getEntity())) {
+            changesOf(event.getSession()).deleted(event.getEntity(), event.getId());
+        }
+    }
+
+    @Override
+    public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+        onCollection(event);
+    }
+
+    @Override
+    public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+        onCollection(event);
+    }
+
+    @Override
+    public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+        onCollection(event);
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    /*
+     * A change of an owned collection is an update of its owner; the inverse side (the entries of a tag) is not part
+     * of the canonical form
+     */
+    private void onCollection(AbstractCollectionEvent event) {
+        Object owner = event.getAffectedOwnerOrNull();
+        if (owner == null || !isAnchored(owner)) {
+            return;
+        }
+        String role = event.getCollection().getRole();
+        if (role == null || event.getSession().getFactory().getMetamodel().collectionPersister(role).isInverse()) {
+            return;
+        }
+        changesOf(event.getSession()).updated(owner, event.getAffectedOwnerIdOrNull(), LedgerKeys.of(owner));
+    }
+
+    private static boolean isAnchored(Object entity) {
+        return Hibernate.getClass(entity).isAnnotationPresent(Anchored.class);
+    }
+
+    /*
+     * The key of an entity before this update: the key of an entry holds the id of its blog
+     */
+    private static String previousKey(PostUpdateEvent event) {
+        Object entity = event.getEntity();
+        if (entity instanceof BlogEntry && event.getOldState() != null) {
+            int blog = event.getPersister().getEntityMetamodel().getPropertyIndex("blog");
+            Blog previous = (Blog) event.getOldState()[blog];
+            return LedgerKeys.entry(previous == null ? null : previous.getId(), ((BlogEntry) entity).getId());
+        }
+        return LedgerKeys.of(entity);
+    }
+
+    private Changes changesOf(EventSource session) {
+        return changes.computeIfAbsent(session.accessTransaction(), transaction -> {
+            Changes created = new Changes(transaction);
+            session.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) created);
+            session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) created);
+            return created;
+        });
+    }
+
+    /**
+     * The changes of the anchored entities in a transaction, by entity, in the order of their first change.
+     */
+    private final class Changes implements BeforeTransactionCompletionProcess, AfterTransactionCompletionProcess {
+
+        private final Transaction transaction;
+
+        private final Map<String, Change> byEntity = new LinkedHashMap<>();
+
+        Changes(Transaction transaction) {
+            this.transaction = transaction;
+        }
+
+        void inserted(Object entity, Serializable id) {
+            Change change = byEntity.get(identity(entity, id));
+            if (change == null) {
+                byEntity.put(identity(entity, id), new Change(Change.ADD, entity, null));
+            } else {
+                // deleted then inserted again in the same transaction
+                change.operation = Change.SET;
+                change.entity = entity;
+            }
+        }
+
+        void updated(Object entity, Serializable id, String previousKey) {
+            Change change = byEntity.get(identity(entity, id));
+            if (change == null) {
+                byEntity.put(identity(entity, id), new Change(Change.SET, entity, previousKey));
+            } else {
+                change.entity = entity;
+            }
+        }
+
+        void deleted(Object entity, Serializable id) {
+            String identity = identity(entity, id);
+            Change change = byEntity.get(identity);
+            if (change == null) {
+                byEntity.put(identity, new Change(Change.DELETE, entity, LedgerKeys.of(entity)));
+            } else if (Change.ADD.equals(change.operation)) {
+                // never anchored, nothing to delete
+                byEntity.remove(identity);
+            } else {
+                change.operation = Change.DELETE;
+                if (change.previousKey == null) {
+                    change.previousKey = LedgerKeys.of(entity);
+                }
+            }
+        }
+
+        @Override
+        public void doBeforeTransactionCompletion(SessionImplementor session) {
+            changes.remove(transaction);
+            if (byEntity.isEmpty()) {
+                return;
+            }
+            for (Change change : byEntity.values()) {
+                change.anchor();
+            }
+            captured.record(byEntity.size());
+            log.debug("Anchored {} entity changes on commit", byEntity.size());
+            // the anchors and outbox rows are saved after the flush of the commit
+            session.flush();
+        }
+
+        @Override
+        public void doAfterTransactionCompletion(boolean success, SharedSessionContractImplementor session) {
+            changes.remove(transaction);
+        }
+
+        private String identity(Object entity, Serializable id) {
+            return Hibernate.getClass(entity).getName() + "#" + id;
+        }
+    }
+
+    /**
+     * The net change of an entity in a transaction.
+     */
+    private final class Change {
+
+        static final String ADD = "add";
+
+        static final String SET = "set";
+
+        static final String DELETE = "delete";
+
+        private String operation;
+
+        private Object entity;
+
+        /**
+         * The key of the entity before the transaction, if it already had one.
+         */
+        private String previousKey;
+
+        Change(String operation, Object entity, String previousKey) {
+            this.operation = operation;
+            this.entity = entity;
+            this.previousKey = previousKey;
+        }
+
+        void anchor() {
+            if (DELETE.equals(operation)) {
+                ledgerAnchorService.delete(previousKey);
+                return;
+            }
+            String key = LedgerKeys.of(entity);
+            if (ADD.equals(operation)) {
+                ledgerAnchorService.add(key, entity);
+            } else if (previousKey != null && !previousKey.equals(key)) {
+                // an entry moved to another blog changes of key
+                ledgerAnchorService.delete(previousKey);
+                ledgerAnchorService.add(key, entity);
+            } else {
+                ledgerAnchorService.set(key, entity);
+            }
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package blog.service;
+
+import blog.config.ApplicationProperties;
+import blog.domain.LedgerAnchor;
+import blog.network.LedgerReader;
+import blog.repository.BlogEntryRepository;
+import blog.repository.BlogRepository;
+import blog.repository.LedgerAnchorRepository;
+import blog.repository.TagRepository;
+import blog.service.dto.AnchorVerificationDTO;
+import blog.service.util.CanonicalForm;
+import blog.service.util.LedgerKeys;
+import blog.service.util.MerkleTree;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Service anchoring the entities on the ledger and verifying them against it.
+ * <p>
+ * In the "digest" mode, an entity is anchored by the versioned SHA-256 of its {@link CanonicalForm}, a few tens of
+ * bytes whatever its size; in the "value" mode, by its toString(). Both are written under the entity key through the
+ * {@link LedgerOutboxService}. In the "merkle" mode, the digests are saved locally and, once per window, the pending
+ * ones are hashed, each along with its entity key, into a {@link MerkleTree} whose root alone goes through the outbox,
+ * under a key of its own; each digest keeps its inclusion proof. Deletions are not anchored in this mode, the proofs
+ * of the former versions stay valid.
+ * <p>
+ * A verification recomputes the digest or value from the database row and compares it with the one read from the
+ * ledger, in chunks of keys, or from its local mirror once synchronized or while the ledger is unavailable; in the
+ * "merkle" mode, the root is recomputed from the digest and the proof.
+ */
+@Service
+public class LedgerAnchorService {
+
+    public static final String DIGEST = "digest";
+
+    public static final String VALUE = "value";
+
+    public static final String MERKLE = "merkle";
+
+    /**
+     * Prefix of the chaincode keys holding a Merkle root, followed by the id of the first digest of the batch.
+     */
+    public static final String BATCH_KEY_PREFIX = "merkle-";
+
+    public static final String BLOGS = "blogs";
+
+    public static final String BLOG_ENTRIES = "blog-entries";
+
+    public static final String TAGS = "tags";
+
+    private final Logger log = LoggerFactory.getLogger(LedgerAnchorService.class);
+
+    private final LedgerReader ledgerReader;
+
+    private final LedgerMirrorService mirror;
+
+    private final BlogRepository blogRepository;
+
+    private final BlogEntryRepository blogEntryRepository;
+
+    private final TagRepository tagRepository;
+
+    private final LedgerAnchorRepository ledgerAnchorRepository;
+
+    private final LedgerOutboxService ledgerOutboxService;
+
+    private final ApplicationProperties.Fabric.Anchor properties;
+
+    private final DistributionSummary batchSize;
+
+    public LedgerAnchorService(LedgerReader ledgerReader, LedgerMirrorService mirror, BlogRepository blogRepository,
+            BlogEntryRepository blogEntryRepository, TagRepository tagRepository, LedgerAnchorRepository ledgerAnchorRepository,
+            LedgerOutboxService ledgerOutboxService, ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.ledgerReader = ledgerReader;
+        this.mirror = mirror;
+        this.blogRepository = blogRepository;
+        this.blogEntryRepository = blogEntryRepository;
+        this.tagRepository = tagRepository;
+        this.ledgerAnchorRepository = ledgerAnchorRepository;
+        this.ledgerOutboxService = ledgerOutboxService;
+        this.properties = applicationProperties.getFabric().getAnchor();
+        this.batchSize = DistributionSummary.builder("fabric.anchor.batch.size")
+            .description("Digests under a Merkle root").register(meterRegistry);
+    }
+
+    /**
+     * Anchor a new entity, in the caller's transaction.
+     *
+     * @param key the ledger key of the entity
+     * @param entity a Blog, BlogEntry or Tag
+     */
+    @Transactional
+    public void add(String key, Object entity) {
+        if (MERKLE.equals(properties.getMode())) {
+            save(key, entity);
+        } else {
+            ledgerOutboxService.add(key, ledgerValue(entity));
+        }
+    }
+
+    /**
+     * Anchor the new state of an entity, in the caller's transaction.
+     *
+     * @param key the ledger key of the entity
+     * @param entity a Blog, BlogEntry or Tag
+     */
+    @Transactional
+    public void set(String key, Object entity) {
+        if (MERKLE.equals(properties.getMode())) {
+            save(key, entity);
+        } else {
+            ledgerOutboxService.set(key, ledgerValue(entity));
+        }
+    }
+
+    /**
+     * Remove the ledger value of a deleted entity, in the caller's transaction.
+     *
+     * @param key the ledger key of the entity
+     */
+    @Transactional
+    public void delete(String key) {
+        if (MERKLE.equals(properties.getMode())) {
+            log.debug("Deletion of {} is not anchored in the merkle mode", key);
+        } else {
+            ledgerOutboxService.delete(key);
+        }
+    }
+
+    /**
+     * Hash the pending digests into a Merkle tree, save their proofs and write the root to the ledger through the
+     * outbox.
+     *
+     * @return the chaincode key of the root, or empty if no digest was pending
+     */
+    @Scheduled(fixedDelayString = "${application.fabric.anchor.window-ms:5000}")
+    @Transactional
+    public Optional<String> anchorBatch() {
+        if (!MERKLE.equals(properties.getMode())) {
+            return Optional.empty();
+        }
+        List<LedgerAnchor> pending = ledgerAnchorRepository.findAllByBatchKeyIsNullOrderByIdAsc(
+            PageRequest.of(0, properties.getMaxBatchSize()));
+        if (pending.isEmpty()) {
+            return Optional.empty();
+        }
+        List<byte[]> leaves = new ArrayList<>(pending.size());
+        for (LedgerAnchor anchor : pending) {
+            leaves.add(leaf(anchor.getEntityKey(), anchor.getDigest()));
+        }
+        MerkleTree tree = new MerkleTree(leaves);
+        String batchKey = BATCH_KEY_PREFIX + pending.get(0).getId();
+        String root = CanonicalForm.VERSION + ":" + tree.getRoot();
+        for (int i = 0; i < pending.size(); i++) {
+            LedgerAnchor anchor = pending.get(i);
+            anchor.setBatchKey(batchKey);
+            anchor.setLeafIndex(i);
+            anchor.setRoot(root);
+            anchor.setProof(String.join(" ", tree.getProof(i)));
+        }
+        ledgerAnchorRepository.saveAll(pending);
+        ledgerOutboxService.add(batchKey, root);
+        batchSize.record(pending.size());
+        log.debug("Anchored {} digests under {}", pending.size(), batchKey);
+        return Optional.of(batchKey);
+    }
+
+    /**
+     * Compute the value written to the ledger for an entity.
+     *
+     * @param entity a Blog, BlogEntry or Tag
+     * @return the digest or the toString() of the entity, depending on the mode
+     */
+    public String ledgerValue(Object entity) {
+        return DIGEST.equals(properties.getMode()) ? CanonicalForm.digest(entity) : entity.toString();
+    }
+
+    /**
+     * Verify an entity against its ledger value. Both modes are recognized on the ledger, whatever the current one.
+     *
+     * @param entityName one of {@link #BLOGS}, {@link #BLOG_ENTRIES} or {@link #TAGS}
+     * @param id the id of the entity
+     * @return the verification, or empty if the entity is not in the database
+     * @throws Exception if the ledger cannot be read
+     */
+    @Transactional(readOnly = true)
+    public Optional<AnchorVerificationDTO> verify(String entityName, Long id) throws Exception {
+        return verify(entityName, Collections.singletonList(id)).stream().findFirst();
+    }
+
+    /**
+     * Verify entities against their ledger values, reading the ledger once per chunk of keys.
+     *
+     * @param entityName one of {@link #BLOGS}, {@link #BLOG_ENTRIES} or {@link #TAGS}
+     * @param ids the ids of the entities
+     * @return the verifications in the order of the ids, the entities not in the database left out
+     * @throws Exception if the ledger cannot be read
+     */
+    @Transactional(readOnly = true)
+    public List<AnchorVerificationDTO> verify(String entityName, List<Long> ids) throws Exception {
+        Map<Long, Object> entities = find(entityName, ids);
+        boolean merkle = MERKLE.equals(properties.getMode());
+        Map<String, LedgerAnchor> anchors = new HashMap<>();
+        Set<String> ledgerKeys = new LinkedHashSet<>();
+        for (Object entity : entities.values()) {
+            String key = LedgerKeys.of(entity);
+            if (!merkle) {
+                ledgerKeys.add(key);
+                continue;
+            }
+            ledgerAnchorRepository.findFirstByEntityKeyOrderByIdDesc(key).ifPresent(anchor -> {
+                anchors.put(key, anchor);
+                if (anchor.getBatchKey() != null) {
+                    ledgerKeys.add(anchor.getBatchKey());
+                }
+            });
+        }
+        Map<String, String> ledgerValues = read(ledgerKeys);
+
+        List<AnchorVerificationDTO> verifications = new ArrayList<>(entities.size());
+        for (Map.Entry<Long, Object> entity : entities.entrySet()) {
+            String key = LedgerKeys.of(entity.getValue());
+            AnchorVerificationDTO verification = merkle
+                ? verifyInclusion(key, entity.getValue(), anchors.get(key), ledgerValues)
+                : verifyValue(key, entity.getValue(), ledgerValues.get(key));
+            log.debug("Verified {} {}: {}", entityName, key, verification.getStatus());
+            verifications.add(verification);
+        }
+        return verifications;
+    }
+
+    private Map<Long, Object> find(String entityName, List<Long> ids) {
+        Map<Long, Object> found = new HashMap<>();
+        switch (entityName) {
+            case BLOGS:
+                blogRepository.findAllById(ids).forEach(blog -> found.put(blog.getId(), blog));
+                break;
+            case BLOG_ENTRIES:
+                blogEntryRepository.findAllByIdWithEagerRelationships(ids).forEach(entry -> found.put(entry.getId(), entry));
+                break;
+            case TAGS:
+                tagRepository.findAllById(ids).forEach(tag -> found.put(tag.getId(), tag));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown anchored entity " + entityName);
+        }
+        Map<Long, Object> entities = new LinkedHashMap<>();
+        for (Long id : ids) {
+            if (found.containsKey(id)) {
+                entities.put(id, found.get(id));
+            }
+        }
+        return entities;
+    }
+
+    private AnchorVerificationDTO verifyValue(String key, Object entity, String ledgerValue) {
+        if (ledgerValue == null) {
+            return new AnchorVerificationDTO(key, null, ledgerValue(entity), AnchorVerificationDTO.MISSING);
+        }
+        String computed = CanonicalForm.isDigest(ledgerValue) ? CanonicalForm.digest(entity) : entity.toString();
+        return new AnchorVerificationDTO(key, ledgerValue, computed,
+            ledgerValue.equals(computed) ? AnchorVerificationDTO.MATCH : AnchorVerificationDTO.MISMATCH);
+    }
+
+    private AnchorVerificationDTO verifyInclusion(String key, Object entity, LedgerAnchor anchor,
+            Map<String, String> ledgerValues) {
+        String digest = CanonicalForm.digest(entity);
+        if (anchor == null) {
+            return new AnchorVerificationDTO(key, null, digest, AnchorVerificationDTO.MISSING);
+        }
+        if (!anchor.getDigest().equals(digest)) {
+            return new AnchorVerificationDTO(key, anchor.getDigest(), digest, AnchorVerificationDTO.MISMATCH);
+        }
+        if (anchor.getBatchKey() == null) {
+            return new AnchorVerificationDTO(key, null, digest, AnchorVerificationDTO.PENDING);
+        }
+
+        List<String> proof = anchor.getProof().isEmpty() ? new ArrayList<>() : Arrays.asList(anchor.getProof().split(" "));
+        String computed = CanonicalForm.VERSION + ":" + MerkleTree.rootOf(leaf(key, digest), proof);
+        String ledgerValue = ledgerValues.get(anchor.getBatchKey());
+        String status = ledgerValue == null ? AnchorVerificationDTO.PENDING
+            : ledgerValue.equals(computed) ? AnchorVerificationDTO.MATCH : AnchorVerificationDTO.MISMATCH;
+        AnchorVerificationDTO verification = new AnchorVerificationDTO(key, ledgerValue, computed, status);
+        verification.setLedgerKey(anchor.getBatchKey());
+        verification.setProof(proof);
+        return verification;
+    }
+
+    private void save(String key, Object entity) {
+        ledgerAnchorRepository.save(new LedgerAnchor().entityKey(key).digest(CanonicalForm.digest(entity)));
+    }
+
+    /*
+     * The Merkle leaf of an entity, from its key and versioned digest
+     */
+    private static byte[] leaf(String key, String digest) {
+        return MerkleTree.leaf(key, MerkleTree.unhex(digest.substring(digest.indexOf(':') + 1)));
+    }
+
+    private Map<String, String> read(Collection<String> keys) throws Exception {
+        if (keys.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        if (mirror.isServing()) {
+            Map<String, String> values = new HashMap<>();
+            mirror.findAll(keys).forEach(state -> values.put(state.getEntityKey(), state.getEntityValue()));
+            return values;
+        }
+        return ledgerReader.getMany(keys);
+    }
+}
@@ -0,0 +1,255 @@
+package blog.service;
+
+import blog.config.ApplicationProperties;
+import blog.domain.LedgerCheckpoint;
+import blog.domain.LedgerState;
+import blog.network.BlockListener;
+import blog.network.FabricGateway;
+import blog.network.LedgerBackend;
+import blog.network.LedgerBlock;
+import blog.repository.LedgerCheckpointRepository;
+import blog.repository.LedgerStateRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service keeping a local mirror of the chaincode world state.
+ * <p>
+ * Committed blocks are applied in order to the ledger_state table, each in one
+ * database transaction together with the checkpoint of the next block to
+ * apply. On start, the mirror listens to the channel events and catches up
+ * from the checkpoint by reading the missing blocks; a periodic
+ * synchronization fills the gaps left by missed events. Filtered blocks only
+ * tell that a block was committed, the full block is then read from the
+ * ledger. While the ledger is unavailable, the mirror keeps serving the
+ * reads, with the state of the last applied block.
+ * <p>
+ * The channel events only record the height of the ledger: the blocks are
+ * read and applied on the mirror's own thread, so that a slow database never
+ * holds the dispatch of the events to the other listeners.
+ */
+@Service
+public class LedgerMirrorService {
+
+    public static final String CHECKPOINT = "mirror";
+
+    private final Logger log = LoggerFactory.getLogger(LedgerMirrorService.class);
+
+    private final FabricGateway gateway;
+
+    private final LedgerStateRepository ledgerStateRepository;
+
+    private final LedgerCheckpointRepository ledgerCheckpointRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.Fabric.Mirror properties;
+
+    private final BlockListener listener = this::onBlock;
+
+    private final Object lock = new Object();
+
+    private boolean attached;
+
+    private volatile long next = -1;
+
+    private final AtomicLong height = new AtomicLong();
+
+    /* Last block received in full from the events, saving its read */
+    private volatile LedgerBlock received;
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    private final ExecutorService executor = Executors
+        .newSingleThreadExecutor(new CustomizableThreadFactory("ledger-mirror-"));
+
+    private final Counter blocks;
+
+    public LedgerMirrorService(FabricGateway gateway, LedgerStateRepository ledgerStateRepository,
+            LedgerCheckpointRepository ledgerCheckpointRepository, PlatformTransactionManager transactionManager,
+            ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.gateway = gateway;
+        this.ledgerStateRepository = ledgerStateRepository;
+        this.ledgerCheckpointRepository = ledgerCheckpointRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = applicationProperties.getFabric().getMirror();
+        this.blocks = meterRegistry.counter("fabric.mirror.blocks");
+        Gauge.builder("fabric.mirror.lag", this, mirror -> Math.max(0, mirror.height.get() - mirror.next))
+            .description("Committed blocks not yet applied to the mirror").register(meterRegistry);
+    }
+
+    /**
+     * Attach to the current backend and apply the blocks committed since the
+     * checkpoint.
+     */
+    @Scheduled(fixedDelayString = "${application.fabric.mirror.sync-delay-ms:5000}")
+    public void sync() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (gateway.getBreaker().isOpen()) {
+            log.debug("Ledger unavailable, the mirror serves the state as of block {}", next);
+            return;
+        }
+        try {
+            LedgerBackend backend = gateway.getBackend();
+            synchronized (lock) {
+                if (!attached) {
+                    gateway.getEvents().addBlockListener(listener);
+                    attached = true;
+                }
+                if (next < 0) {
+                    next = ledgerCheckpointRepository.findById(CHECKPOINT).map(LedgerCheckpoint::getBlockNumber).orElse(0L);
+                }
+                long ledgerHeight = backend.getHeight();
+                if (next > ledgerHeight) {
+                    log.warn("Ledger height {} is below the mirror checkpoint {}, rebuilding the mirror", ledgerHeight, next);
+                    transactionTemplate.execute(status -> {
+                        ledgerStateRepository.deleteAllInBatch();
+                        return null;
+                    });
+                    next = 0;
+                }
+                height.set(ledgerHeight);
+                catchUp(backend, ledgerHeight);
+            }
+        } catch (Exception e) {
+            log.warn("Cannot synchronize the ledger mirror: {}", e.toString());
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+        synchronized (lock) {
+            gateway.getEvents().removeBlockListener(listener);
+            attached = false;
+        }
+    }
+
+    /**
+     * @return true once the mirror is attached to the ledger and serves reads
+     */
+    public boolean isSynchronized() {
+        return attached && next >= 0;
+    }
+
+    /**
+     * @return true if the mirror serves the reads: once synchronized, or,
+     *         while the circuit breaker of the ledger is open, with the state
+     *         as of its checkpoint
+     */
+    public boolean isServing() {
+        return isSynchronized() || properties.isEnabled() && gateway.getBreaker().isOpen();
+    }
+
+    /**
+     * @return the number of the next block to apply
+     */
+    public long getCheckpoint() {
+        return next;
+    }
+
+    /**
+     * Read the mirrored state of a key.
+     *
+     * @param key the chaincode key
+     * @return the state, or empty if the key is not in the world state as of
+     *         the checkpoint
+     */
+    public Optional<LedgerState> find(String key) {
+        return ledgerStateRepository.findById(key);
+    }
+
+    /**
+     * Read the mirrored state of keys.
+     *
+     * @param keys the chaincode keys
+     * @return the states of the keys in the world state as of the checkpoint
+     */
+    public List<LedgerState> findAll(Collection<String> keys) {
+        return ledgerStateRepository.findAllById(keys);
+    }
+
+    /*
+     * Record the new height and have the mirror catch up on its own thread;
+     * a drain already queued covers this block too
+     */
+    private void onBlock(LedgerBlock block) {
+        height.accumulateAndGet(block.getNumber() + 1, Math::max);
+        if (!block.isFiltered()) {
+            received = block;
+        }
+        if (draining.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+            }
+        }
+    }
+
+    private void drain() {
+        draining.set(false);
+        synchronized (lock) {
+            if (next < 0 || next >= height.get() || !attached) {
+                return;
+            }
+            try {
+                catchUp(gateway.getBackend(), height.get());
+            } catch (Exception e) {
+                log.warn("Cannot apply block {} to the ledger mirror: {}", next, e.toString());
+            }
+        }
+    }
+
+    private void catchUp(LedgerBackend backend, long until) throws Exception {
+        while (next < until) {
+            LedgerBlock block = received;
+            apply(block != null && block.getNumber() == next ? block : backend.getBlock(next));
+        }
+    }
+
+    private void apply(LedgerBlock block) {
+        transactionTemplate.execute(status -> {
+            for (LedgerBlock.Transaction transaction : block.getTransactions()) {
+                if (!transaction.isValid()) {
+                    continue;
+                }
+                for (Map.Entry<String, String> write : transaction.getWrites().entrySet()) {
+                    if (write.getValue() == null) {
+                        ledgerStateRepository.findById(write.getKey()).ifPresent(ledgerStateRepository::delete);
+                    } else {
+                        ledgerStateRepository.save(new LedgerState().entityKey(write.getKey())
+                            .entityValue(write.getValue()).blockNumber(block.getNumber())
+                            .transactionId(transaction.getTransactionId()));
+                    }
+                }
+            }
+            ledgerCheckpointRepository.save(new LedgerCheckpoint().name(CHECKPOINT).blockNumber(block.getNumber() + 1));
+            return null;
+        });
+        next = block.getNumber() + 1;
+        blocks.increment();
+    }
+}
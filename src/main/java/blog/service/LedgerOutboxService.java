@@ -0,0 +1,310 @@
+package blog.service;
+
+import blog.config.ApplicationProperties;
+import blog.domain.LedgerOutbox;
+import blog.network.FabricGateway;
+import blog.network.LedgerBatcher;
+import blog.network.LedgerJournal;
+import blog.network.LedgerTransaction;
+import blog.network.LedgerUnavailableException;
+import blog.network.networkException.A_BlockchainException;
+import blog.network.request.Batch.Operation;
+import blog.repository.LedgerOutboxRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service relaying ledger writes through the outbox table.
+ * <p>
+ * Writes are saved in the caller's transaction, so they are only relayed if
+ * the entity change commits. The relay drains the oldest due rows to Fabric
+ * through the {@link LedgerBatcher}, one row per key at a time so that writes
+ * to a key are applied in order, and retries failed rows with an exponential
+ * backoff; the rows of a key wait behind its row waiting for a retry, while
+ * the other keys go on. A chaincode refusal (the entity already exists, is
+ * missing or already has this value) is final and drops the row; a row
+ * failing {@code max-attempts} times is kept as a dead letter and no longer
+ * relayed. The next writes of its key wait behind it, as they would behind a
+ * retry, until the dead letter is deleted or its attempts reset.
+ * <p>
+ * The relay runs on its own thread, every {@code relay-delay-ms}, since a
+ * pass waits for the commit of its writes.
+ * <p>
+ * Successive sets of a key waiting in the outbox are relayed as a single set
+ * of the last value, so that an entity saved many times while the ledger was
+ * slow is not replayed save by save.
+ * <p>
+ * While the circuit breaker of the gateway is open, the relay pauses and the
+ * writes wait in the outbox, without spending their attempts.
+ * <p>
+ * The rows are durable already, so they are not journaled by the batcher; on
+ * start, the writes the {@link LedgerJournal} kept from a previous run which
+ * never completed are saved as outbox rows and relayed like the others.
+ */
+@Service
+public class LedgerOutboxService {
+
+    public static final String ADD = "add";
+
+    public static final String SET = "set";
+
+    public static final String DELETE = "delete";
+
+    private final Logger log = LoggerFactory.getLogger(LedgerOutboxService.class);
+
+    private final LedgerOutboxRepository ledgerOutboxRepository;
+
+    private final LedgerBatcher batcher;
+
+    private final FabricGateway gateway;
+
+    private final LedgerJournal journal;
+
+    private final ApplicationProperties.Fabric.Outbox properties;
+
+    private final AtomicLong pending = new AtomicLong();
+
+    private final AtomicLong lagMillis = new AtomicLong();
+
+    private final Counter relayed;
+
+    private final Counter refused;
+
+    private final Counter retried;
+
+    private final Counter combined;
+
+    private final Counter deadLettered;
+
+    private final ScheduledExecutorService scheduler = Executors
+        .newSingleThreadScheduledExecutor(new CustomizableThreadFactory("ledger-outbox-"));
+
+    public LedgerOutboxService(LedgerOutboxRepository ledgerOutboxRepository, LedgerBatcher batcher,
+            FabricGateway gateway, LedgerJournal journal, ApplicationProperties applicationProperties,
+            MeterRegistry meterRegistry) {
+        this.ledgerOutboxRepository = ledgerOutboxRepository;
+        this.batcher = batcher;
+        this.gateway = gateway;
+        this.journal = journal;
+        this.properties = applicationProperties.getFabric().getOutbox();
+        this.relayed = meterRegistry.counter("fabric.outbox.relayed");
+        this.refused = meterRegistry.counter("fabric.outbox.refused");
+        this.retried = meterRegistry.counter("fabric.outbox.retried");
+        this.combined = meterRegistry.counter("fabric.outbox.combined");
+        this.deadLettered = meterRegistry.counter("fabric.outbox.dead");
+        Gauge.builder("fabric.outbox.pending", pending, AtomicLong::get)
+            .description("Ledger writes waiting in the outbox").register(meterRegistry);
+        Gauge.builder("fabric.outbox.lag", lagMillis, lag -> lag.get() / 1000.0)
+            .description("Seconds the oldest ledger write has been waiting in the outbox").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (properties.isEnabled()) {
+            scheduler.scheduleWithFixedDelay(this::relayPass, properties.getRelayDelayMs(), properties.getRelayDelayMs(),
+                TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    @Transactional
+    public LedgerOutbox add(String entity, String value) {
+        return save(ADD, entity, value);
+    }
+
+    @Transactional
+    public LedgerOutbox set(String entity, String value) {
+        return save(SET, entity, value);
+    }
+
+    @Transactional
+    public LedgerOutbox delete(String entity) {
+        return save(DELETE, entity, null);
+    }
+
+    /**
+     * Save as outbox rows the ledger writes journaled by the previous run and never completed, before the requests
+     * are served. They leave the journal once saved.
+     */
+    @EventListener(ContextRefreshedEvent.class)
+    @Transactional
+    public void recoverJournal() {
+        SortedMap<Long, Operation> unfinished = journal.recover();
+        if (unfinished.isEmpty()) {
+            return;
+        }
+        log.warn("Relaying {} ledger writes the previous run never completed", unfinished.size());
+        for (Operation operation : unfinished.values()) {
+            save(operation.getFunction(), operation.getEntity(), operation.getValue());
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                unfinished.keySet().forEach(journal::done);
+            }
+        });
+    }
+
+    private LedgerOutbox save(String operation, String entity, String value) {
+        log.debug("Request to relay {} of {} to the ledger", operation, entity);
+        return ledgerOutboxRepository.save(new LedgerOutbox().operation(operation).entityKey(entity).entityValue(value));
+    }
+
+    /* A failed pass must not cancel the next ones */
+    private void relayPass() {
+        try {
+            relay();
+        } catch (RuntimeException e) {
+            log.warn("Outbox relay pass failed: {}", e.toString());
+        }
+    }
+
+    /**
+     * Relay the oldest due writes to Fabric and wait for their commit.
+     */
+    public void relay() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Instant now = Instant.now();
+        pending.set(ledgerOutboxRepository.countByDeadLetterFalse());
+        lagMillis.set(ledgerOutboxRepository.findFirstByDeadLetterFalseOrderByIdAsc()
+            .map(oldest -> Duration.between(oldest.getCreatedDate(), now).toMillis()).orElse(0L));
+        if (gateway.getBreaker().isOpen()) {
+            log.debug("Ledger unavailable, {} writes parked in the outbox", pending.get());
+            return;
+        }
+        List<LedgerOutbox> due = ledgerOutboxRepository.findDue(now, PageRequest.of(0, properties.getBatchSize()));
+
+        // Only the first write of each key is sent, the next ones wait for it, but the sets following a set are
+        // sent with it: the last value wins
+        Set<String> closed = new HashSet<>();
+        Map<String, List<LedgerOutbox>> runs = new LinkedHashMap<>();
+        for (LedgerOutbox outbox : due) {
+            String key = outbox.getEntityKey();
+            if (!runs.containsKey(key)) {
+                runs.put(key, new ArrayList<>(Collections.singletonList(outbox)));
+            } else if (!closed.contains(key)) {
+                List<LedgerOutbox> run = runs.get(key);
+                if (SET.equals(run.get(0).getOperation()) && SET.equals(outbox.getOperation())) {
+                    run.add(outbox);
+                } else {
+                    closed.add(key);
+                }
+            }
+        }
+        if (runs.isEmpty()) {
+            return;
+        }
+        Map<List<LedgerOutbox>, CompletableFuture<LedgerTransaction>> sent = new LinkedHashMap<>();
+        for (List<LedgerOutbox> run : runs.values()) {
+            if (run.size() > 1) {
+                combined.increment(run.size() - 1);
+            }
+            sent.put(run, send(run.get(0), run.get(run.size() - 1).getEntityValue()));
+        }
+        batcher.flush();
+
+        List<LedgerOutbox> done = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + properties.getCommitTimeoutMs();
+        for (Map.Entry<List<LedgerOutbox>, CompletableFuture<LedgerTransaction>> entry : sent.entrySet()) {
+            List<LedgerOutbox> run = entry.getKey();
+            LedgerOutbox outbox = run.get(0);
+            try {
+                LedgerTransaction transaction = entry.getValue()
+                    .get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                if (transaction.isValid()) {
+                    relayed.increment();
+                    done.addAll(run);
+                } else {
+                    retry(outbox, "Transaction " + transaction.getTransactionId() + " " + transaction.getValidationCode());
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof LedgerUnavailableException) {
+                    // not sent, kept for the pass after the breaker closes
+                    continue;
+                } else if (e.getCause() instanceof A_BlockchainException) {
+                    log.warn("Ledger refused {} of {}: {}", outbox.getOperation(), outbox.getEntityKey(), e.getCause());
+                    refused.increment();
+                    done.addAll(run);
+                } else {
+                    retry(outbox, String.valueOf(e.getCause()));
+                }
+            } catch (TimeoutException e) {
+                retry(outbox, "No commit after " + properties.getCommitTimeoutMs() + " ms");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        ledgerOutboxRepository.deleteAll(done);
+    }
+
+    private CompletableFuture<LedgerTransaction> send(LedgerOutbox outbox, String value) {
+        switch (outbox.getOperation()) {
+            case ADD:
+                return batcher.add(outbox.getEntityKey(), value, false);
+            case SET:
+                return batcher.set(outbox.getEntityKey(), value, false);
+            default:
+                return batcher.delete(outbox.getEntityKey(), false);
+        }
+    }
+
+    private void retry(LedgerOutbox outbox, String error) {
+        int attempts = outbox.getAttempts() + 1;
+        outbox.setAttempts(attempts);
+        outbox.setLastError(error.length() > 1024 ? error.substring(0, 1024) : error);
+        if (attempts >= properties.getMaxAttempts()) {
+            log.error("Giving up relaying {} of {} after {} attempts: {}", outbox.getOperation(),
+                outbox.getEntityKey(), attempts, error);
+            outbox.setDeadLetter(true);
+            ledgerOutboxRepository.save(outbox);
+            deadLettered.increment();
+            return;
+        }
+        long backoff = Math.min(properties.getMaxBackoffMs(),
+            properties.getBackoffMs() << Math.min(attempts - 1, 20));
+        log.debug("Cannot relay {} of {} (attempt {}), next in {} ms: {}", outbox.getOperation(),
+            outbox.getEntityKey(), attempts, backoff, error);
+        outbox.setNextAttemptDate(Instant.now().plusMillis(backoff));
+        ledgerOutboxRepository.save(outbox);
+        retried.increment();
+    }
+}
@@ -0,0 +1,184 @@
+package blog.service;
+
+import blog.config.ApplicationProperties;
+import blog.network.FabricGateway;
+import blog.network.TransactionStatus;
+import blog.network.TransactionTracker;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Service pushing the status transitions of the ledger transactions to their subscribers, as server-sent events.
+ * <p>
+ * Each transition of the {@link TransactionTracker} is sent as an event named after its stage (endorsed, committed,
+ * invalidated or failed), holding the status as JSON, to the subscribers of every transaction and to those following
+ * this transaction or tracking ID. Each subscriber has its own buffer of {@code stream-buffer-size} transitions, sent in
+ * order from a pooled thread, so that a slow subscriber neither holds the threads completing the transactions nor
+ * delays the other subscribers. A subscriber whose buffer is full, or which cannot be written to, is dropped: its
+ * stream is completed with an error, and the client reconnects.
+ */
+@Service
+public class TransactionStreamService {
+
+    private final Logger log = LoggerFactory.getLogger(TransactionStreamService.class);
+
+    /* Followed ID of a subscriber to every transaction */
+    private static final String ALL = "";
+
+    private final TransactionTracker tracker;
+
+    private final long timeoutMs;
+
+    private final int bufferSize;
+
+    private final Map<SseEmitter, Subscriber> subscribers = new ConcurrentHashMap<>();
+
+    private final Consumer<TransactionStatus> listener = this::onTransition;
+
+    /* Drains the buffers, a thread per subscriber being written to */
+    private final ExecutorService executor = Executors
+        .newCachedThreadPool(new CustomizableThreadFactory("ledger-stream-"));
+
+    private final Counter dropped;
+
+    public TransactionStreamService(FabricGateway gateway, ApplicationProperties applicationProperties,
+            MeterRegistry meterRegistry) {
+        this.tracker = gateway.getTracker();
+        this.timeoutMs = applicationProperties.getFabric().getTracking().getStreamTimeoutMs();
+        this.bufferSize = Math.max(1, applicationProperties.getFabric().getTracking().getStreamBufferSize());
+        this.dropped = meterRegistry.counter("fabric.tracking.subscribers.dropped");
+        Gauge.builder("fabric.tracking.subscribers", subscribers, Map::size)
+            .description("Clients subscribed to the transaction status stream").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void register() {
+        tracker.addListener(listener);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        tracker.removeListener(listener);
+        executor.shutdownNow();
+        subscribers.keySet().forEach(SseEmitter::complete);
+        subscribers.clear();
+    }
+
+    /**
+     * Subscribe to the status transitions.
+     *
+     * @param id the transaction or tracking ID to follow, whose current status is sent first, or null for every
+     * transaction
+     * @return the emitter of the events
+     */
+    public SseEmitter subscribe(String id) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(id == null ? ALL : id, bufferSize);
+        subscribers.put(emitter, subscriber);
+        emitter.onCompletion(() -> subscribers.remove(emitter));
+        emitter.onTimeout(() -> subscribers.remove(emitter));
+        if (id != null) {
+            tracker.find(id).ifPresent(status -> push(emitter, subscriber, status));
+        }
+        log.debug("Subscribed to the transaction status stream: {}", id == null ? "all" : id);
+        return emitter;
+    }
+
+    private void onTransition(TransactionStatus status) {
+        subscribers.forEach((emitter, subscriber) -> {
+            String followed = subscriber.followed;
+            if (ALL.equals(followed) || followed.equals(status.getTransactionId())
+                || followed.equals(status.getTrackingId())) {
+                push(emitter, subscriber, status);
+            }
+        });
+    }
+
+    /*
+     * Buffer a transition for a subscriber, and start draining its buffer unless already being drained
+     */
+    private void push(SseEmitter emitter, Subscriber subscriber, TransactionStatus status) {
+        if (!subscriber.buffer.offer(status)) {
+            drop(emitter, new IllegalStateException("Transaction status subscriber too slow, "
+                + bufferSize + " transitions waiting"));
+            return;
+        }
+        if (subscriber.draining.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> drain(emitter, subscriber));
+            } catch (RejectedExecutionException e) {
+                // shutting down
+                subscriber.draining.set(false);
+            }
+        }
+    }
+
+    private void drain(SseEmitter emitter, Subscriber subscriber) {
+        do {
+            TransactionStatus status;
+            while ((status = subscriber.buffer.poll()) != null) {
+                if (!send(emitter, status)) {
+                    return;
+                }
+            }
+            subscriber.draining.set(false);
+            // a transition pushed meanwhile may have seen the buffer still being drained
+        } while (!subscriber.buffer.isEmpty() && subscriber.draining.compareAndSet(false, true));
+    }
+
+    private boolean send(SseEmitter emitter, TransactionStatus status) {
+        try {
+            emitter.send(SseEmitter.event().name(status.getStage().name().toLowerCase())
+                .data(status, MediaType.APPLICATION_JSON));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            drop(emitter, e);
+            return false;
+        }
+    }
+
+    private void drop(SseEmitter emitter, Exception cause) {
+        if (subscribers.remove(emitter) == null) {
+            return;
+        }
+        dropped.increment();
+        log.debug("Dropping a transaction status subscriber: {}", cause.toString());
+        emitter.completeWithError(cause);
+    }
+
+    private static final class Subscriber {
+
+        /* Transaction or tracking ID followed, ALL for every transaction */
+        private final String followed;
+
+        private final BlockingQueue<TransactionStatus> buffer;
+
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        Subscriber(String followed, int bufferSize) {
+            this.followed = followed;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package blog.service.dto;
+
+import java.util.List;
+
+/**
+ * A DTO representing the verification of an entity against its ledger value.
+ */
+public class AnchorVerificationDTO {
+
+    /**
+     * The ledger value matches the database row.
+     */
+    public static final String MATCH = "MATCH";
+
+    /**
+     * The ledger value differs from the database row, or was not written yet.
+     */
+    public static final String MISMATCH = "MISMATCH";
+
+    /**
+     * The ledger has no value for the entity.
+     */
+    public static final String MISSING = "MISSING";
+
+    /**
+     * The last digest of the entity is not anchored yet.
+     */
+    public static final String PENDING = "PENDING";
+
+    private String key;
+
+    private String ledgerKey;
+
+    private List<String> proof;
+
+    private String ledgerValue;
+
+    private String computedValue;
+
+    private String status;
+
+    public AnchorVerificationDTO() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public AnchorVerificationDTO(String key, String ledgerValue, String computedValue, String status) {
+        this.key = key;
+        this.ledgerKey = key;
+        this.ledgerValue = ledgerValue;
+        this.computedValue = computedValue;
+        this.status = status;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    /**
+     * @return the chaincode key holding the entity value, or the Merkle root of its batch
+     */
+    public String getLedgerKey() {
+        return ledgerKey;
+    }
+
+    public void setLedgerKey(String ledgerKey) {
+        this.ledgerKey = ledgerKey;
+    }
+
+    /**
+     * @return the inclusion proof of the entity digest in the Merkle root, null if anchored by its own key
+     */
+    public List<String> getProof() {
+        return proof;
+    }
+
+    public void setProof(List<String> proof) {
+        this.proof = proof;
+    }
+
+    public String getLedgerValue() {
+        return ledgerValue;
+    }
+
+    public void setLedgerValue(String ledgerValue) {
+        this.ledgerValue = ledgerValue;
+    }
+
+    public String getComputedValue() {
+        return computedValue;
+    }
+
+    public void setComputedValue(String computedValue) {
+        this.computedValue = computedValue;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    @Override
+    public String toString() {
+        return "AnchorVerificationDTO{" +
+            "key='" + key + "'" +
+            ", ledgerKey='" + ledgerKey + "'" +
+            ", ledgerValue='" + ledgerValue + "'" +
+            ", computedValue='" + computedValue + "'" +
+            ", status='" + status + "'" +
+            "}";
+    }
+}
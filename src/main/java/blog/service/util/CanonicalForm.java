@@ -0,0 +1,139 @@
+package blog.service.util;
+
+import blog.domain.Blog;
+import blog.domain.BlogEntry;
+import blog.domain.Tag;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Utility class writing entities in a stable byte form, whose SHA-256 digest anchors them on the ledger.
+ * <p>
+ * The form of an entity is its type name followed by its fields in a fixed order, each as a 4-byte length and its
+ * UTF-8 bytes, or a length of -1 for null. Related entities are written by id, in ascending order for a collection,
+ * and dates are truncated to the second kept by the database. A change to this layout needs a new {@link #VERSION}.
+ */
+public final class CanonicalForm {
+
+    /**
+     * Version of the layout, written in front of each digest.
+     */
+    public static final int VERSION = 1;
+
+    private static final Pattern DIGEST = Pattern.compile("\\d+:[0-9a-f]{64}");
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private CanonicalForm() {
+    }
+
+    /**
+     * Write an entity in its canonical form.
+     *
+     * @param entity a Blog, BlogEntry or Tag
+     * @return the canonical form
+     */
+    public static byte[] of(Object entity) {
+        try (ByteArrayOutputStream bytes = new ByteArrayOutputStream(); DataOutputStream out = new DataOutputStream(bytes)) {
+            if (entity instanceof Blog) {
+                Blog blog = (Blog) entity;
+                write(out, "Blog");
+                write(out, blog.getId());
+                write(out, blog.getName());
+                write(out, blog.getHandle());
+                write(out, blog.getUser() == null ? null : blog.getUser().getId());
+            } else if (entity instanceof BlogEntry) {
+                BlogEntry entry = (BlogEntry) entity;
+                write(out, "BlogEntry");
+                write(out, entry.getId());
+                write(out, entry.getTitle());
+                write(out, entry.getContent());
+                write(out, entry.getDate() == null ? null : entry.getDate().getEpochSecond());
+                write(out, entry.getBlog() == null ? null : entry.getBlog().getId());
+                writeIds(out, entry.getTags());
+            } else if (entity instanceof Tag) {
+                Tag tag = (Tag) entity;
+                write(out, "Tag");
+                write(out, tag.getId());
+                write(out, tag.getName());
+            } else {
+                throw new IllegalArgumentException("No canonical form for " + entity);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // not thrown by an in-memory stream
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Compute the ledger anchor of an entity.
+     *
+     * @param entity a Blog, BlogEntry or Tag
+     * @return the version of the layout and the hex SHA-256 of the canonical form, separated by a colon
+     */
+    public static String digest(Object entity) {
+        return VERSION + ":" + hex(sha256(of(entity)));
+    }
+
+    /**
+     * @param value a ledger value
+     * @return true if the value looks like an anchor computed by {@link #digest(Object)}, of any version
+     */
+    public static boolean isDigest(String value) {
+        return value != null && DIGEST.matcher(value).matches();
+    }
+
+    /**
+     * @param data the bytes to hash
+     * @return the SHA-256 of the bytes
+     */
+    public static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param data the bytes to write
+     * @return the bytes in lowercase hexadecimal
+     */
+    public static String hex(byte[] data) {
+        char[] chars = new char[data.length * 2];
+        for (int i = 0; i < data.length; i++) {
+            chars[2 * i] = HEX[(data[i] >> 4) & 0xf];
+            chars[2 * i + 1] = HEX[data[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    private static void write(DataOutputStream out, Object field) throws IOException {
+        if (field == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = field.toString().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeIds(DataOutputStream out, Collection<Tag> tags) throws IOException {
+        long[] ids = tags.stream().map(Tag::getId).filter(Objects::nonNull).mapToLong(Long::longValue).sorted().toArray();
+        out.writeInt(ids.length);
+        for (long id : ids) {
+            write(out, id);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package blog.service.util;
+
+import blog.domain.Blog;
+import blog.domain.BlogEntry;
+import blog.domain.Tag;
+import blog.network.CompositeKey;
+
+/**
+ * Utility class naming the ledger keys of the entities.
+ * <p>
+ * Each type has a namespace of {@link CompositeKey}s: {@code blog~id}, {@code entry~blogId~id} and {@code tag~id}, so
+ * that the anchors of a type, or the entries of a blog, can be scanned on the ledger. An entry without blog has an
+ * empty blog id.
+ */
+public final class LedgerKeys {
+
+    public static final String BLOG = "blog";
+
+    public static final String ENTRY = "entry";
+
+    public static final String TAG = "tag";
+
+    private LedgerKeys() {
+    }
+
+    /**
+     * @param entity a Blog, BlogEntry or Tag
+     * @return the ledger key of the entity
+     */
+    public static String of(Object entity) {
+        if (entity instanceof Blog) {
+            return blog(((Blog) entity).getId());
+        } else if (entity instanceof BlogEntry) {
+            BlogEntry entry = (BlogEntry) entity;
+            return entry(entry.getBlog() == null ? null : entry.getBlog().getId(), entry.getId());
+        } else if (entity instanceof Tag) {
+            return tag(((Tag) entity).getId());
+        }
+        throw new IllegalArgumentException("No ledger key for " + entity);
+    }
+
+    public static String blog(Long id) {
+        return CompositeKey.of(BLOG, id);
+    }
+
+    public static String entry(Long blogId, Long id) {
+        return CompositeKey.of(ENTRY, blogId == null ? "" : blogId, id);
+    }
+
+    public static String tag(Long id) {
+        return CompositeKey.of(TAG, id);
+    }
+}
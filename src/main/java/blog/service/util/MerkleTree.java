@@ -0,0 +1,136 @@
+package blog.service.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Binary Merkle tree over entity digests, with inclusion proofs.
+ * <p>
+ * A leaf binds the digest of an entity to its ledger key, which names its type and id, so that a proof cannot pass
+ * the digest of an entity off as the one of another entity with the same content; the digest having a fixed length,
+ * the key needs no delimiter. Leaves and inner nodes are hashed with distinct prefixes (0 and 1) so that a proof
+ * cannot pass a node off as a leaf, and the last node of a level with an odd count is promoted unchanged to the next
+ * one. A proof lists the siblings from the leaf up to the root, each as "L:" or "R:" and the hex hash, the letter
+ * telling on which side the sibling stands.
+ */
+public final class MerkleTree {
+
+    private static final byte LEAF = 0;
+
+    private static final byte NODE = 1;
+
+    private final List<byte[][]> levels = new ArrayList<>();
+
+    /**
+     * Build the tree.
+     *
+     * @param leaves the leaves, as built by {@link #leaf}, at least one
+     */
+    public MerkleTree(List<byte[]> leaves) {
+        if (leaves.isEmpty()) {
+            throw new IllegalArgumentException("A Merkle tree needs at least one leaf");
+        }
+        byte[][] level = new byte[leaves.size()][];
+        for (int i = 0; i < level.length; i++) {
+            level[i] = hash(LEAF, leaves.get(i));
+        }
+        levels.add(level);
+        while (level.length > 1) {
+            byte[][] parent = new byte[(level.length + 1) / 2][];
+            for (int i = 0; i < parent.length; i++) {
+                parent[i] = 2 * i + 1 < level.length ? hash(NODE, level[2 * i], level[2 * i + 1]) : level[2 * i];
+            }
+            levels.add(parent);
+            level = parent;
+        }
+    }
+
+    /**
+     * @param entityKey the ledger key of an entity
+     * @param digest the SHA-256 digest of the entity
+     * @return the leaf of the entity, its key followed by its digest
+     */
+    public static byte[] leaf(String entityKey, byte[] digest) {
+        byte[] key = entityKey.getBytes(StandardCharsets.UTF_8);
+        byte[] leaf = Arrays.copyOf(key, key.length + digest.length);
+        System.arraycopy(digest, 0, leaf, key.length, digest.length);
+        return leaf;
+    }
+
+    /**
+     * @return the hex root of the tree
+     */
+    public String getRoot() {
+        return CanonicalForm.hex(levels.get(levels.size() - 1)[0]);
+    }
+
+    /**
+     * @param index the index of a leaf
+     * @return the siblings from the leaf up to the root
+     */
+    public List<String> getProof(int index) {
+        List<String> proof = new ArrayList<>();
+        for (byte[][] level : levels.subList(0, levels.size() - 1)) {
+            int sibling = index ^ 1;
+            if (sibling < level.length) {
+                proof.add((sibling < index ? "L:" : "R:") + CanonicalForm.hex(level[sibling]));
+            }
+            index /= 2;
+        }
+        return Collections.unmodifiableList(proof);
+    }
+
+    /**
+     * Recompute the root a leaf was proven against.
+     *
+     * @param leaf the leaf, as built by {@link #leaf}
+     * @param proof the siblings from the leaf up to the root
+     * @return the hex root
+     */
+    public static String rootOf(byte[] leaf, List<String> proof) {
+        byte[] node = hash(LEAF, leaf);
+        for (String step : proof) {
+            byte[] sibling = unhex(step.substring(2));
+            if (step.startsWith("L:")) {
+                node = hash(NODE, sibling, node);
+            } else if (step.startsWith("R:")) {
+                node = hash(NODE, node, sibling);
+            } else {
+                throw new IllegalArgumentException("Invalid proof step " + step);
+            }
+        }
+        return CanonicalForm.hex(node);
+    }
+
+    /**
+     * @param hex a lowercase or uppercase hexadecimal string
+     * @return the bytes it encodes
+     */
+    public static byte[] unhex(String hex) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Odd hexadecimal length " + hex.length());
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static byte[] hash(byte prefix, byte[]... parts) {
+        int length = 1;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        byte[] data = Arrays.copyOf(new byte[] { prefix }, length);
+        int offset = 1;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, data, offset, part.length);
+            offset += part.length;
+        }
+        return CanonicalForm.sha256(data);
+    }
+}
@@ -12,6 +12,10 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import blog.network.ChaincodeResource;
+import blog.network.FabricGateway;
+import blog.network.LedgerBatcher;
+import blog.service.LedgerMirrorService;
+import blog.service.LedgerOutboxService;
 
 /**
  * REST controller for managing Blog chaincode
@@ -24,7 +28,9 @@ public class BlogChaincodeResource extends ChaincodeResource {
 
 	private final BlogResource chaincode;
 
-	public BlogChaincodeResource(BlogResource chaincode) {
+	public BlogChaincodeResource(BlogResource chaincode, FabricGateway gateway, LedgerBatcher batcher,
+			LedgerMirrorService mirror, LedgerOutboxService outbox) {
+		super(gateway, batcher, mirror, outbox);
 		this.chaincode = chaincode;
 	}
 
@@ -3,13 +3,15 @@ package blog.web.rest;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -19,15 +21,20 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import blog.domain.BlogEntry;
-import blog.network.networkException.A_BlockchainException;
-import blog.network.networkException.EntityNotFound;
-import blog.network.request.Add;
-import blog.network.request.Delete;
-import blog.network.request.Get;
-import blog.network.request.Set;
+import blog.network.ChaincodeResource;
+import blog.network.FabricGateway;
+import blog.network.KeyModification;
+import blog.network.LedgerBatcher;
+import blog.network.LedgerReader;
 import blog.repository.BlogEntryRepository;
+import blog.service.LedgerMirrorService;
+import blog.service.LedgerOutboxService;
+import blog.service.util.LedgerKeys;
 import blog.web.rest.errors.BadRequestAlertException;
 import blog.web.rest.util.HeaderUtil;
 
@@ -38,16 +45,26 @@ import io.github.jhipster.web.util.ResponseUtil;
  */
 @RestController
 @RequestMapping("/api")
-public class BlogEntryResource {
+public class BlogEntryResource extends ChaincodeResource {
 
     private final Logger log = LoggerFactory.getLogger(BlogEntryResource.class);
 
     private static final String ENTITY_NAME = "blogentry";
 
+    private static final String NDJSON = "application/x-ndjson";
+
     private final BlogEntryRepository blogentryRepository;
 
-    public BlogEntryResource(BlogEntryRepository blogentryRepository) {
+    private final LedgerReader ledgerReader;
+
+    private final ObjectMapper objectMapper;
+
+    public BlogEntryResource(BlogEntryRepository blogentryRepository, FabricGateway gateway, LedgerBatcher batcher,
+            LedgerMirrorService mirror, LedgerOutboxService outbox, LedgerReader ledgerReader, ObjectMapper objectMapper) {
+        super(gateway, batcher, mirror, outbox);
         this.blogentryRepository = blogentryRepository;
+        this.ledgerReader = ledgerReader;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -60,19 +77,16 @@ public class BlogEntryResource {
      * @throws URISyntaxException if the Location URI syntax is incorrect
      */
     @PostMapping("/blogentrys")
+    @Transactional
     public ResponseEntity<BlogEntry> createBlogEntry(@RequestBody BlogEntry blogentry) throws URISyntaxException {
         log.debug("REST request to save BlogEntry : {}", blogentry);
         if (blogentry.getId() != null) {
             throw new BadRequestAlertException("A new blogentry cannot already have an ID", ENTITY_NAME, "idexists");
         }
 
+        // Anchored on commit by the AnchoredEntityListener
         BlogEntry result = blogentryRepository.save(blogentry);
 
-        // Process blockchain add request
-        log.debug("BLOCKCHAIN ADD: " + blogentry.getId().toString() + " with the value: " + blogentry.toString());
-        ResponseEntity<String> response = addRequest(blogentry.getId().toString(), blogentry.toString());
-        log.debug("BLOCKCHAIN ADD RESPONSE: " + response);
-
         return ResponseEntity.created(new URI("/api/blogentrys/" + result.getId()))
                 .headers(HeaderUtil.createEntityCreationAlert(ENTITY_NAME, result.getId().toString())).body(result);
     }
@@ -88,18 +102,16 @@ public class BlogEntryResource {
      * @throws URISyntaxException if the Location URI syntax is incorrect
      */
     @PutMapping("/blogentrys")
+    @Transactional
     public ResponseEntity<BlogEntry> updateBlogEntry(@RequestBody BlogEntry blogentry) throws URISyntaxException {
         log.debug("REST request to update BlogEntry : {}", blogentry);
         if (blogentry.getId() == null) {
             throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
         }
 
-        // Process blockchain set request
-        log.debug("BLOCKCHAIN UPDATE: " + blogentry.getId().toString() + " to the value: " + blogentry.toString());
-        ResponseEntity<String> response = setRequest(blogentry.getId().toString(), blogentry.toString());
-        log.debug("BLOCKCHAIN UPDATE RESPONSE: " + response);
-
+        // Anchored on commit by the AnchoredEntityListener, under a new key if the entry moved to another blog
         BlogEntry result = blogentryRepository.save(blogentry);
+
         return ResponseEntity.ok().headers(HeaderUtil.createEntityUpdateAlert(ENTITY_NAME, blogentry.getId().toString()))
                 .body(result);
     }
@@ -137,18 +149,44 @@ public class BlogEntryResource {
      * @return the ResponseEntity with status 200 (OK)
      */
     @DeleteMapping("/blogentrys/{id}")
+    @Transactional
     public ResponseEntity<Void> deleteBlogEntry(@PathVariable Long id) {
         log.debug("REST request to delete BlogEntry : {}", id);
 
-        // Process blockchain delete request
-        log.debug("BLOCKCHAIN DELETE: " + id.toString());
-        ResponseEntity<String> response = deleteRequest(id.toString());
-        log.debug("BLOCKCHAIN DELETE RESPONSE: " + response);
-
+        // Removed from the ledger on commit by the AnchoredEntityListener
         blogentryRepository.deleteById(id);
+
         return ResponseEntity.ok().headers(HeaderUtil.createEntityDeletionAlert(ENTITY_NAME, id.toString())).build();
     }
 
+    /**
+     * GET /blogentrys/:id/ledger-history : stream the writes of the "id" blogentry on the ledger, oldest first.
+     *
+     * @param id the id of the blogentry
+     * @param blogId the id of its blog, only needed for a deleted blogentry
+     * @return the ResponseEntity with status 200 (OK) and with body one JSON write per line, or with status 404 (Not
+     *         Found) if the blogentry is not in the database and no blogId is given
+     */
+    @GetMapping(value = "/blogentrys/{id}/ledger-history", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> getLedgerHistory(@PathVariable Long id,
+            @RequestParam(required = false) Long blogId) {
+        log.debug("REST request to get the ledger history of BlogEntry : {}", id);
+        Optional<String> key = blogentryRepository.findById(id).map(LedgerKeys::of);
+        if (!key.isPresent() && blogId == null) {
+            return ResponseEntity.notFound().build();
+        }
+        String ledgerKey = key.orElseGet(() -> LedgerKeys.entry(blogId, id));
+
+        StreamingResponseBody body = out -> {
+            Iterator<KeyModification> history = ledgerReader.history(ledgerKey).iterator();
+            while (history.hasNext()) {
+                out.write(objectMapper.writeValueAsBytes(history.next()));
+                out.write('\n');
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
     /**
      * POST /blogentrys/add : add a new value to the blockchain.
      *
@@ -157,36 +195,10 @@ public class BlogEntryResource {
      *         with status 417 (EXPECTATION_FAILED), or with status 500
      *         (INTERNAL_SERVER_ERROR)
      */
+    @Override
     @PostMapping("/blogentrys/add")
     public ResponseEntity<String> addRequest(@RequestParam String entity, String value) {
-        if (entity.isEmpty()) {
-            log.debug("Empty entity name");
-            return new ResponseEntity<String>("EMPTY_ENTITY_NAME", HttpStatus.EXPECTATION_FAILED);
-        }
-        if (value.isEmpty()) {
-            log.debug("Empty value");
-            return new ResponseEntity<String>("EMPTY_VALUE", HttpStatus.EXPECTATION_FAILED);
-        }
-
-        Add blockchainRequest;
-        String transactionID;
-        try {
-            blockchainRequest = new Add(entity, value);
-            blockchainRequest.send();
-            transactionID = blockchainRequest.transactionID;
-        } catch (A_BlockchainException e) {
-            String errored = "BLOCKCHAIN ERROR: " + e.toString();
-            log.debug(errored);
-            return new ResponseEntity<String>(errored, HttpStatus.NOT_ACCEPTABLE);
-        } catch (Exception e) {
-            String errored = "BLOCKCHAIN ERROR: " + e.toString();
-            log.debug(errored);
-            return new ResponseEntity<String>(errored, HttpStatus.INTERNAL_SERVER_ERROR);
-        }
-
-        // Create JSON string
-        String returned = "{" + '"' + "transactionID" + '"' + ":" + '"' + transactionID + '"' + "}";
-        return new ResponseEntity<String>(returned, HttpStatus.OK);
+        return super.addRequest(entity, value);
     }
 
     /**
@@ -197,47 +209,10 @@ public class BlogEntryResource {
      *         or with status 417 (EXPECTATION_FAILED), or with status 500
      *         (INTERNAL_SERVER_ERROR)
      */
+    @Override
     @GetMapping("/blogentrys/get")
     public ResponseEntity<String> getRequest(@RequestParam String entity) {
-        if (entity.isEmpty()) {
-            log.debug("Empty entity name");
-            return new ResponseEntity<String>("EMPTY_ENTITY_NAME", HttpStatus.EXPECTATION_FAILED);
-        }
-
-        String value = null;
-        Get get;
-
-        try {
-            get = new Get(entity);
-            get.send();
-            value = get.state;
-        } catch (EntityNotFound e) {
-            String errored = "BLOCKCHAIN ERROR: " + e.toString();
-            log.debug(errored);
-
-            // Create JSON string
-            String returned = "{" + '"' + "entityState" + '"' + ":" + '"' + "NOT_FOUND" + '"' + "}";
-            return new ResponseEntity<String>(returned, HttpStatus.OK);
-        } catch (Exception e) {
-            String errored = "BLOCKCHAIN ERROR: " + e.toString();
-            log.debug(errored);
-            return new ResponseEntity<String>(errored, HttpStatus.INTERNAL_SERVER_ERROR);
-        }
-
-        if (value == null) {
-            log.debug("The query has failed");
-            return new ResponseEntity<String>("QUERY FAILED", HttpStatus.INTERNAL_SERVER_ERROR);
-        }
-        switch (value) {
-        case "NOT_FOUND":
-            // Create JSON string
-            String returned = "{" + '"' + "entityState" + '"' + ":" + '"' + "NOT_FOUND" + '"' + "}";
-            return new ResponseEntity<String>(returned, HttpStatus.OK);
-        }
-
-        // Create JSON string
-        String returned = "{" + '"' + "entityState" + '"' + ":" + '"' + value + '"' + "}";
-        return new ResponseEntity<String>(returned, HttpStatus.OK);
+        return super.getRequest(entity);
     }
 
     /**
@@ -248,32 +223,10 @@ public class BlogEntryResource {
      *         with status 417 (EXPECTATION_FAILED), or with status 500
      *         (INTERNAL_SERVER_ERROR)
      */
+    @Override
     @DeleteMapping("/blogentrys/delete")
     public ResponseEntity<String> deleteRequest(@RequestParam String entity) {
-        if (entity.isEmpty()) {
-            log.debug("Empty entity name");
-            return new ResponseEntity<String>("EMPTY_ENTITY_NAME", HttpStatus.EXPECTATION_FAILED);
-        }
-
-        Delete blockchainRequest;
-        String transactionID;
-        try {
-            blockchainRequest = new Delete(entity);
-            blockchainRequest.send();
-            transactionID = blockchainRequest.transactionID;
-        } catch (A_BlockchainException e) {
-            String errored = "BLOCKCHAIN ERROR: " + e.toString();
-            log.debug(errored);
-            return new ResponseEntity<String>(errored, HttpStatus.NOT_ACCEPTABLE);
-        } catch (Exception e) {
-            String errored = "BLOCKCHAIN ERROR: " + e.toString();
-            log.debug(errored);
-            return new ResponseEntity<String>(errored, HttpStatus.INTERNAL_SERVER_ERROR);
-        }
-
-        // Create JSON string
-        String returned = "{" + '"' + "transactionID" + '"' + ":" + '"' + transactionID + '"' + "}";
-        return new ResponseEntity<String>(returned, HttpStatus.OK);
+        return super.deleteRequest(entity);
     }
 
     /**
@@ -286,37 +239,15 @@ public class BlogEntryResource {
      *         with status 417 (EXPECTATION_FAILED), or with status 500
      *         (INTERNAL_SERVER_ERROR)
      */
+    @Override
     @PostMapping("/blogentrys/set")
     public ResponseEntity<String> setRequest(@RequestParam String entity, String value) {
-        if (entity.isEmpty()) {
-            log.debug("Empty entity name");
-            return new ResponseEntity<String>("EMPTY_ENTITY_NAME", HttpStatus.EXPECTATION_FAILED);
-        }
-        if (value.isEmpty()) {
-            log.debug("Empty value");
-            return new ResponseEntity<String>("EMPTY_VALUE", HttpStatus.EXPECTATION_FAILED);
-        }
-
-        Set blockchainRequest;
-        String transactionID;
-        try {
-            blockchainRequest = new Set(entity, value);
-            blockchainRequest.send();
-            transactionID = blockchainRequest.transactionID;
-        } catch (A_BlockchainException e) {
-            String errored = "BLOCKCHAIN ERROR: " + e.toString();
-            log.debug(errored);
-            return new ResponseEntity<String>(errored, HttpStatus.NOT_ACCEPTABLE);
-        } catch (Exception e) {
-            String errored = "BLOCKCHAIN ERROR: " + e.toString();
-            log.debug(errored);
-            return new ResponseEntity<String>(errored, HttpStatus.INTERNAL_SERVER_ERROR);
-        }
+        return super.setRequest(entity, value);
+    }
 
-        // Create JSON string
-        String returned = "{" + '"' + "transactionID" + '"' + ":" + '"' + transactionID + '"' + "}";
-        return new ResponseEntity<String>(returned, HttpStatus.OK);
+    @Override
+    protected String getEntityType() {
+        return ENTITY_NAME;
     }
 
 }
-
@@ -9,6 +9,7 @@ import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -20,7 +21,11 @@ import org.springframework.web.bind.annotation.RestController;
 
 import blog.domain.Blog;
 import blog.network.ChaincodeResource;
+import blog.network.FabricGateway;
+import blog.network.LedgerBatcher;
 import blog.repository.BlogRepository;
+import blog.service.LedgerMirrorService;
+import blog.service.LedgerOutboxService;
 import blog.web.rest.errors.BadRequestAlertException;
 import blog.web.rest.util.HeaderUtil;
 import io.github.jhipster.web.util.ResponseUtil;
@@ -38,7 +43,9 @@ public class BlogResource extends ChaincodeResource {
 
 	private final BlogRepository blogRepository;
 
-	public BlogResource(BlogRepository blogRepository) {
+	public BlogResource(BlogRepository blogRepository, FabricGateway gateway, LedgerBatcher batcher,
+			LedgerMirrorService mirror, LedgerOutboxService outbox) {
+		super(gateway, batcher, mirror, outbox);
 		this.blogRepository = blogRepository;
 	}
 
@@ -53,22 +60,16 @@ public class BlogResource extends ChaincodeResource {
 	 *             if the Location URI syntax is incorrect
 	 */
 	@PostMapping("/blogs")
+	@Transactional
 	public ResponseEntity<Blog> createBlog(@RequestBody Blog blog) throws URISyntaxException {
 		log.debug("REST request to save Blog : {}", blog);
 		if (blog.getId() != null) {
 			throw new BadRequestAlertException("A new blog cannot already have an ID", ENTITY_NAME, "idexists");
 		}
 
+		// Anchored on commit by the AnchoredEntityListener
 		Blog result = blogRepository.save(blog);
 
-		// Process blockchain add request
-		log.debug("BLOCKCHAIN ADD: " + blog.getId().toString() + " with the value: " + blog.toString());
-		
-		// @TODO Should use a BlogDTO from the BlogMapper (if DTO)
-		ResponseEntity<String> response = super.addRequest(blog.getId().toString(), blog.toString());
-
-		log.debug("BLOCKCHAIN ADD RESPONSE: " + response);
-
 		return ResponseEntity.created(new URI("/api/blogs/" + result.getId()))
 				.headers(HeaderUtil.createEntityCreationAlert(ENTITY_NAME, result.getId().toString())).body(result);
 	}
@@ -86,20 +87,16 @@ public class BlogResource extends ChaincodeResource {
 	 *             if the Location URI syntax is incorrect
 	 */
 	@PutMapping("/blogs")
+	@Transactional
 	public ResponseEntity<Blog> updateBlog(@RequestBody Blog blog) throws URISyntaxException {
 		log.debug("REST request to update Blog : {}", blog);
 		if (blog.getId() == null) {
 			throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
 		}
 
-		// Process blockchain set request
-		log.debug("BLOCKCHAIN UPDATE: " + blog.getId().toString() + " to the value: " + blog.toString());
-		
-		// @TODO Should use a BlogDTO from the BlogMapper (if DTO)
-		ResponseEntity<String> response = super.setRequest(blog.getId().toString(), blog.toString());
-		log.debug("BLOCKCHAIN UPDATE RESPONSE: " + response);
-
+		// Anchored on commit by the AnchoredEntityListener
 		Blog result = blogRepository.save(blog);
+
 		return ResponseEntity.ok().headers(HeaderUtil.createEntityUpdateAlert(ENTITY_NAME, blog.getId().toString()))
 				.body(result);
 	}
@@ -140,20 +137,23 @@ public class BlogResource extends ChaincodeResource {
 	 * @return the ResponseEntity with status 200 (OK)
 	 */
 	@DeleteMapping("/blogs/{id}")
+	@Transactional
 	public ResponseEntity<Void> deleteBlog(@PathVariable Long id) {
 		log.debug("REST request to delete Blog : {}", id);
 
-		// Process blockchain delete request
-		log.debug("BLOCKCHAIN DELETE: " + id.toString());
-		ResponseEntity<String> response = super.deleteRequest(id.toString());
-		log.debug("BLOCKCHAIN DELETE RESPONSE: " + response);
-
+		// Removed from the ledger on commit by the AnchoredEntityListener
 		blogRepository.deleteById(id);
+
 		return ResponseEntity.ok().headers(HeaderUtil.createEntityDeletionAlert(ENTITY_NAME, id.toString())).build();
 	}
 
 	// CHAINCODE
 
+	@Override
+	protected String getEntityType() {
+		return ENTITY_NAME;
+	}
+
 //	/**
 //	 * GET /blogs/{entity}/chaincode : Get an entity value from the blockchain
 //	 *
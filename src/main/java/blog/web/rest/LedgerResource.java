@@ -0,0 +1,79 @@
+package blog.web.rest;
+
+import blog.service.LedgerAnchorService;
+import blog.service.dto.AnchorVerificationDTO;
+import blog.web.rest.errors.BadRequestAlertException;
+
+import io.github.jhipster.web.util.ResponseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * REST controller for checking the entities against the ledger.
+ */
+@RestController
+@RequestMapping("/api")
+public class LedgerResource {
+
+    private static final String ENTITY_NAME = "ledger";
+
+    private static final List<String> ANCHORED = Arrays.asList(LedgerAnchorService.BLOGS,
+        LedgerAnchorService.BLOG_ENTRIES, LedgerAnchorService.TAGS);
+
+    private final Logger log = LoggerFactory.getLogger(LedgerResource.class);
+
+    private final LedgerAnchorService ledgerAnchorService;
+
+    public LedgerResource(LedgerAnchorService ledgerAnchorService) {
+        this.ledgerAnchorService = ledgerAnchorService;
+    }
+
+    /**
+     * GET  /ledger/anchors/:entity/:id : verify the "id" entity against its ledger value.
+     *
+     * @param entity the entity collection: blogs, blog-entries or tags
+     * @param id the id of the entity to verify
+     * @return the ResponseEntity with status 200 (OK) and with body the verification, or with status 404 (Not Found)
+     * if the entity is not in the database
+     * @throws Exception if the ledger cannot be read
+     */
+    @GetMapping("/ledger/anchors/{entity}/{id}")
+    public ResponseEntity<AnchorVerificationDTO> verifyAnchor(@PathVariable String entity, @PathVariable Long id)
+            throws Exception {
+        log.debug("REST request to verify the ledger anchor of {} : {}", entity, id);
+        checkAnchored(entity);
+        return ResponseUtil.wrapOrNotFound(ledgerAnchorService.verify(entity, id));
+    }
+
+    /**
+     * GET  /ledger/anchors/:entity?ids= : verify entities against their ledger values, reading the ledger once per
+     * chunk of keys.
+     *
+     * @param entity the entity collection: blogs, blog-entries or tags
+     * @param ids the ids of the entities to verify
+     * @return the list of verifications, the entities not in the database left out
+     * @throws Exception if the ledger cannot be read
+     */
+    @GetMapping("/ledger/anchors/{entity}")
+    public List<AnchorVerificationDTO> verifyAnchors(@PathVariable String entity, @RequestParam List<Long> ids)
+            throws Exception {
+        log.debug("REST request to verify the ledger anchors of {} : {}", entity, ids);
+        checkAnchored(entity);
+        return ledgerAnchorService.verify(entity, ids);
+    }
+
+    private void checkAnchored(String entity) {
+        if (!ANCHORED.contains(entity)) {
+            throw new BadRequestAlertException("Unknown anchored entity", ENTITY_NAME, "entityunknown");
+        }
+    }
+}
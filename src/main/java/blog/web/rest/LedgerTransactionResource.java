@@ -0,0 +1,62 @@
+package blog.web.rest;
+
+import blog.network.FabricGateway;
+import blog.network.TransactionStatus;
+import blog.service.TransactionStreamService;
+
+import io.github.jhipster.web.util.ResponseUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * REST controller for following the ledger transactions.
+ */
+@RestController
+@RequestMapping("/api")
+public class LedgerTransactionResource {
+
+    private final Logger log = LoggerFactory.getLogger(LedgerTransactionResource.class);
+
+    private final FabricGateway gateway;
+
+    private final TransactionStreamService transactionStreamService;
+
+    public LedgerTransactionResource(FabricGateway gateway, TransactionStreamService transactionStreamService) {
+        this.gateway = gateway;
+        this.transactionStreamService = transactionStreamService;
+    }
+
+    /**
+     * GET  /ledger/transactions/:id : get the status of a transaction, or of an asynchronous write.
+     *
+     * @param id the transaction ID, or the tracking ID of an asynchronous write
+     * @return the ResponseEntity with status 200 (OK) and with body the status, or with status 404 (Not Found) if
+     * the transaction is unknown or no longer kept
+     */
+    @GetMapping("/ledger/transactions/{id}")
+    public ResponseEntity<TransactionStatus> getTransaction(@PathVariable String id) {
+        log.debug("REST request to get the status of ledger transaction : {}", id);
+        return ResponseUtil.wrapOrNotFound(gateway.getTracker().find(id));
+    }
+
+    /**
+     * GET  /ledger/transactions/stream : stream the endorsed, committed, invalidated and failed transitions of the
+     * transactions, as server-sent events.
+     *
+     * @param id the transaction or tracking ID to follow, every transaction if absent
+     * @return the emitter of the events
+     */
+    @GetMapping(path = "/ledger/transactions/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamTransactions(@RequestParam(required = false) String id) {
+        log.debug("REST request to stream the status of ledger transactions : {}", id);
+        return transactionStreamService.subscribe(id);
+    }
+}
@@ -8,8 +8,8 @@ import java.util.Optional;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -21,13 +21,12 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import blog.domain.Tag;
-import blog.network.networkException.A_BlockchainException;
-import blog.network.networkException.EntityNotFound;
-import blog.network.request.Add;
-import blog.network.request.Delete;
-import blog.network.request.Get;
-import blog.network.request.Set;
+import blog.network.ChaincodeResource;
+import blog.network.FabricGateway;
+import blog.network.LedgerBatcher;
 import blog.repository.TagRepository;
+import blog.service.LedgerMirrorService;
+import blog.service.LedgerOutboxService;
 import blog.web.rest.errors.BadRequestAlertException;
 import blog.web.rest.util.HeaderUtil;
 
@@ -38,7 +37,7 @@ import io.github.jhipster.web.util.ResponseUtil;
  */
 @RestController
 @RequestMapping("/api")
-public class TagResource {
+public class TagResource extends ChaincodeResource {
 
     private final Logger log = LoggerFactory.getLogger(TagResource.class);
 
@@ -46,7 +45,9 @@ public class TagResource {
 
     private final TagRepository tagRepository;
 
-    public TagResource(TagRepository tagRepository) {
+    public TagResource(TagRepository tagRepository, FabricGateway gateway, LedgerBatcher batcher,
+            LedgerMirrorService mirror, LedgerOutboxService outbox) {
+        super(gateway, batcher, mirror, outbox);
         this.tagRepository = tagRepository;
     }
 
@@ -60,19 +61,16 @@ public class TagResource {
      * @throws URISyntaxException if the Location URI syntax is incorrect
      */
     @PostMapping("/tags")
+    @Transactional
     public ResponseEntity<Tag> createTag(@RequestBody Tag tag) throws URISyntaxException {
         log.debug("REST request to save Tag : {}", tag);
         if (tag.getId() != null) {
             throw new BadRequestAlertException("A new tag cannot already have an ID", ENTITY_NAME, "idexists");
         }
 
+        // Anchored on commit by the AnchoredEntityListener
         Tag result = tagRepository.save(tag);
 
-        // Process blockchain add request
-        log.debug("BLOCKCHAIN ADD: " + tag.getId().toString() + " with the value: " + tag.toString());
-        ResponseEntity<String> response = addRequest(tag.getId().toString(), tag.toString());
-        log.debug("BLOCKCHAIN ADD RESPONSE: " + response);
-
         return ResponseEntity.created(new URI("/api/tags/" + result.getId()))
                 .headers(HeaderUtil.createEntityCreationAlert(ENTITY_NAME, result.getId().toString())).body(result);
     }
@@ -88,18 +86,16 @@ public class TagResource {
      * @throws URISyntaxException if the Location URI syntax is incorrect
      */
     @PutMapping("/tags")
+    @Transactional
     public ResponseEntity<Tag> updateTag(@RequestBody Tag tag) throws URISyntaxException {
         log.debug("REST request to update Tag : {}", tag);
         if (tag.getId() == null) {
             throw new BadRequestAlertException("Invalid id", ENTITY_NAME, "idnull");
         }
 
-        // Process blockchain set request
-        log.debug("BLOCKCHAIN UPDATE: " + tag.getId().toString() + " to the value: " + tag.toString());
-        ResponseEntity<String> response = setRequest(tag.getId().toString(), tag.toString());
-        log.debug("BLOCKCHAIN UPDATE RESPONSE: " + response);
-
+        // Anchored on commit by the AnchoredEntityListener
         Tag result = tagRepository.save(tag);
+
         return ResponseEntity.ok().headers(HeaderUtil.createEntityUpdateAlert(ENTITY_NAME, tag.getId().toString()))
                 .body(result);
     }
@@ -137,15 +133,13 @@ public class TagResource {
      * @return the ResponseEntity with status 200 (OK)
      */
     @DeleteMapping("/tags/{id}")
+    @Transactional
     public ResponseEntity<Void> deleteTag(@PathVariable Long id) {
         log.debug("REST request to delete Tag : {}", id);
 
-        // Process blockchain delete request
-        log.debug("BLOCKCHAIN DELETE: " + id.toString());
-        ResponseEntity<String> response = deleteRequest(id.toString());
-        log.debug("BLOCKCHAIN DELETE RESPONSE: " + response);
-
+        // Removed from the ledger on commit by the AnchoredEntityListener
         tagRepository.deleteById(id);
+
         return ResponseEntity.ok().headers(HeaderUtil.createEntityDeletionAlert(ENTITY_NAME, id.toString())).build();
     }
 
@@ -157,36 +151,10 @@ public class TagResource {
      *         with status 417 (EXPECTATION_FAILED), or with status 500
      *         (INTERNAL_SERVER_ERROR)
      */
+    @Override
     @PostMapping("/tags/add")
     public ResponseEntity<String> addRequest(@RequestParam String entity, String value) {
-        if (entity.isEmpty()) {
-            log.debug("Empty entity name");
-            return new ResponseEntity<String>("EMPTY_ENTITY_NAME", HttpStatus.EXPECTATION_FAILED);
-        }
-        if (value.isEmpty()) {
-            log.debug("Empty value");
-            return new ResponseEntity<String>("EMPTY_VALUE", HttpStatus.EXPECTATION_FAILED);
-        }
-
-        Add blockchainRequest;
-        String transactionID;
-        try {
-            blockchainRequest = new Add(entity, value);
-            blockchainRequest.send();
-            transactionID = blockchainRequest.transactionID;
-        } catch (A_BlockchainException e) {
-            String errored = "BLOCKCHAIN ERROR: " + e.toString();
-            log.debug(errored);
-            return new ResponseEntity<String>(errored, HttpStatus.NOT_ACCEPTABLE);
-        } catch (Exception e) {
-            String errored = "BLOCKCHAIN ERROR: " + e.toString();
-            log.debug(errored);
-            return new ResponseEntity<String>(errored, HttpStatus.INTERNAL_SERVER_ERROR);
-        }
-
-        // Create JSON string
-        String returned = "{" + '"' + "transactionID" + '"' + ":" + '"' + transactionID + '"' + "}";
-        return new ResponseEntity<String>(returned, HttpStatus.OK);
+        return super.addRequest(entity, value);
     }
 
     /**
@@ -197,47 +165,10 @@ public class TagResource {
      *         or with status 417 (EXPECTATION_FAILED), or with status 500
      *         (INTERNAL_SERVER_ERROR)
      */
+    @Override
     @GetMapping("/tags/get")
     public ResponseEntity<String> getRequest(@RequestParam String entity) {
-        if (entity.isEmpty()) {
-            log.debug("Empty entity name");
-            return new ResponseEntity<String>("EMPTY_ENTITY_NAME", HttpStatus.EXPECTATION_FAILED);
-        }
-
-        String value = null;
-        Get get;
-
-        try {
-            get = new Get(entity);
-            get.send();
-            value = get.state;
-        } catch (EntityNotFound e) {
-            String errored = "BLOCKCHAIN ERROR: " + e.toString();
-            log.debug(errored);
-
-            // Create JSON string
-            String returned = "{" + '"' + "entityState" + '"' + ":" + '"' + "NOT_FOUND" + '"' + "}";
-            return new ResponseEntity<String>(returned, HttpStatus.OK);
-        } catch (Exception e) {
-            String errored = "BLOCKCHAIN ERROR: " + e.toString();
-            log.debug(errored);
-            return new ResponseEntity<String>(errored, HttpStatus.INTERNAL_SERVER_ERROR);
-        }
-
-        if (value == null) {
-            log.debug("The query has failed");
-            return new ResponseEntity<String>("QUERY FAILED", HttpStatus.INTERNAL_SERVER_ERROR);
-        }
-        switch (value) {
-        case "NOT_FOUND":
-            // Create JSON string
-            String returned = "{" + '"' + "entityState" + '"' + ":" + '"' + "NOT_FOUND" + '"' + "}";
-            return new ResponseEntity<String>(returned, HttpStatus.OK);
-        }
-
-        // Create JSON string
-        String returned = "{" + '"' + "entityState" + '"' + ":" + '"' + value + '"' + "}";
-        return new ResponseEntity<String>(returned, HttpStatus.OK);
+        return super.getRequest(entity);
     }
 
     /**
@@ -248,32 +179,10 @@ public class TagResource {
      *         with status 417 (EXPECTATION_FAILED), or with status 500
      *         (INTERNAL_SERVER_ERROR)
      */
+    @Override
     @DeleteMapping("/tags/delete")
     public ResponseEntity<String> deleteRequest(@RequestParam String entity) {
-        if (entity.isEmpty()) {
-            log.debug("Empty entity name");
-            return new ResponseEntity<String>("EMPTY_ENTITY_NAME", HttpStatus.EXPECTATION_FAILED);
-        }
-
-        Delete blockchainRequest;
-        String transactionID;
-        try {
-            blockchainRequest = new Delete(entity);
-            blockchainRequest.send();
-            transactionID = blockchainRequest.transactionID;
-        } catch (A_BlockchainException e) {
-            String errored = "BLOCKCHAIN ERROR: " + e.toString();
-            log.debug(errored);
-            return new ResponseEntity<String>(errored, HttpStatus.NOT_ACCEPTABLE);
-        } catch (Exception e) {
-            String errored = "BLOCKCHAIN ERROR: " + e.toString();
-            log.debug(errored);
-            return new ResponseEntity<String>(errored, HttpStatus.INTERNAL_SERVER_ERROR);
-        }
-
-        // Create JSON string
-        String returned = "{" + '"' + "transactionID" + '"' + ":" + '"' + transactionID + '"' + "}";
-        return new ResponseEntity<String>(returned, HttpStatus.OK);
+        return super.deleteRequest(entity);
     }
 
     /**
@@ -286,37 +195,15 @@ public class TagResource {
      *         with status 417 (EXPECTATION_FAILED), or with status 500
      *         (INTERNAL_SERVER_ERROR)
      */
+    @Override
     @PostMapping("/tags/set")
     public ResponseEntity<String> setRequest(@RequestParam String entity, String value) {
-        if (entity.isEmpty()) {
-            log.debug("Empty entity name");
-            return new ResponseEntity<String>("EMPTY_ENTITY_NAME", HttpStatus.EXPECTATION_FAILED);
-        }
-        if (value.isEmpty()) {
-            log.debug("Empty value");
-            return new ResponseEntity<String>("EMPTY_VALUE", HttpStatus.EXPECTATION_FAILED);
-        }
-
-        Set blockchainRequest;
-        String transactionID;
-        try {
-            blockchainRequest = new Set(entity, value);
-            blockchainRequest.send();
-            transactionID = blockchainRequest.transactionID;
-        } catch (A_BlockchainException e) {
-            String errored = "BLOCKCHAIN ERROR: " + e.toString();
-            log.debug(errored);
-            return new ResponseEntity<String>(errored, HttpStatus.NOT_ACCEPTABLE);
-        } catch (Exception e) {
-            String errored = "BLOCKCHAIN ERROR: " + e.toString();
-            log.debug(errored);
-            return new ResponseEntity<String>(errored, HttpStatus.INTERNAL_SERVER_ERROR);
-        }
+        return super.setRequest(entity, value);
+    }
 
-        // Create JSON string
-        String returned = "{" + '"' + "transactionID" + '"' + ":" + '"' + transactionID + '"' + "}";
-        return new ResponseEntity<String>(returned, HttpStatus.OK);
+    @Override
+    protected String getEntityType() {
+        return ENTITY_NAME;
     }
 
 }
-
@@ -0,0 +1,70 @@
+package blog.network;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import blog.config.ApplicationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AdmissionControllerTest {
+
+    private ApplicationProperties.Fabric.Admission properties;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @Before
+    public void setup() {
+        properties = new ApplicationProperties().getFabric().getAdmission();
+        properties.setMaxInFlight(2);
+        properties.setMaxQueued(1);
+        properties.setMaxWaitMs(50);
+        properties.setRetryAfterSeconds(3);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    public void testTransactionsBeyondTheWindowWaitThenAreRefused() {
+        AdmissionController admission = new AdmissionController(properties, meterRegistry);
+        admission.acquire();
+        admission.acquire();
+        assertThat(admission.getInFlight()).isEqualTo(2);
+
+        assertThatThrownBy(admission::acquire).isInstanceOf(LedgerSaturatedException.class)
+            .hasMessageContaining("within 50 ms")
+            .satisfies(e -> assertThat(((LedgerSaturatedException) e).getRetryAfterSeconds()).isEqualTo(3));
+        assertThat(meterRegistry.get("fabric.admission.rejections").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("fabric.admission.wait").timer().max(TimeUnit.MILLISECONDS))
+            .isGreaterThanOrEqualTo(50);
+    }
+
+    @Test
+    public void testAWaitingTransactionIsAdmittedOnRelease() throws Exception {
+        properties.setMaxWaitMs(5000);
+        AdmissionController admission = new AdmissionController(properties, meterRegistry);
+        admission.acquire();
+        admission.acquire();
+
+        CompletableFuture<Void> waiting = CompletableFuture.runAsync(admission::acquire);
+        while (admission.getQueued() == 0) {
+            Thread.sleep(1);
+        }
+        assertThat(meterRegistry.get("fabric.admission.queued").gauge().value()).isEqualTo(1);
+
+        // the queue is full: refused without waiting
+        long start = System.nanoTime();
+        assertThatThrownBy(admission::acquire).isInstanceOf(LedgerSaturatedException.class)
+            .hasMessageContaining("already waiting");
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(properties.getMaxWaitMs());
+
+        admission.release();
+        waiting.get(5, TimeUnit.SECONDS);
+        assertThat(admission.getQueued()).isZero();
+        assertThat(admission.getInFlight()).isEqualTo(2);
+    }
+}
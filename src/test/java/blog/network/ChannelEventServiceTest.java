@@ -0,0 +1,109 @@
+package blog.network;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import blog.config.ApplicationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class ChannelEventServiceTest {
+
+    private ChannelEventService events;
+
+    @Before
+    public void setup() {
+        events = new ChannelEventService(new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void testTransactionListenerIsCalledOnce() throws Exception {
+        BlockListener dispatcher = attach(mock(LedgerBackend.class));
+        List<String> codes = new ArrayList<>();
+        events.addTransactionListener("tx1", transaction -> codes.add(transaction.getValidationCode()));
+
+        dispatcher.onBlock(block(0, transaction("tx0", LedgerTransaction.VALID, null)));
+        dispatcher.onBlock(block(1, transaction("tx1", "MVCC_READ_CONFLICT", "set")));
+        dispatcher.onBlock(block(2, transaction("tx1", LedgerTransaction.VALID, "set")));
+
+        assertThat(codes).containsExactly("MVCC_READ_CONFLICT");
+    }
+
+    @Test
+    public void testChaincodeEventListenersOnlySeeValidTransactions() throws Exception {
+        BlockListener dispatcher = attach(mock(LedgerBackend.class));
+        List<String> added = new ArrayList<>();
+        events.addChaincodeEventListener("add", transaction -> added.add(transaction.getTransactionId()));
+
+        dispatcher.onBlock(block(0, transaction("tx0", LedgerTransaction.VALID, "add"),
+                transaction("tx1", "MVCC_READ_CONFLICT", "add"), transaction("tx2", LedgerTransaction.VALID, "set")));
+        dispatcher.onBlock(block(1, transaction("tx3", LedgerTransaction.VALID, "add")));
+
+        assertThat(added).containsExactly("tx0", "tx3");
+    }
+
+    @Test
+    public void testResumedSubscriptionSkipsBlocksAlreadySeen() throws Exception {
+        List<Long> seen = new ArrayList<>();
+        events.addBlockListener(block -> seen.add(block.getNumber()));
+        LedgerBackend first = mock(LedgerBackend.class);
+        BlockListener dispatcher = attach(first);
+        dispatcher.onBlock(block(0));
+        dispatcher.onBlock(block(1));
+
+        BlockListener resumed = attach(mock(LedgerBackend.class));
+        verify(first).removeBlockListener(dispatcher);
+        resumed.onBlock(block(1));
+        resumed.onBlock(block(2));
+
+        assertThat(seen).containsExactly(0L, 1L, 2L);
+        assertThat(events.getLastBlock()).isEqualTo(2);
+    }
+
+    @Test
+    public void testSimulatedLedgerEmitsChaincodeEvents() throws Exception {
+        ApplicationProperties.Fabric.Simulator properties = new ApplicationProperties().getFabric().getSimulator();
+        properties.setEndorsementLatencyMs(0);
+        properties.setOrderingLatencyMs(0);
+        properties.setCommitLatencyMs(0);
+        properties.setBlockTimeoutMs(0);
+        SimulatedLedger ledger = new SimulatedLedger(properties);
+        try {
+            events.attach(ledger);
+            List<String> added = new ArrayList<>();
+            events.addChaincodeEventListener("add", transaction -> added.add(transaction.getTransactionId()));
+
+            LedgerTransaction transaction = ledger.submit("add", new String[] { "1", "blog" }, payload -> { },
+                    Runnable::run);
+            transaction.committed().get();
+
+            assertThat(added).containsExactly(transaction.getTransactionId());
+        } finally {
+            ledger.shutdown();
+        }
+    }
+
+    private BlockListener attach(LedgerBackend backend) throws Exception {
+        events.attach(backend);
+        ArgumentCaptor<BlockListener> listener = ArgumentCaptor.forClass(BlockListener.class);
+        verify(backend).addBlockListener(listener.capture());
+        return listener.getValue();
+    }
+
+    private static LedgerBlock block(long number, LedgerBlock.Transaction... transactions) {
+        return new LedgerBlock(number, true, Arrays.asList(transactions));
+    }
+
+    private static LedgerBlock.Transaction transaction(String transactionId, String code, String event) {
+        return new LedgerBlock.Transaction(transactionId, code, event, Collections.emptyMap());
+    }
+}
@@ -0,0 +1,180 @@
+package blog.network;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import blog.config.ApplicationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private ApplicationProperties.Fabric.Breaker properties;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private CircuitBreaker breaker;
+
+    @Before
+    public void setup() {
+        properties = new ApplicationProperties().getFabric().getBreaker();
+        properties.setWindowSize(4);
+        properties.setMinimumCalls(4);
+        properties.setFailureRateThreshold(50);
+        properties.setSlowCallDurationMs(100);
+        properties.setSlowCallRateThreshold(75);
+        properties.setOpenDurationMs(1000);
+        properties.setHalfOpenCalls(2);
+        meterRegistry = new SimpleMeterRegistry();
+        breaker = new CircuitBreaker(properties, meterRegistry, clock::get);
+    }
+
+    @Test
+    public void testOpensOnceTheFailureRateIsReached() {
+        breaker.onFailure(FAST);
+        breaker.onFailure(FAST);
+        breaker.onSuccess(FAST);
+        // not enough calls yet
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        breaker.onSuccess(FAST);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.isOpen()).isTrue();
+        assertThatThrownBy(breaker::acquire).isInstanceOf(LedgerUnavailableException.class)
+            .satisfies(e -> assertThat(((LedgerUnavailableException) e).getRetryAfterSeconds()).isEqualTo(1));
+        assertThat(meterRegistry.counter("fabric.breaker.rejections").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testOpensOnceTheSlowCallRateIsReached() {
+        breaker.onSuccess(SLOW);
+        breaker.onSuccess(SLOW);
+        breaker.onSuccess(FAST);
+        breaker.onSuccess(SLOW);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    public void testOnlyTheLastCallsCount() {
+        breaker.onFailure(FAST);
+        for (int i = 0; i < 4; i++) {
+            breaker.onSuccess(FAST);
+        }
+        breaker.onFailure(FAST);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.getFailureRate()).isEqualTo(25);
+    }
+
+    @Test
+    public void testSuccessfulTrialCallsCloseTheBreaker() {
+        open();
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        assertThat(breaker.isOpen()).isFalse();
+
+        breaker.acquire();
+        breaker.acquire();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        // the trial calls are running
+        assertThatThrownBy(breaker::acquire).isInstanceOf(LedgerUnavailableException.class);
+
+        breaker.onSuccess(FAST);
+        breaker.onSuccess(FAST);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        breaker.acquire();
+    }
+
+    @Test
+    public void testFailedTrialCallsOpenTheBreakerAgain() {
+        open();
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+
+        breaker.acquire();
+        breaker.acquire();
+        breaker.onSuccess(FAST);
+        breaker.onFailure(FAST);
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThatThrownBy(breaker::acquire).isInstanceOf(LedgerUnavailableException.class);
+    }
+
+    @Test
+    public void testTrialCallsNeverReportedAreGivenUp() {
+        open();
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        breaker.acquire();
+        breaker.acquire();
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+
+        breaker.acquire();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+    }
+
+    @Test
+    public void testKnownRefusalWhileHalfOpenTakesNoTrialCall() {
+        open();
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+
+        // transactions refused from the digests only check the breaker, and never report
+        for (int i = 0; i < 3; i++) {
+            breaker.check();
+        }
+
+        breaker.acquire();
+        breaker.acquire();
+        breaker.onSuccess(FAST);
+        breaker.onSuccess(FAST);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void testReleasedTrialCallIsGivenBack() {
+        open();
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+
+        breaker.acquire();
+        // refused by the admission, before reaching the network
+        breaker.release();
+        breaker.acquire();
+        breaker.acquire();
+        assertThatThrownBy(breaker::acquire).isInstanceOf(LedgerUnavailableException.class);
+
+        breaker.onSuccess(FAST);
+        breaker.onSuccess(FAST);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void testDisabledBreakerLetsEveryCallThrough() {
+        properties.setEnabled(false);
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure(FAST);
+        }
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        breaker.acquire();
+        breaker.check();
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure(FAST);
+        }
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+}
@@ -0,0 +1,25 @@
+package blog.network;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CompositeKeyTest {
+
+    @Test
+    public void testKeysAreJoinedWithTheSeparator() {
+        assertThat(CompositeKey.of("entry", 3L, 12L)).isEqualTo("entry~3~12");
+        assertThat(CompositeKey.of("entry", "", 12L)).isEqualTo("entry~~12");
+        assertThat(CompositeKey.split("entry~~12")).containsExactly("entry", "", "12");
+        assertThat(CompositeKey.isComposite("tag~1")).isTrue();
+        assertThat(CompositeKey.isComposite("merkle-1")).isFalse();
+    }
+
+    @Test
+    public void testLedgerKeysAreMadeReadable() {
+        assertThat(CompositeKey.fromLedger("\u0000entry\u00003\u000012\u0000")).isEqualTo("entry~3~12");
+        assertThat(CompositeKey.fromLedger("\u0000blog\u00001\u0000")).isEqualTo("blog~1");
+        assertThat(CompositeKey.fromLedger("merkle-1")).isEqualTo("merkle-1");
+        assertThat(CompositeKey.fromLedger("")).isEmpty();
+    }
+}
@@ -0,0 +1,129 @@
+package blog.network;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import blog.config.ApplicationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConflictRetrierTest {
+
+    private static final String KEY = CompositeKey.of("blog", 1);
+
+    private ApplicationProperties.Fabric.Retry properties;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ConflictRetrier retrier;
+
+    @Before
+    public void setup() {
+        properties = new ApplicationProperties().getFabric().getRetry();
+        properties.setBaseBackoffMs(1);
+        meterRegistry = new SimpleMeterRegistry();
+        retrier = new ConflictRetrier(properties, Runnable::run, meterRegistry, () -> 0);
+    }
+
+    @After
+    public void teardown() {
+        retrier.shutdown();
+    }
+
+    @Test
+    public void testAReadConflictIsEndorsedAgain() throws Exception {
+        Attempts attempts = new Attempts("MVCC_READ_CONFLICT", LedgerTransaction.VALID);
+
+        LedgerTransaction transaction = retrier.submit(Collections.singletonList(KEY), attempts);
+
+        assertThat(transaction.committed().get(5, TimeUnit.SECONDS).isValid()).isTrue();
+        assertThat(transaction.getTransactionId()).isEqualTo("tx2");
+        assertThat(attempts.count.get()).isEqualTo(2);
+        assertThat(count("fabric.commit.transactions")).isEqualTo(2);
+        assertThat(count("fabric.commit.conflicts")).isEqualTo(1);
+        assertThat(count("fabric.commit.retries")).isEqualTo(1);
+    }
+
+    @Test
+    public void testOtherInvalidationsAreNotRetried() throws Exception {
+        Attempts attempts = new Attempts("ENDORSEMENT_POLICY_FAILURE", LedgerTransaction.VALID);
+
+        LedgerTransaction transaction = retrier.submit(Collections.singletonList(KEY), attempts);
+
+        assertThat(transaction.committed().get(5, TimeUnit.SECONDS).getValidationCode())
+            .isEqualTo("ENDORSEMENT_POLICY_FAILURE");
+        assertThat(attempts.count.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testAttemptsAreBounded() throws Exception {
+        properties.setMaxAttempts(3);
+        Attempts attempts = new Attempts("MVCC_READ_CONFLICT", "MVCC_READ_CONFLICT", "PHANTOM_READ_CONFLICT",
+            LedgerTransaction.VALID);
+
+        LedgerTransaction transaction = retrier.submit(Collections.singletonList(KEY), attempts);
+
+        assertThat(transaction.committed().get(5, TimeUnit.SECONDS).getValidationCode())
+            .isEqualTo("PHANTOM_READ_CONFLICT");
+        assertThat(attempts.count.get()).isEqualTo(3);
+        assertThat(count("fabric.commit.exhausted")).isEqualTo(1);
+    }
+
+    @Test
+    public void testAHotKeySpendsItsBudget() throws Exception {
+        properties.setKeyBudget(1);
+        properties.setKeyBudgetPerSecond(0);
+
+        LedgerTransaction first = retrier.submit(Collections.singletonList(KEY),
+            new Attempts("MVCC_READ_CONFLICT", LedgerTransaction.VALID));
+        assertThat(first.committed().get(5, TimeUnit.SECONDS).isValid()).isTrue();
+
+        Attempts attempts = new Attempts("MVCC_READ_CONFLICT", LedgerTransaction.VALID);
+        LedgerTransaction second = retrier.submit(Collections.singletonList(KEY), attempts);
+        assertThat(second.committed().get(5, TimeUnit.SECONDS).isValid()).isFalse();
+        assertThat(attempts.count.get()).isEqualTo(1);
+
+        // another key still has its budget
+        LedgerTransaction other = retrier.submit(Collections.singletonList(CompositeKey.of("tag", 1)),
+            new Attempts("MVCC_READ_CONFLICT", LedgerTransaction.VALID));
+        assertThat(other.committed().get(5, TimeUnit.SECONDS).isValid()).isTrue();
+        assertThat(meterRegistry.get("fabric.commit.conflicts").tag("type", "tag").counter().count()).isEqualTo(1);
+    }
+
+    private double count(String name) {
+        return meterRegistry.get(name).tag("type", "blog").counter().count();
+    }
+
+    /*
+     * Attempts committed with the given validation codes, in order
+     */
+    private static final class Attempts implements Supplier<LedgerTransaction> {
+
+        private final List<String> codes = new ArrayList<>();
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        Attempts(String... codes) {
+            Collections.addAll(this.codes, codes);
+        }
+
+        @Override
+        public LedgerTransaction get() {
+            int attempt = count.incrementAndGet();
+            LedgerTransaction transaction = new LedgerTransaction();
+            transaction.onEndorsed("tx" + attempt, "OK");
+            transaction.onOrdered();
+            transaction.onCommitted(codes.get(attempt - 1), attempt);
+            return transaction;
+        }
+    }
+}
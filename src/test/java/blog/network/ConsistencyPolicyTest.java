@@ -0,0 +1,71 @@
+package blog.network;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import blog.config.ApplicationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ConsistencyPolicyTest {
+
+    private ApplicationProperties.Fabric.Consistency properties;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @Before
+    public void setup() {
+        properties = new ApplicationProperties().getFabric().getConsistency();
+        properties.getOperations().put("delete", "async");
+        properties.getEntities().put("blogEntry", Collections.singletonMap("set", "eventual"));
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    public void testEntityTypeWinsOverOperation() {
+        ConsistencyPolicy policy = new ConsistencyPolicy(properties, meterRegistry);
+
+        assertThat(policy.resolve("blogentry", "set", null)).isEqualTo(ConsistencyMode.EVENTUAL);
+        assertThat(policy.resolve("tag", "delete", null)).isEqualTo(ConsistencyMode.ASYNC);
+        assertThat(policy.resolve("tag", "set", null)).isEqualTo(ConsistencyMode.SYNC_COMMIT);
+        assertThat(policy.resolve(null, "add", null)).isEqualTo(ConsistencyMode.SYNC_COMMIT);
+    }
+
+    @Test
+    public void testHeaderWinsOverConfiguration() {
+        ConsistencyPolicy policy = new ConsistencyPolicy(properties, meterRegistry);
+
+        assertThat(policy.resolve("blogentry", "set", "sync-endorse")).isEqualTo(ConsistencyMode.SYNC_ENDORSE);
+        assertThat(policy.resolve("tag", "delete", " ")).isEqualTo(ConsistencyMode.ASYNC);
+        assertThatThrownBy(() -> policy.resolve("tag", "set", "whenever"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testUnknownConfiguredModeFailsAtOnce() {
+        properties.setDefaultMode("later");
+
+        assertThatThrownBy(() -> new ConsistencyPolicy(properties, meterRegistry))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testLatenciesAreKeptByMode() {
+        ConsistencyPolicy policy = new ConsistencyPolicy(properties, meterRegistry);
+
+        policy.answered(ConsistencyMode.ASYNC, "tag", "set", TimeUnit.MILLISECONDS.toNanos(1));
+        policy.answered(ConsistencyMode.SYNC_COMMIT, "tag", "set", TimeUnit.MILLISECONDS.toNanos(200));
+        policy.committed(ConsistencyMode.ASYNC, "tag", "set", TimeUnit.MILLISECONDS.toNanos(250));
+
+        assertThat(meterRegistry.get("fabric.consistency.response").tag("mode", "async").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("fabric.consistency.response").tag("mode", "sync-commit").timer()
+            .totalTime(TimeUnit.MILLISECONDS)).isEqualTo(200);
+        assertThat(meterRegistry.get("fabric.consistency.commit").tag("mode", "async").tag("entity", "tag").timer()
+            .count()).isEqualTo(1);
+    }
+}
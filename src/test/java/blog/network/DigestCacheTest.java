@@ -0,0 +1,117 @@
+package blog.network;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import blog.config.ApplicationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DigestCacheTest {
+
+    private static final List<String> KEY = Collections.singletonList("blog");
+
+    private ApplicationProperties.Fabric.Digests properties;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private DigestCache digests;
+
+    @Before
+    public void setup() {
+        properties = new ApplicationProperties().getFabric().getDigests();
+        meterRegistry = new SimpleMeterRegistry();
+        digests = new DigestCache(properties, meterRegistry);
+    }
+
+    @Test
+    public void testCommittedValuesAreKnown() {
+        assertThat(digests.exists("blog")).isFalse();
+
+        digests.begin(KEY);
+        assertThat(digests.exists("blog")).isFalse();
+        digests.end(KEY, Collections.singletonMap("blog", "v1"), 1);
+
+        assertThat(digests.exists("blog")).isTrue();
+        assertThat(digests.isSet("blog", "v1")).isTrue();
+        assertThat(digests.isSet("blog", "v2")).isFalse();
+        assertThat(meterRegistry.get("fabric.digests.saved").tag("function", "set").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("fabric.digests.saved").tag("function", "add").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testAKeyIsUnknownWhileWritten() {
+        digests.end(KEY, Collections.singletonMap("blog", "v1"), 1);
+
+        digests.begin(KEY);
+        digests.begin(KEY);
+        assertThat(digests.isSet("blog", "v1")).isFalse();
+
+        digests.end(KEY, Collections.singletonMap("blog", "v2"), 2);
+        assertThat(digests.isSet("blog", "v2")).isFalse();
+
+        // invalid
+        digests.end(KEY, Collections.emptyMap(), -1);
+        assertThat(digests.isSet("blog", "v2")).isTrue();
+    }
+
+    @Test
+    public void testDeletedKeysDoNotExist() {
+        digests.end(KEY, Collections.singletonMap("blog", null), 1);
+
+        assertThat(digests.exists("blog")).isFalse();
+        assertThat(digests.isSet("blog", "")).isFalse();
+    }
+
+    @Test
+    public void testWritesOfEarlierBlocksAreIgnored() {
+        digests.onBlock(new LedgerBlock(3, Collections.singletonList(
+            new LedgerBlock.Transaction("tx3", LedgerTransaction.VALID, Collections.singletonMap("blog", "v3")))));
+
+        digests.end(KEY, Collections.singletonMap("blog", "v2"), 2);
+
+        assertThat(digests.isSet("blog", "v3")).isTrue();
+    }
+
+    @Test
+    public void testForeignTransactionsOfFilteredBlocksClearTheCache() {
+        digests.end(KEY, Collections.singletonMap("blog", "v1"), 1);
+        digests.own("tx2");
+        digests.onBlock(new LedgerBlock(2, true, Collections.singletonList(
+            new LedgerBlock.Transaction("tx2", LedgerTransaction.VALID, Collections.emptyMap()))));
+        assertThat(digests.size()).isEqualTo(1);
+
+        digests.onBlock(new LedgerBlock(3, true, Collections.singletonList(
+            new LedgerBlock.Transaction("foreign", LedgerTransaction.VALID, Collections.emptyMap()))));
+
+        assertThat(digests.size()).isZero();
+        // commits of earlier blocks may have been overwritten
+        digests.end(KEY, Collections.singletonMap("blog", "v2"), 2);
+        assertThat(digests.exists("blog")).isFalse();
+    }
+
+    @Test
+    public void testTheCacheIsBounded() {
+        properties.setMaxSize(2);
+        digests.end(KEY, Collections.singletonMap("a", "v"), 1);
+        digests.end(KEY, Collections.singletonMap("b", "v"), 1);
+        digests.exists("a");
+        digests.end(KEY, Collections.singletonMap("c", "v"), 1);
+
+        assertThat(digests.size()).isEqualTo(2);
+        assertThat(digests.exists("a")).isTrue();
+        assertThat(digests.exists("b")).isFalse();
+    }
+
+    @Test
+    public void testNothingIsKnownWhenDisabled() {
+        properties.setEnabled(false);
+        digests.end(KEY, Collections.singletonMap("blog", "v1"), 1);
+
+        assertThat(digests.isSet("blog", "v1")).isFalse();
+    }
+}
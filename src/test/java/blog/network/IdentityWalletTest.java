@@ -0,0 +1,121 @@
+package blog.network;
+
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Date;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.openssl.jcajce.JcaPEMWriter;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import blog.config.ApplicationProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IdentityWalletTest {
+
+    private static final long ONE_DAY = 24 * 3600 * 1000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MeterRegistry meterRegistry;
+
+    private IdentityWallet wallet;
+
+    @Before
+    public void setup() {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getFabric().getWallet().setPath(folder.getRoot().getPath());
+        meterRegistry = new SimpleMeterRegistry();
+        wallet = new IdentityWallet(properties, meterRegistry);
+    }
+
+    @Test
+    public void testMissingIdentity() throws Exception {
+        assertThat(wallet.get("org1", "admin")).isNull();
+        assertThat(meterRegistry.counter("fabric.wallet.misses").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testStoredIdentityIsReloadedFromDisk() throws Exception {
+        UserContext admin = createUser(new Date(System.currentTimeMillis() + ONE_DAY));
+        wallet.put(admin);
+
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getFabric().getWallet().setPath(folder.getRoot().getPath());
+        UserContext loaded = new IdentityWallet(properties, new SimpleMeterRegistry()).get("org1", "admin");
+
+        assertThat(loaded.getMspId()).isEqualTo("Org1MSP");
+        assertThat(loaded.getEnrollment().getCert()).isEqualTo(admin.getEnrollment().getCert());
+        assertThat(loaded.getEnrollment().getKey().getEncoded()).isEqualTo(admin.getEnrollment().getKey().getEncoded());
+    }
+
+    @Test
+    public void testIdentityIsServedFromMemory() throws Exception {
+        wallet.put(createUser(new Date(System.currentTimeMillis() + ONE_DAY)));
+
+        UserContext first = wallet.get("org1", "admin");
+        UserContext second = wallet.get("org1", "admin");
+
+        assertThat(second).isSameAs(first);
+        assertThat(meterRegistry.counter("fabric.wallet.hits").count()).isEqualTo(2);
+        assertThat(meterRegistry.counter("fabric.wallet.misses").count()).isEqualTo(0);
+    }
+
+    @Test
+    public void testIdentityIsReloadedWhenFileChanges() throws Exception {
+        wallet.put(createUser(new Date(System.currentTimeMillis() + ONE_DAY)));
+        UserContext first = wallet.get("org1", "admin");
+
+        Path file = folder.getRoot().toPath().resolve("org1").resolve("admin.id");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 10000));
+        UserContext second = wallet.get("org1", "admin");
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(meterRegistry.counter("fabric.wallet.misses").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testExpiredIdentityIsMissing() throws Exception {
+        wallet.put(createUser(new Date(System.currentTimeMillis() - 1000)));
+
+        assertThat(wallet.get("org1", "admin")).isNull();
+    }
+
+    private UserContext createUser(Date notAfter) throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = generator.generateKeyPair();
+
+        X500Name subject = new X500Name("CN=admin");
+        X509CertificateHolder holder = new JcaX509v3CertificateBuilder(subject, BigInteger.ONE,
+            new Date(System.currentTimeMillis() - ONE_DAY), notAfter, subject, keyPair.getPublic())
+            .build(new JcaContentSignerBuilder("SHA256withECDSA").build(keyPair.getPrivate()));
+        StringWriter pem = new StringWriter();
+        try (JcaPEMWriter writer = new JcaPEMWriter(pem)) {
+            writer.writeObject(holder);
+        }
+
+        UserContext user = new UserContext();
+        user.setName("admin");
+        user.setAffiliation("org1");
+        user.setMspId("Org1MSP");
+        user.setEnrollment(new CAEnrollment(keyPair.getPrivate(), pem.toString()));
+        return user;
+    }
+}
@@ -0,0 +1,234 @@
+package blog.network;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import blog.BlogchainApp;
+import blog.config.ApplicationProperties;
+import blog.network.networkException.EntityAlreadyExist;
+import blog.network.networkException.EntityNotFound;
+import blog.network.request.Batch.Operation;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test class for the LedgerBatcher, against the simulated ledger.
+ *
+ * @see LedgerBatcher
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = BlogchainApp.class)
+public class LedgerBatcherIntTest {
+
+    @Autowired
+    private FabricGateway gateway;
+
+    @Autowired
+    private LedgerJournal journal;
+
+    private MeterRegistry meterRegistry;
+
+    private LedgerBatcher batcher;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void teardown() {
+        if (batcher != null) {
+            batcher.destroy();
+        }
+    }
+
+    @Test
+    public void testFullBatchIsSentAtOnce() throws Exception {
+        batcher = batcher(3, 60000, 0);
+
+        CompletableFuture<LedgerTransaction> first = batcher.add("batcher-size-1", "a");
+        CompletableFuture<LedgerTransaction> second = batcher.add("batcher-size-2", "b");
+        CompletableFuture<LedgerTransaction> third = batcher.set("batcher-size-1", "c");
+
+        LedgerTransaction transaction = first.get(5, TimeUnit.SECONDS);
+        assertThat(transaction.isValid()).isTrue();
+        assertThat(second.get(5, TimeUnit.SECONDS)).isSameAs(transaction);
+        assertThat(third.get(5, TimeUnit.SECONDS)).isSameAs(transaction);
+        DistributionSummary sizes = meterRegistry.get("fabric.batch.size").summary();
+        assertThat(sizes.count()).isEqualTo(1);
+        assertThat(sizes.totalAmount()).isEqualTo(3);
+        assertThat(gateway.getBackend().query("get", "batcher-size-1")).isEqualTo("c");
+    }
+
+    @Test
+    public void testPartialBatchIsSentOnceTheLingerTimeIsOver() throws Exception {
+        batcher = batcher(50, 50, 0);
+
+        CompletableFuture<LedgerTransaction> first = batcher.add("batcher-linger-1", "a");
+        CompletableFuture<LedgerTransaction> second = batcher.add("batcher-linger-2", "b");
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isSameAs(second.get(5, TimeUnit.SECONDS));
+        assertThat(meterRegistry.get("fabric.batch.size").summary().totalAmount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testRefusalsArePerCaller() throws Exception {
+        batcher = batcher(3, 50, 0);
+        batcher.add("batcher-refusal-1", "a").get(5, TimeUnit.SECONDS);
+
+        CompletableFuture<LedgerTransaction> existing = batcher.add("batcher-refusal-1", "b");
+        CompletableFuture<LedgerTransaction> missing = batcher.set("batcher-refusal-missing", "c");
+        CompletableFuture<LedgerTransaction> applied = batcher.add("batcher-refusal-2", "d");
+
+        assertThat(applied.get(5, TimeUnit.SECONDS).isValid()).isTrue();
+        assertThatThrownBy(() -> existing.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(EntityAlreadyExist.class);
+        assertThatThrownBy(() -> missing.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(EntityNotFound.class);
+        assertThat(gateway.getBackend().query("get", "batcher-refusal-1")).isEqualTo("a");
+    }
+
+    @Test
+    public void testWritesOfAKeyKeepTheirOrderAcrossBatches() throws Exception {
+        batcher = batcher(1, 0, 0);
+
+        // each operation is a batch of its own, endorsed concurrently unless held back
+        CompletableFuture<LedgerTransaction> added = batcher.add("batcher-order", "a");
+        CompletableFuture<LedgerTransaction> set = batcher.set("batcher-order", "b");
+        CompletableFuture<LedgerTransaction> deleted = batcher.delete("batcher-order");
+        CompletableFuture<LedgerTransaction> other = batcher.add("batcher-order-other", "c");
+
+        LedgerTransaction deletion = deleted.get(5, TimeUnit.SECONDS);
+        LedgerTransaction update = set.get(5, TimeUnit.SECONDS);
+        LedgerTransaction creation = added.get(5, TimeUnit.SECONDS);
+        assertThat(other.get(5, TimeUnit.SECONDS).isValid()).isTrue();
+        assertThat(creation.getBlockNumber()).isLessThan(update.getBlockNumber());
+        assertThat(update.getBlockNumber()).isLessThan(deletion.getBlockNumber());
+        assertThat(gateway.getBackend().query("get", "batcher-order")).isEqualTo("NOT_FOUND");
+    }
+
+    @Test
+    public void testSupersededSetsGetTheTransactionWhichCarriedTheLastValue() throws Exception {
+        batcher = batcher(50, 20, 50);
+        batcher.add("batcher-combine", "a").get(5, TimeUnit.SECONDS);
+
+        CompletableFuture<LedgerTransaction> first = batcher.set("batcher-combine", "b");
+        CompletableFuture<LedgerTransaction> second = batcher.set("batcher-combine", "c");
+        CompletableFuture<LedgerTransaction> last = batcher.set("batcher-combine", "d");
+
+        LedgerTransaction transaction = last.get(5, TimeUnit.SECONDS);
+        assertThat(first.get(5, TimeUnit.SECONDS)).isSameAs(transaction);
+        assertThat(second.get(5, TimeUnit.SECONDS)).isSameAs(transaction);
+        assertThat(meterRegistry.counter("fabric.batch.combined").count()).isEqualTo(2);
+        assertThat(gateway.getBackend().query("get", "batcher-combine")).isEqualTo("d");
+    }
+
+    @Test
+    public void testAnAddOrADeleteOfTheKeyEndsTheWindowAtOnce() throws Exception {
+        batcher = batcher(50, 20, 60000);
+        batcher.add("batcher-window-1", "a").get(5, TimeUnit.SECONDS);
+
+        CompletableFuture<LedgerTransaction> set = batcher.set("batcher-window-1", "b");
+        CompletableFuture<LedgerTransaction> deleted = batcher.delete("batcher-window-1");
+        CompletableFuture<LedgerTransaction> missing = batcher.set("batcher-window-2", "c");
+        CompletableFuture<LedgerTransaction> added = batcher.add("batcher-window-2", "d");
+
+        // far from the end of the window
+        assertThat(set.get(5, TimeUnit.SECONDS)).isSameAs(deleted.get(5, TimeUnit.SECONDS));
+        assertThatThrownBy(() -> missing.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(EntityNotFound.class);
+        assertThat(added.get(5, TimeUnit.SECONDS).isValid()).isTrue();
+        assertThat(gateway.getBackend().query("get", "batcher-window-1")).isEqualTo("NOT_FOUND");
+        assertThat(gateway.getBackend().query("get", "batcher-window-2")).isEqualTo("d");
+    }
+
+    @Test
+    public void testFlushReleasesTheHeldSets() throws Exception {
+        batcher = batcher(50, 60000, 60000);
+        CompletableFuture<LedgerTransaction> added = batcher.add("batcher-flush", "a");
+        batcher.flush();
+        added.get(5, TimeUnit.SECONDS);
+        CompletableFuture<LedgerTransaction> set = batcher.set("batcher-flush", "b");
+
+        batcher.flush();
+
+        assertThat(set.get(5, TimeUnit.SECONDS).isValid()).isTrue();
+        assertThat(gateway.getBackend().query("get", "batcher-flush")).isEqualTo("b");
+    }
+
+    @Test
+    public void testKnownRefusalDoesNotApplyWhileASetIsHeld() throws Exception {
+        batcher = batcher(2, 60000, 60000);
+        CompletableFuture<LedgerTransaction> created = batcher.add("batcher-held", "a");
+        batcher.flush();
+        created.get(5, TimeUnit.SECONDS);
+        batcher.set("batcher-held", "b");
+
+        // the add of an existing key goes with the held set instead of being refused at once
+        CompletableFuture<LedgerTransaction> added = batcher.add("batcher-held", "c");
+
+        assertThatThrownBy(() -> added.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(EntityAlreadyExist.class);
+        DistributionSummary sizes = meterRegistry.get("fabric.batch.size").summary();
+        assertThat(sizes.count()).isEqualTo(2);
+        assertThat(sizes.totalAmount()).isEqualTo(3);
+        assertThat(gateway.getBackend().query("get", "batcher-held")).isEqualTo("b");
+    }
+
+    @Test
+    public void testEndorsedWriteIsSentWithoutLingering() throws Exception {
+        batcher = batcher(50, 60000, 60000);
+        CompletableFuture<LedgerTransaction> waiting = batcher.add("batcher-endorse-1", "a");
+
+        CompletableFuture<LedgerTransaction> endorsed = new CompletableFuture<>();
+        CompletableFuture<LedgerTransaction> result = batcher.submit(Operation.add("batcher-endorse-2", "b"), endorsed);
+
+        // the pending batch goes along, far from its linger time
+        LedgerTransaction transaction = endorsed.get(5, TimeUnit.SECONDS);
+        assertThat(transaction.getTransactionId()).isNotNull();
+        assertThat(result.get(5, TimeUnit.SECONDS)).isSameAs(transaction);
+        assertThat(waiting.get(5, TimeUnit.SECONDS)).isSameAs(transaction);
+        assertThat(meterRegistry.get("fabric.batch.size").summary().totalAmount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testOnlyCommittedOrRefusedWritesAreDoneInTheJournal() throws Exception {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getFabric().getJournal().setEnabled(true);
+        properties.getFabric().getJournal().setPath(folder.getRoot().getPath());
+        LedgerJournal durable = new LedgerJournal(properties, new SimpleMeterRegistry());
+        durable.open();
+        try {
+            meterRegistry = new SimpleMeterRegistry();
+            batcher = new LedgerBatcher(gateway, durable, properties, meterRegistry);
+
+            batcher.add("batcher-journal", "a").get(5, TimeUnit.SECONDS);
+            CompletableFuture<LedgerTransaction> refused = batcher.add("batcher-journal", "b");
+            assertThatThrownBy(() -> refused.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(EntityAlreadyExist.class);
+            // marked done once the futures complete
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (durable.getPending() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(durable.getPending()).isZero();
+        } finally {
+            durable.close();
+        }
+    }
+
+    private LedgerBatcher batcher(int maxSize, long maxLingerMs, long combineWindowMs) {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getFabric().getBatch().setMaxSize(maxSize);
+        properties.getFabric().getBatch().setMaxLingerMs(maxLingerMs);
+        properties.getFabric().getBatch().setCombineWindowMs(combineWindowMs);
+        meterRegistry = new SimpleMeterRegistry();
+        return new LedgerBatcher(gateway, journal, properties, meterRegistry);
+    }
+}
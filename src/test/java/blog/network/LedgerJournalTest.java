@@ -0,0 +1,159 @@
+package blog.network;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import blog.config.ApplicationProperties;
+import blog.network.request.Batch.Operation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class LedgerJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ApplicationProperties properties;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private final List<LedgerJournal> journals = new ArrayList<>();
+
+    @Before
+    public void setup() throws IOException {
+        properties = new ApplicationProperties();
+        properties.getFabric().getJournal().setPath(folder.getRoot().getPath());
+        properties.getFabric().getJournal().setSegmentSize(256);
+        properties.getFabric().getJournal().setMaxSegments(2);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @After
+    public void teardown() {
+        journals.forEach(LedgerJournal::close);
+    }
+
+    @Test
+    public void testUnfinishedOperationsAreRecoveredInOrder() throws IOException {
+        LedgerJournal journal = open();
+        long add = journal.append(Operation.add("1", "blog"));
+        journal.append(Operation.set("2", "tag"));
+        journal.append(Operation.delete("3"));
+        journal.done(add);
+        journal.close();
+
+        SortedMap<Long, Operation> unfinished = open().recover();
+
+        assertThat(unfinished.values())
+            .extracting(Operation::getFunction, Operation::getEntity, Operation::getValue)
+            .containsExactly(tuple("set", "2", "tag"), tuple("delete", "3", null));
+    }
+
+    @Test
+    public void testRecoveredOperationsAreHandedOutOnceAndKeptUntilDone() throws IOException {
+        LedgerJournal journal = open();
+        journal.append(Operation.add("1", "blog"));
+        journal.close();
+
+        LedgerJournal restarted = open();
+        SortedMap<Long, Operation> unfinished = restarted.recover();
+        assertThat(unfinished).hasSize(1);
+        assertThat(restarted.recover()).isEmpty();
+        restarted.close();
+
+        // not marked done, still there on the next start
+        LedgerJournal again = open();
+        assertThat(again.recover()).hasSize(1);
+        unfinished.keySet().forEach(again::done);
+        again.close();
+
+        assertThat(open().recover()).isEmpty();
+    }
+
+    @Test
+    public void testDoneSegmentsAreDeleted() throws IOException {
+        LedgerJournal journal = open();
+        for (int i = 0; i < 50; i++) {
+            journal.done(journal.append(Operation.set("1", "value " + i)));
+        }
+
+        assertThat(journal.getPending()).isZero();
+        assertThat(journal.getSegments()).isEqualTo(1);
+        assertThat(folder.getRoot().listFiles()).hasSize(1);
+    }
+
+    @Test
+    public void testStuckOperationIsCopiedOutOfTheOldestSegment() throws IOException {
+        LedgerJournal journal = open();
+        journal.append(Operation.add("stuck", "blog"));
+        for (int i = 0; i < 50; i++) {
+            journal.done(journal.append(Operation.set("1", "value " + i)));
+        }
+
+        assertThat(journal.getSegments()).isLessThanOrEqualTo(3);
+        assertThat(meterRegistry.counter("fabric.journal.compacted").count()).isPositive();
+        journal.close();
+
+        assertThat(open().recover().values()).extracting(Operation::getEntity).containsExactly("stuck");
+    }
+
+    @Test
+    public void testTornRecordIsIgnored() throws IOException {
+        LedgerJournal journal = open();
+        journal.append(Operation.add("1", "blog"));
+        journal.append(Operation.add("2", "blog"));
+        journal.close();
+
+        // damage the last byte of the second record
+        File segment = folder.getRoot().listFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            long end = 2 * (8 + 9 + 12 + "add".length() + "1".length() + "blog".length());
+            file.seek(end - 1);
+            file.write('x');
+        }
+
+        assertThat(open().recover().values()).extracting(Operation::getEntity).containsExactly("1");
+    }
+
+    @Test
+    public void testCompletionsAreForcedByTheJournalThread() throws Exception {
+        LedgerJournal journal = open();
+        journal.done(journal.append(Operation.add("1", "blog")));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("fabric.journal.sync").timer().count() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(meterRegistry.get("fabric.journal.sync").timer().count()).isPositive();
+    }
+
+    @Test
+    public void testDisabledJournalKeepsNothing() throws IOException {
+        properties.getFabric().getJournal().setEnabled(false);
+        LedgerJournal journal = open();
+
+        assertThat(journal.append(Operation.add("1", "blog"))).isZero();
+        assertThat(folder.getRoot().listFiles()).isEmpty();
+    }
+
+    private LedgerJournal open() throws IOException {
+        LedgerJournal journal = new LedgerJournal(properties, meterRegistry);
+        journal.open();
+        journals.add(journal);
+        return journal;
+    }
+}
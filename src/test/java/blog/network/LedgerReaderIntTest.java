@@ -0,0 +1,130 @@
+package blog.network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import blog.BlogchainApp;
+import blog.config.ApplicationProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the LedgerReader, against the simulated ledger.
+ *
+ * @see LedgerReader
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = BlogchainApp.class)
+public class LedgerReaderIntTest {
+
+    @Autowired
+    private FabricGateway gateway;
+
+    @Test
+    public void testKeysAreReadInChunks() throws Exception {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            keys.add("reader-" + i);
+            if (i % 2 == 0) {
+                gateway.getBackend().submit("add", new String[] { "reader-" + i, "value-" + i }, payload -> { },
+                    gateway.getExecutor()).committed().get(5, TimeUnit.SECONDS);
+            }
+        }
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getFabric().getRead().setChunkSize(3);
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        LedgerReader reader = new LedgerReader(gateway, properties, meterRegistry, new ConcurrentMapCacheManager());
+
+        Map<String, String> states = reader.getMany(keys);
+
+        assertThat(states).containsOnlyKeys("reader-0", "reader-2", "reader-4", "reader-6");
+        assertThat(states.get("reader-4")).isEqualTo("value-4");
+        assertThat(meterRegistry.counter("fabric.read.chunks").count()).isEqualTo(3);
+    }
+
+    @Test
+    public void testScansPullPagesAsTheyAreConsumed() throws Exception {
+        for (String key : new String[] { "scan~1~1", "scan~1~2", "scan~1~3", "scan~1~4", "scan~1~5", "scan~10~1",
+                "scan~2~1", "scan-1" }) {
+            add(key, "value of " + key);
+        }
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getFabric().getRead().setPageSize(2);
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        LedgerReader reader = new LedgerReader(gateway, properties, meterRegistry, new ConcurrentMapCacheManager());
+
+        List<String> keys = reader.scan("scan", 1).map(Map.Entry::getKey).collect(Collectors.toList());
+        assertThat(keys).containsExactly("scan~1~1", "scan~1~2", "scan~1~3", "scan~1~4", "scan~1~5");
+        assertThat(meterRegistry.counter("fabric.read.pages").count()).isEqualTo(3);
+
+        assertThat(reader.scan("scan").limit(3).count()).isEqualTo(3);
+        assertThat(meterRegistry.counter("fabric.read.pages").count()).isEqualTo(5);
+
+        assertThat(reader.scan("scan").map(Map.Entry::getValue)).hasSize(7).contains("value of scan~10~1");
+    }
+
+    @Test
+    public void testRangesOnlyHoldSimpleKeys() throws Exception {
+        for (String key : new String[] { "range-a", "range-b", "range-b~1", "range-c", "range-d" }) {
+            add(key, key);
+        }
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getFabric().getRead().setPageSize(1);
+        LedgerReader reader = new LedgerReader(gateway, properties, new SimpleMeterRegistry(), new ConcurrentMapCacheManager());
+
+        assertThat(reader.range("range-b", "range-d").map(Map.Entry::getKey)).containsExactly("range-b", "range-c");
+        assertThat(reader.range("range-c", "").map(Map.Entry::getKey)).startsWith("range-c", "range-d");
+    }
+
+    @Test
+    public void testCompleteHistoryPagesAreCached() throws Exception {
+        add("history~1", "v1");
+        for (int i = 2; i <= 5; i++) {
+            gateway.getBackend().submit("set", new String[] { "history~1", "v" + i }, payload -> { },
+                gateway.getExecutor()).committed().get(5, TimeUnit.SECONDS);
+        }
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getFabric().getRead().setPageSize(2);
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        LedgerReader reader = new LedgerReader(gateway, properties, meterRegistry, new ConcurrentMapCacheManager());
+
+        assertThat(reader.history("history~1").map(KeyModification::getValue))
+            .containsExactly("v1", "v2", "v3", "v4", "v5");
+        assertThat(meterRegistry.counter("fabric.read.pages").count()).isEqualTo(3);
+
+        gateway.getBackend().submit("delete", new String[] { "history~1" }, payload -> { }, gateway.getExecutor())
+            .committed().get(5, TimeUnit.SECONDS);
+        List<KeyModification> history = reader.history("history~1").collect(Collectors.toList());
+        assertThat(history).extracting(KeyModification::getValue).containsExactly("v1", "v2", "v3", "v4", "v5", null);
+        assertThat(history.get(5).isDelete()).isTrue();
+        // only the last page is queried again
+        assertThat(meterRegistry.counter("fabric.read.pages.cached").count()).isEqualTo(2);
+        assertThat(meterRegistry.counter("fabric.read.pages").count()).isEqualTo(4);
+    }
+
+    @Test
+    public void testNoKeyIsNoQuery() throws Exception {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        LedgerReader reader = new LedgerReader(gateway, new ApplicationProperties(), meterRegistry, new ConcurrentMapCacheManager());
+
+        assertThat(reader.getMany(new ArrayList<>())).isEmpty();
+        assertThat(meterRegistry.counter("fabric.read.chunks").count()).isZero();
+    }
+
+    private void add(String key, String value) throws Exception {
+        gateway.getBackend().submit("add", new String[] { key, value }, payload -> { }, gateway.getExecutor())
+            .committed().get(5, TimeUnit.SECONDS);
+    }
+}
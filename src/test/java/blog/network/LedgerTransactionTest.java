@@ -0,0 +1,71 @@
+package blog.network;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LedgerTransactionTest {
+
+    @Test
+    public void testStagesCompleteInOrder() {
+        LedgerTransaction transaction = new LedgerTransaction();
+        assertThat(transaction.getStage()).isEqualTo(LedgerTransaction.Stage.SUBMITTED);
+
+        transaction.onEndorsed("tx1", "OK");
+        assertThat(transaction.endorsed()).isCompletedWithValue(transaction);
+        assertThat(transaction.ordered()).isNotDone();
+
+        transaction.onOrdered();
+        assertThat(transaction.ordered()).isCompletedWithValue(transaction);
+        assertThat(transaction.committed()).isNotDone();
+
+        transaction.onCommitted(LedgerTransaction.VALID, 7);
+        assertThat(transaction.committed()).isCompletedWithValue(transaction);
+        assertThat(transaction.getStage()).isEqualTo(LedgerTransaction.Stage.COMMITTED);
+        assertThat(transaction.isValid()).isTrue();
+        assertThat(transaction.getBlockNumber()).isEqualTo(7);
+    }
+
+    @Test
+    public void testInvalidatedTransactionCompletesNormally() {
+        LedgerTransaction transaction = new LedgerTransaction();
+        transaction.onEndorsed("tx1", "OK");
+        transaction.onCommitted("MVCC_READ_CONFLICT", 3);
+
+        assertThat(transaction.ordered()).isCompletedWithValue(transaction);
+        assertThat(transaction.committed()).isCompletedWithValue(transaction);
+        assertThat(transaction.getStage()).isEqualTo(LedgerTransaction.Stage.INVALIDATED);
+        assertThat(transaction.isValid()).isFalse();
+    }
+
+    @Test
+    public void testFailureCompletesPendingStagesExceptionally() {
+        LedgerTransaction transaction = new LedgerTransaction();
+        transaction.onEndorsed("tx1", "OK");
+        transaction.onFailed(new IllegalStateException("orderer down"));
+
+        assertThat(transaction.endorsed()).isCompletedWithValue(transaction);
+        assertThat(transaction.ordered()).isCompletedExceptionally();
+        assertThat(transaction.committed()).isCompletedExceptionally();
+        assertThat(transaction.getStage()).isEqualTo(LedgerTransaction.Stage.FAILED);
+    }
+
+    @Test
+    public void testStageOnlyMovesForward() {
+        LedgerTransaction transaction = new LedgerTransaction();
+        transaction.onEndorsed("tx1", "OK");
+        transaction.onOrdered();
+
+        // endorsed again by a retry
+        transaction.onEndorsed("tx2", "OK");
+        assertThat(transaction.getStage()).isEqualTo(LedgerTransaction.Stage.ORDERED);
+        assertThat(transaction.getTransactionId()).isEqualTo("tx2");
+
+        transaction.onCommitted(LedgerTransaction.VALID, 7);
+        transaction.onFailed(new IllegalStateException("late failure"));
+        transaction.onCommitted("MVCC_READ_CONFLICT", 8);
+        assertThat(transaction.getStage()).isEqualTo(LedgerTransaction.Stage.COMMITTED);
+        assertThat(transaction.getBlockNumber()).isEqualTo(7);
+        assertThat(transaction.committed()).isCompletedWithValue(transaction);
+    }
+}
@@ -0,0 +1,88 @@
+package blog.network;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.EnumSet;
+import java.util.stream.Collectors;
+
+import org.hyperledger.fabric.sdk.Peer.PeerRole;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class NetworkTopologyTest {
+
+    private static final String PROFILE = "classpath:config/fabric/connection-profile.yaml";
+
+    private static final String JSON = "{"
+        + "\"client\": {\"organization\": \"Org1\"},"
+        + "\"channels\": {\"blogs\": {\"orderers\": [\"o1\", \"o2\"], \"peers\": {\"p1\": {}, \"p2\": {\"eventSource\": false}}}},"
+        + "\"organizations\": {"
+        + "  \"Org1\": {\"mspid\": \"Org1MSP\", \"peers\": [\"p1\"], \"certificateAuthorities\": [\"ca1\"]},"
+        + "  \"Org2\": {\"mspid\": \"Org2MSP\", \"peers\": [\"p2\"]}},"
+        + "\"orderers\": {\"o1\": {\"url\": \"grpcs://o1:7050\", \"grpcOptions\": {\"hostnameOverride\": \"orderer\"},"
+        + "  \"tlsCACerts\": {\"path\": \"/tls/ca.pem\"}}, \"o2\": {\"url\": \"grpc://o2:7050\"}},"
+        + "\"peers\": {\"p1\": {\"url\": \"grpc://p1:7051\"}, \"p2\": {\"url\": \"grpc://p2:7051\"}},"
+        + "\"certificateAuthorities\": {\"ca1\": {\"url\": \"http://ca1:7054\","
+        + "  \"registrar\": [{\"enrollId\": \"admin\", \"enrollSecret\": \"secret\"}]}}"
+        + "}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testTheDefaultProfileDescribesTheSampleNetwork() throws Exception {
+        NetworkTopology topology = NetworkTopology.load(PROFILE, null);
+
+        assertThat(topology.getChannel()).isEqualTo("mychannel");
+        assertThat(topology.getMspId()).isEqualTo("Org1MSP");
+        assertThat(topology.getCertificateAuthority().getUrl()).isEqualTo("http://localhost:7054");
+        assertThat(topology.getCertificateAuthority().getAffiliation()).isEqualTo("org1");
+        assertThat(topology.getOrderers()).extracting(NetworkTopology.Node::getUrl).containsExactly("grpc://localhost:7050");
+        assertThat(topology.getPeers()).extracting(NetworkTopology.Node::getMspId)
+            .containsExactly("Org1MSP", "Org1MSP", "Org2MSP", "Org2MSP");
+        assertThat(topology.getPeers().stream().filter(peer -> peer.getRoles().contains(PeerRole.EVENT_SOURCE))
+            .map(NetworkTopology.Node::getName).collect(Collectors.toList())).containsExactly("peer0.org1.example.com");
+        assertThat(topology).isEqualTo(NetworkTopology.load(PROFILE, "mychannel"));
+    }
+
+    @Test
+    public void testAJsonProfileWithSeveralOrderers() throws Exception {
+        NetworkTopology topology = NetworkTopology.load(write(JSON), null);
+
+        assertThat(topology.getChannel()).isEqualTo("blogs");
+        assertThat(topology.getOrderers()).extracting(NetworkTopology.Node::getName).containsExactly("o1", "o2");
+        assertThat(topology.getOrderers().get(0).getProperties())
+            .containsEntry("hostnameOverride", "orderer").containsEntry("pemFile", "/tls/ca.pem");
+        assertThat(topology.getPeers().get(0).getRoles()).isEqualTo(EnumSet.allOf(PeerRole.class));
+        assertThat(topology.getPeers().get(1).getRoles()).doesNotContain(PeerRole.EVENT_SOURCE)
+            .contains(PeerRole.ENDORSING_PEER, PeerRole.LEDGER_QUERY);
+    }
+
+    @Test
+    public void testAChangedUrlChangesTheTopology() throws Exception {
+        NetworkTopology before = NetworkTopology.load(write(JSON), null);
+        NetworkTopology after = NetworkTopology.load(write(JSON.replace("grpc://p2:7051", "grpc://p3:7051")), null);
+
+        assertThat(after).isNotEqualTo(before);
+        assertThat(after.getPeers().get(0)).isEqualTo(before.getPeers().get(0));
+    }
+
+    @Test
+    public void testAnInvalidProfileIsRejected() throws Exception {
+        assertThatThrownBy(() -> NetworkTopology.load(write(JSON.replace("\"registrar\"", "\"users\"")), null))
+            .isInstanceOf(IllegalStateException.class).hasMessageContaining("No certificate authority");
+        assertThatThrownBy(() -> NetworkTopology.load(PROFILE, "other")).isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("channel other");
+    }
+
+    private String write(String profile) throws Exception {
+        File file = folder.newFile();
+        Files.write(file.toPath(), profile.getBytes(StandardCharsets.UTF_8));
+        return "file:" + file.getAbsolutePath();
+    }
+}
@@ -0,0 +1,116 @@
+package blog.network;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import blog.config.ApplicationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PeerSelectorTest {
+
+    private static final List<String> PEERS = Arrays.asList("a", "b");
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private ApplicationProperties.Fabric.Peers properties;
+
+    private PeerSelector selector;
+
+    @Before
+    public void setup() {
+        properties = new ApplicationProperties().getFabric().getPeers();
+        selector = new PeerSelector(properties, new SimpleMeterRegistry(), clock::get);
+    }
+
+    @Test
+    public void testQueriesGoToTheFastestIdlePeer() {
+        answer("a", 10);
+        answer("b", 2);
+
+        assertThat(selector.selectForQuery(PEERS)).contains("b");
+    }
+
+    @Test
+    public void testQueriesSpreadOverBusyPeers() {
+        answer("a", 11);
+        answer("b", 2);
+
+        // b stays the cheapest until five requests queue on it
+        for (int i = 0; i < 5; i++) {
+            assertThat(selector.selectForQuery(PEERS)).contains("b");
+        }
+        assertThat(selector.selectForQuery(PEERS)).contains("a");
+    }
+
+    @Test
+    public void testEndorsersAreTheBestPeerOfEachRequiredOrganization() {
+        selector.register("a", "Org1MSP");
+        selector.register("b", "Org1MSP");
+        selector.register("c", "Org2MSP");
+        answer("a", 5);
+        answer("b", 1);
+        answer("c", 3);
+        List<String> peers = Arrays.asList("a", "b", "c");
+
+        assertThat(endorse(peers)).containsExactly("b");
+
+        properties.setEndorsingOrgs(2);
+        assertThat(endorse(peers)).containsExactly("b", "c");
+    }
+
+    @Test
+    public void testFailingPeersAreEjectedThenProbed() {
+        answer("a", 1);
+        answer("b", 10);
+        for (int i = 0; i < properties.getEjectAfterFailures(); i++) {
+            selector.selectForQuery(PEERS);
+            selector.onFailure("a");
+        }
+        assertThat(selector.isEjected("a")).isTrue();
+        assertThat(selector.selectForQuery(PEERS)).contains("b");
+        selector.onSuccess("b", 10);
+
+        // a single probe once the ejection is over, failing doubles the ejection
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(properties.getEjectionMs()));
+        assertThat(selector.selectForQuery(PEERS)).contains("a");
+        assertThat(selector.selectForQuery(PEERS)).contains("b");
+        selector.onSuccess("b", 10);
+        selector.onFailure("a");
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(properties.getEjectionMs()));
+        assertThat(selector.isEjected("a")).isTrue();
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(properties.getEjectionMs()));
+        assertThat(selector.selectForQuery(PEERS)).contains("a");
+        selector.onSuccess("a", 1);
+        assertThat(selector.isEjected("a")).isFalse();
+        assertThat(selector.selectForQuery(PEERS)).contains("a");
+    }
+
+    @Test
+    public void testAnEjectedPeerStillServesWhenNoOtherCan() {
+        for (int i = 0; i < properties.getEjectAfterFailures(); i++) {
+            selector.selectForQuery(PEERS.subList(0, 1));
+            selector.onFailure("a");
+        }
+
+        assertThat(selector.selectForQuery(PEERS.subList(0, 1))).contains("a");
+        assertThat(endorse(PEERS.subList(0, 1))).containsExactly("a");
+    }
+
+    private void answer(String peer, long latencyMs) {
+        selector.onSuccess(peer, TimeUnit.MILLISECONDS.toNanos(latencyMs));
+    }
+
+    private List<String> endorse(List<String> peers) {
+        List<String> endorsers = selector.selectForEndorsement(peers);
+        endorsers.forEach(peer -> selector.onSuccess(peer, 0));
+        return endorsers;
+    }
+}
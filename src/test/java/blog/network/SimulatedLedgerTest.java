@@ -0,0 +1,176 @@
+package blog.network;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import blog.config.ApplicationProperties;
+import blog.network.networkException.EntityAlreadyExist;
+import blog.network.request.GetMany;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SimulatedLedgerTest {
+
+    private static final EndorsementCheck ACCEPT = payload -> { };
+
+    private static final Executor CALLER = Runnable::run;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ApplicationProperties.Fabric.Simulator properties;
+
+    private SimulatedLedger ledger;
+
+    @Before
+    public void setup() throws Exception {
+        properties = new ApplicationProperties().getFabric().getSimulator();
+        properties.setEndorsementLatencyMs(0);
+        properties.setOrderingLatencyMs(0);
+        properties.setCommitLatencyMs(0);
+        properties.setBlockTimeoutMs(50);
+        ledger = new SimulatedLedger(properties);
+    }
+
+    @After
+    public void teardown() {
+        ledger.shutdown();
+    }
+
+    @Test
+    public void testChaincodeAnswers() throws Exception {
+        assertThat(ledger.query("get", "1")).isEqualTo("NOT_FOUND");
+        commit("add", "1", "blog");
+        assertThat(ledger.query("get", "1")).isEqualTo("blog");
+
+        assertThat(endorse("add", "1", "other")).isEqualTo("ALREADY_EXIST");
+        assertThat(endorse("set", "1", "blog")).isEqualTo("STATE_ALREADY_SET");
+        assertThat(endorse("set", "2", "blog")).isEqualTo("NOT_FOUND");
+        assertThat(endorse("delete", "2")).isEqualTo("NOT_FOUND");
+
+        commit("delete", "1");
+        assertThat(ledger.query("get", "1")).isEqualTo("NOT_FOUND");
+    }
+
+    @Test
+    public void testBatchSeesItsOwnWrites() throws Exception {
+        LedgerTransaction transaction = commit("batch", "add", "1", "a", "set", "1", "b", "add", "1", "c", "delete", "2", "");
+
+        assertThat(transaction.getPayload()).isEqualTo("OK\nOK\nALREADY_EXIST\nNOT_FOUND");
+        assertThat(ledger.query("get", "1")).isEqualTo("b");
+    }
+
+    @Test
+    public void testRefusedProposalIsNotOrdered() throws Exception {
+        commit("add", "1", "blog");
+        LedgerTransaction transaction = ledger.submit("add", new String[] { "1", "blog" }, payload -> {
+            if (payload.equals("ALREADY_EXIST")) {
+                throw new EntityAlreadyExist("");
+            }
+        }, CALLER);
+
+        assertThatThrownBy(() -> transaction.committed().get(1, TimeUnit.SECONDS))
+            .hasCauseInstanceOf(EntityAlreadyExist.class);
+        assertThat(transaction.getStage()).isEqualTo(LedgerTransaction.Stage.FAILED);
+    }
+
+    @Test
+    public void testConcurrentUpdatesConflict() throws Exception {
+        commit("add", "1", "blog");
+        properties.setBlockSize(2);
+        LedgerTransaction first = ledger.submit("set", new String[] { "1", "a" }, ACCEPT, CALLER);
+        LedgerTransaction second = ledger.submit("set", new String[] { "1", "b" }, ACCEPT, CALLER);
+        first.committed().get(1, TimeUnit.SECONDS);
+        second.committed().get(1, TimeUnit.SECONDS);
+
+        assertThat(first.isValid()).isTrue();
+        assertThat(second.getValidationCode()).isEqualTo(SimulatedLedger.MVCC_READ_CONFLICT);
+        assertThat(second.getBlockNumber()).isEqualTo(first.getBlockNumber());
+        assertThat(ledger.query("get", "1")).isEqualTo("a");
+    }
+
+    @Test
+    public void testCommittedBlocksArePublished() throws Exception {
+        List<LedgerBlock> blocks = new ArrayList<>();
+        ledger.addBlockListener(blocks::add);
+
+        LedgerTransaction transaction = commit("add", "1", "blog");
+
+        assertThat(blocks).hasSize(1);
+        assertThat(blocks.get(0).getNumber()).isEqualTo(0);
+        LedgerBlock.Transaction committed = blocks.get(0).getTransactions().get(0);
+        assertThat(committed.getTransactionId()).isEqualTo(transaction.getTransactionId());
+        assertThat(committed.isValid()).isTrue();
+        assertThat(committed.getWrites()).containsEntry("1", "blog");
+        assertThat(ledger.getHeight()).isEqualTo(1);
+    }
+
+    @Test
+    public void testOnlyTheLastBlocksAndWritesAreKept() throws Exception {
+        properties.setMaxBlocks(2);
+        properties.setMaxHistory(2);
+        commit("add", "1", "a");
+        commit("set", "1", "b");
+        commit("set", "1", "c");
+
+        assertThatThrownBy(() -> ledger.getBlock(0)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(ledger.getBlock(1).getNumber()).isEqualTo(1);
+        assertThat(ledger.getBlock(2).getNumber()).isEqualTo(2);
+
+        // the bookmarks count the dropped writes
+        List<String> page = history(ledger.query("history", "1", "", "1"), 1);
+        assertThat(page.get(0)).isEqualTo("2");
+        assertThat(page.get(4)).isEqualTo("b");
+
+        commit("set", "1", "d");
+        page = history(ledger.query("history", "10", page.get(0), "1"), 2);
+        assertThat(page.get(0)).isEmpty();
+        assertThat(page.get(4)).isEqualTo("c");
+        assertThat(page.get(8)).isEqualTo("d");
+    }
+
+    @Test
+    public void testStateIsReloadedFromFile() throws Exception {
+        properties.setFile(folder.getRoot().toPath().resolve("ledger.properties").toString());
+        ledger.shutdown();
+        ledger = new SimulatedLedger(properties);
+        commit("add", "key with spaces=", "värde\nline");
+        ledger.shutdown();
+
+        ledger = new SimulatedLedger(properties);
+
+        assertThat(ledger.query("get", "key with spaces=")).isEqualTo("värde\nline");
+        assertThat(ledger.getHeight()).isEqualTo(1);
+    }
+
+    private LedgerTransaction commit(String function, String... arguments) throws Exception {
+        LedgerTransaction transaction = ledger.submit(function, arguments, ACCEPT, CALLER);
+        transaction.committed().get(1, TimeUnit.SECONDS);
+        assertThat(transaction.isValid()).isTrue();
+        return transaction;
+    }
+
+    /* The bookmark then the fields of each write of a history page */
+    private static List<String> history(String payload, int writes) {
+        List<String> names = new ArrayList<>();
+        names.add("bookmark");
+        for (int i = 0; i < writes; i++) {
+            names.addAll(Arrays.asList("id" + i, "timestamp" + i, "delete" + i, "value" + i));
+        }
+        return new ArrayList<>(GetMany.decode(names, payload).values());
+    }
+
+    private String endorse(String function, String... arguments) throws Exception {
+        return ledger.submit(function, arguments, ACCEPT, CALLER).endorsed().get(1, TimeUnit.SECONDS).getPayload();
+    }
+}
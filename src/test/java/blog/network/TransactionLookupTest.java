@@ -0,0 +1,146 @@
+package blog.network;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.hyperledger.fabric.sdk.Channel;
+import org.hyperledger.fabric.sdk.Peer;
+import org.hyperledger.fabric.sdk.Peer.PeerRole;
+import org.hyperledger.fabric.sdk.TransactionInfo;
+import org.hyperledger.fabric.sdk.exception.ProposalException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import blog.config.ApplicationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TransactionLookupTest {
+
+    private static final String TX_ID = "tx";
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private ExecutorService executor;
+
+    private ApplicationProperties.Fabric.Lookup properties;
+
+    private PeerSelector selector;
+
+    private Channel channel;
+
+    private Peer slow;
+
+    private Peer fast;
+
+    private TransactionLookup lookup;
+
+    @Before
+    public void setup() {
+        executor = Executors.newCachedThreadPool();
+        properties = new ApplicationProperties().getFabric().getLookup();
+        properties.setInitialHedgeDelayMs(20);
+        properties.setTimeoutMs(2000);
+        selector = new PeerSelector(new ApplicationProperties().getFabric().getPeers(), new SimpleMeterRegistry());
+        slow = peer("slow");
+        fast = peer("fast");
+        channel = mock(Channel.class);
+        when(channel.getName()).thenReturn("channel");
+        when(channel.getPeers()).thenReturn(Arrays.asList(slow, fast));
+        when(channel.getPeers(EnumSet.of(PeerRole.LEDGER_QUERY))).thenReturn(Arrays.asList(slow, fast));
+        // the slow peer looks the fastest, so that it is asked first
+        selector.onSuccess("slow", 0);
+        selector.onSuccess("fast", TimeUnit.MILLISECONDS.toNanos(1));
+        lookup = new TransactionLookup(selector, executor, properties, new ConcurrentMapCache("transactions"),
+            new SimpleMeterRegistry());
+    }
+
+    @After
+    public void teardown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testASlowPeerIsHedgedThenTheAnswerIsCached() throws Exception {
+        TransactionInfo info = mock(TransactionInfo.class);
+        when(channel.queryTransactionByID(eq(slow), any())).thenAnswer(invocation -> {
+            release.await();
+            return info;
+        });
+        when(channel.queryTransactionByID(eq(fast), any())).thenReturn(info);
+
+        long start = System.nanoTime();
+        assertThat(lookup.query(channel, TX_ID)).isSameAs(info);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(properties.getTimeoutMs());
+
+        assertThat(lookup.query(channel, TX_ID)).isSameAs(info);
+        verify(channel, times(1)).queryTransactionByID(fast, TX_ID);
+    }
+
+    @Test
+    public void testAFailingPeerIsReplacedAtOnce() throws Exception {
+        TransactionInfo info = mock(TransactionInfo.class);
+        properties.setInitialHedgeDelayMs(properties.getTimeoutMs());
+        when(channel.queryTransactionByID(eq(slow), any())).thenThrow(new ProposalException("UNAVAILABLE"));
+        when(channel.queryTransactionByID(eq(fast), any())).thenReturn(info);
+
+        assertThat(lookup.query(channel, TX_ID)).isSameAs(info);
+    }
+
+    @Test
+    public void testAPeerNotKnowingTheTransactionIsReplacedAtOnce() throws Exception {
+        TransactionInfo info = mock(TransactionInfo.class);
+        properties.setInitialHedgeDelayMs(properties.getTimeoutMs());
+        when(channel.queryTransactionByID(eq(slow), any()))
+            .thenThrow(new ProposalException("Failed to get transaction with id " + TX_ID));
+        when(channel.queryTransactionByID(eq(fast), any())).thenReturn(info);
+
+        long start = System.nanoTime();
+        assertThat(lookup.query(channel, TX_ID)).isSameAs(info);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(properties.getTimeoutMs());
+    }
+
+    @Test
+    public void testATransactionNoPeerKnowsIsUnknown() throws Exception {
+        when(channel.queryTransactionByID(any(Peer.class), any()))
+            .thenThrow(new ProposalException("Failed to get transaction with id " + TX_ID));
+
+        assertThatThrownBy(() -> lookup.query(channel, TX_ID)).isInstanceOf(ProposalException.class)
+            .hasMessageContaining("Failed to get transaction with id");
+        verify(channel, times(1)).queryTransactionByID(slow, TX_ID);
+        verify(channel, times(1)).queryTransactionByID(fast, TX_ID);
+    }
+
+    @Test
+    public void testNoAnswerTimesOut() throws Exception {
+        properties.setTimeoutMs(100);
+        when(channel.queryTransactionByID(any(Peer.class), any())).thenAnswer(invocation -> {
+            release.await();
+            return null;
+        });
+
+        assertThatThrownBy(() -> lookup.query(channel, TX_ID)).isInstanceOf(ProposalException.class)
+            .hasMessageContaining("within 100 ms");
+    }
+
+    private static Peer peer(String name) {
+        Peer peer = mock(Peer.class);
+        when(peer.getName()).thenReturn(name);
+        return peer;
+    }
+}
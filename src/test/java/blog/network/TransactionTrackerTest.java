@@ -0,0 +1,116 @@
+package blog.network;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import blog.config.ApplicationProperties;
+import blog.network.LedgerTransaction.Stage;
+import blog.network.networkException.EntityNotFound;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class TransactionTrackerTest {
+
+    private ApplicationProperties.Fabric.Tracking properties;
+
+    private TransactionTracker tracker;
+
+    private final List<TransactionStatus> transitions = new ArrayList<>();
+
+    @Before
+    public void setup() {
+        properties = new ApplicationProperties().getFabric().getTracking();
+        properties.setMaxSize(2);
+        tracker = new TransactionTracker(properties, new SimpleMeterRegistry());
+        tracker.addListener(transitions::add);
+    }
+
+    @Test
+    public void testTransitionsArePushedOnce() {
+        LedgerTransaction transaction = new LedgerTransaction();
+        tracker.track(transaction);
+
+        transaction.onEndorsed("tx1", "OK");
+        transaction.onOrdered();
+        tracker.onBlock(block(7, "tx1", LedgerTransaction.VALID));
+        transaction.onCommitted(LedgerTransaction.VALID, 7);
+
+        assertThat(transitions).extracting(TransactionStatus::getTransactionId, TransactionStatus::getStage)
+            .containsExactly(tuple("tx1", Stage.ENDORSED), tuple("tx1", Stage.COMMITTED));
+        assertThat(tracker.find("tx1").get().getBlockNumber()).isEqualTo(7);
+    }
+
+    @Test
+    public void testInvalidatedAndFailedTransactions() {
+        LedgerTransaction invalidated = new LedgerTransaction();
+        LedgerTransaction failed = new LedgerTransaction();
+        tracker.track(invalidated);
+        tracker.track(failed);
+
+        invalidated.onEndorsed("tx1", "OK");
+        invalidated.onCommitted("MVCC_READ_CONFLICT", 3);
+        failed.onEndorsed("tx2", "OK");
+        failed.onFailed(new IllegalStateException("orderer down"));
+
+        assertThat(tracker.find("tx1").get().getStage()).isEqualTo(Stage.INVALIDATED);
+        assertThat(tracker.find("tx1").get().getValidationCode()).isEqualTo("MVCC_READ_CONFLICT");
+        assertThat(tracker.find("tx2").get().getStage()).isEqualTo(Stage.FAILED);
+        assertThat(tracker.find("tx2").get().getError()).contains("orderer down");
+    }
+
+    @Test
+    public void testBlocksOfUnknownTransactionsAreIgnored() {
+        tracker.onBlock(block(1, "other", LedgerTransaction.VALID));
+
+        assertThat(tracker.find("other")).isEmpty();
+        assertThat(transitions).isEmpty();
+    }
+
+    @Test
+    public void testTrackedWriteTakesTheStatusOfItsTransaction() {
+        CompletableFuture<LedgerTransaction> result = new CompletableFuture<>();
+        CompletableFuture<LedgerTransaction> refused = new CompletableFuture<>();
+        tracker.track("tracking-1", result);
+        tracker.track("tracking-2", refused);
+
+        assertThat(tracker.find("tracking-1").get().getStage()).isEqualTo(Stage.SUBMITTED);
+
+        LedgerTransaction transaction = new LedgerTransaction();
+        transaction.onEndorsed("tx1", "OK");
+        transaction.onCommitted(LedgerTransaction.VALID, 4);
+        result.complete(transaction);
+        refused.completeExceptionally(new EntityNotFound(""));
+
+        TransactionStatus status = tracker.find("tracking-1").get();
+        assertThat(status.getTransactionId()).isEqualTo("tx1");
+        assertThat(status.getStage()).isEqualTo(Stage.COMMITTED);
+        assertThat(tracker.find("tracking-2").get().getStage()).isEqualTo(Stage.FAILED);
+        assertThat(transitions).extracting(TransactionStatus::getTrackingId)
+            .containsExactly("tracking-1", "tracking-2");
+    }
+
+    @Test
+    public void testOnlyTheLastTransactionsAreKept() {
+        for (String id : new String[] { "tx1", "tx2", "tx3" }) {
+            LedgerTransaction transaction = new LedgerTransaction();
+            tracker.track(transaction);
+            transaction.onEndorsed(id, "OK");
+        }
+
+        assertThat(tracker.find("tx1")).isEmpty();
+        assertThat(tracker.find("tx3")).isPresent();
+        assertThat(tracker.size()).isEqualTo(2);
+    }
+
+    private static LedgerBlock block(long number, String transactionId, String validationCode) {
+        return new LedgerBlock(number, Collections.singletonList(
+            new LedgerBlock.Transaction(transactionId, validationCode, Collections.emptyMap())));
+    }
+}
@@ -0,0 +1,39 @@
+package blog.network.request;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import blog.network.networkException.EntityAlreadyExist;
+import blog.network.networkException.EntityNotFound;
+import blog.network.networkException.StateAlreadySet;
+import blog.network.request.Batch.Operation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BatchTest {
+
+    @Test
+    public void testOperationsAreFlattenedIntoTriples() {
+        String[] arguments = Batch.arguments(Arrays.asList(
+            Operation.add("1", "a"), Operation.set("2", "b"), Operation.delete("3")));
+
+        assertThat(arguments).containsExactly("add", "1", "a", "set", "2", "b", "delete", "3", "");
+    }
+
+    @Test
+    public void testOneStatusPerOperation() {
+        assertThat(Batch.statuses("OK\nALREADY_EXIST\nOK")).containsExactly("OK", "ALREADY_EXIST", "OK");
+        assertThat(Batch.statuses("")).isEmpty();
+    }
+
+    @Test
+    public void testStatusesAreMappedToRefusals() {
+        assertThat(Batch.refusal(Batch.OK)).isNull();
+        assertThat(Batch.refusal("ALREADY_EXIST")).isInstanceOf(EntityAlreadyExist.class);
+        assertThat(Batch.refusal("NOT_FOUND")).isInstanceOf(EntityNotFound.class);
+        assertThat(Batch.refusal("STATE_ALREADY_SET")).isInstanceOf(StateAlreadySet.class);
+        assertThat(Batch.refusal("SOMETHING_ELSE")).isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("SOMETHING_ELSE");
+    }
+}
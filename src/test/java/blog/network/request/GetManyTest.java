@@ -0,0 +1,37 @@
+package blog.network.request;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+public class GetManyTest {
+
+    @Test
+    public void testStatesAreLengthPrefixed() {
+        assertThat(GetMany.encode(Arrays.asList("blog", null, "", "été"))).isEqualTo("4:blog-1:0:5:été");
+    }
+
+    @Test
+    public void testStatesAreDecodedInOrder() {
+        String payload = GetMany.encode(Arrays.asList("a:b", null, "été\n", ""));
+
+        Map<String, String> states = GetMany.decode(Arrays.asList("1", "2", "3", "4"), payload);
+
+        assertThat(states).containsExactly(entry("1", "a:b"), entry("2", null), entry("3", "été\n"), entry("4", ""));
+    }
+
+    @Test
+    public void testMalformedAnswersAreRejected() {
+        assertThatThrownBy(() -> GetMany.decode(Arrays.asList("1", "2"), "1:a"))
+            .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> GetMany.decode(Arrays.asList("1"), "5:a"))
+            .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> GetMany.decode(Arrays.asList("1"), "1:a1:b"))
+            .isInstanceOf(IllegalStateException.class);
+    }
+}
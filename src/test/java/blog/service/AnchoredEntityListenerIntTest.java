@@ -0,0 +1,114 @@
+package blog.service;
+
+import blog.BlogchainApp;
+import blog.domain.LedgerOutbox;
+import blog.domain.Tag;
+import blog.repository.LedgerOutboxRepository;
+import blog.repository.TagRepository;
+import blog.service.util.CanonicalForm;
+import blog.service.util.LedgerKeys;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Test class for the AnchoredEntityListener. The transactions are committed, the capture happens on commit.
+ *
+ * @see AnchoredEntityListener
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = BlogchainApp.class)
+public class AnchoredEntityListenerIntTest {
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Autowired
+    private LedgerOutboxRepository ledgerOutboxRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transaction;
+
+    @Before
+    public void setup() {
+        transaction = new TransactionTemplate(transactionManager);
+        ledgerOutboxRepository.deleteAll();
+    }
+
+    @After
+    public void cleanup() {
+        transaction.execute(status -> {
+            tagRepository.deleteAll();
+            return null;
+        });
+        ledgerOutboxRepository.deleteAll();
+    }
+
+    @Test
+    public void testInsertThenUpdateIsAddedOnceInItsLastState() {
+        Tag tag = transaction.execute(status -> {
+            Tag saved = tagRepository.saveAndFlush(new Tag().name("first"));
+            saved.setName("second");
+            return saved;
+        });
+
+        assertThat(ledgerOutboxRepository.findAll())
+            .extracting(LedgerOutbox::getOperation, LedgerOutbox::getEntityKey, LedgerOutbox::getEntityValue)
+            .containsExactly(tuple("add", LedgerKeys.of(tag), CanonicalForm.digest(tag)));
+    }
+
+    @Test
+    public void testUpdateIsSetAndDeleteIsDeleted() {
+        Tag tag = transaction.execute(status -> tagRepository.save(new Tag().name("first")));
+        ledgerOutboxRepository.deleteAll();
+
+        Tag renamed = transaction.execute(status -> {
+            Tag found = tagRepository.findById(tag.getId()).get();
+            found.setName("second");
+            return found;
+        });
+        transaction.execute(status -> {
+            tagRepository.deleteById(tag.getId());
+            return null;
+        });
+
+        assertThat(ledgerOutboxRepository.findAll())
+            .extracting(LedgerOutbox::getOperation, LedgerOutbox::getEntityKey, LedgerOutbox::getEntityValue)
+            .containsExactly(tuple("set", LedgerKeys.of(tag), CanonicalForm.digest(renamed)),
+                tuple("delete", LedgerKeys.of(tag), null));
+    }
+
+    @Test
+    public void testInsertThenDeleteIsNotAnchored() {
+        transaction.execute(status -> {
+            Tag saved = tagRepository.saveAndFlush(new Tag().name("first"));
+            tagRepository.delete(saved);
+            return null;
+        });
+
+        assertThat(ledgerOutboxRepository.findAll()).isEmpty();
+    }
+
+    @Test
+    public void testRolledBackChangeIsNotAnchored() {
+        transaction.execute(status -> {
+            tagRepository.saveAndFlush(new Tag().name("first"));
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertThat(ledgerOutboxRepository.findAll()).isEmpty();
+    }
+}
@@ -0,0 +1,180 @@
+package blog.service;
+
+import blog.BlogchainApp;
+import blog.config.ApplicationProperties;
+import blog.domain.BlogEntry;
+import blog.domain.LedgerOutbox;
+import blog.domain.Tag;
+import blog.network.FabricGateway;
+import blog.network.LedgerReader;
+import blog.network.LedgerTransaction;
+import blog.repository.BlogEntryRepository;
+import blog.repository.BlogRepository;
+import blog.repository.LedgerAnchorRepository;
+import blog.repository.LedgerOutboxRepository;
+import blog.repository.TagRepository;
+import blog.service.dto.AnchorVerificationDTO;
+import blog.service.util.CanonicalForm;
+import blog.service.util.LedgerKeys;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Test class for the LedgerAnchorService, against the simulated ledger.
+ *
+ * @see LedgerAnchorService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = BlogchainApp.class)
+@Transactional
+public class LedgerAnchorServiceIntTest {
+
+    @Autowired
+    private FabricGateway gateway;
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Autowired
+    private LedgerAnchorService ledgerAnchorService;
+
+    @Autowired
+    private LedgerMirrorService ledgerMirrorService;
+
+    @Autowired
+    private LedgerReader ledgerReader;
+
+    @Autowired
+    private BlogRepository blogRepository;
+
+    @Autowired
+    private BlogEntryRepository blogEntryRepository;
+
+    @Autowired
+    private LedgerAnchorRepository ledgerAnchorRepository;
+
+    @Autowired
+    private LedgerOutboxRepository ledgerOutboxRepository;
+
+    @Autowired
+    private LedgerOutboxService ledgerOutboxService;
+
+    @Test
+    public void testDigestIsCompactAndStable() {
+        BlogEntry entry = new BlogEntry().title("title").content(new String(new char[10000]).replace('\0', 'x'))
+            .date(Instant.ofEpochSecond(1000, 123456789));
+        entry.setId(1L);
+        String digest = ledgerAnchorService.ledgerValue(entry);
+
+        assertThat(digest).hasSize(66).startsWith(CanonicalForm.VERSION + ":");
+        assertThat(CanonicalForm.isDigest(digest)).isTrue();
+        // the database keeps the date to the second
+        assertThat(ledgerAnchorService.ledgerValue(entry.date(Instant.ofEpochSecond(1000)))).isEqualTo(digest);
+        assertThat(ledgerAnchorService.ledgerValue(entry.title("other"))).isNotEqualTo(digest);
+    }
+
+    @Test
+    public void testVerifyRecomputesTheDigestFromTheDatabase() throws Exception {
+        Tag tag = tagRepository.saveAndFlush(new Tag().name("anchored"));
+        assertThat(ledgerAnchorService.verify(LedgerAnchorService.TAGS, tag.getId()).map(AnchorVerificationDTO::getStatus))
+            .contains(AnchorVerificationDTO.MISSING);
+
+        write(LedgerKeys.of(tag), ledgerAnchorService.ledgerValue(tag));
+        assertThat(ledgerAnchorService.verify(LedgerAnchorService.TAGS, tag.getId()).map(AnchorVerificationDTO::getStatus))
+            .contains(AnchorVerificationDTO.MATCH);
+
+        tagRepository.saveAndFlush(tag.name("tampered"));
+        assertThat(ledgerAnchorService.verify(LedgerAnchorService.TAGS, tag.getId()).map(AnchorVerificationDTO::getStatus))
+            .contains(AnchorVerificationDTO.MISMATCH);
+    }
+
+    @Test
+    public void testVerifyRecognizesWholeValues() throws Exception {
+        Tag tag = tagRepository.saveAndFlush(new Tag().name("whole"));
+        write(LedgerKeys.of(tag), tag.toString());
+
+        assertThat(ledgerAnchorService.verify(LedgerAnchorService.TAGS, tag.getId()).map(AnchorVerificationDTO::getStatus))
+            .contains(AnchorVerificationDTO.MATCH);
+    }
+
+    @Test
+    public void testMerkleModeAnchorsOneRootPerBatch() throws Exception {
+        LedgerAnchorService merkle = newMerkleAnchorService();
+        Tag[] tags = new Tag[3];
+        for (int i = 0; i < tags.length; i++) {
+            tags[i] = tagRepository.saveAndFlush(new Tag().name("merkle-" + i));
+            merkle.add(LedgerKeys.of(tags[i]), tags[i]);
+        }
+        assertThat(merkle.verify(LedgerAnchorService.TAGS, tags[1].getId()).map(AnchorVerificationDTO::getStatus))
+            .contains(AnchorVerificationDTO.PENDING);
+
+        Optional<String> batchKey = merkle.anchorBatch();
+        assertThat(batchKey).isPresent();
+        assertThat(merkle.anchorBatch()).isEmpty();
+        LedgerOutbox root = ledgerOutboxRepository.findAll().stream()
+            .filter(row -> row.getEntityKey().equals(batchKey.get())).findFirst().get();
+        assertThat(ledgerOutboxRepository.findAll()).extracting(LedgerOutbox::getEntityKey)
+            .doesNotContain(LedgerKeys.of(tags[0]));
+
+        write(batchKey.get(), root.getEntityValue());
+        for (Tag tag : tags) {
+            AnchorVerificationDTO verification = merkle.verify(LedgerAnchorService.TAGS, tag.getId()).get();
+            assertThat(verification.getStatus()).isEqualTo(AnchorVerificationDTO.MATCH);
+            assertThat(verification.getLedgerKey()).isEqualTo(batchKey.get());
+            assertThat(verification.getProof()).isNotEmpty();
+        }
+
+        tagRepository.saveAndFlush(tags[2].name("tampered"));
+        assertThat(merkle.verify(LedgerAnchorService.TAGS, tags[2].getId()).map(AnchorVerificationDTO::getStatus))
+            .contains(AnchorVerificationDTO.MISMATCH);
+    }
+
+    @Test
+    public void testVerifyManyEntities() throws Exception {
+        Tag anchored = tagRepository.saveAndFlush(new Tag().name("bulk-anchored"));
+        Tag missing = tagRepository.saveAndFlush(new Tag().name("bulk-missing"));
+        write(LedgerKeys.of(anchored), ledgerAnchorService.ledgerValue(anchored));
+
+        assertThat(ledgerAnchorService.verify(LedgerAnchorService.TAGS,
+            Arrays.asList(missing.getId(), Long.MAX_VALUE, anchored.getId())))
+            .extracting(AnchorVerificationDTO::getKey, AnchorVerificationDTO::getStatus)
+            .containsExactly(tuple(LedgerKeys.of(missing), AnchorVerificationDTO.MISSING),
+                tuple(LedgerKeys.of(anchored), AnchorVerificationDTO.MATCH));
+    }
+
+    @Test
+    public void testVerifyUnknownEntity() throws Exception {
+        assertThat(ledgerAnchorService.verify(LedgerAnchorService.BLOGS, Long.MAX_VALUE)).isEmpty();
+    }
+
+    private LedgerAnchorService newMerkleAnchorService() {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getFabric().getAnchor().setMode(LedgerAnchorService.MERKLE);
+        return new LedgerAnchorService(ledgerReader, ledgerMirrorService, blogRepository, blogEntryRepository, tagRepository,
+            ledgerAnchorRepository, ledgerOutboxService, properties, new SimpleMeterRegistry());
+    }
+
+    private void write(String key, String value) throws Exception {
+        LedgerTransaction transaction = gateway.getBackend()
+            .submit("add", new String[] { key, value }, payload -> { }, gateway.getExecutor()).committed()
+            .get(5, TimeUnit.SECONDS);
+        if (!transaction.getPayload().isEmpty()) {
+            gateway.getBackend().submit("set", new String[] { key, value }, payload -> { }, gateway.getExecutor())
+                .committed().get(5, TimeUnit.SECONDS);
+        }
+    }
+}
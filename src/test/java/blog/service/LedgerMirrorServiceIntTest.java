@@ -0,0 +1,126 @@
+package blog.service;
+
+import blog.BlogchainApp;
+import blog.config.ApplicationProperties;
+import blog.domain.LedgerState;
+import blog.network.FabricGateway;
+import blog.network.LedgerTransaction;
+import blog.repository.LedgerCheckpointRepository;
+import blog.repository.LedgerStateRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the LedgerMirrorService, fed by the simulated ledger.
+ *
+ * @see LedgerMirrorService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = BlogchainApp.class)
+public class LedgerMirrorServiceIntTest {
+
+    @Autowired
+    private FabricGateway gateway;
+
+    @Autowired
+    private LedgerStateRepository ledgerStateRepository;
+
+    @Autowired
+    private LedgerCheckpointRepository ledgerCheckpointRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private LedgerMirrorService mirror;
+
+    @Before
+    public void setup() {
+        clear();
+        mirror = newMirror();
+    }
+
+    @After
+    public void teardown() {
+        mirror.destroy();
+        clear();
+    }
+
+    @Test
+    public void testMirrorCatchesUpFromCheckpoint() throws Exception {
+        commit("add", "mirror-1", "first");
+        commit("add", "mirror-2", "second");
+
+        mirror.sync();
+
+        assertThat(mirror.isSynchronized()).isTrue();
+        assertThat(mirror.getCheckpoint()).isEqualTo(gateway.getBackend().getHeight());
+        assertThat(mirror.find("mirror-1").map(LedgerState::getEntityValue)).contains("first");
+        assertThat(mirror.find("mirror-2").map(LedgerState::getEntityValue)).contains("second");
+    }
+
+    @Test
+    public void testCommittedBlocksAreAppliedAsTheyArrive() throws Exception {
+        mirror.sync();
+
+        LedgerTransaction added = commit("add", "mirror-3", "first");
+        awaitCheckpoint(added.getBlockNumber() + 1);
+        assertThat(mirror.find("mirror-3").map(LedgerState::getBlockNumber)).contains(added.getBlockNumber());
+
+        commit("delete", "mirror-3");
+        awaitCheckpoint(gateway.getBackend().getHeight());
+        assertThat(mirror.find("mirror-3")).isEmpty();
+    }
+
+    @Test
+    public void testMirrorResumesAfterRestart() throws Exception {
+        commit("add", "mirror-4", "first");
+        mirror.sync();
+        long checkpoint = mirror.getCheckpoint();
+
+        commit("set", "mirror-4", "second");
+        mirror.destroy();
+        LedgerMirrorService restarted = newMirror();
+        restarted.sync();
+        restarted.destroy();
+
+        assertThat(restarted.getCheckpoint()).isGreaterThan(checkpoint);
+        assertThat(restarted.find("mirror-4").map(LedgerState::getEntityValue)).contains("second");
+    }
+
+    private LedgerMirrorService newMirror() {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.getFabric().getMirror().setEnabled(true);
+        return new LedgerMirrorService(gateway, ledgerStateRepository, ledgerCheckpointRepository, transactionManager,
+            properties, new SimpleMeterRegistry());
+    }
+
+    private LedgerTransaction commit(String function, String... arguments) throws Exception {
+        LedgerTransaction transaction = gateway.getBackend()
+            .submit(function, arguments, payload -> { }, gateway.getExecutor());
+        return transaction.committed().get(5, TimeUnit.SECONDS);
+    }
+
+    private void awaitCheckpoint(long checkpoint) throws InterruptedException {
+        for (int i = 0; i < 100 && mirror.getCheckpoint() < checkpoint; i++) {
+            Thread.sleep(20);
+        }
+        assertThat(mirror.getCheckpoint()).isGreaterThanOrEqualTo(checkpoint);
+    }
+
+    private void clear() {
+        ledgerStateRepository.deleteAll();
+        ledgerCheckpointRepository.deleteAll();
+    }
+}
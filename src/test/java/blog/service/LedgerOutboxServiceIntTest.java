@@ -0,0 +1,206 @@
+package blog.service;
+
+import blog.BlogchainApp;
+import blog.config.ApplicationProperties;
+import blog.domain.LedgerOutbox;
+import blog.network.FabricGateway;
+import blog.network.LedgerBatcher;
+import blog.network.LedgerJournal;
+import blog.network.LedgerTransaction;
+import blog.network.networkException.EntityAlreadyExist;
+import blog.repository.LedgerOutboxRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the LedgerOutboxService relay.
+ *
+ * @see LedgerOutboxService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = BlogchainApp.class)
+@Transactional
+public class LedgerOutboxServiceIntTest {
+
+    @Autowired
+    private LedgerOutboxRepository ledgerOutboxRepository;
+
+    @Autowired
+    private FabricGateway gateway;
+
+    @Autowired
+    private LedgerJournal journal;
+
+    @Mock
+    private LedgerBatcher batcher;
+
+    private MeterRegistry meterRegistry;
+
+    private ApplicationProperties properties;
+
+    private LedgerOutboxService ledgerOutboxService;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        properties = new ApplicationProperties();
+        properties.getFabric().getOutbox().setEnabled(true);
+        meterRegistry = new SimpleMeterRegistry();
+        ledgerOutboxService = new LedgerOutboxService(ledgerOutboxRepository, batcher, gateway, journal, properties,
+            meterRegistry);
+        ledgerOutboxRepository.deleteAll();
+    }
+
+    @Test
+    public void testCommittedWriteIsRemoved() {
+        ledgerOutboxService.add("1", "blog");
+        when(batcher.add("1", "blog", false)).thenReturn(CompletableFuture.completedFuture(committed(LedgerTransaction.VALID)));
+
+        ledgerOutboxService.relay();
+
+        assertThat(ledgerOutboxRepository.findAll()).isEmpty();
+        assertThat(meterRegistry.counter("fabric.outbox.relayed").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRefusedWriteIsRemoved() {
+        ledgerOutboxService.add("1", "blog");
+        CompletableFuture<LedgerTransaction> refused = new CompletableFuture<>();
+        refused.completeExceptionally(new EntityAlreadyExist(""));
+        when(batcher.add("1", "blog", false)).thenReturn(refused);
+
+        ledgerOutboxService.relay();
+
+        assertThat(ledgerOutboxRepository.findAll()).isEmpty();
+        assertThat(meterRegistry.counter("fabric.outbox.refused").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFailedWriteIsRetriedLater() {
+        ledgerOutboxService.set("1", "blog");
+        when(batcher.set("1", "blog", false)).thenReturn(CompletableFuture.completedFuture(committed("MVCC_READ_CONFLICT")));
+
+        ledgerOutboxService.relay();
+
+        List<LedgerOutbox> outbox = ledgerOutboxRepository.findAll();
+        assertThat(outbox).hasSize(1);
+        assertThat(outbox.get(0).getAttempts()).isEqualTo(1);
+        assertThat(outbox.get(0).getNextAttemptDate()).isAfter(Instant.now());
+        assertThat(outbox.get(0).getLastError()).contains("MVCC_READ_CONFLICT");
+
+        // not due yet
+        ledgerOutboxService.relay();
+        assertThat(ledgerOutboxRepository.findAll().get(0).getAttempts()).isEqualTo(1);
+    }
+
+    @Test
+    public void testWritesToAKeyAreRelayedInOrder() {
+        ledgerOutboxService.add("1", "blog");
+        ledgerOutboxService.set("1", "renamed blog");
+        when(batcher.add("1", "blog", false)).thenReturn(CompletableFuture.completedFuture(committed(LedgerTransaction.VALID)));
+        when(batcher.set("1", "renamed blog", false)).thenReturn(CompletableFuture.completedFuture(committed(LedgerTransaction.VALID)));
+
+        ledgerOutboxService.relay();
+
+        verify(batcher, never()).set(anyString(), anyString(), anyBoolean());
+        assertThat(ledgerOutboxRepository.findAll()).extracting(LedgerOutbox::getOperation).containsExactly("set");
+
+        ledgerOutboxService.relay();
+
+        assertThat(ledgerOutboxRepository.findAll()).isEmpty();
+    }
+
+    @Test
+    public void testSuccessiveSetsOfAKeyAreCombined() {
+        ledgerOutboxService.set("1", "blog");
+        ledgerOutboxService.set("2", "other blog");
+        ledgerOutboxService.set("1", "renamed blog");
+        ledgerOutboxService.set("1", "blog again");
+        ledgerOutboxService.delete("1");
+        when(batcher.set("1", "blog again", false)).thenReturn(CompletableFuture.completedFuture(committed(LedgerTransaction.VALID)));
+        when(batcher.set("2", "other blog", false)).thenReturn(CompletableFuture.completedFuture(committed(LedgerTransaction.VALID)));
+
+        ledgerOutboxService.relay();
+
+        verify(batcher).set("1", "blog again", false);
+        verify(batcher, never()).set("1", "blog", false);
+        assertThat(ledgerOutboxRepository.findAll()).extracting(LedgerOutbox::getOperation).containsExactly("delete");
+        assertThat(meterRegistry.counter("fabric.outbox.combined").count()).isEqualTo(2);
+    }
+
+    @Test
+    public void testWaitingKeyDoesNotHoldTheOthers() {
+        LedgerOutbox waiting = ledgerOutboxService.set("1", "blog");
+        waiting.setNextAttemptDate(Instant.now().plusSeconds(60));
+        ledgerOutboxRepository.save(waiting);
+        ledgerOutboxService.set("2", "other blog");
+        ledgerOutboxService.delete("1");
+        when(batcher.set("2", "other blog", false)).thenReturn(CompletableFuture.completedFuture(committed(LedgerTransaction.VALID)));
+
+        ledgerOutboxService.relay();
+
+        verify(batcher, never()).set("1", "blog", false);
+        verify(batcher, never()).delete(anyString(), anyBoolean());
+        assertThat(ledgerOutboxRepository.findAll()).extracting(LedgerOutbox::getOperation).containsExactly("set", "delete");
+        assertThat(meterRegistry.counter("fabric.outbox.relayed").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testWriteIsKeptAsADeadLetterOnceItsAttemptsAreSpent() {
+        LedgerOutbox failing = ledgerOutboxService.set("1", "blog");
+        failing.setAttempts(properties.getFabric().getOutbox().getMaxAttempts() - 1);
+        ledgerOutboxRepository.save(failing);
+        ledgerOutboxService.delete("1");
+        when(batcher.set("1", "blog", false)).thenReturn(CompletableFuture.completedFuture(committed("MVCC_READ_CONFLICT")));
+        when(batcher.delete("1", false)).thenReturn(CompletableFuture.completedFuture(committed(LedgerTransaction.VALID)));
+
+        ledgerOutboxService.relay();
+
+        LedgerOutbox dead = ledgerOutboxRepository.findById(failing.getId()).get();
+        assertThat(dead.isDeadLetter()).isTrue();
+        assertThat(dead.getLastError()).contains("MVCC_READ_CONFLICT");
+        assertThat(meterRegistry.counter("fabric.outbox.dead").count()).isEqualTo(1);
+
+        // no longer relayed, and the next write of the key waits behind it
+        ledgerOutboxService.relay();
+
+        verify(batcher).set("1", "blog", false);
+        verify(batcher, never()).delete("1", false);
+        assertThat(ledgerOutboxRepository.findAll()).hasSize(2);
+
+        // once the dead letter is handled, the key goes on
+        ledgerOutboxRepository.delete(dead);
+        ledgerOutboxService.relay();
+
+        verify(batcher).delete("1", false);
+        assertThat(ledgerOutboxRepository.findAll()).isEmpty();
+    }
+
+    private static LedgerTransaction committed(String validationCode) {
+        LedgerTransaction transaction = new LedgerTransaction();
+        transaction.onEndorsed("tx", "");
+        transaction.onCommitted(validationCode, 1);
+        return transaction;
+    }
+}
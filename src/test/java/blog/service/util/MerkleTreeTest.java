@@ -0,0 +1,76 @@
+package blog.service.util;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MerkleTreeTest {
+
+    @Test
+    public void testEveryLeafIsProvenAgainstTheRoot() {
+        for (int size = 1; size <= 17; size++) {
+            List<byte[]> leaves = leaves(size);
+            MerkleTree tree = new MerkleTree(leaves);
+            for (int i = 0; i < size; i++) {
+                assertThat(MerkleTree.rootOf(leaves.get(i), tree.getProof(i))).as("leaf %d of %d", i, size)
+                    .isEqualTo(tree.getRoot());
+            }
+        }
+    }
+
+    @Test
+    public void testProofIsLogarithmic() {
+        MerkleTree tree = new MerkleTree(leaves(1000));
+
+        assertThat(tree.getProof(0)).hasSize(10);
+        assertThat(tree.getProof(999).size()).isLessThanOrEqualTo(10);
+    }
+
+    @Test
+    public void testOtherLeafIsNotProven() {
+        List<byte[]> leaves = leaves(5);
+        MerkleTree tree = new MerkleTree(leaves);
+
+        assertThat(MerkleTree.rootOf(leaves.get(1), tree.getProof(2))).isNotEqualTo(tree.getRoot());
+        assertThat(MerkleTree.rootOf(CanonicalForm.sha256(new byte[0]), tree.getProof(2))).isNotEqualTo(tree.getRoot());
+    }
+
+    @Test
+    public void testDigestOfAnotherEntityIsNotProven() {
+        byte[] digest = CanonicalForm.sha256("same content".getBytes(StandardCharsets.UTF_8));
+        List<byte[]> leaves = leaves(3);
+        leaves.set(1, MerkleTree.leaf("tag~1", digest));
+        MerkleTree tree = new MerkleTree(leaves);
+
+        assertThat(MerkleTree.rootOf(MerkleTree.leaf("tag~1", digest), tree.getProof(1))).isEqualTo(tree.getRoot());
+        assertThat(MerkleTree.rootOf(MerkleTree.leaf("tag~2", digest), tree.getProof(1))).isNotEqualTo(tree.getRoot());
+        assertThat(MerkleTree.rootOf(MerkleTree.leaf("blog~1", digest), tree.getProof(1))).isNotEqualTo(tree.getRoot());
+    }
+
+    @Test
+    public void testSingleLeafIsNotItsOwnRoot() {
+        List<byte[]> leaves = leaves(1);
+        MerkleTree tree = new MerkleTree(leaves);
+
+        assertThat(tree.getProof(0)).isEmpty();
+        assertThat(tree.getRoot()).isNotEqualTo(CanonicalForm.hex(leaves.get(0)));
+    }
+
+    @Test
+    public void testEmptyTreeIsRefused() {
+        assertThatThrownBy(() -> new MerkleTree(new ArrayList<>())).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static List<byte[]> leaves(int size) {
+        List<byte[]> leaves = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            leaves.add(MerkleTree.leaf("tag~" + i, CanonicalForm.sha256(("leaf" + i).getBytes(StandardCharsets.UTF_8))));
+        }
+        return leaves;
+    }
+}
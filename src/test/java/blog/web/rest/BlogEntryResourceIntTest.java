@@ -3,9 +3,17 @@ package blog.web.rest;
 import blog.BlogchainApp;
 
 import blog.domain.BlogEntry;
+import blog.network.FabricGateway;
+import blog.network.LedgerBatcher;
+import blog.network.LedgerReader;
+import blog.service.LedgerMirrorService;
+import blog.service.LedgerOutboxService;
+import blog.service.util.LedgerKeys;
 import blog.repository.BlogEntryRepository;
 import blog.web.rest.errors.ExceptionTranslator;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -20,6 +28,7 @@ import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.Base64Utils;
@@ -30,6 +39,7 @@ import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 
 import static blog.web.rest.TestUtil.createFormattingConversionService;
@@ -75,6 +85,24 @@ public class BlogEntryResourceIntTest {
     @Autowired
     private EntityManager em;
 
+    @Autowired
+    private FabricGateway fabricGateway;
+
+    @Autowired
+    private LedgerBatcher ledgerBatcher;
+
+    @Autowired
+    private LedgerMirrorService ledgerMirrorService;
+
+    @Autowired
+    private LedgerOutboxService ledgerOutboxService;
+
+    @Autowired
+    private LedgerReader ledgerReader;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Autowired
     private Validator validator;
 
@@ -85,7 +113,8 @@ public class BlogEntryResourceIntTest {
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        final BlogEntryResource blogEntryResource = new BlogEntryResource(blogEntryRepository);
+        final BlogEntryResource blogEntryResource = new BlogEntryResource(blogEntryRepository, fabricGateway, ledgerBatcher,
+            ledgerMirrorService, ledgerOutboxService, ledgerReader, objectMapper);
         this.restBlogEntryMockMvc = MockMvcBuilders.standaloneSetup(blogEntryResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setControllerAdvice(exceptionTranslator)
@@ -206,7 +235,8 @@ public class BlogEntryResourceIntTest {
     
     @SuppressWarnings({"unchecked"})
     public void getAllBlogEntriesWithEagerRelationshipsIsEnabled() throws Exception {
-        BlogEntryResource blogEntryResource = new BlogEntryResource(blogEntryRepositoryMock);
+        BlogEntryResource blogEntryResource = new BlogEntryResource(blogEntryRepositoryMock, fabricGateway, ledgerBatcher,
+            ledgerMirrorService, ledgerOutboxService, ledgerReader, objectMapper);
         when(blogEntryRepositoryMock.findAllWithEagerRelationships(any())).thenReturn(new PageImpl(new ArrayList<>()));
 
         MockMvc restBlogEntryMockMvc = MockMvcBuilders.standaloneSetup(blogEntryResource)
@@ -223,7 +253,8 @@ public class BlogEntryResourceIntTest {
 
     @SuppressWarnings({"unchecked"})
     public void getAllBlogEntriesWithEagerRelationshipsIsNotEnabled() throws Exception {
-        BlogEntryResource blogEntryResource = new BlogEntryResource(blogEntryRepositoryMock);
+        BlogEntryResource blogEntryResource = new BlogEntryResource(blogEntryRepositoryMock, fabricGateway, ledgerBatcher,
+            ledgerMirrorService, ledgerOutboxService, ledgerReader, objectMapper);
             when(blogEntryRepositoryMock.findAllWithEagerRelationships(any())).thenReturn(new PageImpl(new ArrayList<>()));
             MockMvc restBlogEntryMockMvc = MockMvcBuilders.standaloneSetup(blogEntryResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
@@ -237,6 +268,42 @@ public class BlogEntryResourceIntTest {
             verify(blogEntryRepositoryMock, times(1)).findAllWithEagerRelationships(any());
     }
 
+    @Test
+    @Transactional
+    public void getBlogEntryLedgerHistory() throws Exception {
+        blogEntryRepository.saveAndFlush(blogEntry);
+        String key = LedgerKeys.of(blogEntry);
+        submit("add", key, "first");
+        submit("set", key, "second");
+        submit("delete", key);
+
+        MvcResult result = restBlogEntryMockMvc.perform(get("/api/blogentrys/{id}/ledger-history", blogEntry.getId()))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        String body = restBlogEntryMockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("application/x-ndjson"))
+            .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(3);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertThat(first.get("value").asText()).isEqualTo("first");
+        assertThat(first.get("delete").asBoolean()).isFalse();
+        assertThat(first.get("transactionId").asText()).isNotEmpty();
+        assertThat(first.get("timestamp").isTextual()).isTrue();
+        JsonNode last = objectMapper.readTree(lines[2]);
+        assertThat(last.get("delete").asBoolean()).isTrue();
+        assertThat(last.get("value").isNull()).isTrue();
+    }
+
+    @Test
+    @Transactional
+    public void getLedgerHistoryOfUnknownBlogEntry() throws Exception {
+        restBlogEntryMockMvc.perform(get("/api/blogentrys/{id}/ledger-history", Long.MAX_VALUE))
+            .andExpect(status().isNotFound());
+    }
+
     @Test
     @Transactional
     public void getBlogEntry() throws Exception {
@@ -342,4 +409,9 @@ public class BlogEntryResourceIntTest {
         blogEntry1.setId(null);
         assertThat(blogEntry1).isNotEqualTo(blogEntry2);
     }
+
+    private void submit(String function, String... arguments) throws Exception {
+        fabricGateway.getBackend().submit(function, arguments, payload -> { }, fabricGateway.getExecutor())
+            .committed().get(5, TimeUnit.SECONDS);
+    }
 }
@@ -3,7 +3,11 @@ package blog.web.rest;
 import blog.BlogchainApp;
 
 import blog.domain.Blog;
+import blog.network.FabricGateway;
+import blog.network.LedgerBatcher;
 import blog.repository.BlogRepository;
+import blog.service.LedgerMirrorService;
+import blog.service.LedgerOutboxService;
 import blog.web.rest.errors.ExceptionTranslator;
 
 import org.junit.Before;
@@ -61,6 +65,18 @@ public class BlogResourceIntTest {
     @Autowired
     private EntityManager em;
 
+    @Autowired
+    private FabricGateway fabricGateway;
+
+    @Autowired
+    private LedgerBatcher ledgerBatcher;
+
+    @Autowired
+    private LedgerMirrorService ledgerMirrorService;
+
+    @Autowired
+    private LedgerOutboxService ledgerOutboxService;
+
     @Autowired
     private Validator validator;
 
@@ -71,7 +87,7 @@ public class BlogResourceIntTest {
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        final BlogResource blogResource = new BlogResource(blogRepository);
+        final BlogResource blogResource = new BlogResource(blogRepository, fabricGateway, ledgerBatcher, ledgerMirrorService, ledgerOutboxService);
         this.restBlogMockMvc = MockMvcBuilders.standaloneSetup(blogResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setControllerAdvice(exceptionTranslator)
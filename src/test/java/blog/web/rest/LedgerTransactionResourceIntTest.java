@@ -0,0 +1,100 @@
+package blog.web.rest;
+
+import blog.BlogchainApp;
+
+import blog.network.FabricGateway;
+import blog.network.LedgerTransaction;
+import blog.network.request.Batch.Operation;
+import blog.service.TransactionStreamService;
+import blog.web.rest.errors.ExceptionTranslator;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Test class for the LedgerTransactionResource REST controller, against the simulated ledger.
+ *
+ * @see LedgerTransactionResource
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = BlogchainApp.class)
+public class LedgerTransactionResourceIntTest {
+
+    @Autowired
+    private FabricGateway fabricGateway;
+
+    @Autowired
+    private TransactionStreamService transactionStreamService;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    @Autowired
+    private ExceptionTranslator exceptionTranslator;
+
+    private MockMvc restLedgerTransactionMockMvc;
+
+    @Before
+    public void setup() {
+        LedgerTransactionResource ledgerTransactionResource = new LedgerTransactionResource(fabricGateway,
+            transactionStreamService);
+        this.restLedgerTransactionMockMvc = MockMvcBuilders.standaloneSetup(ledgerTransactionResource)
+            .setControllerAdvice(exceptionTranslator)
+            .setMessageConverters(new StringHttpMessageConverter(), jacksonMessageConverter).build();
+    }
+
+    @Test
+    public void getCommittedTransaction() throws Exception {
+        LedgerTransaction transaction = Operation.add("ledger-transaction-get", "a").toRequest(fabricGateway).submit();
+        transaction.committed().get(5, TimeUnit.SECONDS);
+
+        restLedgerTransactionMockMvc.perform(get("/api/ledger/transactions/{id}", transaction.getTransactionId()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.transactionId").value(transaction.getTransactionId()))
+            .andExpect(jsonPath("$.stage").value("COMMITTED"))
+            .andExpect(jsonPath("$.blockNumber").value((int) transaction.getBlockNumber()));
+    }
+
+    @Test
+    public void getNonExistingTransaction() throws Exception {
+        restLedgerTransactionMockMvc.perform(get("/api/ledger/transactions/{id}", "unknown-transaction"))
+            .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void streamEndorsedAndCommittedTransitions() throws Exception {
+        MvcResult result = restLedgerTransactionMockMvc.perform(get("/api/ledger/transactions/stream"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        LedgerTransaction transaction = Operation.add("ledger-transaction-stream", "a").toRequest(fabricGateway)
+            .submit();
+        transaction.committed().get(5, TimeUnit.SECONDS);
+
+        // the events are sent from the threads of the stream
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!result.getResponse().getContentAsString().contains("event:committed")
+            && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        String events = result.getResponse().getContentAsString();
+        assertThat(events).contains("event:endorsed", "event:committed", transaction.getTransactionId());
+        assertThat(events.indexOf("event:endorsed")).isLessThan(events.indexOf("event:committed"));
+    }
+}
@@ -2,10 +2,19 @@ package blog.web.rest;
 
 import blog.BlogchainApp;
 
+import blog.domain.LedgerOutbox;
 import blog.domain.Tag;
+import blog.network.FabricGateway;
+import blog.network.LedgerBatcher;
+import blog.network.LedgerTransaction;
+import blog.network.LedgerTransaction.Stage;
+import blog.service.LedgerMirrorService;
+import blog.service.LedgerOutboxService;
+import blog.repository.LedgerOutboxRepository;
 import blog.repository.TagRepository;
 import blog.web.rest.errors.ExceptionTranslator;
 
+import com.jayway.jsonpath.JsonPath;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -17,17 +26,23 @@ import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.Validator;
 
 import javax.persistence.EntityManager;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 
 import static blog.web.rest.TestUtil.createFormattingConversionService;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.isEmptyOrNullString;
+import static org.hamcrest.Matchers.not;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -43,6 +58,8 @@ public class TagResourceIntTest {
     private static final String DEFAULT_NAME = "AAAAAAAAAA";
     private static final String UPDATED_NAME = "BBBBBBBBBB";
 
+    private static final String CONSISTENCY = "X-Ledger-Consistency";
+
     @Autowired
     private TagRepository tagRepository;
 
@@ -58,6 +75,21 @@ public class TagResourceIntTest {
     @Autowired
     private EntityManager em;
 
+    @Autowired
+    private FabricGateway fabricGateway;
+
+    @Autowired
+    private LedgerBatcher ledgerBatcher;
+
+    @Autowired
+    private LedgerMirrorService ledgerMirrorService;
+
+    @Autowired
+    private LedgerOutboxService ledgerOutboxService;
+
+    @Autowired
+    private LedgerOutboxRepository ledgerOutboxRepository;
+
     @Autowired
     private Validator validator;
 
@@ -68,7 +100,7 @@ public class TagResourceIntTest {
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(this);
-        final TagResource tagResource = new TagResource(tagRepository);
+        final TagResource tagResource = new TagResource(tagRepository, fabricGateway, ledgerBatcher, ledgerMirrorService, ledgerOutboxService);
         this.restTagMockMvc = MockMvcBuilders.standaloneSetup(tagResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
             .setControllerAdvice(exceptionTranslator)
@@ -248,6 +280,97 @@ public class TagResourceIntTest {
         assertThat(tagList).hasSize(databaseSizeBeforeDelete - 1);
     }
 
+    @Test
+    public void writeToLedgerOnceCommittedByDefault() throws Exception {
+        restTagMockMvc.perform(post("/api/tags/add").param("entity", "tag-write-commit").param("value", "a"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.transactionID").value(not(isEmptyOrNullString())));
+
+        assertThat(fabricGateway.getBackend().query("get", "tag-write-commit")).isEqualTo("a");
+    }
+
+    @Test
+    public void writeToLedgerAsynchronouslyWhenTheHeaderAsks() throws Exception {
+        MvcResult result = restTagMockMvc.perform(post("/api/tags/add").header(CONSISTENCY, "async")
+            .param("entity", "tag-write-async").param("value", "a"))
+            .andExpect(status().isAccepted())
+            .andExpect(jsonPath("$.trackingID").value(not(isEmptyOrNullString())))
+            .andReturn();
+
+        awaitCommitted(JsonPath.read(result.getResponse().getContentAsString(), "$.trackingID"));
+        assertThat(fabricGateway.getBackend().query("get", "tag-write-async")).isEqualTo("a");
+    }
+
+    @Test
+    public void parkAsynchronousWriteFailedByTheNetwork() throws Exception {
+        CompletableFuture<LedgerTransaction> submitted = new CompletableFuture<>();
+        TagResource failingResource = new TagResource(tagRepository, fabricGateway, ledgerBatcher, ledgerMirrorService,
+            ledgerOutboxService) {
+            @Override
+            protected CompletableFuture<LedgerTransaction> submitAdd(String entity, String value) {
+                return submitted;
+            }
+        };
+        MockMvc failingMockMvc = MockMvcBuilders.standaloneSetup(failingResource)
+            .setMessageConverters(jacksonMessageConverter).build();
+
+        failingMockMvc.perform(post("/api/tags/add").header(CONSISTENCY, "async")
+            .param("entity", "tag-write-async-failed").param("value", "a"))
+            .andExpect(status().isAccepted());
+        submitted.completeExceptionally(new IllegalStateException("connection reset"));
+
+        List<LedgerOutbox> parked = ledgerOutboxRepository.findAll().stream()
+            .filter(row -> "tag-write-async-failed".equals(row.getEntityKey())).collect(Collectors.toList());
+        try {
+            assertThat(parked).hasSize(1);
+            assertThat(parked.get(0).getOperation()).isEqualTo(LedgerOutboxService.ADD);
+        } finally {
+            ledgerOutboxRepository.deleteAll(parked);
+        }
+    }
+
+    @Test
+    @Transactional
+    public void writeToOutboxWhenEventual() throws Exception {
+        restTagMockMvc.perform(post("/api/tags/add").header(CONSISTENCY, "eventual")
+            .param("entity", "tag-write-eventual").param("value", "a"))
+            .andExpect(status().isAccepted())
+            .andExpect(jsonPath("$.outboxID").isNumber());
+    }
+
+    @Test
+    public void writeToLedgerOnceEndorsedWithATrackingId() throws Exception {
+        MvcResult result = restTagMockMvc.perform(post("/api/tags/add").header(CONSISTENCY, "sync-endorse")
+            .param("entity", "tag-write-endorse").param("value", "a"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.transactionID").value(not(isEmptyOrNullString())))
+            .andExpect(jsonPath("$.trackingID").value(not(isEmptyOrNullString())))
+            .andReturn();
+
+        // the tracking ID follows the transaction until committed
+        awaitCommitted(JsonPath.read(result.getResponse().getContentAsString(), "$.trackingID"));
+        assertThat(fabricGateway.getBackend().query("get", "tag-write-endorse")).isEqualTo("a");
+    }
+
+    @Test
+    public void writeWithAnInvalidConsistency() throws Exception {
+        restTagMockMvc.perform(post("/api/tags/add").header(CONSISTENCY, "whenever")
+            .param("entity", "tag-write-invalid").param("value", "a"))
+            .andExpect(status().isExpectationFailed())
+            .andExpect(content().string("INVALID_CONSISTENCY"));
+
+        assertThat(fabricGateway.getBackend().query("get", "tag-write-invalid")).isEqualTo("NOT_FOUND");
+    }
+
+    private void awaitCommitted(String trackingID) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!fabricGateway.getTracker().find(trackingID).filter(status -> status.getStage() == Stage.COMMITTED)
+            .isPresent() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(fabricGateway.getTracker().find(trackingID).get().getStage()).isEqualTo(Stage.COMMITTED);
+    }
+
     @Test
     @Transactional
     public void equalsVerifier() throws Exception {
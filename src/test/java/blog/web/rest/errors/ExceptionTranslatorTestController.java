@@ -1,5 +1,6 @@
 package blog.web.rest.errors;
 
+import blog.network.LedgerSaturatedException;
 import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.access.AccessDeniedException;
@@ -19,6 +20,11 @@ public class ExceptionTranslatorTestController {
         throw new ConcurrencyFailureException("test concurrency failure");
     }
 
+    @GetMapping("/test/ledger-saturated")
+    public void ledgerSaturated() {
+        throw new LedgerSaturatedException("Too many transactions in flight", 2);
+    }
+
     @PostMapping("/test/method-argument")
     public void methodArgument(@Valid @RequestBody TestDTO testDTO) {
     }